@@ -20,7 +20,10 @@
 
 package com.ongres.benchmark;
 
+import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricFilter;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.io.Closer;
 import com.mongodb.ConnectionString;
 import com.mongodb.MongoClientSettings;
@@ -30,6 +33,7 @@ import com.ongres.benchmark.App.InitialValueAsDefaultValueProvider;
 import com.ongres.benchmark.config.ConfigUtils;
 import com.ongres.benchmark.config.Version;
 import com.ongres.benchmark.config.model.Config;
+import com.ongres.benchmark.config.model.SearchDimension;
 import com.ongres.benchmark.jdbc.ConnectionSupplier;
 import com.ongres.benchmark.jdbc.HikariConnectionSupplier;
 import com.ongres.benchmark.jdbc.PostgresConnectionSupplier;
@@ -39,17 +43,22 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
@@ -59,12 +68,17 @@ import org.jooq.lambda.Unchecked;
 import org.postgresql.PGProperty;
 import org.reactivestreams.Subscription;
 
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.postgresql.PostgresqlConnectionConfiguration;
+import io.r2dbc.postgresql.PostgresqlConnectionFactory;
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.IDefaultValueProvider;
 import picocli.CommandLine.Model.ArgSpec;
 import reactor.core.publisher.BaseSubscriber;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Scheduler;
 import reactor.core.scheduler.Schedulers;
 
@@ -79,6 +93,7 @@ public class App  extends Options implements Callable<Void> {
   protected final PrintStream err;
   protected final InputStream in;
   private final String[] args;
+  private final WorkerConnection workerConnection;
 
   /**
    * Entry point.
@@ -107,11 +122,16 @@ public class App  extends Options implements Callable<Void> {
   }
 
   private App(Config config, String... args) {
+    this(config, null, args);
+  }
+
+  private App(Config config, WorkerConnection workerConnection, String... args) {
     super(config);
     this.out = System.out;
     this.err = System.err;
     this.in = System.in;
     this.args = args;
+    this.workerConnection = workerConnection;
   }
 
   @Override
@@ -140,9 +160,28 @@ public class App  extends Options implements Callable<Void> {
       out.println(Version.getVersion());
       return;
     }
+    if (getConfig().getWorkerConnect() != null) {
+      executeWorker();
+      return;
+    }
     execute();
   }
 
+  private void executeWorker() throws Exception {
+    try (WorkerConnection connection = WorkerConnection.connect(
+        getConfig().getWorkerConnect(),
+        DistributedProtocol.token(getConfig().getCoordinatorToken()))) {
+      final App worker = new App(connection.receiveConfig(), connection);
+      try {
+        worker.execute();
+      } catch (Exception ex) {
+        connection.done(ex);
+        throw ex;
+      }
+      connection.done(null);
+    }
+  }
+
   @SuppressWarnings("resource")
   private void execute() throws Exception {
     try (Closer closer = Closer.create()) {
@@ -154,53 +193,95 @@ public class App  extends Options implements Callable<Void> {
 		case "mongo":
 			benchmark = createMongoBenchmark(closer);
 			break;
+		case "mongo-reactive":
+			benchmark = createReactiveMongoBenchmark(closer);
+			break;
 		case "postgres":
 			benchmark = createPostgresBenchmark(closer);
 			break;
+		case "postgres-r2dbc":
+			benchmark = createR2dbcPostgresBenchmark(closer);
+			break;
 		case "pDW":
 			benchmark = createPostgresDWBenchmark(closer);
 			break;
+		case "pDW-r2dbc":
+			benchmark = createR2dbcPostgresDWBenchmark(closer);
+			break;
 		case "mDW":
 			benchmark = createMongoDWBenchmark(closer);
 			break;			
+		case "noop":
+			benchmark = createNoopBenchmark(closer);
+			break;
 		default:
 			throw new IllegalArgumentException(
-					"Unknown benchmark target type " + getConfig().getTargetType() + ". Must be postgres/pDW/mongo/mDW");
+					"Unknown benchmark target type " + getConfig().getTargetType() + ". Must be postgres/postgres-r2dbc/pDW/pDW-r2dbc/mongo/mongo-reactive/mDW/noop");
 		}
       
+      final RunSummary summary = RunSummary.create(getConfig());
       if (!getConfig().isSkipSetup()) {
         logger.info("Benchmark setup");
+        final long setupStartNanos = System.nanoTime();
         benchmark.setup();
+        summary.setSetupNanos(System.nanoTime() - setupStartNanos);
       }
       
       if (getConfig().isOnlySetup()) {
         logger.info("Only setup, skipping benchmark");
         return;
       }
-      
-      Scheduler scheduler = Schedulers.newParallel(
-          "benchmark", getConfig().getParallelism(), false);
-      closer.register(() -> Unchecked.runnable(() -> scheduler.dispose()).run());
-      CompletableFuture<Void> termination = new CompletableFuture<Void>();
 
+      if (getConfig().getWorkers() > 0) {
+        benchmark.close();
+        final Coordinator.Result result = Coordinator.create(getConfig()).run();
+        try {
+          summary.write(result);
+          logger.info("Summary written to " + getConfig().getSummary());
+        } catch (IOException | RuntimeException ex) {
+          logger.warn("Could not write the summary of the run", ex);
+        }
+        if (!result.getFailures().isEmpty()) {
+          throw new IllegalStateException("Some workers failed, "
+              + String.join(", ", result.getFailures()));
+        }
+        return;
+      }
+
+      benchmark.prepare();
+      
       if (!getConfig().getMetricsAsDuration().orElse(Duration.ZERO).isZero()) {
         logger.info("Starting collecting metrics");
         startMetrics(closer);
       }
 
-      AppSubscriber future = Flux.range(0, 
-          getConfig().getIterations() != null 
-          ? getConfig().getIterations() : Integer.MAX_VALUE)
-          .parallel(getConfig().getParallelism())
-          .runOn(scheduler)
-          .doOnNext(Unchecked.consumer(ii -> benchmark.run()))
-          .sequential()
-          .doOnDiscard(Integer.class, i -> termination.complete(null))
-          .doOnCancel(() -> termination.complete(null))
-          .doOnTerminate(() -> termination.complete(null))
-          .subscribeWith(new AppSubscriber());
+      if (getConfig().getHistogramLog() != null) {
+        closer.register(MetricsManager.startIntervalHistogramLog(getConfig()));
+      }
+
+      final Optional<ThroughputSearch> search = getConfig().getSearchAsEnum()
+          .map(dimension -> ThroughputSearch.create(benchmark, getConfig()));
+      final Optional<LoadProfileRunner> profile = Optional.ofNullable(getConfig().getProfile())
+          .map(loadProfile -> LoadProfileRunner.create(benchmark, getConfig()));
+      final LoadControl loadControl = createLoadControl(benchmark, search, profile);
+      final Optional<WarmUp> warmUp = getConfig().getWarmUpAsDuration()
+          .map(duration -> WarmUp.create(benchmark, getConfig()));
+      if (workerConnection != null) {
+        logger.info("Worker " + (getConfig().getWorkerIndex() + 1) + " of "
+            + getConfig().getWorkerCount() + " ready");
+        workerConnection.awaitStart();
+        if (!warmUp.isPresent()) {
+          workerConnection.startReporting(benchmark,
+              getConfig().getWorkerReportIntervalAsDuration());
+        }
+      }
+      benchmark.markMeasuringStart();
+      Execution future = start(closer, benchmark, loadControl);
+      Exception failure = null;
       try {
         logger.info("Benchmark started");
+        logger.info("Execution engine: " + getConfig().getExecutionEngineAsEnum().name()
+            .replace('_', '-').toLowerCase(Locale.US));
 
         if (getConfig().isDisableTransaction()) {
           logger.info("Transactions are disabled");
@@ -209,6 +290,34 @@ public class App  extends Options implements Callable<Void> {
         if (getConfig().getIterations() != null) {
           logger.info("Iterations: " + getConfig().getIterations());
         }
+        if (getConfig().getRate() != null) {
+          logger.info("Rate: " + getConfig().getRate() + "/s ("
+              + getConfig().getRateDistributionAsEnum().name().toLowerCase(Locale.US) + ")");
+        }
+        if (warmUp.isPresent()) {
+          logger.info("Warm-up: " + getConfig().getWarmUpAsDuration().get()
+              + (getConfig().isWarmUpDetect() ? " max, until steady state" : ""));
+          if (!warmUp.get().run(future)) {
+            future.get();
+            return;
+          }
+        }
+        if (workerConnection != null && warmUp.isPresent()) {
+          workerConnection.startReporting(benchmark,
+              getConfig().getWorkerReportIntervalAsDuration());
+        }
+        if (search.isPresent()) {
+          search.get().run(future, loadControl);
+          benchmark.close();
+          return;
+        }
+        if (profile.isPresent()) {
+          logger.info("Load profile: " + getConfig().getProfile().getStages().size()
+              + " stages");
+          profile.get().run(future, loadControl);
+          benchmark.close();
+          return;
+        }
         if (getConfig().getDurationAsDuration().isPresent()) {
           logger.info("Duration: " + getConfig().getDurationAsDuration().get());
           try {
@@ -220,17 +329,183 @@ public class App  extends Options implements Callable<Void> {
         } else {
           future.get();
         }
+      } catch (Exception ex) {
+        failure = ex;
+        throw ex;
       } finally {
         if (!future.isDone()) {
           future.cancel();
         }
-        termination.get();
+        loadControl.open();
+        future.awaitTermination();
         logger.info("Benchmark completed");
+        if (getConfig().getGroupSize() > 1) {
+          logSeats();
+        }
+        if (workerConnection == null) {
+          writeSummary(summary, benchmark, failure);
+        }
+      }
+    }
+  }
+
+  /**
+   * Write the summary of the run, a failure to write it is logged so that it does not hide
+   * the result of the run.
+   */
+  private void writeSummary(RunSummary summary, BenchmarkRunner benchmark, Exception failure) {
+    try {
+      summary.write(MetricsManager.getMetricRegistry(), benchmark, failure);
+      logger.info("Summary written to " + getConfig().getSummary());
+    } catch (IOException | RuntimeException ex) {
+      logger.warn("Could not write the summary of the run", ex);
+    }
+  }
+
+  /**
+   * Log the seats booked next to the transactions, seats/s are derived from the
+   * transactions/s so that both cover the same period.
+   */
+  private void logSeats() {
+    final Meter transactions = MetricsManager.meter(Metric.ITERATIONS);
+    final long seats = MetricsManager.meter(Metric.SEATS).getCount();
+    if (transactions.getCount() == 0 || seats == 0) {
+      return;
+    }
+    final double groupSize = seats / (double) transactions.getCount();
+    logger.info(String.format(Locale.US, "Transactions: %d (%.1f/s), seats: %d (%.1f/s),"
+        + " mean group size %.2f", transactions.getCount(), transactions.getMeanRate(), seats,
+        transactions.getMeanRate() * groupSize, groupSize));
+  }
+
+  private LoadControl createLoadControl(BenchmarkRunner benchmark,
+      Optional<ThroughputSearch> search, Optional<LoadProfileRunner> profile) {
+    Preconditions.checkArgument(!search.isPresent() || !profile.isPresent(),
+        "--search can not be used with a load profile");
+    Preconditions.checkArgument(!profile.isPresent() || getConfig().getRate() == null,
+        "--rate can not be used with a load profile");
+    if (search.map(ThroughputSearch::getDimension)
+        .filter(SearchDimension.CONCURRENCY::equals).isPresent()
+        || profile.filter(p -> !p.isRate()).isPresent()) {
+      Preconditions.checkArgument(getConfig().getRate() == null,
+          "--rate can not be used with concurrency search");
+      Preconditions.checkArgument(!benchmark.isReactive(),
+          "Changing concurrency is not supported by non-blocking benchmark targets");
+      final double initialConcurrency = search.isPresent() ? search.get().getStart()
+          : profile.get().getInitialLoad();
+      return LoadControl.limitedClosedLoop((int) Math.round(initialConcurrency),
+          getConfig().getParallelism());
+    }
+    if (search.isPresent()) {
+      return LoadControl.openLoop(ArrivalSchedule.create(
+          getConfig().getRateDistributionAsEnum(), search.get().getStart()));
+    }
+    if (profile.isPresent()) {
+      return LoadControl.openLoop(ArrivalSchedule.create(
+          getConfig().getRateDistributionAsEnum(), profile.get().getInitialLoad()));
+    }
+    if (getConfig().getRate() != null) {
+      return LoadControl.openLoop(ArrivalSchedule.create(
+          getConfig().getRateDistributionAsEnum(), getConfig().getRate()));
+    }
+    return LoadControl.closedLoop();
+  }
+
+  private Execution start(Closer closer, BenchmarkRunner benchmark, LoadControl loadControl) {
+    final ThinkTime thinkTime = ThinkTime.outside(getConfig());
+    Preconditions.checkArgument(thinkTime.isNone() || !loadControl.isOpenLoop(),
+        "Think time outside the transaction can not be used in open-loop mode");
+    switch (getConfig().getExecutionEngineAsEnum()) {
+      case REACTOR:
+        return startReactor(closer, benchmark, loadControl, thinkTime);
+      case VIRTUAL_THREADS:
+        return startVirtualThreads(closer, benchmark, loadControl, thinkTime);
+      default:
+        throw new IllegalArgumentException(
+            "Unknown execution engine " + getConfig().getExecutionEngine()
+            + ". Must be reactor/virtual-threads");
+    }
+  }
+
+  private Execution startReactor(Closer closer, BenchmarkRunner benchmark,
+      LoadControl loadControl, ThinkTime thinkTime) {
+    AppSubscriber subscriber = new AppSubscriber();
+    return iterations(closer, benchmark, loadControl, thinkTime)
+        .doOnDiscard(Number.class, i -> subscriber.terminated())
+        .doOnCancel(subscriber::terminated)
+        .doOnTerminate(subscriber::terminated)
+        .subscribeWith(subscriber);
+  }
+
+  private Execution startVirtualThreads(Closer closer, BenchmarkRunner benchmark,
+      LoadControl loadControl, ThinkTime thinkTime) {
+    ThreadMXBean threadMxBean = ManagementFactory.getThreadMXBean();
+    MetricsManager.gauge(Metric.THREADS, threadMxBean::getThreadCount);
+    final AtomicReference<Double> carrierUtilization = new AtomicReference<>(Double.NaN);
+    MetricsManager.gauge(Metric.CARRIER_UTILIZATION, carrierUtilization::get);
+    closer.register(VirtualThreads.monitorCarrierUtilization(carrierUtilization::set));
+    closer.register(VirtualThreads.monitorPinning(
+        MetricsManager.meter(Metric.VIRTUAL_THREAD_PINNED)));
+    final long iterations = getConfig().getIterations() != null 
+        ? getConfig().getIterations() : Long.MAX_VALUE;
+    if (!loadControl.isOpenLoop()) {
+      return VirtualThreadExecution.startClosedLoop(benchmark, loadControl, thinkTime,
+          getConfig().getParallelism(), iterations);
+    }
+    return VirtualThreadExecution.startOpenLoop(benchmark, loadControl, iterations);
+  }
+
+  private Flux<?> iterations(Closer closer, BenchmarkRunner benchmark,
+      LoadControl loadControl, ThinkTime thinkTime) {
+    final int iterations = getConfig().getIterations() != null 
+        ? getConfig().getIterations() : Integer.MAX_VALUE;
+    final int maxInFlight = Optional.ofNullable(getConfig().getMaxInFlight())
+        .orElse(getConfig().getParallelism());
+    if (benchmark.isReactive()) {
+      logger.info("Max in-flight iterations: " + maxInFlight);
+      if (!loadControl.isOpenLoop()) {
+        return Flux.range(0, iterations)
+            .flatMap(ii -> thinkTime.delay().then(benchmark.runReactive()), maxInFlight);
       }
+      return arrivals(closer, loadControl, iterations)
+          .flatMap(intendedStartNanos -> benchmark.runReactive(intendedStartNanos),
+              maxInFlight);
+    }
+    Scheduler scheduler = Schedulers.newParallel(
+        "benchmark", getConfig().getParallelism(), false);
+    closer.register(() -> Unchecked.runnable(() -> scheduler.dispose()).run());
+    if (!thinkTime.isNone()) {
+      logger.info("Sessions: " + maxInFlight);
+      return Flux.range(0, iterations)
+          .flatMap(ii -> thinkTime.delay()
+              .then(Mono.fromCallable(System::nanoTime))
+              .publishOn(scheduler)
+              .doOnNext(thinkEndNanos -> loadControl.run(() -> benchmark.run(thinkEndNanos))),
+              maxInFlight);
+    }
+    if (!loadControl.isOpenLoop()) {
+      return Flux.range(0, iterations)
+          .parallel(getConfig().getParallelism())
+          .runOn(scheduler)
+          .doOnNext(ii -> loadControl.run(benchmark))
+          .sequential();
     }
+    return arrivals(closer, loadControl, iterations)
+        .parallel(getConfig().getParallelism())
+        .runOn(scheduler)
+        .doOnNext(intendedStartNanos -> benchmark.run(intendedStartNanos))
+        .sequential();
+  }
+
+  private Flux<Long> arrivals(Closer closer, LoadControl loadControl, int iterations) {
+    Scheduler pacer = Schedulers.newSingle("benchmark-pacer", false);
+    closer.register(() -> Unchecked.runnable(() -> pacer.dispose()).run());
+    return Flux.<Long>generate(sink -> sink.next(loadControl.nextArrival()))
+        .take(iterations)
+        .subscribeOn(pacer);
   }
 
-  private void startMetrics(Closer closer) {
+  private void startMetrics(Closer closer) throws IOException {
     Closeable metricsReporter;
     switch (getConfig().getMetricsReporterAsEnum()) {
       case CSV:
@@ -244,6 +519,18 @@ public class App  extends Options implements Callable<Void> {
       case JXM:
         metricsReporter = MetricsManager.startJmxResporter();
         break;
+      case PROMETHEUS:
+        metricsReporter = MetricsManager.startPrometheusReporter(getConfig()
+            .getMetricsAsDuration().get().toMillis(), TimeUnit.MILLISECONDS,
+            getConfig().getMetricsFilterAsImmutableList().isEmpty()
+                ? MetricFilter.ALL
+                : (name, metric) -> getConfig()
+                  .getMetricsFilterAsImmutableList().contains(name),
+            getConfig().getPrometheusPort(),
+            ImmutableMap.of("target", getConfig().getTargetType(),
+                "workload", Optional.ofNullable(getConfig().getPrometheusWorkload())
+                  .orElseGet(this::defaultWorkload)));
+        break;
       case LOG:
         metricsReporter = MetricsManager.startSlf4jReporter(getConfig().getMetricsAsDuration()
             .get().getSeconds(), TimeUnit.SECONDS, 
@@ -258,8 +545,31 @@ public class App  extends Options implements Callable<Void> {
     closer.register(metricsReporter);
   }
 
-  public class AppSubscriber extends BaseSubscriber<Object> implements Future<Void> {
+  private String defaultWorkload() {
+    switch (getConfig().getTargetType()) {
+      case "pDW":
+      case "pDW-r2dbc":
+      case "mDW":
+        return "dw";
+      case "noop":
+        return "noop";
+      default:
+        return "flight";
+    }
+  }
+
+  public class AppSubscriber extends BaseSubscriber<Object> implements Execution {
     private final CompletableFuture<Void> future = new CompletableFuture<Void>();
+    private final CompletableFuture<Void> termination = new CompletableFuture<Void>();
+
+    private void terminated() {
+      termination.complete(null);
+    }
+
+    @Override
+    public void awaitTermination() throws InterruptedException, ExecutionException {
+      termination.get();
+    }
     
     @Override
     protected void hookOnSubscribe(Subscription subscription) {
@@ -377,8 +687,85 @@ public class App  extends Options implements Callable<Void> {
 	    return new BenchmarkRunner(benchmark);
 	  }
 
+  private BenchmarkRunner createR2dbcPostgresBenchmark(Closer closer) {
+    PostgresFlightBenchmark schemaBenchmark = PostgresFlightBenchmark.create(
+        createUnpooledConnectionSupplier(), getConfig());
+    R2dbcPostgresFlightBenchmark benchmark = R2dbcPostgresFlightBenchmark.create(
+        createR2dbcConnectionPool(), schemaBenchmark, getConfig());
+    closer.register(() -> Unchecked.runnable(() -> benchmark.close()).run());
+    return new BenchmarkRunner(benchmark);
+  }
+
+  private BenchmarkRunner createR2dbcPostgresDWBenchmark(Closer closer) {
+    PostgresDWBenchmark schemaBenchmark = PostgresDWBenchmark.create(
+        createUnpooledConnectionSupplier(), getConfig());
+    R2dbcPostgresDWBenchmark benchmark = R2dbcPostgresDWBenchmark.create(
+        createR2dbcConnectionPool(), schemaBenchmark, getConfig());
+    closer.register(() -> Unchecked.runnable(() -> benchmark.close()).run());
+    return new BenchmarkRunner(benchmark);
+  }
+
+  private ConnectionSupplier createUnpooledConnectionSupplier() {
+    Properties jdbcProperties = new Properties();
+    PGProperty.PG_HOST.set(jdbcProperties, getConfig().getTarget().getDatabase().getHost());
+    PGProperty.PG_PORT.set(jdbcProperties, getConfig().getTarget().getDatabase().getPort());
+    PGProperty.PG_DBNAME.set(jdbcProperties, getConfig().getTarget().getDatabase().getName());
+    PGProperty.USER.set(jdbcProperties, getConfig().getTarget().getDatabase().getUser());
+    PGProperty.PASSWORD.set(jdbcProperties, getConfig().getTarget().getDatabase().getPassword());
+    return new PostgresConnectionSupplier(jdbcProperties) {
+      @Override
+      public boolean isAutoCommit() {
+        return getConfig().isDisableTransaction();
+      }
+
+      @Override
+      public int getTransactionIsolationLevel() {
+        return getConfig().getSqlIsolationLevelAsInt();
+      }
+    };
+  }
+
+  private ConnectionPool createR2dbcConnectionPool() {
+    PostgresqlConnectionFactory connectionFactory = new PostgresqlConnectionFactory(
+        PostgresqlConnectionConfiguration.builder()
+        .host(getConfig().getTarget().getDatabase().getHost())
+        .port(getConfig().getTarget().getDatabase().getPort())
+        .database(getConfig().getTarget().getDatabase().getName())
+        .username(getConfig().getTarget().getDatabase().getUser())
+        .password(getConfig().getTarget().getDatabase().getPassword())
+        .applicationName("benchmark")
+        .options(Collections.singletonMap("TimeZone", "UTC"))
+        .build());
+    Duration connectionWaitTimeout = getConfig().getConnectionWaitTimeoutAsDuration();
+    return new ConnectionPool(ConnectionPoolConfiguration.builder(connectionFactory)
+        .initialSize(getConfig().getMinConnections())
+        .minIdle(getConfig().getMinConnections())
+        .maxSize(getConfig().getMaxConnections())
+        .maxAcquireTime(connectionWaitTimeout.isZero()
+            ? ConnectionPoolConfiguration.NO_TIMEOUT : connectionWaitTimeout)
+        .maxIdleTime(getConfig().getConnectionIdleTimeoutAsDuration())
+        .build());
+  }
+
   private BenchmarkRunner createMongoBenchmark(Closer closer) {
-    MongoClient client = MongoClients.create(MongoClientSettings.builder()
+    MongoClient client = MongoClients.create(createMongoClientSettings());
+    MongoFlightBenchmark benchmark = MongoFlightBenchmark.create(client, 
+        getConfig());
+    closer.register(() -> Unchecked.runnable(() -> benchmark.close()).run());
+    return new BenchmarkRunner(benchmark);
+  }
+
+  private BenchmarkRunner createReactiveMongoBenchmark(Closer closer) {
+    com.mongodb.reactivestreams.client.MongoClient client =
+        com.mongodb.reactivestreams.client.MongoClients.create(createMongoClientSettings());
+    ReactiveMongoFlightBenchmark benchmark = ReactiveMongoFlightBenchmark.create(client, 
+        getConfig());
+    closer.register(() -> Unchecked.runnable(() -> benchmark.close()).run());
+    return new BenchmarkRunner(benchmark);
+  }
+
+  private MongoClientSettings createMongoClientSettings() {
+    return MongoClientSettings.builder()
         .applyConnectionString(new ConnectionString("mongodb://"
             + (getConfig().getTarget().getDatabase().getUser().isEmpty() ? "" 
                 : getConfig().getTarget().getDatabase().getUser() 
@@ -393,13 +780,15 @@ public class App  extends Options implements Callable<Void> {
                 TimeUnit.MILLISECONDS)
             .maxConnectionIdleTime(getConfig().getConnectionIdleTimeoutAsDuration().toMillis(), 
                 TimeUnit.MILLISECONDS))
-        .build());
-    MongoFlightBenchmark benchmark = MongoFlightBenchmark.create(client, 
-        getConfig());
+        .build();
+  }
+  
+  private BenchmarkRunner createNoopBenchmark(Closer closer) {
+    NoopBenchmark benchmark = new NoopBenchmark();
     closer.register(() -> Unchecked.runnable(() -> benchmark.close()).run());
     return new BenchmarkRunner(benchmark);
   }
-  
+
   private BenchmarkRunner createMongoDWBenchmark(Closer closer) {
 	    MongoClient client = MongoClients.create(MongoClientSettings.builder()
 	        .applyConnectionString(new ConnectionString("mongodb://"
@@ -435,6 +824,22 @@ public class App  extends Options implements Callable<Void> {
    * Run the application.
    */
   public App run() throws Exception {
+    if (args.length > 0 && args[0].equals(HistogramLogCommand.NAME)) {
+      HistogramLogCommand.run(Arrays.copyOfRange(args, 1, args.length));
+      return this;
+    }
+    if (args.length > 0 && args[0].equals(GateCostCommand.NAME)) {
+      GateCostCommand.run(Arrays.copyOfRange(args, 1, args.length));
+      return this;
+    }
+    if (args.length > 0 && args[0].equals(RecordingCostCommand.NAME)) {
+      RecordingCostCommand.run(Arrays.copyOfRange(args, 1, args.length));
+      return this;
+    }
+    if (args.length > 0 && args[0].equals(RunsCommand.NAME)) {
+      RunsCommand.run(Arrays.copyOfRange(args, 1, args.length));
+      return this;
+    }
     loadConfigFile();
     Iterator<CommandLine> commandLineIterator = newParsedCommandLine().iterator();
 
@@ -0,0 +1,138 @@
+/*-
+ *  § 
+ * benchmark: command-line
+ *    
+ * Copyright (C) 2019 OnGres, Inc.
+ *    
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * § §
+ */
+
+package com.ongres.benchmark;
+
+import com.google.common.base.Preconditions;
+import com.ongres.benchmark.config.model.ArrivalDistribution;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Schedule of intended start times for an open-loop benchmark.
+ *
+ * <p>Start times are computed from the schedule and never from the completion of previous
+ * iterations, so when the target stalls the offered load does not drop and the latency
+ * measured from the intended start time includes the time spent waiting to be served.
+ */
+public class ArrivalSchedule {
+
+  private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+  private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+  private final ArrivalDistribution distribution;
+  private volatile double rate;
+  private volatile boolean restart = true;
+  private volatile boolean stopped = false;
+  private long lastStartNanos;
+
+  private ArrivalSchedule(ArrivalDistribution distribution, double rate) {
+    this.distribution = distribution;
+    this.rate = rate;
+  }
+
+  /**
+   * Create an {@code ArrivalSchedule} that starts on the first call to {@link #next()}.
+   */
+  public static ArrivalSchedule create(ArrivalDistribution distribution, double rate) {
+    Preconditions.checkArgument(rate >= 0, "rate must not be negative");
+    return new ArrivalSchedule(distribution, rate);
+  }
+
+  public double getRate() {
+    return rate;
+  }
+
+  /**
+   * Change the target rate. The interval to the pending arrival is recomputed with the new
+   * rate, arrivals that are already late are still issued.
+   */
+  public void setRate(double rate) {
+    Preconditions.checkArgument(rate >= 0, "rate must not be negative");
+    this.rate = rate;
+  }
+
+  /**
+   * Restart the schedule from the next arrival so that arrivals that are late are not issued
+   * as a burst.
+   */
+  public void restart() {
+    this.restart = true;
+  }
+
+  /**
+   * Stop the schedule, a pending or later {@link #next()} returns immediately so that the
+   * pacer is not left waiting (for example at a rate of 0) when the benchmark stops.
+   */
+  public void stop() {
+    this.stopped = true;
+  }
+
+  /**
+   * Wait until the next intended start time and return it in {@link System#nanoTime()} units.
+   *
+   * <p>If the caller is late the method returns immediately with the intended start time
+   * already in the past. If the schedule is stopped or the calling thread is interrupted it
+   * returns immediately with the current time. Must be called from a single thread.
+   */
+  public long next() {
+    if (restart) {
+      restart = false;
+      lastStartNanos = System.nanoTime();
+      return lastStartNanos;
+    }
+    final double intervalSample = nextIntervalSample();
+    while (true) {
+      if (stopped || Thread.currentThread().isInterrupted()) {
+        return System.nanoTime();
+      }
+      final double currentRate = rate;
+      final long waitNanos;
+      if (currentRate > 0) {
+        final long intendedStartNanos = lastStartNanos
+            + Math.max(1L, Math.round(intervalSample * NANOS_PER_SECOND / currentRate));
+        waitNanos = intendedStartNanos - System.nanoTime();
+        if (waitNanos <= 0) {
+          lastStartNanos = intendedStartNanos;
+          return intendedStartNanos;
+        }
+      } else {
+        waitNanos = MAX_PARK_NANOS;
+      }
+      LockSupport.parkNanos(Math.min(waitNanos, MAX_PARK_NANOS));
+    }
+  }
+
+  /**
+   * Interval to the next arrival in units of the mean interval.
+   */
+  private double nextIntervalSample() {
+    switch (distribution) {
+      case CONSTANT:
+        return 1D;
+      case POISSON:
+        return -Math.log(1D - ThreadLocalRandom.current().nextDouble());
+      default:
+        throw new IllegalArgumentException("Unknown arrival distribution " + distribution);
+    }
+  }
+}
@@ -21,61 +21,127 @@
 package com.ongres.benchmark;
 
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongConsumer;
 
 public abstract class Benchmark implements AutoCloseable {
 
-  private final ReadWriteLock closedLock = new ReentrantReadWriteLock();
-  private final Lock readClosedLock = closedLock.readLock();
-  private final Lock writeClosedLock = closedLock.writeLock();
-  private final AtomicInteger running = new AtomicInteger(0);
+  private static final int STRIPES = Integer.highestOneBit(
+      Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)) << 1;
+  private static final int STRIPE_PADDING = 16;
+
+  /*
+   * Iterations running are counted in stripes padded to their own cache lines. An iteration
+   * enters and exits through the same stripe so that each stripe is never negative. Since
+   * enter() increments before reading closed and close() writes closed before reading the
+   * stripes, either the iteration sees the benchmark closed or close() sees it running.
+   */
+  private final AtomicLongArray running = new AtomicLongArray(STRIPES * STRIPE_PADDING);
   private volatile boolean closed = false;
+  private volatile Thread closingThread;
+  private boolean internallyClosed = false;
+  private volatile LongConsumer seatsMeter = seats -> { };
 
   /**
    * Setup and cleanup the database.
    */
   public abstract void setup();
 
+  /**
+   * Prepare the benchmark once the database is set up, before running any iteration.
+   */
+  public void prepare() {
+  }
+
   /**
    * Run a single client iteration.
    */
   public void run() {
-    readClosedLock.lock();
-    try {
-      if (closed) {
-        return;
-      }
-    } finally {
-      readClosedLock.unlock();
+    final int stripe = enter();
+    if (stripe < 0) {
+      return;
     }
-    running.incrementAndGet();
     try {
       iteration();
     } finally {
-      running.decrementAndGet();
+      exit(stripe);
+    }
+  }
+
+  /**
+   * Register an iteration as running, return the stripe to pass to {@link #exit(int)} or a
+   * negative value if the benchmark is closed.
+   */
+  final int enter() {
+    final int stripe = stripe();
+    running.incrementAndGet(stripe);
+    if (closed) {
+      exit(stripe);
+      return -1;
+    }
+    return stripe;
+  }
+
+  /**
+   * Unregister an iteration registered with {@link #enter()}.
+   */
+  final void exit(int stripe) {
+    if (running.decrementAndGet(stripe) == 0 && closed) {
+      LockSupport.unpark(closingThread);
     }
   }
 
+  /**
+   * Whether the benchmark is closed, iterations run after it is closed return without doing
+   * anything.
+   */
+  final boolean isClosed() {
+    return closed;
+  }
+
+  private static int stripe() {
+    final long id = Thread.currentThread().getId();
+    return ((int) (id ^ (id >>> 32)) * 0x9E3779B9 >>> 16 & (STRIPES - 1)) * STRIPE_PADDING;
+  }
+
   /**
    * Run a single client iteration.
    */
   protected abstract void iteration();
 
+  /**
+   * Set where {@link #markSeats(long)} records the seats, the runner records them with the
+   * iterations of the current phase.
+   */
+  final void setSeatsMeter(LongConsumer seatsMeter) {
+    this.seatsMeter = seatsMeter;
+  }
+
+  /**
+   * Record the seats booked by an iteration.
+   */
+  protected final void markSeats(long seats) {
+    seatsMeter.accept(seats);
+  }
+
   @Override
-  public final void close() throws Exception {
-    writeClosedLock.lock();
-    try {
-      closed = true;
-      while (running.get() != 0) {
-        TimeUnit.MICROSECONDS.sleep(20);
+  public final synchronized void close() throws Exception {
+    if (internallyClosed) {
+      return;
+    }
+    closingThread = Thread.currentThread();
+    closed = true;
+    for (int stripe = 0; stripe < running.length(); stripe += STRIPE_PADDING) {
+      while (running.get(stripe) != 0) {
+        LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(1));
+        if (Thread.interrupted()) {
+          throw new InterruptedException();
+        }
       }
-      internalClose();
-    } finally {
-      writeClosedLock.unlock();
     }
+    internallyClosed = true;
+    internalClose();
   }
 
   /**
@@ -21,45 +21,234 @@
 package com.ongres.benchmark;
 
 import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
 
+import com.google.common.base.Preconditions;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
 public class BenchmarkRunner implements Runnable, AutoCloseable {
 
   private final Benchmark benchmark;
-  private final Meter transactionMeter = MetricsManager.meter(Metric.ITERATIONS);
-  private final Meter retryMeter = MetricsManager.meter(Metric.RETRY);
-  private final Timer responseTimer = MetricsManager.timer(Metric.RESPONSE_TIME);
+  private volatile IterationMetrics metrics = new IterationMetrics(
+      MetricsManager.getMetricRegistry());
+  private final List<IterationListener> listeners = new CopyOnWriteArrayList<>();
+  private final Map<String, LongAdder> retriesByCause = new ConcurrentHashMap<>();
+  private final Map<String, LongAdder> errorsByClass = new ConcurrentHashMap<>();
+  private volatile long measuringStartNanos = System.nanoTime();
   
   public BenchmarkRunner(Benchmark benchmark) {
     super();
     this.benchmark = benchmark;
+    benchmark.setSeatsMeter(seats -> metrics.seatsMeter.mark(seats));
   }
 
   public void setup() {
     benchmark.setup();
   }
 
+  public void prepare() {
+    benchmark.prepare();
+  }
+
+  /**
+   * Record iterations in the warm-up registry until {@link #startMeasuring()} is called.
+   */
+  public void startWarmUp() {
+    MetricsManager.setPhase("warm-up");
+    metrics = new IterationMetrics(MetricsManager.getWarmUpMetricRegistry());
+  }
+
+  /**
+   * Reset the iteration metrics and record iterations in the measured registry.
+   */
+  public void startMeasuring() {
+    MetricsManager.reset(Metric.ITERATIONS, Metric.SEATS, Metric.RETRY,
+        Metric.RESPONSE_TIME, Metric.SERVICE_TIME, Metric.GROUP_COMMIT_BATCH_SIZE,
+        Metric.GROUP_COMMIT_LATENCY);
+    StepTimer.resetAll();
+    retriesByCause.clear();
+    errorsByClass.clear();
+    measuringStartNanos = System.nanoTime();
+    MetricsManager.setPhase("run");
+    metrics = new IterationMetrics(MetricsManager.getMetricRegistry());
+  }
+
+  /**
+   * Mark the start of the measured iterations when there is no warm-up, without resetting
+   * the metrics. {@link #startMeasuring()} marks it again when warm-up ends.
+   */
+  public void markMeasuringStart() {
+    measuringStartNanos = System.nanoTime();
+  }
+
+  /**
+   * Time elapsed since the measured iterations started.
+   */
+  public long getMeasuredNanos() {
+    return System.nanoTime() - measuringStartNanos;
+  }
+
+  /**
+   * # of measured retries indexed by the class of the exception that caused them.
+   */
+  public Map<String, Long> getRetriesByCause() {
+    return sum(retriesByCause);
+  }
+
+  /**
+   * # of measured iterations that failed indexed by the class of their exception.
+   */
+  public Map<String, Long> getErrorsByClass() {
+    return sum(errorsByClass);
+  }
+
+  private static Map<String, Long> sum(Map<String, LongAdder> counts) {
+    final Map<String, Long> sums = new TreeMap<>();
+    counts.forEach((name, count) -> sums.put(name, count.sum()));
+    return sums;
+  }
+
+  public void addListener(IterationListener listener) {
+    listeners.add(listener);
+  }
+
+  public void removeListener(IterationListener listener) {
+    listeners.remove(listener);
+  }
+
   @Override
   public void run() {
-    responseTimer.time(this::runWithRetry);
-    transactionMeter.mark();
+    run(System.nanoTime());
   }
 
-  private void runWithRetry() {
+  /**
+   * Run an iteration that was intended to start at {@code intendedStartNanos}
+   * ({@link System#nanoTime()} units). Response time is measured from the intended start
+   * while service time is measured from the actual start. Nothing is recorded once the
+   * benchmark is closed, since the iteration does not run.
+   */
+  public void run(long intendedStartNanos) {
+    if (benchmark.isClosed()) {
+      return;
+    }
+    final IterationMetrics metrics = this.metrics;
+    final long startNanos = System.nanoTime();
+    try {
+      runWithRetry(metrics);
+    } catch (RuntimeException ex) {
+      markError(ex);
+      throw ex;
+    } finally {
+      record(metrics, intendedStartNanos, startNanos, System.nanoTime());
+    }
+    metrics.transactionMeter.mark();
+  }
+
+  /**
+   * Whether the benchmark iterations can run without blocking with
+   * {@link #runReactive(long)}.
+   */
+  public boolean isReactive() {
+    return benchmark instanceof ReactiveBenchmark;
+  }
+
+  /**
+   * Run an iteration without blocking, it starts on subscription.
+   */
+  public Mono<Void> runReactive() {
+    return Mono.defer(() -> runReactive(System.nanoTime()));
+  }
+
+  /**
+   * Run an iteration without blocking that was intended to start at
+   * {@code intendedStartNanos} ({@link System#nanoTime()} units), it starts on subscription.
+   */
+  public Mono<Void> runReactive(long intendedStartNanos) {
+    Preconditions.checkState(isReactive(), "Benchmark is not reactive");
+    ReactiveBenchmark reactiveBenchmark = (ReactiveBenchmark) benchmark;
+    return Mono.defer(() -> {
+      if (benchmark.isClosed()) {
+        return Mono.<Void>empty();
+      }
+      final IterationMetrics metrics = this.metrics;
+      final long startNanos = System.nanoTime();
+      return reactiveBenchmark.runReactive()
+          .retryWhen(Retry.indefinitely()
+              .filter(ex -> ex instanceof RetryUserOperationException)
+              .doBeforeRetry(signal -> markRetry(metrics, signal.failure())))
+          .doOnError(this::markError)
+          .doFinally(signal -> record(metrics, intendedStartNanos, startNanos,
+              System.nanoTime()))
+          .doOnSuccess(result -> metrics.transactionMeter.mark());
+    });
+  }
+
+  private void runWithRetry(IterationMetrics metrics) {
     while (true) {
       try {
         benchmark.run();
         break;
       } catch (RetryUserOperationException ex) {
-        retryMeter.mark();
+        markRetry(metrics, ex);
         continue;
       }
     }
   }
 
+  private void record(IterationMetrics metrics, long intendedStartNanos, long startNanos,
+      long endNanos) {
+    metrics.serviceTimer.update(endNanos - startNanos, TimeUnit.NANOSECONDS);
+    metrics.responseTimer.update(endNanos - intendedStartNanos, TimeUnit.NANOSECONDS);
+    for (IterationListener listener : listeners) {
+      listener.onIteration(intendedStartNanos, startNanos, endNanos);
+    }
+  }
+
+  private void markRetry(IterationMetrics metrics, Throwable ex) {
+    metrics.retryMeter.mark();
+    final Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+    retriesByCause.computeIfAbsent(cause.getClass().getName(), name -> new LongAdder())
+        .increment();
+    for (IterationListener listener : listeners) {
+      listener.onRetry();
+    }
+  }
+
+  private void markError(Throwable ex) {
+    errorsByClass.computeIfAbsent(ex.getClass().getName(), name -> new LongAdder())
+        .increment();
+  }
+
   @Override
   public void close() throws Exception {
     benchmark.close();
   }
 
+  private static class IterationMetrics {
+    private final Meter transactionMeter;
+    private final Meter seatsMeter;
+    private final Meter retryMeter;
+    private final Timer responseTimer;
+    private final Timer serviceTimer;
+
+    private IterationMetrics(MetricRegistry registry) {
+      this.transactionMeter = MetricsManager.meter(registry, Metric.ITERATIONS);
+      this.seatsMeter = MetricsManager.meter(registry, Metric.SEATS);
+      this.retryMeter = MetricsManager.meter(registry, Metric.RETRY);
+      this.responseTimer = MetricsManager.timer(registry, Metric.RESPONSE_TIME);
+      this.serviceTimer = MetricsManager.timer(registry, Metric.SERVICE_TIME);
+    }
+  }
+
 }
@@ -0,0 +1,133 @@
+/*-
+ *  § 
+ * benchmark: command-line
+ *    
+ * Copyright (C) 2019 OnGres, Inc.
+ *    
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * § §
+ */
+
+package com.ongres.benchmark;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The seats of a group of users on a schedule and day, written by a {@link GroupCommitter}.
+ */
+final class Booking {
+
+  private final int scheduleId;
+  private final int durationMinutes;
+  private final long[] userIds;
+  private final Date day;
+  private final Timestamp timestamp;
+
+  Booking(int scheduleId, int durationMinutes, long[] userIds, Date day, Timestamp timestamp) {
+    this.scheduleId = scheduleId;
+    this.durationMinutes = durationMinutes;
+    this.userIds = userIds;
+    this.day = day;
+    this.timestamp = timestamp;
+  }
+
+  int getScheduleId() {
+    return scheduleId;
+  }
+
+  /**
+   * The duration in minutes of the schedule, negative if unknown.
+   */
+  int getDurationMinutes() {
+    return durationMinutes;
+  }
+
+  long[] getUserIds() {
+    return userIds;
+  }
+
+  Date getDay() {
+    return day;
+  }
+
+  Timestamp getTimestamp() {
+    return timestamp;
+  }
+
+  /**
+   * The payment amount of each seat.
+   */
+  int getAmount() {
+    return durationMinutes < 0 ? 42 : Math.max(42, durationMinutes * 42);
+  }
+
+  /**
+   * Merge the bookings of the same schedule and day so that a batch updates each audit once,
+   * sorted by schedule and day so that concurrent batches update them in the same order.
+   */
+  static List<Audit> audits(List<Booking> bookings) {
+    final List<Booking> sorted = new ArrayList<>(bookings);
+    sorted.sort(Comparator.comparingInt(Booking::getScheduleId)
+        .thenComparing(Booking::getDay));
+    final List<Audit> audits = new ArrayList<>(sorted.size());
+    Audit audit = null;
+    for (Booking booking : sorted) {
+      if (audit == null || audit.scheduleId != booking.scheduleId
+          || !audit.day.equals(booking.day)) {
+        audit = new Audit(booking.scheduleId, booking.day);
+        audits.add(audit);
+      }
+      audit.seats += booking.userIds.length;
+      if (audit.timestamp == null || booking.timestamp.after(audit.timestamp)) {
+        audit.timestamp = booking.timestamp;
+      }
+    }
+    return audits;
+  }
+
+  /**
+   * The seats booked in a batch for a schedule and day, with the latest timestamp.
+   */
+  static final class Audit {
+
+    private final int scheduleId;
+    private final Date day;
+    private int seats = 0;
+    private Timestamp timestamp;
+
+    private Audit(int scheduleId, Date day) {
+      this.scheduleId = scheduleId;
+      this.day = day;
+    }
+
+    int getScheduleId() {
+      return scheduleId;
+    }
+
+    Date getDay() {
+      return day;
+    }
+
+    int getSeats() {
+      return seats;
+    }
+
+    Timestamp getTimestamp() {
+      return timestamp;
+    }
+  }
+}
@@ -0,0 +1,59 @@
+/*-
+ *  § 
+ * benchmark: command-line
+ *    
+ * Copyright (C) 2019 OnGres, Inc.
+ *    
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * § §
+ */
+
+package com.ongres.benchmark;
+
+import com.google.common.base.Preconditions;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * Semaphore whose number of permits can be changed while it is in use, to change the
+ * concurrency of a closed-loop benchmark without restarting it.
+ */
+public class ConcurrencyLimiter extends Semaphore {
+
+  private static final long serialVersionUID = 1L;
+
+  private int limit;
+
+  public ConcurrencyLimiter(int limit) {
+    super(limit, true);
+    this.limit = limit;
+  }
+
+  public synchronized int getLimit() {
+    return limit;
+  }
+
+  /**
+   * Change the limit. When reduced, iterations already running are not affected and new
+   * ones wait until enough of them complete.
+   */
+  public synchronized void setLimit(int limit) {
+    Preconditions.checkArgument(limit >= 0, "limit must not be negative");
+    if (limit > this.limit) {
+      release(limit - this.limit);
+    } else if (limit < this.limit) {
+      reducePermits(this.limit - limit);
+    }
+    this.limit = limit;
+  }
+}
@@ -0,0 +1,506 @@
+/*-
+ *  § 
+ * benchmark: command-line
+ *    
+ * Copyright (C) 2019 OnGres, Inc.
+ *    
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * § §
+ */
+
+package com.ongres.benchmark;
+
+import com.google.common.base.Preconditions;
+import com.google.common.io.BaseEncoding;
+import com.google.common.io.Closer;
+import com.ongres.benchmark.config.ConfigUtils;
+import com.ongres.benchmark.config.model.Config;
+import com.ongres.benchmark.config.model.profile.LoadStage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.HdrHistogram.Histogram;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Runs a benchmark on worker processes, forked on this host or started with
+ * {@code --worker-connect} on other hosts. The rate, concurrency, iterations and user IDs are
+ * divided between the workers, that are started at once when all of them are ready. The
+ * interval histograms reported by the workers are merged, logged and written to
+ * {@code workers.csv} and the whole run response time distribution to
+ * {@code response-time.hgrm}.
+ *
+ * <p>When all the workers are local the coordinator only listens on the loopback address.
+ * Workers must send the coordinator token ({@code --coordinator-token}, generated for the local
+ * workers) before they receive the configuration, that includes the target database
+ * credentials, other connections are closed.
+ */
+public class Coordinator {
+
+  private static final Logger logger = LogManager.getLogger();
+
+  private static final Duration ACCEPT_TIMEOUT = Duration.ofMinutes(5);
+  private static final Duration HELLO_TIMEOUT = Duration.ofSeconds(10);
+  private static final String INTERVALS_FILE = "workers.csv";
+  private static final String DISTRIBUTION_FILE = "response-time.hgrm";
+
+  private final Config config;
+  private final int workers;
+  private final int localWorkers;
+  private final String token;
+  private final Map<Integer, Interval> intervals = new HashMap<>();
+  private final int[] reported;
+  private final boolean[] done;
+  private final Histogram responseTime = new Histogram(3);
+  private final Histogram serviceTime = new Histogram(3);
+  private int nextInterval = 0;
+  private long iterations = 0;
+  private long retries = 0;
+  private long durationNanos = 0;
+  private CSVPrinter printer;
+
+  private Coordinator(Config config, int localWorkers, String token) {
+    this.config = config;
+    this.workers = config.getWorkers();
+    this.localWorkers = localWorkers;
+    this.token = token;
+    this.reported = new int[workers];
+    this.done = new boolean[workers];
+  }
+
+  /**
+   * Create an instance of {@class Coordinator}.
+   */
+  public static Coordinator create(Config config) {
+    Preconditions.checkArgument(config.getWorkers() > 0, "--workers must be positive");
+    final int localWorkers = Optional.ofNullable(config.getLocalWorkers())
+        .orElse(config.getWorkers());
+    Preconditions.checkArgument(localWorkers >= 0 && localWorkers <= config.getWorkers(),
+        "--local-workers must be between 0 and --workers");
+    Preconditions.checkArgument(localWorkers == config.getWorkers()
+        || config.getCoordinatorPort() > 0,
+        "--coordinator-port must be set when not all the workers are local");
+    final String configuredToken = DistributedProtocol.token(config.getCoordinatorToken());
+    Preconditions.checkArgument(localWorkers == config.getWorkers() || configuredToken != null,
+        "--coordinator-token or the " + DistributedProtocol.TOKEN_ENVIRONMENT_VARIABLE
+        + " environment variable must be set when not all the workers are local");
+    Preconditions.checkArgument(config.getSearch() == null,
+        "--search can not be used with --workers");
+    Preconditions.checkArgument(!config.getWorkerReportIntervalAsDuration().isNegative()
+        && !config.getWorkerReportIntervalAsDuration().isZero(),
+        "--worker-report-interval must be positive");
+    return new Coordinator(config, localWorkers, Optional.ofNullable(configuredToken)
+        .orElseGet(Coordinator::generateToken));
+  }
+
+  /**
+   * Run the benchmark on the workers, wait for all of them to complete and return the merged
+   * totals and distributions. Failed workers are listed in {@link Result#getFailures()}.
+   */
+  @SuppressWarnings("resource")
+  public Result run() throws Exception {
+    try (Closer closer = Closer.create()) {
+      final ServerSocket serverSocket = closer.register(localWorkers == workers
+          ? new ServerSocket(config.getCoordinatorPort(), 0, InetAddress.getLoopbackAddress())
+          : new ServerSocket(config.getCoordinatorPort()));
+      serverSocket.setSoTimeout((int) ACCEPT_TIMEOUT.toMillis());
+      logger.info("Coordinator listening on port " + serverSocket.getLocalPort()
+          + " for " + workers + " workers (" + localWorkers + " local)");
+      final List<Process> processes = new ArrayList<>();
+      for (int index = 0; index < localWorkers; index++) {
+        final Process process = forkWorker(serverSocket.getLocalPort());
+        closer.register(() -> process.destroy());
+        processes.add(process);
+      }
+      final List<WorkerSession> sessions = new ArrayList<>();
+      while (sessions.size() < workers) {
+        final int index = sessions.size();
+        final Socket socket = serverSocket.accept();
+        socket.setTcpNoDelay(true);
+        final WorkerSession session = new WorkerSession(index, socket);
+        if (!session.authenticate(socket)) {
+          socket.close();
+          continue;
+        }
+        closer.register(socket);
+        logger.info("Worker " + index + " connected from " + socket.getRemoteSocketAddress());
+        session.sendConfig(workerConfig(index));
+        sessions.add(session);
+      }
+      for (WorkerSession session : sessions) {
+        session.awaitReady();
+      }
+      printer = closer.register(new CSVPrinter(
+          new FileWriter(INTERVALS_FILE, StandardCharsets.UTF_8),
+          CSVFormat.DEFAULT.builder()
+            .setHeader("interval", "workers", "duration", "count", "throughput",
+                "retry_ratio", "p50", "p90", "p99", "p999", "max", "service_p50",
+                "service_p99")
+            .build()));
+      logger.info("All workers ready, starting benchmark");
+      logger.info(String.format(Locale.US, "%6s %7s %12s %12s %12s %12s %12s %12s",
+          "#", "workers", "throughput", "p50 (ms)", "p99 (ms)", "p99.9 (ms)", "max (ms)",
+          "retry ratio"));
+      for (WorkerSession session : sessions) {
+        session.start();
+      }
+      final ExecutorService executor = Executors.newFixedThreadPool(workers);
+      closer.register(() -> executor.shutdownNow());
+      final List<Future<String>> results = new ArrayList<>();
+      for (WorkerSession session : sessions) {
+        results.add(executor.submit(session::readIntervals));
+      }
+      final List<String> failures = new ArrayList<>();
+      for (int index = 0; index < workers; index++) {
+        try {
+          final String error = results.get(index).get();
+          if (!error.isEmpty()) {
+            failures.add("worker " + index + ": " + error);
+          }
+        } catch (ExecutionException ex) {
+          failures.add("worker " + index + ": " + ex.getCause());
+        }
+      }
+      for (Process process : processes) {
+        process.waitFor();
+      }
+      summary();
+      synchronized (this) {
+        return new Result(workers, iterations, retries, durationNanos, responseTime.copy(),
+            serviceTime.copy(), failures);
+      }
+    }
+  }
+
+  private Process forkWorker(int port) throws IOException {
+    final ProcessBuilder processBuilder = new ProcessBuilder(
+        Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+        "-cp", System.getProperty("java.class.path"),
+        App.class.getName(),
+        "--worker-connect", InetAddress.getLoopbackAddress().getHostAddress() + ":" + port)
+        .inheritIO();
+    processBuilder.environment().put(DistributedProtocol.TOKEN_ENVIRONMENT_VARIABLE, token);
+    return processBuilder.start();
+  }
+
+  private static String generateToken() {
+    final byte[] bytes = new byte[32];
+    new SecureRandom().nextBytes(bytes);
+    return BaseEncoding.base16().lowerCase().encode(bytes);
+  }
+
+  /**
+   * The configuration of worker {@code index}, with its share of the load.
+   */
+  private Config workerConfig(int index) throws IOException {
+    final Config workerConfig = copy(config);
+    workerConfig.setWorkers(0);
+    workerConfig.setLocalWorkers(null);
+    workerConfig.setCoordinatorPort(0);
+    workerConfig.setCoordinatorToken(null);
+    workerConfig.setWorkerIndex(index);
+    workerConfig.setWorkerCount(workers);
+    workerConfig.setSkipSetup(true);
+    workerConfig.setMetrics(null);
+    workerConfig.setParallelism(Math.max(1, share(config.getParallelism(), index)));
+    if (config.getMaxInFlight() != null) {
+      workerConfig.setMaxInFlight(Math.max(1, share(config.getMaxInFlight(), index)));
+    }
+    if (config.getIterations() != null) {
+      workerConfig.setIterations(share(config.getIterations(), index));
+    }
+    if (config.getRate() != null) {
+      workerConfig.setRate(config.getRate() / workers);
+    }
+    if (workerConfig.getProfile() != null) {
+      for (LoadStage stage : workerConfig.getProfile().getStages()) {
+        if (stage.getRate() != null) {
+          stage.setRate(stage.getRate() / workers);
+        }
+        if (stage.getConcurrency() != null) {
+          stage.setConcurrency(share(stage.getConcurrency(), index));
+        }
+        if (stage.getFrom() != null) {
+          stage.setFrom(stage.getConcurrency() != null
+              ? (double) share((int) Math.round(stage.getFrom()), index)
+              : stage.getFrom() / workers);
+        }
+      }
+    }
+    return workerConfig;
+  }
+
+  private int share(int total, int index) {
+    return total / workers + (index < total % workers ? 1 : 0);
+  }
+
+  private static Config copy(Config config) throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    ConfigUtils.generateConfig(outputStream, config);
+    return ConfigUtils.parseConfig(new ByteArrayInputStream(outputStream.toByteArray()));
+  }
+
+  private synchronized void onInterval(int worker, int index, long durationNanos,
+      long retries, Histogram responseTime, Histogram serviceTime) throws IOException {
+    final Interval interval = intervals.computeIfAbsent(index, i -> new Interval());
+    interval.workers++;
+    interval.durationNanos = Math.max(interval.durationNanos, durationNanos);
+    interval.retries += retries;
+    interval.responseTime.add(responseTime);
+    interval.serviceTime.add(serviceTime);
+    reported[worker] = index + 1;
+    flushIntervals();
+  }
+
+  private synchronized void onDone(int worker) throws IOException {
+    done[worker] = true;
+    flushIntervals();
+  }
+
+  /**
+   * Merge the intervals that all the running workers have reported.
+   */
+  private void flushIntervals() throws IOException {
+    while (true) {
+      boolean complete = true;
+      for (int worker = 0; worker < workers; worker++) {
+        complete &= done[worker] || reported[worker] > nextInterval;
+      }
+      final Interval interval = intervals.remove(nextInterval);
+      if (!complete || interval == null) {
+        if (interval != null) {
+          intervals.put(nextInterval, interval);
+        }
+        return;
+      }
+      report(nextInterval++, interval);
+    }
+  }
+
+  private void report(int index, Interval interval) throws IOException {
+    final long count = interval.responseTime.getTotalCount();
+    final double throughput = count * 1e9 / interval.durationNanos;
+    final double retryRatio = count == 0 ? 0D : interval.retries / (double) count;
+    iterations += count;
+    retries += interval.retries;
+    durationNanos += interval.durationNanos;
+    responseTime.add(interval.responseTime);
+    serviceTime.add(interval.serviceTime);
+    logger.info(String.format(Locale.US, "%6d %7d %12.1f %12.3f %12.3f %12.3f %12.3f %12.4f",
+        index + 1, interval.workers, throughput, millis(interval.responseTime, 50D),
+        millis(interval.responseTime, 99D), millis(interval.responseTime, 99.9D),
+        interval.responseTime.getMaxValue() / 1e6, retryRatio));
+    printer.printRecord(index + 1, interval.workers, interval.durationNanos / 1e9, count,
+        throughput, retryRatio, millis(interval.responseTime, 50D),
+        millis(interval.responseTime, 90D), millis(interval.responseTime, 99D),
+        millis(interval.responseTime, 99.9D), interval.responseTime.getMaxValue() / 1e6,
+        millis(interval.serviceTime, 50D), millis(interval.serviceTime, 99D));
+    printer.flush();
+  }
+
+  private synchronized void summary() throws IOException {
+    logger.info(String.format(Locale.US, "Workers: %d, iterations: %d, throughput: %.1f/s,"
+        + " retry ratio: %.4f", workers, iterations,
+        durationNanos == 0 ? 0D : iterations * 1e9 / durationNanos,
+        iterations == 0 ? 0D : retries / (double) iterations));
+    logger.info(String.format(Locale.US, "Response time (ms): p50 %.3f, p90 %.3f, p99 %.3f,"
+        + " p99.9 %.3f, max %.3f", millis(responseTime, 50D), millis(responseTime, 90D),
+        millis(responseTime, 99D), millis(responseTime, 99.9D),
+        responseTime.getMaxValue() / 1e6));
+    logger.info(String.format(Locale.US, "Service time (ms): p50 %.3f, p90 %.3f, p99 %.3f,"
+        + " p99.9 %.3f, max %.3f", millis(serviceTime, 50D), millis(serviceTime, 90D),
+        millis(serviceTime, 99D), millis(serviceTime, 99.9D),
+        serviceTime.getMaxValue() / 1e6));
+    try (PrintStream out = new PrintStream(DISTRIBUTION_FILE, StandardCharsets.UTF_8)) {
+      responseTime.outputPercentileDistribution(out, 1e6);
+    }
+  }
+
+  private static double millis(Histogram histogram, double percentile) {
+    return histogram.getValueAtPercentile(percentile) / 1e6;
+  }
+
+  /**
+   * Totals and distributions merged from all the workers of a run.
+   */
+  public static class Result {
+    private final int workers;
+    private final long iterations;
+    private final long retries;
+    private final long durationNanos;
+    private final Histogram responseTime;
+    private final Histogram serviceTime;
+    private final List<String> failures;
+
+    private Result(int workers, long iterations, long retries, long durationNanos,
+        Histogram responseTime, Histogram serviceTime, List<String> failures) {
+      this.workers = workers;
+      this.iterations = iterations;
+      this.retries = retries;
+      this.durationNanos = durationNanos;
+      this.responseTime = responseTime;
+      this.serviceTime = serviceTime;
+      this.failures = Collections.unmodifiableList(failures);
+    }
+
+    public int getWorkers() {
+      return workers;
+    }
+
+    public long getIterations() {
+      return iterations;
+    }
+
+    public long getRetries() {
+      return retries;
+    }
+
+    public long getDurationNanos() {
+      return durationNanos;
+    }
+
+    public Histogram getResponseTime() {
+      return responseTime;
+    }
+
+    public Histogram getServiceTime() {
+      return serviceTime;
+    }
+
+    public List<String> getFailures() {
+      return failures;
+    }
+  }
+
+  private static class Interval {
+    private final Histogram responseTime = new Histogram(3);
+    private final Histogram serviceTime = new Histogram(3);
+    private int workers;
+    private long durationNanos;
+    private long retries;
+  }
+
+  private class WorkerSession {
+    private final int index;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    private WorkerSession(int index, Socket socket) throws IOException {
+      this.index = index;
+      this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    }
+
+    /**
+     * Read the token sent by the worker, false if it does not match the coordinator token.
+     */
+    private boolean authenticate(Socket socket) throws IOException {
+      socket.setSoTimeout((int) HELLO_TIMEOUT.toMillis());
+      try {
+        final String workerToken = DistributedProtocol.readToken(in);
+        if (!MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8),
+            workerToken.getBytes(StandardCharsets.UTF_8))) {
+          logger.warn("Rejected connection from " + socket.getRemoteSocketAddress()
+              + ": wrong coordinator token");
+          return false;
+        }
+      } catch (IOException ex) {
+        logger.warn("Rejected connection from " + socket.getRemoteSocketAddress() + ": "
+            + ex.getMessage());
+        return false;
+      }
+      socket.setSoTimeout(0);
+      return true;
+    }
+
+    private void sendConfig(Config workerConfig) throws IOException {
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+      ConfigUtils.generateConfig(outputStream, workerConfig);
+      out.writeByte(DistributedProtocol.CONFIG);
+      DistributedProtocol.writeString(out, outputStream.toString(StandardCharsets.UTF_8));
+      out.flush();
+    }
+
+    private void awaitReady() throws IOException {
+      final byte type = in.readByte();
+      if (type == DistributedProtocol.DONE) {
+        throw new IllegalStateException("Worker " + index + " failed: "
+            + DistributedProtocol.readString(in));
+      }
+      if (type != DistributedProtocol.READY) {
+        throw new IOException("Unexpected message " + type + " from worker " + index);
+      }
+    }
+
+    private void start() throws IOException {
+      out.writeByte(DistributedProtocol.START);
+      out.flush();
+    }
+
+    /**
+     * Read the intervals reported by the worker until it completes, returning its error or
+     * an empty string.
+     */
+    private String readIntervals() throws IOException {
+      try {
+        while (true) {
+          final byte type = in.readByte();
+          if (type == DistributedProtocol.DONE) {
+            return DistributedProtocol.readString(in);
+          }
+          if (type != DistributedProtocol.INTERVAL) {
+            throw new IOException("Unexpected message " + type + " from worker " + index);
+          }
+          final int interval = in.readInt();
+          final long durationNanos = in.readLong();
+          final long retries = in.readLong();
+          final Histogram responseTime = DistributedProtocol.readHistogram(in);
+          final Histogram serviceTime = DistributedProtocol.readHistogram(in);
+          onInterval(index, interval, durationNanos, retries, responseTime, serviceTime);
+        }
+      } finally {
+        onDone(index);
+      }
+    }
+  }
+}
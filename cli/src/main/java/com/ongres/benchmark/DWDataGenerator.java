@@ -0,0 +1,235 @@
+/*-
+ *  § 
+ * benchmark: command-line
+ *    
+ * Copyright (C) 2019 OnGres, Inc.
+ *    
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * § §
+ */
+
+package com.ongres.benchmark;
+
+import com.google.common.base.Preconditions;
+import com.ongres.benchmark.config.model.Config;
+
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.util.Optional;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic generator of the DW star schema: the {@code ord} fact table and its
+ * {@code product}, {@code customer} and {@code sales} dimensions. A scale factor of 1
+ * generates 1M orders and, unless set, 1 product per 1000 orders, 1 customer per 100 orders
+ * and 1 sales person per 10000 orders. With a skew the keys of the orders follow an
+ * approximately Zipf distribution where lower keys are the most frequent. Rows are generated
+ * as {@code ,} separated values, without a header, and orders can be generated in
+ * partitions in parallel.
+ */
+public class DWDataGenerator {
+
+  private static final long ORDERS_PER_SCALE_FACTOR = 1_000_000L;
+  private static final LocalDate START_DATE = LocalDate.of(2020, 1, 1);
+  private static final int DAYS = 4 * 365;
+  private static final String[] FIRST_NAMES = {
+      "Alice", "Bob", "Carol", "David", "Emma", "Frank", "Grace", "Henry", "Irene", "Jack",
+      "Karen", "Liam", "Maria", "Nathan", "Olivia", "Paul", "Quinn", "Rachel", "Samuel",
+      "Teresa", "Umar", "Victoria", "William", "Xenia", "Yusuf", "Zoe"};
+  private static final String[] LAST_NAMES = {
+      "Smith", "Johnson", "Garcia", "Martinez", "Brown", "Davis", "Lopez", "Wilson",
+      "Anderson", "Taylor", "Thomas", "Moore", "Martin", "Lee", "Perez", "White", "Harris",
+      "Clark", "Lewis", "Walker"};
+  private static final String[] CITIES = {
+      "Madrid", "Barcelona", "Paris", "Lyon", "Berlin", "Munich", "Rome", "Milan", "London",
+      "Manchester", "New York", "Chicago", "Toronto", "Tokyo", "Sydney", "Sao Paulo"};
+  private static final String[] STATES = {"North", "South", "East", "West", "Central"};
+  private static final String[] COUNTRIES = {
+      "Spain", "France", "Germany", "Italy", "United Kingdom", "United States", "Canada",
+      "Japan", "Australia", "Brazil"};
+  private static final String[] CHANNELS = {"WEB", "STORE", "PHONE", "PARTNR"};
+  private static final String[] STATUSES = {"ACTIVE", "INACTIVE", "RETIRED"};
+  private static final String[] JOBS = {"SA_REP", "SA_MAN", "SA_DIR"};
+
+  private static final int PRODUCT = 0;
+  private static final int CUSTOMER = 1;
+  private static final int SALES = 2;
+  private static final int ORDER = 3;
+
+  private final long seed;
+  private final long orders;
+  private final int products;
+  private final int customers;
+  private final int sales;
+  private final double skew;
+
+  private DWDataGenerator(long seed, long orders, int products, int customers, int sales,
+      double skew) {
+    this.seed = seed;
+    this.orders = orders;
+    this.products = products;
+    this.customers = customers;
+    this.sales = sales;
+    this.skew = skew;
+  }
+
+  /**
+   * Create an instance of {@class DWDataGenerator} for {@code --scale-factor}.
+   */
+  public static DWDataGenerator create(Config config) {
+    Preconditions.checkArgument(config.getScaleFactor() != null, "--scale-factor is not set");
+    Preconditions.checkArgument(config.getScaleFactor() > 0, "--scale-factor must be positive");
+    Preconditions.checkArgument(config.getDwSkew() >= 0, "--dw-skew must not be negative");
+    final long orders = Math.max(1L,
+        Math.round(ORDERS_PER_SCALE_FACTOR * config.getScaleFactor()));
+    return new DWDataGenerator(config.getSeed(), orders,
+        cardinality(config.getDwProducts(), orders / 1000, "--dw-products"),
+        cardinality(config.getDwCustomers(), orders / 100, "--dw-customers"),
+        cardinality(config.getDwSales(), orders / 10000, "--dw-sales"),
+        config.getDwSkew());
+  }
+
+  private static int cardinality(Integer value, long defaultValue, String option) {
+    final long cardinality = Optional.ofNullable(value).map(Long::valueOf)
+        .orElse(Math.max(1L, defaultValue));
+    Preconditions.checkArgument(cardinality > 0 && cardinality <= Integer.MAX_VALUE,
+        option + " must be between 1 and " + Integer.MAX_VALUE);
+    return (int) cardinality;
+  }
+
+  public long getOrders() {
+    return orders;
+  }
+
+  public int getProducts() {
+    return products;
+  }
+
+  public int getCustomers() {
+    return customers;
+  }
+
+  public int getSales() {
+    return sales;
+  }
+
+  /**
+   * Product rows: product_id, product_name, product_category, market_id, min_price, price,
+   * product_status, cpty_id, date and product_description.
+   */
+  public InputStream products() {
+    return new GeneratedInputStream(products, this::productRow);
+  }
+
+  /**
+   * Customer rows: customer_id, first_name, last_name, postal_code, city, state and country.
+   */
+  public InputStream customers() {
+    return new GeneratedInputStream(customers, this::customerRow);
+  }
+
+  /**
+   * Sales rows: sales_id, first_name, last_name, email, phone, hire_date, job_id and salary.
+   */
+  public InputStream sales() {
+    return new GeneratedInputStream(sales, this::salesRow);
+  }
+
+  /**
+   * Order rows of partition {@code partition} of {@code partitions}: order_id, date,
+   * customer_id, status_id, total, sales_id, channel_id, product_id, price, quantity, beta,
+   * vega, theta, vanna and gamma.
+   */
+  public InputStream orders(int partition, int partitions) {
+    return new GeneratedInputStream(orders * partition / partitions,
+        orders * (partition + 1) / partitions, this::orderRow);
+  }
+
+  private String productRow(long row) {
+    final SplittableRandom random = GeneratedInputStream.random(seed, PRODUCT, row);
+    final long productId = row + 1;
+    final int price = productPrice(row);
+    return productId + ",Product " + productId + ",C" + (random.nextInt(50) + 10)
+        + ",M" + random.nextInt(20) + "," + (price * 9 / 10) + "," + price
+        + "," + STATUSES[random.nextInt(STATUSES.length)] + "," + (1 + random.nextInt(1000))
+        + "," + timestamp(random) + ",Description of product " + productId + "\n";
+  }
+
+  /**
+   * The price of product {@code row}, also used for the price of its orders.
+   */
+  private int productPrice(long row) {
+    return 1 + GeneratedInputStream.random(seed, PRODUCT, -row - 1).nextInt(1000);
+  }
+
+  private String customerRow(long row) {
+    final SplittableRandom random = GeneratedInputStream.random(seed, CUSTOMER, row);
+    return (row + 1) + "," + FIRST_NAMES[random.nextInt(FIRST_NAMES.length)]
+        + "," + LAST_NAMES[random.nextInt(LAST_NAMES.length)]
+        + "," + (10000 + random.nextInt(90000)) + "," + CITIES[random.nextInt(CITIES.length)]
+        + "," + STATES[random.nextInt(STATES.length)]
+        + "," + COUNTRIES[random.nextInt(COUNTRIES.length)] + "\n";
+  }
+
+  private String salesRow(long row) {
+    final SplittableRandom random = GeneratedInputStream.random(seed, SALES, row);
+    final long salesId = row + 1;
+    final String firstName = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)];
+    final String lastName = LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+    return salesId + "," + firstName + "," + lastName
+        + "," + firstName.toLowerCase() + "." + lastName.toLowerCase() + salesId + "@example.com"
+        + ",+1" + (2000000000L + random.nextInt(1000000000)) + "," + timestamp(random)
+        + "," + JOBS[random.nextInt(JOBS.length)] + "," + (30000 + random.nextInt(90) * 1000)
+        + "\n";
+  }
+
+  private String orderRow(long row) {
+    final SplittableRandom random = GeneratedInputStream.random(seed, ORDER, row);
+    final int customerId = key(random, customers);
+    final int salesId = key(random, sales);
+    final int productId = key(random, products);
+    final double price = round(productPrice(productId - 1) * (0.9D + random.nextDouble() * 0.2D));
+    final int quantity = 1 + random.nextInt(100);
+    return (row + 1) + "," + timestamp(random) + "," + customerId
+        + "," + (1 + random.nextInt(5)) + "," + round(price * quantity) + "," + salesId
+        + "," + CHANNELS[random.nextInt(CHANNELS.length)] + "," + productId
+        + "," + price + "," + quantity + "," + greek(random) + "," + greek(random)
+        + "," + greek(random) + "," + greek(random) + "," + greek(random) + "\n";
+  }
+
+  /**
+   * A key between 1 and {@code cardinality}, uniform without skew or following a bounded
+   * power law (approximately Zipf with the skew as exponent) otherwise.
+   */
+  private int key(SplittableRandom random, int cardinality) {
+    if (skew == 0D) {
+      return 1 + random.nextInt(cardinality);
+    }
+    return (int) KeyGenerator.powerLaw(random.nextDouble(), cardinality, skew);
+  }
+
+  private static double greek(SplittableRandom random) {
+    return round(random.nextDouble() * 2D - 1D);
+  }
+
+  private static double round(double value) {
+    return Math.round(value * 100D) / 100D;
+  }
+
+  private static String timestamp(SplittableRandom random) {
+    final int minutes = random.nextInt(24 * 60);
+    return START_DATE.plusDays(random.nextInt(DAYS)) + " "
+        + (char) ('0' + minutes / 600) + (char) ('0' + minutes / 60 % 10) + ":"
+        + (char) ('0' + minutes % 60 / 10) + (char) ('0' + minutes % 10) + ":00";
+  }
+}
@@ -0,0 +1,126 @@
+/*-
+ *  § 
+ * benchmark: command-line
+ *    
+ * Copyright (C) 2019 OnGres, Inc.
+ *    
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * § §
+ */
+
+package com.ongres.benchmark;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * Messages exchanged between the {@link Coordinator} and its {@link WorkerConnection}s. Each
+ * message starts with its type byte:
+ *
+ * <ul>
+ * <li>{@link #HELLO} worker to coordinator: the coordinator token, the coordinator closes the
+ * connection if it does not match.</li>
+ * <li>{@link #CONFIG} coordinator to worker: the worker configuration as YAML.</li>
+ * <li>{@link #READY} worker to coordinator: the benchmark target is connected.</li>
+ * <li>{@link #START} coordinator to worker: all workers are ready, start the benchmark.</li>
+ * <li>{@link #INTERVAL} worker to coordinator: interval #, duration in nanoseconds, retries
+ * and the response and service time histograms (in nanoseconds).</li>
+ * <li>{@link #DONE} worker to coordinator: the benchmark completed, with the error message
+ * or an empty string.</li>
+ * </ul>
+ */
+final class DistributedProtocol {
+
+  static final byte CONFIG = 1;
+  static final byte READY = 2;
+  static final byte START = 3;
+  static final byte INTERVAL = 4;
+  static final byte DONE = 5;
+  static final byte HELLO = 6;
+
+  /**
+   * Environment variable with the coordinator token, so that it does not show in the command
+   * line of the workers.
+   */
+  static final String TOKEN_ENVIRONMENT_VARIABLE = "BENCHMARK_COORDINATOR_TOKEN";
+
+  private static final int MAX_TOKEN_LENGTH = 1024;
+
+  private DistributedProtocol() {
+  }
+
+  static void writeString(DataOutputStream out, String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  static String readString(DataInputStream in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * The coordinator token of {@code --coordinator-token} or of the environment, null if none.
+   */
+  static String token(String configuredToken) {
+    return configuredToken != null ? configuredToken
+        : System.getenv(TOKEN_ENVIRONMENT_VARIABLE);
+  }
+
+  /**
+   * Read the token of a {@link #HELLO} message, bounded so that a peer can not make the
+   * coordinator allocate a large buffer.
+   */
+  static String readToken(DataInputStream in) throws IOException {
+    expect(in, HELLO);
+    final int length = in.readInt();
+    if (length < 0 || length > MAX_TOKEN_LENGTH) {
+      throw new IOException("Invalid token length " + length);
+    }
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  static void writeHistogram(DataOutputStream out, Histogram histogram) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
+    int length = histogram.encodeIntoCompressedByteBuffer(buffer);
+    out.writeInt(length);
+    out.write(buffer.array(), 0, length);
+  }
+
+  static Histogram readHistogram(DataInputStream in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    try {
+      return Histogram.decodeFromCompressedByteBuffer(ByteBuffer.wrap(bytes), 0);
+    } catch (DataFormatException ex) {
+      throw new IOException("Invalid histogram", ex);
+    }
+  }
+
+  static void expect(DataInputStream in, byte expected) throws IOException {
+    byte type = in.readByte();
+    if (type != expected) {
+      throw new IOException("Unexpected message " + type + ", expected " + expected);
+    }
+  }
+}
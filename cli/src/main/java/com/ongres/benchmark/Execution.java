@@ -0,0 +1,56 @@
+/*-
+ *  § 
+ * benchmark: command-line
+ *    
+ * Copyright (C) 2019 OnGres, Inc.
+ *    
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * § §
+ */
+
+package com.ongres.benchmark;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A running benchmark that completes when all iterations have been executed.
+ */
+public interface Execution extends Future<Void> {
+
+  /**
+   * Stop issuing new iterations.
+   */
+  void cancel();
+
+  /**
+   * Wait until the execution has terminated after completion or cancellation.
+   */
+  void awaitTermination() throws InterruptedException, ExecutionException;
+
+  /**
+   * Wait up to {@code timeout} for the execution to complete, return true if it did.
+   */
+  default boolean awaitCompletion(long timeout, TimeUnit unit)
+      throws InterruptedException, ExecutionException {
+    try {
+      get(timeout, unit);
+      return true;
+    } catch (TimeoutException ex) {
+      return false;
+    }
+  }
+
+}
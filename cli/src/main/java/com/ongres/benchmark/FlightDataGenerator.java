@@ -0,0 +1,233 @@
+/*-
+ *  § 
+ * benchmark: command-line
+ *    
+ * Copyright (C) 2019 OnGres, Inc.
+ *    
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * § §
+ */
+
+package com.ongres.benchmark;
+
+import com.google.common.base.Preconditions;
+import com.ongres.benchmark.config.model.Config;
+
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic generator of the flight data set at a scale factor, a scale factor of 1
+ * generates about as many aircraft and schedules as the bundled {@code aircrafts.txt} and
+ * {@code schedule.txt}. Rows are generated as {@code ;} separated values with {@code \N} for
+ * nulls, like the bundled files, without a header. Schedules have their {@code schedule_id}
+ * as the last value and bookings of the history have negative user IDs so that they never
+ * collide with the bookings of the benchmark.
+ */
+public class FlightDataGenerator {
+
+  /**
+   * # of schedules of the bundled data set.
+   */
+  public static final int BUNDLED_SCHEDULES = 14185;
+  private static final int BUNDLED_AIRCRAFT = 217;
+  private static final int MAX_AIRCRAFT = 36 * 36 * 36;
+  private static final int MAX_AIRPORTS = 26 * 26 * 26;
+  private static final LocalDate HISTORY_END = LocalDate.of(2024, 1, 1);
+  private static final String[] COUNTRIES = {
+      "Brazil", "Canada", "China", "France", "Germany", "Italy", "Japan", "Russia", "Spain",
+      "United Kingdom", "United States"};
+
+  private static final int AIRCRAFT = 0;
+  private static final int SCHEDULE = 1;
+  private static final int SCHEDULE_DURATION = 2;
+  private static final int BOOKING = 3;
+
+  private final long seed;
+  private final int aircraft;
+  private final int schedules;
+  private final int airports;
+  private final int history;
+
+  private FlightDataGenerator(long seed, int aircraft, int schedules, int history) {
+    this.seed = seed;
+    this.aircraft = aircraft;
+    this.schedules = schedules;
+    this.airports = Math.max(2, Math.min(MAX_AIRPORTS, schedules / 30));
+    this.history = history;
+  }
+
+  /**
+   * Create an instance of {@class FlightDataGenerator} for {@code --scale-factor}.
+   */
+  public static FlightDataGenerator create(Config config) {
+    Preconditions.checkArgument(config.getScaleFactor() != null, "--scale-factor is not set");
+    Preconditions.checkArgument(config.getScaleFactor() > 0, "--scale-factor must be positive");
+    Preconditions.checkArgument(config.getBookingHistory() >= 0,
+        "--booking-history must not be negative");
+    Preconditions.checkArgument(BUNDLED_SCHEDULES * config.getScaleFactor()
+        * Math.max(1, config.getBookingHistory()) < Long.MAX_VALUE,
+        "--scale-factor is too large");
+    final long schedules = Math.max(1L, Math.round(BUNDLED_SCHEDULES * config.getScaleFactor()));
+    Preconditions.checkArgument(schedules <= Integer.MAX_VALUE, "--scale-factor is too large");
+    final int aircraft = (int) Math.max(1L, Math.min(MAX_AIRCRAFT,
+        Math.round(BUNDLED_AIRCRAFT * config.getScaleFactor())));
+    return new FlightDataGenerator(config.getSeed(), aircraft, (int) schedules,
+        config.getBookingHistory());
+  }
+
+  /**
+   * The # of schedules of the data set the flight benchmarks run on: the generated ones with
+   * {@code --scale-factor} or the bundled ones.
+   */
+  public static int scheduleCount(Config config) {
+    if (config.getScaleFactor() == null) {
+      return BUNDLED_SCHEDULES;
+    }
+    return create(config).getSchedules();
+  }
+
+  /**
+   * Check that the database, whose schedule IDs go from 0 to {@code loadedSchedules} - 1, holds
+   * the data set of {@code --scale-factor}, since the schedule IDs booked are drawn from it. The
+   * Postgres setup skips the first line of the bundled {@code schedule.txt} as a header and the
+   * MongoDB setups load it, so the bundled data set has one more schedule in MongoDB.
+   */
+  public static void checkScheduleCount(Config config, int loadedSchedules) {
+    final int schedules = scheduleCount(config);
+    Preconditions.checkState(loadedSchedules == schedules
+        || (config.getScaleFactor() == null && loadedSchedules == schedules + 1),
+        "The database has %s schedules but %s are expected with --scale-factor %s,"
+        + " set the --scale-factor used in the setup",
+        loadedSchedules, schedules,
+        config.getScaleFactor() == null ? "unset" : config.getScaleFactor());
+  }
+
+  public int getAircraft() {
+    return aircraft;
+  }
+
+  public int getSchedules() {
+    return schedules;
+  }
+
+  /**
+   * The # of bookings (seats and payments) in the history.
+   */
+  public long getBookings() {
+    return (long) schedules * history;
+  }
+
+  /**
+   * Aircraft rows: name, icao, iata, capacity and country.
+   */
+  public InputStream aircraft() {
+    return new GeneratedInputStream(aircraft, this::aircraftRow);
+  }
+
+  /**
+   * Schedule rows: from_airport, to_airport, valid_from, valid_until, days, departure,
+   * arrival, flight, aircraft, duration and schedule_id.
+   */
+  public InputStream schedules() {
+    return new GeneratedInputStream(schedules, this::scheduleRow);
+  }
+
+  /**
+   * Seat rows of the history: user_id, schedule_id, day and date.
+   */
+  public InputStream seats() {
+    return new GeneratedInputStream(getBookings(), this::seatRow);
+  }
+
+  /**
+   * Payment rows of the history: user_id, amount and date.
+   */
+  public InputStream payments() {
+    return new GeneratedInputStream(getBookings(), this::paymentRow);
+  }
+
+  private String aircraftRow(long row) {
+    final SplittableRandom random = GeneratedInputStream.random(seed, AIRCRAFT, row);
+    final String iata = code(row, 36, 3);
+    return "Aircraft " + iata + ";A" + iata + ";" + iata + ";" + (50 + random.nextInt(10) * 50)
+        + ";" + COUNTRIES[random.nextInt(COUNTRIES.length)] + "\n";
+  }
+
+  private String scheduleRow(long row) {
+    final SplittableRandom random = GeneratedInputStream.random(seed, SCHEDULE, row);
+    final int from = random.nextInt(airports);
+    final int to = (from + 1 + random.nextInt(airports - 1)) % airports;
+    final String validFrom = random.nextInt(4) == 0
+        ? HISTORY_END.minusDays(random.nextInt(365)).toString() : "\\N";
+    final String validUntil = random.nextInt(4) == 0
+        ? HISTORY_END.plusDays(random.nextInt(365)).toString() : "\\N";
+    final StringBuilder days = new StringBuilder();
+    for (int day = 1; day <= 7; day++) {
+      if (random.nextInt(3) != 0) {
+        days.append(day);
+      }
+    }
+    if (days.length() == 0) {
+      days.append(1 + random.nextInt(7));
+    }
+    final int departure = random.nextInt(24 * 12) * 5;
+    final int duration = scheduleDuration(row);
+    return code(from, 26, 3) + ";" + code(to, 26, 3) + ";" + validFrom + ";" + validUntil
+        + ";" + days + ";" + time(departure) + ";" + time((departure + duration) % (24 * 60))
+        + ";" + code(random.nextInt(26 * 26), 26, 2) + (1 + random.nextInt(9999))
+        + ";" + code(random.nextInt(aircraft), 36, 3) + ";" + time(duration)
+        + ";" + row + "\n";
+  }
+
+  private String seatRow(long row) {
+    final SplittableRandom random = GeneratedInputStream.random(seed, BOOKING, row);
+    final LocalDate day = HISTORY_END.minusDays(1 + random.nextInt(365));
+    return (-row - 1) + ";" + (row / history) + ";" + day + ";" + day + " "
+        + time(random.nextInt(24 * 60)) + ":00\n";
+  }
+
+  private String paymentRow(long row) {
+    final SplittableRandom random = GeneratedInputStream.random(seed, BOOKING, row);
+    final LocalDate day = HISTORY_END.minusDays(1 + random.nextInt(365));
+    final String date = day + " " + time(random.nextInt(24 * 60)) + ":00";
+    return (-row - 1) + ";" + Math.max(42, scheduleDuration(row / history) * 42) + ";"
+        + date + "\n";
+  }
+
+  /**
+   * The duration in minutes of schedule {@code row}, also used for the amount of payments.
+   */
+  private int scheduleDuration(long row) {
+    return 25 + GeneratedInputStream.random(seed, SCHEDULE_DURATION, row).nextInt(14 * 12) * 5;
+  }
+
+  private static String time(int minutes) {
+    return new String(new char[] {
+        (char) ('0' + minutes / 600), (char) ('0' + minutes / 60 % 10), ':',
+        (char) ('0' + minutes % 60 / 10), (char) ('0' + minutes % 10)});
+  }
+
+  private static String code(long index, int radix, int length) {
+    final char[] code = new char[length];
+    long value = index;
+    for (int position = length - 1; position >= 0; position--) {
+      final int digit = (int) (value % radix);
+      code[position] = radix == 26 ? (char) ('A' + digit)
+          : Character.toUpperCase(Character.forDigit(digit, radix));
+      value /= radix;
+    }
+    return new String(code);
+  }
+}
@@ -0,0 +1,194 @@
+/*-
+ *  § 
+ * benchmark: command-line
+ *    
+ * Copyright (C) 2019 OnGres, Inc.
+ *    
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * § §
+ */
+package com.ongres.benchmark;
+
+import com.google.common.base.Preconditions;
+import com.ongres.benchmark.config.picocli.DurationConverter;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+/**
+ * Measure the overhead of the {@link Benchmark} lifecycle gate that every iteration goes
+ * through, run as {@code benchmark gate-cost [options]}.
+ *
+ * <p>For each # of threads, all the threads call {@link Benchmark#run()} of a
+ * {@link NoopBenchmark} as fast as they can for {@code --duration}, and the same with the read
+ * lock and shared counter gate used before. The elapsed and CPU time per iteration of each
+ * thread and the total iterations per second are printed. The CPU time per iteration of the
+ * striped gate should stay flat as the # of threads grows, the elapsed time also includes the
+ * time the threads wait for a CPU when there are more threads than CPUs.
+ */
+@Command(name = GateCostCommand.NAME,
+    description = "Measure the overhead of the benchmark lifecycle gate per iteration",
+    showDefaultValues = true)
+public class GateCostCommand implements Callable<Void> {
+
+  public static final String NAME = "gate-cost";
+
+  @Option(names = {"--threads"}, split = ",",
+      description = "Comma separated list of # of threads running iterations concurrently")
+  private List<Integer> threads = new ArrayList<>(
+      Arrays.asList(1, 2, 4, 8, 16, 32, 64, 128, 256));
+
+  @Option(names = {"--duration"},
+      description = "Length of each measurement",
+      converter = DurationConverter.class)
+  private String duration = "PT1S";
+
+  @Option(names = {"-h", "--help"}, usageHelp = true,
+      description = "Displays this help message and quits.")
+  private boolean helpRequested = false;
+
+  private final PrintStream out = System.out;
+
+  /**
+   * Parse {@code args} and run the command.
+   */
+  public static void run(String... args) throws Exception {
+    CommandLine commandLine = new CommandLine(new GateCostCommand());
+    commandLine.parseArgs(args);
+    commandLine.<GateCostCommand>getCommand().call();
+  }
+
+  @Override
+  public Void call() throws Exception {
+    if (helpRequested) {
+      new CommandLine(this).usage(out);
+      return null;
+    }
+    Preconditions.checkArgument(threads.stream().allMatch(count -> count > 0),
+        "--threads must be positive");
+    final long durationNanos = Duration.parse(duration).toNanos();
+    Preconditions.checkArgument(durationNanos > 0, "--duration must be positive");
+    out.println(String.format(Locale.US, "%8s %8s %16s %16s %16s %12s",
+        "threads", "gate", "ns/op", "cpu ns/op", "ops/s", "close (ms)"));
+    for (int count : threads) {
+      final LockedNoopBenchmark locked = new LockedNoopBenchmark();
+      measure("locked", count, durationNanos, locked::run, locked);
+      final NoopBenchmark striped = new NoopBenchmark();
+      measure("striped", count, durationNanos, striped::run, striped);
+    }
+    return null;
+  }
+
+  private void measure(String name, int count, long durationNanos, Runnable iteration,
+      AutoCloseable benchmark) throws Exception {
+    final CountDownLatch start = new CountDownLatch(1);
+    final LongAdder operations = new LongAdder();
+    final LongAdder elapsedNanos = new LongAdder();
+    final LongAdder cpuNanos = new LongAdder();
+    final ThreadMXBean threadMxBean = ManagementFactory.getThreadMXBean();
+    final List<Thread> runners = new ArrayList<>(count);
+    for (int index = 0; index < count; index++) {
+      Thread runner = new Thread(() -> {
+        try {
+          start.await();
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+        long iterations = 0;
+        final long startCpuNanos = threadMxBean.getCurrentThreadCpuTime();
+        final long startNanos = System.nanoTime();
+        long nowNanos = startNanos;
+        while (nowNanos - startNanos < durationNanos) {
+          for (int batch = 0; batch < 1024; batch++) {
+            iteration.run();
+          }
+          iterations += 1024;
+          nowNanos = System.nanoTime();
+        }
+        operations.add(iterations);
+        elapsedNanos.add(nowNanos - startNanos);
+        cpuNanos.add(threadMxBean.getCurrentThreadCpuTime() - startCpuNanos);
+      }, "gate-cost-" + index);
+      runner.start();
+      runners.add(runner);
+    }
+    final long startNanos = System.nanoTime();
+    start.countDown();
+    for (Thread runner : runners) {
+      runner.join();
+    }
+    final long wallNanos = System.nanoTime() - startNanos;
+    final long closeStartNanos = System.nanoTime();
+    benchmark.close();
+    final long closeNanos = System.nanoTime() - closeStartNanos;
+    out.println(String.format(Locale.US, "%8d %8s %16.1f %16.1f %16.0f %12.3f",
+        count, name, elapsedNanos.sum() / (double) operations.sum(),
+        cpuNanos.sum() / (double) operations.sum(),
+        operations.sum() * 1e9D / wallNanos, closeNanos / 1e6D));
+  }
+
+  /**
+   * A benchmark whose iterations do nothing behind the gate {@link Benchmark} used before the
+   * striped counter: the read lock of a read write lock and a single shared counter.
+   */
+  private static class LockedNoopBenchmark implements AutoCloseable {
+    private final ReentrantReadWriteLock closedLock = new ReentrantReadWriteLock();
+    private final Lock readClosedLock = closedLock.readLock();
+    private final Lock writeClosedLock = closedLock.writeLock();
+    private final AtomicInteger running = new AtomicInteger(0);
+    private volatile boolean closed = false;
+
+    void run() {
+      readClosedLock.lock();
+      try {
+        if (closed) {
+          return;
+        }
+        running.incrementAndGet();
+      } finally {
+        readClosedLock.unlock();
+      }
+      running.decrementAndGet();
+    }
+
+    @Override
+    public void close() throws Exception {
+      writeClosedLock.lock();
+      try {
+        closed = true;
+        while (running.get() != 0) {
+          Thread.sleep(0, 20000);
+        }
+      } finally {
+        writeClosedLock.unlock();
+      }
+    }
+  }
+}
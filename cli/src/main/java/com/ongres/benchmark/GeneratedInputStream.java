@@ -0,0 +1,105 @@
+/*-
+ *  § 
+ * benchmark: command-line
+ *    
+ * Copyright (C) 2019 OnGres, Inc.
+ *    
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * § §
+ */
+
+package com.ongres.benchmark;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+import java.util.function.LongFunction;
+
+/**
+ * Input stream of generated rows, each row is generated as a line by a function of its
+ * index so that rows can be generated without buffering the whole input.
+ */
+public class GeneratedInputStream extends InputStream {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final long endRow;
+  private final LongFunction<String> line;
+  private final StringBuilder lines = new StringBuilder(BUFFER_SIZE * 2);
+  private long row;
+  private byte[] buffer = new byte[0];
+  private int position = 0;
+
+  /**
+   * Create a stream of the lines returned by {@code line} for the rows from
+   * {@code startRow} (inclusive) to {@code endRow} (exclusive). Lines must end with a new
+   * line.
+   */
+  public GeneratedInputStream(long startRow, long endRow, LongFunction<String> line) {
+    this.row = startRow;
+    this.endRow = endRow;
+    this.line = line;
+  }
+
+  public GeneratedInputStream(long rows, LongFunction<String> line) {
+    this(0, rows, line);
+  }
+
+  /**
+   * A random generator that only depends on {@code seed}, the {@code stream} of rows and the
+   * {@code row} index, so that a row is the same whatever the order rows are generated.
+   */
+  public static SplittableRandom random(long seed, long stream, long row) {
+    long hash = seed * 0x9E3779B97F4A7C15L + stream;
+    hash = (hash ^ (hash >>> 31)) * 0xBF58476D1CE4E5B9L + row;
+    return new SplittableRandom(hash ^ (hash >>> 29));
+  }
+
+  private boolean fill() {
+    while (position >= buffer.length) {
+      if (row >= endRow) {
+        return false;
+      }
+      lines.setLength(0);
+      while (row < endRow && lines.length() < BUFFER_SIZE) {
+        lines.append(line.apply(row++));
+      }
+      buffer = lines.toString().getBytes(StandardCharsets.UTF_8);
+      position = 0;
+    }
+    return true;
+  }
+
+  @Override
+  public int read() {
+    if (!fill()) {
+      return -1;
+    }
+    return buffer[position++] & 0xff;
+  }
+
+  @Override
+  public int read(byte[] bytes, int offset, int length) {
+    if (length == 0) {
+      return 0;
+    }
+    int read = 0;
+    while (read < length && fill()) {
+      final int size = Math.min(length - read, buffer.length - position);
+      System.arraycopy(buffer, position, bytes, offset + read, size);
+      position += size;
+      read += size;
+    }
+    return read == 0 ? -1 : read;
+  }
+}
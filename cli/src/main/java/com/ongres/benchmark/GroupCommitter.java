@@ -0,0 +1,231 @@
+/*-
+ *  § 
+ * benchmark: command-line
+ *    
+ * Copyright (C) 2019 OnGres, Inc.
+ *    
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * § §
+ */
+
+package com.ongres.benchmark;
+
+import com.google.common.base.Preconditions;
+import com.ongres.benchmark.config.model.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Coalesce the writes of concurrent iterations: callers hand their items to a bounded
+ * lock-free queue and wait until a committer thread has written them. Each committer drains
+ * up to {@code --group-commit-max-batch} items, waiting up to {@code --group-commit-linger}
+ * for the batch to fill, and writes them in a single transaction. If the batch fails all its
+ * callers get the failure.
+ *
+ * <p>The size of the batches and the time from queuing an item to the end of its batch are
+ * recorded in the {@code group-commit-batch-size} and {@code group-commit-latency} metrics.
+ */
+public class GroupCommitter<T> implements AutoCloseable {
+
+  private static final Logger logger = LogManager.getLogger();
+
+  private static final long BACKOFF_NANOS = TimeUnit.MICROSECONDS.toNanos(10);
+  private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+  /**
+   * Write a batch of items in a single transaction.
+   */
+  @FunctionalInterface
+  public interface BatchWriter<T> {
+    void write(List<T> batch) throws Exception;
+  }
+
+  private final BatchWriter<T> writer;
+  private final int maxBatch;
+  private final long lingerNanos;
+  private final int queueSize;
+  private final ConcurrentLinkedQueue<Entry<T>> queue = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger queued = new AtomicInteger(0);
+  private final ConcurrentLinkedQueue<Thread> idleCommitters = new ConcurrentLinkedQueue<>();
+  private final List<Thread> committers = new ArrayList<>();
+  private final LongAdder batches = new LongAdder();
+  private final LongAdder items = new LongAdder();
+  private volatile boolean closed = false;
+
+  private GroupCommitter(BatchWriter<T> writer, int committers, int maxBatch,
+      long lingerNanos, int queueSize) {
+    this.writer = writer;
+    this.maxBatch = maxBatch;
+    this.lingerNanos = lingerNanos;
+    this.queueSize = queueSize;
+    for (int index = 0; index < committers; index++) {
+      Thread committer = new Thread(this::runCommitter, "benchmark-committer-" + index);
+      committer.setDaemon(true);
+      this.committers.add(committer);
+    }
+  }
+
+  /**
+   * Create and start a {@code GroupCommitter} with {@code --group-commit-committers} threads
+   * that write the batches with {@code writer}.
+   */
+  public static <T> GroupCommitter<T> create(Config config, BatchWriter<T> writer) {
+    Preconditions.checkArgument(config.getGroupCommitCommitters() > 0,
+        "--group-commit-committers must be positive");
+    Preconditions.checkArgument(config.getGroupCommitMaxBatch() > 0,
+        "--group-commit-max-batch must be positive");
+    Preconditions.checkArgument(!config.getGroupCommitLingerAsDuration().isNegative(),
+        "--group-commit-linger must not be negative");
+    Preconditions.checkArgument(config.getGroupCommitQueueSize() > 0,
+        "--group-commit-queue-size must be positive");
+    GroupCommitter<T> groupCommitter = new GroupCommitter<>(writer,
+        config.getGroupCommitCommitters(), config.getGroupCommitMaxBatch(),
+        config.getGroupCommitLingerAsDuration().toNanos(), config.getGroupCommitQueueSize());
+    groupCommitter.committers.forEach(Thread::start);
+    return groupCommitter;
+  }
+
+  /**
+   * Queue {@code item} and wait until the batch that contains it is written, throwing the
+   * failure of the batch if any. Waits while the queue is full.
+   */
+  public void submit(T item) throws Exception {
+    while (true) {
+      Preconditions.checkState(!closed, "group commit is closed");
+      final int current = queued.get();
+      if (current < queueSize && queued.compareAndSet(current, current + 1)) {
+        break;
+      }
+      LockSupport.parkNanos(this, BACKOFF_NANOS);
+    }
+    final Entry<T> entry = new Entry<>(item);
+    queue.offer(entry);
+    final Thread idleCommitter = idleCommitters.poll();
+    if (idleCommitter != null) {
+      LockSupport.unpark(idleCommitter);
+    }
+    try {
+      entry.completion.get();
+    } catch (ExecutionException ex) {
+      if (ex.getCause() instanceof Exception) {
+        throw (Exception) ex.getCause();
+      }
+      throw ex;
+    }
+  }
+
+  private void runCommitter() {
+    final List<Entry<T>> batch = new ArrayList<>(maxBatch);
+    while (!closed || !queue.isEmpty()) {
+      Entry<T> entry = queue.poll();
+      if (entry == null) {
+        awaitItems();
+        continue;
+      }
+      batch.add(entry);
+      final long deadline = System.nanoTime() + lingerNanos;
+      while (batch.size() < maxBatch) {
+        entry = queue.poll();
+        if (entry != null) {
+          batch.add(entry);
+          continue;
+        }
+        final long remaining = deadline - System.nanoTime();
+        if (remaining <= 0 || closed) {
+          break;
+        }
+        LockSupport.parkNanos(this, Math.min(remaining, BACKOFF_NANOS));
+      }
+      queued.addAndGet(-batch.size());
+      write(batch);
+      batch.clear();
+    }
+  }
+
+  /**
+   * Park until an item is queued. The committer registers as idle before checking the queue
+   * again so that a caller queuing an item after the check always finds it to unpark.
+   */
+  private void awaitItems() {
+    final Thread thread = Thread.currentThread();
+    idleCommitters.offer(thread);
+    if (queue.isEmpty() && !closed) {
+      LockSupport.parkNanos(this, IDLE_NANOS);
+    }
+    idleCommitters.remove(thread);
+  }
+
+  private void write(List<Entry<T>> batch) {
+    final List<T> batchItems = new ArrayList<>(batch.size());
+    for (Entry<T> entry : batch) {
+      batchItems.add(entry.item);
+    }
+    Throwable failure = null;
+    try {
+      writer.write(batchItems);
+    } catch (Throwable ex) {
+      failure = ex;
+    }
+    final long endNanos = System.nanoTime();
+    batches.increment();
+    items.add(batch.size());
+    MetricsManager.histogram(Metric.GROUP_COMMIT_BATCH_SIZE).update(batch.size());
+    for (Entry<T> entry : batch) {
+      MetricsManager.timer(Metric.GROUP_COMMIT_LATENCY)
+          .update(endNanos - entry.queuedNanos, TimeUnit.NANOSECONDS);
+      if (failure == null) {
+        entry.completion.complete(null);
+      } else {
+        entry.completion.completeExceptionally(failure);
+      }
+    }
+  }
+
+  @Override
+  public void close() throws InterruptedException {
+    closed = true;
+    for (Thread committer : committers) {
+      LockSupport.unpark(committer);
+    }
+    for (Thread committer : committers) {
+      committer.join();
+    }
+    final long batches = this.batches.sum();
+    if (batches > 0) {
+      logger.info(String.format(Locale.US, "Group commit: %d batches, mean batch size %.2f",
+          batches, items.sum() / (double) batches));
+    }
+  }
+
+  private static final class Entry<T> {
+    private final T item;
+    private final long queuedNanos = System.nanoTime();
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+
+    private Entry(T item) {
+      this.item = item;
+    }
+  }
+}
@@ -0,0 +1,79 @@
+/*-
+ *  § 
+ * benchmark: command-line
+ *    
+ * Copyright (C) 2019 OnGres, Inc.
+ *    
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * § §
+ */
+
+package com.ongres.benchmark;
+
+import com.google.common.base.Preconditions;
+import com.ongres.benchmark.config.model.Config;
+import com.ongres.benchmark.config.model.GroupSizeDistribution;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Number of seats booked in a single transaction, drawn from a distribution with the
+ * configured mean.
+ */
+public class GroupSize {
+
+  private final GroupSizeDistribution distribution;
+  private final int mean;
+
+  private GroupSize(GroupSizeDistribution distribution, int mean) {
+    this.distribution = distribution;
+    this.mean = mean;
+  }
+
+  /**
+   * Create the {@code GroupSize} configured by {@code --group-size} and
+   * {@code --group-size-distribution}.
+   */
+  public static GroupSize create(Config config) {
+    Preconditions.checkArgument(config.getGroupSize() > 0, "--group-size must be positive");
+    return new GroupSize(config.getGroupSizeDistributionAsEnum(), config.getGroupSize());
+  }
+
+  /**
+   * True if every transaction books a single seat.
+   */
+  public boolean isSingle() {
+    return mean == 1;
+  }
+
+  /**
+   * Draw the number of seats of the next transaction.
+   */
+  public int next() {
+    if (mean == 1) {
+      return 1;
+    }
+    final ThreadLocalRandom random = ThreadLocalRandom.current();
+    switch (distribution) {
+      case FIXED:
+        return mean;
+      case UNIFORM:
+        return 1 + random.nextInt(2 * mean - 1);
+      case GEOMETRIC:
+        return 1 + (int) Math.floor(Math.log(1D - random.nextDouble())
+            / Math.log(1D - 1D / mean));
+      default:
+        throw new IllegalArgumentException("Unknown group size distribution " + distribution);
+    }
+  }
+}
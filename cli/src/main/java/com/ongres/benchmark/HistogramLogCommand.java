@@ -0,0 +1,266 @@
+/*-
+ *  § 
+ * benchmark: command-line
+ *    
+ * Copyright (C) 2019 OnGres, Inc.
+ *    
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * § §
+ */
+package com.ongres.benchmark;
+
+import com.google.common.base.Preconditions;
+import com.ongres.benchmark.config.picocli.DurationConverter;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.regex.Pattern;
+
+import org.HdrHistogram.EncodableHistogram;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogReader;
+import org.HdrHistogram.HistogramLogWriter;
+
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+
+/**
+ * Slice, merge and summarize the interval histogram logs written with {@code --histogram-log},
+ * run as {@code benchmark hlog [options] FILE...}.
+ *
+ * <p>The intervals of all the files (for example the logs of the workers of a distributed
+ * benchmark) are aligned on the start of the earliest interval and filtered by time range and
+ * tag. The histograms of each tag are merged into a summary and, with {@code --interval}, into
+ * a timeline of the given resolution. The selected intervals can be written to a new log.
+ */
+@Command(name = HistogramLogCommand.NAME,
+    description = "Slice, merge and summarize interval histogram logs",
+    showDefaultValues = true)
+public class HistogramLogCommand implements Callable<Void> {
+
+  public static final String NAME = "hlog";
+
+  private static final int SIGNIFICANT_DIGITS = 3;
+  private static final double[] PERCENTILES = new double[] { 50D, 90D, 99D, 99.9D, 99.99D };
+
+  @Parameters(arity = "1..*", paramLabel = "FILE",
+      description = "Interval histogram log files to read")
+  private List<File> files = new ArrayList<>();
+
+  @Option(names = {"--start"},
+      description = "Skip the intervals that start before the specified # of seconds since"
+          + " the first interval")
+  private double start = 0D;
+
+  @Option(names = {"--end"},
+      description = "Skip the intervals that end after the specified # of seconds since the"
+          + " first interval")
+  private Double end;
+
+  @Option(names = {"--tag"},
+      description = "Only read the intervals whose tag matches the specified regular"
+          + " expression (for example run/response-time or run/.*)")
+  private String tag;
+
+  @Option(names = {"--interval"},
+      description = "Print a timeline merging the intervals of each tag with the specified"
+          + " resolution",
+      converter = DurationConverter.class)
+  private String interval;
+
+  @Option(names = {"--percentile"},
+      description = "Set the percentile printed in the timeline")
+  private double percentile = 99.9D;
+
+  @Option(names = {"--output"},
+      description = "Write the selected intervals to the specified log file, merged with the"
+          + " resolution of --interval if specified")
+  private File output;
+
+  @Option(names = {"-h", "--help"}, usageHelp = true,
+      description = "Displays this help message and quits.")
+  private boolean helpRequested = false;
+
+  private final PrintStream out = System.out;
+
+  /**
+   * Parse {@code args} and run the command.
+   */
+  public static void run(String... args) throws Exception {
+    CommandLine commandLine = new CommandLine(new HistogramLogCommand());
+    commandLine.parseArgs(args);
+    commandLine.<HistogramLogCommand>getCommand().call();
+  }
+
+  @Override
+  public Void call() throws Exception {
+    if (helpRequested) {
+      new CommandLine(this).usage(out);
+      return null;
+    }
+    Preconditions.checkArgument(end == null || end > start, "--end must be after --start");
+    Preconditions.checkArgument(percentile > 0 && percentile <= 100,
+        "--percentile must be greater than 0 and less or equals to 100");
+    final Optional<Duration> resolution = Optional.ofNullable(interval).map(Duration::parse);
+    Preconditions.checkArgument(resolution.map(r -> r.toMillis() > 0).orElse(true),
+        "--interval must be at least 1 millisecond");
+    final List<Histogram> intervals = read();
+    if (intervals.isEmpty()) {
+      out.println("No intervals found");
+      return null;
+    }
+    final long baseMillis = intervals.stream()
+        .mapToLong(Histogram::getStartTimeStamp).min().getAsLong();
+    final List<Histogram> selected = new ArrayList<>();
+    for (Histogram histogram : intervals) {
+      final double startSeconds = (histogram.getStartTimeStamp() - baseMillis) / 1000D;
+      final double endSeconds = (histogram.getEndTimeStamp() - baseMillis) / 1000D;
+      if (startSeconds >= start && (end == null || endSeconds <= end)) {
+        selected.add(histogram);
+      }
+    }
+    selected.sort((left, right) -> Long.compare(left.getStartTimeStamp(),
+        right.getStartTimeStamp()));
+    printSummary(selected);
+    final List<Histogram> timeline = resolution
+        .map(r -> merge(selected, baseMillis, r.toMillis()))
+        .orElse(selected);
+    if (resolution.isPresent()) {
+      printTimeline(timeline, baseMillis);
+    }
+    if (output != null) {
+      write(timeline, baseMillis);
+    }
+    return null;
+  }
+
+  private List<Histogram> read() throws FileNotFoundException {
+    final Optional<Pattern> tagPattern = Optional.ofNullable(tag).map(Pattern::compile);
+    final List<Histogram> intervals = new ArrayList<>();
+    for (File file : files) {
+      final HistogramLogReader reader = new HistogramLogReader(file);
+      try {
+        EncodableHistogram next;
+        while ((next = reader.nextIntervalHistogram()) != null) {
+          final EncodableHistogram histogram = next;
+          Preconditions.checkArgument(histogram instanceof Histogram,
+              "Only integer histograms are supported, found " + histogram.getClass()
+              + " in " + file);
+          if (tagPattern.map(pattern -> histogram.getTag() != null
+              && pattern.matcher(histogram.getTag()).matches()).orElse(true)) {
+            intervals.add((Histogram) histogram);
+          }
+        }
+      } finally {
+        reader.close();
+      }
+    }
+    return intervals;
+  }
+
+  private void printSummary(List<Histogram> intervals) {
+    final Map<String, Histogram> summaries = new TreeMap<>();
+    final Map<String, Integer> counts = new TreeMap<>();
+    for (Histogram histogram : intervals) {
+      summaries.computeIfAbsent(tag(histogram), key -> new Histogram(SIGNIFICANT_DIGITS))
+          .add(histogram);
+      counts.merge(tag(histogram), 1, Integer::sum);
+    }
+    out.println(String.format(Locale.US, "%-32s %9s %12s %10s %10s %10s %10s %10s %10s %10s",
+        "tag", "intervals", "count", "mean (ms)", "p50", "p90", "p99", "p99.9", "p99.99",
+        "max"));
+    for (Map.Entry<String, Histogram> entry : summaries.entrySet()) {
+      final Histogram summary = entry.getValue();
+      final StringBuilder line = new StringBuilder(String.format(Locale.US,
+          "%-32s %9d %12d %10.3f", entry.getKey(), counts.get(entry.getKey()),
+          summary.getTotalCount(), summary.getMean() / 1e6));
+      for (double percentile : PERCENTILES) {
+        line.append(String.format(Locale.US, " %10.3f",
+            summary.getValueAtPercentile(percentile) / 1e6));
+      }
+      line.append(String.format(Locale.US, " %10.3f", summary.getMaxValue() / 1e6));
+      out.println(line);
+    }
+  }
+
+  /**
+   * Merge the intervals of each tag that start in the same period of {@code resolutionMillis}.
+   */
+  private List<Histogram> merge(List<Histogram> intervals, long baseMillis,
+      long resolutionMillis) {
+    final Map<Long, Map<String, Histogram>> buckets = new TreeMap<>();
+    for (Histogram histogram : intervals) {
+      final long bucket = (histogram.getStartTimeStamp() - baseMillis) / resolutionMillis;
+      final Histogram merged = buckets.computeIfAbsent(bucket, key -> new TreeMap<>())
+          .computeIfAbsent(tag(histogram), key -> {
+            Histogram result = new Histogram(SIGNIFICANT_DIGITS);
+            result.setTag(histogram.getTag());
+            result.setStartTimeStamp(baseMillis + bucket * resolutionMillis);
+            result.setEndTimeStamp(baseMillis + (bucket + 1) * resolutionMillis);
+            return result;
+          });
+      merged.add(histogram);
+    }
+    final List<Histogram> timeline = new ArrayList<>();
+    buckets.values().forEach(bucket -> timeline.addAll(bucket.values()));
+    return timeline;
+  }
+
+  private void printTimeline(List<Histogram> timeline, long baseMillis) {
+    out.println();
+    out.println(String.format(Locale.US, "%10s %-32s %12s %10s %10s %10s",
+        "time (s)", "tag", "count", "p50 (ms)", "p" + format(percentile), "max"));
+    for (Histogram histogram : timeline) {
+      out.println(String.format(Locale.US, "%10.3f %-32s %12d %10.3f %10.3f %10.3f",
+          (histogram.getStartTimeStamp() - baseMillis) / 1000D, tag(histogram),
+          histogram.getTotalCount(), histogram.getValueAtPercentile(50D) / 1e6,
+          histogram.getValueAtPercentile(percentile) / 1e6, histogram.getMaxValue() / 1e6));
+    }
+  }
+
+  private void write(List<Histogram> intervals, long baseMillis) throws IOException {
+    try (PrintStream stream = new PrintStream(output, StandardCharsets.US_ASCII)) {
+      final HistogramLogWriter writer = new HistogramLogWriter(stream);
+      writer.outputLogFormatVersion();
+      writer.outputComment("Sliced and merged from " + files);
+      writer.setBaseTime(baseMillis);
+      writer.outputStartTime(baseMillis);
+      writer.outputBaseTime(baseMillis);
+      writer.outputLegend();
+      for (Histogram histogram : intervals) {
+        writer.outputIntervalHistogram(histogram);
+      }
+    }
+  }
+
+  private static String tag(Histogram histogram) {
+    return Optional.ofNullable(histogram.getTag()).orElse("untagged");
+  }
+
+  private static String format(double value) {
+    return value == Math.rint(value) ? String.valueOf((long) value) : String.valueOf(value);
+  }
+}
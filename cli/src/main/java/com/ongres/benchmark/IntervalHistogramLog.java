@@ -0,0 +1,170 @@
+/*-
+ *  § 
+ * benchmark: command-line
+ *    
+ * Copyright (C) 2019 OnGres, Inc.
+ *    
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * § §
+ */
+package com.ongres.benchmark;
+
+import com.google.common.base.Preconditions;
+import com.ongres.benchmark.config.model.Config;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Write the interval histograms of the timers to a compressed HdrHistogram log file every
+ * {@code --histogram-log-interval}, so that latency spikes during the run are not averaged
+ * away by the cumulative percentiles.
+ *
+ * <p>Each histogram is tagged {@code <phase>/<timer>} (for example
+ * {@code run/response-time}). The phase is {@code warm-up}, {@code run}, the stage of a load
+ * profile or the step of a search. Values are recorded in nanoseconds. The logs can be sliced,
+ * merged and summarized with the {@code hlog} subcommand.
+ */
+public class IntervalHistogramLog implements Closeable {
+
+  private static final Logger logger = LogManager.getLogger();
+
+  private static final int SIGNIFICANT_DIGITS = 3;
+
+  private final PrintStream output;
+  private final HistogramLogWriter writer;
+  private final ScheduledExecutorService scheduler;
+  private final Map<String, StripedRecorder> recorders = new ConcurrentHashMap<>();
+  private final Map<String, Histogram> intervals = new ConcurrentHashMap<>();
+  private volatile Phase phase = new Phase("run");
+
+  private IntervalHistogramLog(PrintStream output) {
+    this.output = output;
+    this.writer = new HistogramLogWriter(output);
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "benchmark-histogram-log");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Create the log configured by {@code --histogram-log} and start writing intervals. Each
+   * worker of a distributed benchmark writes its own file, suffixed with its index.
+   */
+  public static IntervalHistogramLog start(Config config) throws IOException {
+    final long intervalMillis = config.getHistogramLogIntervalAsDuration().toMillis();
+    Preconditions.checkArgument(intervalMillis > 0,
+        "--histogram-log-interval must be at least 1 millisecond");
+    final String file = file(config);
+    final IntervalHistogramLog log = new IntervalHistogramLog(
+        new PrintStream(file, StandardCharsets.US_ASCII));
+    final long startMillis = System.currentTimeMillis();
+    log.writer.outputLogFormatVersion();
+    log.writer.outputComment("Interval histograms of the benchmark timers in nanoseconds,"
+        + " tagged <phase>/<timer>");
+    log.writer.setBaseTime(startMillis);
+    log.writer.outputStartTime(startMillis);
+    log.writer.outputBaseTime(startMillis);
+    log.writer.outputLegend();
+    log.scheduler.scheduleAtFixedRate(log::flushIntervals, intervalMillis, intervalMillis,
+        TimeUnit.MILLISECONDS);
+    logger.info("Writing interval histograms every " + config.getHistogramLogInterval()
+        + " to " + file);
+    return log;
+  }
+
+  private static String file(Config config) {
+    final String file = config.getHistogramLog();
+    if (config.getWorkerCount() <= 1) {
+      return file;
+    }
+    final String suffix = "-worker-" + (config.getWorkerIndex() + 1);
+    final int extension = file.lastIndexOf('.');
+    return extension > file.lastIndexOf('/') && extension > 0
+        ? file.substring(0, extension) + suffix + file.substring(extension)
+        : file + suffix;
+  }
+
+  /**
+   * Record {@code nanos} in the interval histogram of {@code timer} for the current phase.
+   */
+  public void record(String timer, long nanos) {
+    final Phase phase = this.phase;
+    StripedRecorder recorder = phase.recorders.get(timer);
+    if (recorder == null) {
+      recorder = phase.recorders.computeIfAbsent(timer, key -> recorders.computeIfAbsent(
+          phase.name + "/" + timer, tag -> new StripedRecorder(SIGNIFICANT_DIGITS)));
+    }
+    recorder.recordValue(Math.max(0L, nanos));
+  }
+
+  /**
+   * Write the intervals recorded so far and tag the next ones with {@code phase}. Whitespace,
+   * commas and slashes are replaced since they are not allowed in tags.
+   */
+  public synchronized void setPhase(String phase) {
+    flushIntervals();
+    this.phase = new Phase(phase.replaceAll("[\\s,/]+", "-"));
+  }
+
+  private synchronized void flushIntervals() {
+    for (Map.Entry<String, StripedRecorder> entry : recorders.entrySet()) {
+      final Histogram interval = entry.getValue().getIntervalHistogram(
+          intervals.get(entry.getKey()));
+      intervals.put(entry.getKey(), interval);
+      if (interval.getTotalCount() == 0) {
+        continue;
+      }
+      interval.setTag(entry.getKey());
+      writer.outputIntervalHistogram(interval);
+    }
+    output.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    scheduler.shutdown();
+    try {
+      scheduler.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+    flushIntervals();
+    output.close();
+  }
+
+  /**
+   * The recorders of the timers in a phase, indexed by timer name.
+   */
+  private static final class Phase {
+    private final String name;
+    private final Map<String, StripedRecorder> recorders = new ConcurrentHashMap<>();
+
+    private Phase(String name) {
+      this.name = name;
+    }
+  }
+}
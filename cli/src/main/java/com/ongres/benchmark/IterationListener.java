@@ -0,0 +1,37 @@
+/*-
+ *  § 
+ * benchmark: command-line
+ *    
+ * Copyright (C) 2019 OnGres, Inc.
+ *    
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * § §
+ */
+
+package com.ongres.benchmark;
+
+/**
+ * Receives the outcome of each benchmark iteration, in addition to the registered metrics.
+ *
+ * <p>Times are in {@link System#nanoTime()} units. Methods are called concurrently from the
+ * threads running the iterations so they must be thread-safe and cheap.
+ */
+public interface IterationListener {
+
+  /** An iteration intended to start at {@code intendedStartNanos} has completed. */
+  void onIteration(long intendedStartNanos, long startNanos, long endNanos);
+
+  /** An iteration will be retried. */
+  void onRetry();
+
+}
@@ -0,0 +1,137 @@
+/*-
+ *  § 
+ * benchmark: command-line
+ *    
+ * Copyright (C) 2019 OnGres, Inc.
+ *    
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * § §
+ */
+package com.ongres.benchmark;
+
+import com.google.common.base.Preconditions;
+import com.ongres.benchmark.config.model.Config;
+import com.ongres.benchmark.config.model.KeyDistribution;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Draw keys between 0 and the # of keys minus 1 following a uniform, zipfian (lower keys are
+ * hotter), hotspot (a fraction of the keys gets a fraction of the accesses) or latest (higher
+ * keys are hotter) distribution.
+ *
+ * <p>Each thread draws from its own random generator so that no lock is shared. The generator
+ * of a thread only depends on {@code --access-seed}, the worker index and the order the thread
+ * first drew a key, so that a run with the same seed repeats the sequence of each thread.
+ */
+public class KeyGenerator {
+
+  private static final long SCHEDULE_STREAM = 0L;
+  private static final long DAY_STREAM = 1L;
+
+  private final KeyDistribution distribution;
+  private final int keys;
+  private final double theta;
+  private final int hotKeys;
+  private final double hotAccessFraction;
+  private final AtomicLong threads = new AtomicLong(0);
+  private final ThreadLocal<SplittableRandom> random;
+
+  private KeyGenerator(KeyDistribution distribution, int keys, double theta, int hotKeys,
+      double hotAccessFraction, long seed, long stream) {
+    this.distribution = distribution;
+    this.keys = keys;
+    this.theta = theta;
+    this.hotKeys = hotKeys;
+    this.hotAccessFraction = hotAccessFraction;
+    this.random = ThreadLocal.withInitial(() -> GeneratedInputStream.random(
+        seed, stream, threads.getAndIncrement()));
+  }
+
+  /**
+   * Create the generator of schedule IDs configured by {@code --schedule-distribution}.
+   */
+  public static KeyGenerator schedules(Config config, int scheduleCount) {
+    return create(config, config.getScheduleDistributionAsEnum(), scheduleCount,
+        SCHEDULE_STREAM);
+  }
+
+  /**
+   * Create the generator of day offsets configured by {@code --day-distribution}.
+   */
+  public static KeyGenerator days(Config config) {
+    return create(config, config.getDayDistributionAsEnum(), config.getDayRange(), DAY_STREAM);
+  }
+
+  private static KeyGenerator create(Config config, KeyDistribution distribution, int keys,
+      long stream) {
+    Preconditions.checkArgument(keys > 0);
+    Preconditions.checkArgument(config.getZipfianTheta() > 0,
+        "--zipfian-theta must be positive");
+    Preconditions.checkArgument(config.getHotspotFraction() > 0
+        && config.getHotspotFraction() <= 1,
+        "--hotspot-fraction must be greater than 0 and less or equals to 1");
+    Preconditions.checkArgument(config.getHotspotAccessFraction() >= 0
+        && config.getHotspotAccessFraction() <= 1,
+        "--hotspot-access-fraction must be between 0 and 1");
+    final long seed = config.getAccessSeed() != null
+        ? config.getAccessSeed() : new SplittableRandom().nextLong();
+    return new KeyGenerator(distribution, keys, config.getZipfianTheta(),
+        (int) Math.max(1L, Math.round(keys * config.getHotspotFraction())),
+        config.getHotspotAccessFraction(), seed,
+        (stream << 32) | config.getWorkerIndex());
+  }
+
+  /**
+   * Draw the next key of the calling thread.
+   */
+  public int next() {
+    final SplittableRandom random = this.random.get();
+    switch (distribution) {
+      case UNIFORM:
+        return random.nextInt(keys);
+      case ZIPFIAN:
+        return (int) powerLaw(random.nextDouble(), keys, theta) - 1;
+      case HOTSPOT:
+        if (hotKeys == keys) {
+          return random.nextInt(keys);
+        }
+        if (random.nextDouble() < hotAccessFraction) {
+          return random.nextInt(hotKeys);
+        }
+        return hotKeys + random.nextInt(keys - hotKeys);
+      case LATEST:
+        return keys - (int) powerLaw(random.nextDouble(), keys, theta);
+      default:
+        throw new IllegalArgumentException("Unknown key distribution " + distribution);
+    }
+  }
+
+  /**
+   * A key between 1 and {@code cardinality} for a {@code uniform} value between 0 and 1,
+   * following a bounded power law (approximately Zipf with {@code exponent}, lower keys are
+   * the most frequent). The inverse of the continuous distribution is used so that a key is
+   * drawn in constant time whatever the cardinality.
+   */
+  public static long powerLaw(double uniform, long cardinality, double exponent) {
+    final double key;
+    if (Math.abs(exponent - 1D) < 1e-9) {
+      key = Math.pow(cardinality + 1D, uniform);
+    } else {
+      key = Math.pow((Math.pow(cardinality + 1D, 1D - exponent) - 1D) * uniform + 1D,
+          1D / (1D - exponent));
+    }
+    return Math.max(1L, Math.min(cardinality, (long) key));
+  }
+}
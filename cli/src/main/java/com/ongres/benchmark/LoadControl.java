@@ -0,0 +1,167 @@
+/*-
+ *  § 
+ * benchmark: command-line
+ *    
+ * Copyright (C) 2019 OnGres, Inc.
+ *    
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * § §
+ */
+
+package com.ongres.benchmark;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Offered load of a running benchmark: the arrival rate in open-loop mode or the number of
+ * concurrent iterations in closed-loop mode. Both can be changed while the benchmark runs.
+ */
+public class LoadControl {
+
+  private final ArrivalSchedule arrivalSchedule;
+  private final ConcurrencyLimiter concurrencyLimiter;
+  private final int maxConcurrency;
+  private final AtomicLong arrivals = new AtomicLong();
+  private volatile CountDownLatch paused;
+
+  private LoadControl(ArrivalSchedule arrivalSchedule, ConcurrencyLimiter concurrencyLimiter,
+      int maxConcurrency) {
+    this.arrivalSchedule = arrivalSchedule;
+    this.concurrencyLimiter = concurrencyLimiter;
+    this.maxConcurrency = maxConcurrency;
+  }
+
+  /**
+   * Closed-loop load with the fixed concurrency of the execution engine.
+   */
+  public static LoadControl closedLoop() {
+    return new LoadControl(null, null, 0);
+  }
+
+  /**
+   * Closed-loop load whose concurrency can be changed up to {@code maxConcurrency}.
+   */
+  public static LoadControl limitedClosedLoop(int concurrency, int maxConcurrency) {
+    Preconditions.checkArgument(concurrency <= maxConcurrency,
+        "concurrency must be less or equals to " + maxConcurrency);
+    return new LoadControl(null, new ConcurrencyLimiter(concurrency), maxConcurrency);
+  }
+
+  /**
+   * Open-loop load following the {@code arrivalSchedule}.
+   */
+  public static LoadControl openLoop(ArrivalSchedule arrivalSchedule) {
+    return new LoadControl(arrivalSchedule, null, 0);
+  }
+
+  public boolean isOpenLoop() {
+    return arrivalSchedule != null;
+  }
+
+  public boolean isLimited() {
+    return concurrencyLimiter != null;
+  }
+
+  /**
+   * Wait for the next arrival of the open-loop schedule and return its intended start time.
+   */
+  public long nextArrival() {
+    final CountDownLatch paused = this.paused;
+    if (paused != null) {
+      Uninterruptibles.awaitUninterruptibly(paused);
+    }
+    final long intendedStartNanos = arrivalSchedule.next();
+    arrivals.incrementAndGet();
+    return intendedStartNanos;
+  }
+
+  /**
+   * The number of arrivals issued by the open-loop schedule.
+   */
+  public long getArrivals() {
+    return arrivals.get();
+  }
+
+  /**
+   * Stop issuing arrivals of an open-loop load until {@link #resume()} is called.
+   */
+  public synchronized void pause() {
+    Preconditions.checkState(isOpenLoop(), "Only open-loop load can be paused");
+    if (paused == null) {
+      paused = new CountDownLatch(1);
+    }
+  }
+
+  /**
+   * Resume issuing arrivals of a paused open-loop load, restarting its schedule.
+   */
+  public synchronized void resume() {
+    if (paused != null) {
+      arrivalSchedule.restart();
+      paused.countDown();
+      paused = null;
+    }
+  }
+
+  /**
+   * Change the arrival rate of an open-loop load.
+   */
+  public void setRate(double rate) {
+    Preconditions.checkState(isOpenLoop(), "Rate can only be changed in open-loop mode");
+    arrivalSchedule.setRate(rate);
+  }
+
+  /**
+   * Change the concurrency of a limited closed-loop load.
+   */
+  public void setConcurrency(int concurrency) {
+    Preconditions.checkState(isLimited(), "Concurrency can not be changed");
+    Preconditions.checkArgument(concurrency <= maxConcurrency,
+        "concurrency must be less or equals to " + maxConcurrency);
+    concurrencyLimiter.setLimit(concurrency);
+  }
+
+  /**
+   * Run an iteration of a closed-loop load waiting for the concurrency limit if needed.
+   */
+  public void run(Runnable iteration) {
+    if (concurrencyLimiter == null) {
+      iteration.run();
+      return;
+    }
+    concurrencyLimiter.acquireUninterruptibly();
+    try {
+      iteration.run();
+    } finally {
+      concurrencyLimiter.release();
+    }
+  }
+
+  /**
+   * Lift the concurrency limit, resume arrivals and stop the open-loop schedule so that
+   * nothing keeps waiting when the benchmark stops.
+   */
+  public void open() {
+    resume();
+    if (arrivalSchedule != null) {
+      arrivalSchedule.stop();
+    }
+    if (concurrencyLimiter != null) {
+      concurrencyLimiter.setLimit(maxConcurrency);
+    }
+  }
+}
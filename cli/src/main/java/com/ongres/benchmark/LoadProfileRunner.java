@@ -0,0 +1,216 @@
+/*-
+ *  § 
+ * benchmark: command-line
+ *    
+ * Copyright (C) 2019 OnGres, Inc.
+ *    
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * § §
+ */
+
+package com.ongres.benchmark;
+
+import com.google.common.base.Preconditions;
+import com.ongres.benchmark.config.model.Config;
+import com.ongres.benchmark.config.model.profile.LoadStage;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Run the stages of the load profile of the configuration, changing the offered load of the
+ * running benchmark, and snapshot the metrics of each stage.
+ *
+ * <p>All the stages must set either a rate (open-loop) or a concurrency (closed-loop).
+ * Stage metrics are logged and written to {@code stages.csv}.
+ */
+public class LoadProfileRunner {
+
+  private static final Logger logger = LogManager.getLogger();
+
+  private static final long CONTROL_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+  private static final String STAGES_FILE = "stages.csv";
+
+  private final List<LoadStage> stages;
+  private final boolean rate;
+  private final double[] baseLoads;
+  private final MetricsWindow window;
+
+  LoadProfileRunner(List<LoadStage> stages, MetricsWindow window, int parallelism) {
+    Preconditions.checkArgument(!stages.isEmpty(), "load profile must have at least one stage");
+    this.stages = stages;
+    this.rate = stages.get(0).getRate() != null;
+    this.window = window;
+    this.baseLoads = new double[stages.size()];
+    double previousLoad = 0D;
+    for (int index = 0; index < stages.size(); index++) {
+      LoadStage stage = stages.get(index);
+      Preconditions.checkArgument((stage.getRate() == null) != (stage.getConcurrency() == null),
+          "stage " + name(index) + " must set either rate or concurrency");
+      Preconditions.checkArgument((stage.getRate() != null) == rate,
+          "all the stages of a load profile must set rate or all must set concurrency");
+      Preconditions.checkArgument(stage.getDuration() != null
+          && !stage.getDurationAsDuration().isZero()
+          && !stage.getDurationAsDuration().isNegative(),
+          "stage " + name(index) + " duration must be greater than 0");
+      Preconditions.checkArgument(stage.getLoad() >= 0
+          && Optional.ofNullable(stage.getFrom()).orElse(0D) >= 0,
+          "stage " + name(index) + " load must not be negative");
+      Preconditions.checkArgument(rate || (stage.getLoad() <= parallelism
+          && Optional.ofNullable(stage.getFrom()).orElse(0D) <= parallelism),
+          "stage " + name(index) + " concurrency must be less or equals to parallelism");
+      baseLoads[index] = Optional.ofNullable(stage.getFrom()).orElse(previousLoad);
+      previousLoad = load(index, stage.getDurationAsDuration().toNanos());
+    }
+  }
+
+  /**
+   * Create a runner for the load profile of {@code config} that snapshots the metrics of
+   * {@code benchmark}.
+   */
+  public static LoadProfileRunner create(BenchmarkRunner benchmark, Config config) {
+    MetricsWindow window = new MetricsWindow();
+    LoadProfileRunner runner = new LoadProfileRunner(config.getProfile().getStages(), window,
+        config.getParallelism());
+    benchmark.addListener(window);
+    return runner;
+  }
+
+  /**
+   * True if the stages set a rate, false if they set a concurrency.
+   */
+  public boolean isRate() {
+    return rate;
+  }
+
+  /**
+   * The offered load at the start of the first stage.
+   */
+  public double getInitialLoad() {
+    return load(0, 0L);
+  }
+
+  /**
+   * Run the stages while {@code execution} is running changing the offered load through
+   * {@code loadControl}.
+   */
+  public void run(Execution execution, LoadControl loadControl)
+      throws IOException, InterruptedException, ExecutionException {
+    logger.info(String.format(Locale.US, "%4s %-16s %-8s %10s %12s %12s %12s %12s %12s %12s",
+        "#", "stage", "type", "duration", "throughput", "p50 (ms)", "p99 (ms)", "p99.9 (ms)",
+        "max (ms)", "retry ratio"));
+    try (CSVPrinter printer = new CSVPrinter(
+        new FileWriter(STAGES_FILE, StandardCharsets.UTF_8),
+        CSVFormat.DEFAULT.builder()
+          .setHeader("stage", "name", "type", rate ? "rate" : "concurrency", "duration",
+              "count", "throughput", "retry_ratio", "p50", "p90", "p99", "p999", "max")
+          .build())) {
+      for (int index = 0; index < stages.size(); index++) {
+        final boolean completed = runStage(execution, loadControl, index, printer);
+        if (completed) {
+          logger.info("Benchmark ended before the load profile completed");
+          break;
+        }
+      }
+    }
+  }
+
+  private boolean runStage(Execution execution, LoadControl loadControl, int index,
+      CSVPrinter printer) throws IOException, InterruptedException, ExecutionException {
+    final LoadStage stage = stages.get(index);
+    final long durationNanos = stage.getDurationAsDuration().toNanos();
+    boolean completed = false;
+    MetricsManager.setPhase(name(index));
+    window.next();
+    final long startNanos = System.nanoTime();
+    while (true) {
+      final long elapsedNanos = System.nanoTime() - startNanos;
+      if (elapsedNanos >= durationNanos) {
+        break;
+      }
+      final double load = load(index, elapsedNanos);
+      if (rate) {
+        loadControl.setRate(load);
+      } else {
+        loadControl.setConcurrency((int) Math.round(load));
+      }
+      if (execution.awaitCompletion(Math.min(CONTROL_INTERVAL_NANOS,
+          durationNanos - elapsedNanos), TimeUnit.NANOSECONDS)) {
+        completed = true;
+        break;
+      }
+    }
+    final MetricsWindow.Snapshot snapshot = window.next();
+    final Histogram responseTime = snapshot.getResponseTime();
+    logger.info(String.format(Locale.US, "%4d %-16s %-8s %10s %12.1f %12.3f %12.3f %12.3f"
+        + " %12.3f %12.4f",
+        index + 1, name(index), stage.getTypeAsEnum().name().toLowerCase(Locale.US),
+        Duration.ofNanos(snapshot.getDurationNanos()).withNanos(0),
+        snapshot.getThroughput(), millis(responseTime, 50D), millis(responseTime, 99D),
+        millis(responseTime, 99.9D), responseTime.getMaxValue() / 1e6,
+        snapshot.getRetryRatio()));
+    printer.printRecord(index + 1, name(index),
+        stage.getTypeAsEnum().name().toLowerCase(Locale.US), stage.getLoad(),
+        snapshot.getDurationNanos() / 1e9, snapshot.getIterations(), snapshot.getThroughput(),
+        snapshot.getRetryRatio(), millis(responseTime, 50D), millis(responseTime, 90D),
+        millis(responseTime, 99D), millis(responseTime, 99.9D),
+        responseTime.getMaxValue() / 1e6);
+    printer.flush();
+    return completed;
+  }
+
+  /**
+   * The offered load of stage {@code index} after {@code elapsedNanos}.
+   */
+  double load(int index, long elapsedNanos) {
+    final LoadStage stage = stages.get(index);
+    final double base = baseLoads[index];
+    final double target = stage.getLoad();
+    switch (stage.getTypeAsEnum()) {
+      case STEP:
+        return target;
+      case RAMP:
+        return base + (target - base)
+            * Math.min(1D, elapsedNanos / (double) stage.getDurationAsDuration().toNanos());
+      case SPIKE:
+        return elapsedNanos < stage.getPeakDurationAsDuration().toNanos() ? target : base;
+      case SINUSOID:
+        return base + (target - base) * (1D - Math.cos(2D * Math.PI * elapsedNanos
+            / stage.getPeriodAsDuration().toNanos())) / 2D;
+      default:
+        throw new IllegalArgumentException("Unknown stage type " + stage.getType());
+    }
+  }
+
+  private String name(int index) {
+    return Optional.ofNullable(stages.get(index).getName())
+        .orElse("stage-" + (index + 1));
+  }
+
+  private static double millis(Histogram histogram, double percentile) {
+    return histogram.getValueAtPercentile(percentile) / 1e6;
+  }
+}
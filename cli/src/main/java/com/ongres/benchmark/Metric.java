@@ -20,14 +20,27 @@
 
 package com.ongres.benchmark;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.Timer;
 
 public enum Metric {
   
   ITERATIONS("iterations", Meter.class),
+  SEATS("seats", Meter.class),
   RETRY("retry", Meter.class),
-  RESPONSE_TIME("response-time", Timer.class);
+  RESPONSE_TIME("response-time", Timer.class),
+  SERVICE_TIME("service-time", Timer.class),
+  THREADS("threads", Gauge.class),
+  CLIENTS("clients", Gauge.class),
+  CARRIER_UTILIZATION("carrier-utilization", Gauge.class),
+  VIRTUAL_THREAD_PINNED("virtual-thread-pinned", Meter.class),
+  STATEMENT_CACHE_HIT_RATIO("statement-cache-hit-ratio", Gauge.class),
+  SERVER_PREPARED_RATIO("server-prepared-ratio", Gauge.class),
+  SCHEDULE_CACHE_HIT_RATIO("schedule-cache-hit-ratio", Gauge.class),
+  GROUP_COMMIT_BATCH_SIZE("group-commit-batch-size", Histogram.class),
+  GROUP_COMMIT_LATENCY("group-commit-latency", Timer.class);
   
   private final String name;
   private final Class<? extends com.codahale.metrics.Metric> type;
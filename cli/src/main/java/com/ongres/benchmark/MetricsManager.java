@@ -20,7 +20,9 @@
 
 package com.ongres.benchmark;
 
+import com.codahale.metrics.Clock;
 import com.codahale.metrics.CsvReporter;
+import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricFilter;
@@ -31,22 +33,44 @@ import com.codahale.metrics.Timer;
 import com.codahale.metrics.jmx.JmxReporter;
 import com.codahale.metrics.jvm.MemoryUsageGaugeSet;
 import com.google.common.base.Preconditions;
+import com.ongres.benchmark.config.model.Config;
 
 import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
 import java.nio.file.Paths;
+import java.util.Collections;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
-import org.mpierce.metrics.reservoir.hdrhistogram.HdrHistogramReservoir;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Registry of the metrics of the benchmark. The meters, timers and histograms record in
+ * {@link StripedMeter}s and {@link StripedReservoir}s, so that the worker threads do not contend
+ * on them, and the pending marks are merged every second by a daemon thread.
+ */
 public class MetricsManager {
 
   private static final Logger logger = LoggerFactory.getLogger(MetricsManager.class);
 
   private static final MetricRegistry METRIC_REGISTRY = new MetricRegistry();
-  
+  private static final MetricRegistry WARM_UP_METRIC_REGISTRY = new MetricRegistry();
+
+  private static final long MERGE_PERIOD_MILLIS = 1000L;
+  private static final Set<StripedMeter> STRIPED_METERS =
+      Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+  private static final ScheduledExecutorService MERGER = startMerger();
+
+  private static volatile IntervalHistogramLog intervalHistogramLog;
+  private static volatile String phase = "run";
+
   private MetricsManager() {
     METRIC_REGISTRY.register("memory", new MemoryUsageGaugeSet());
   }
@@ -55,21 +79,59 @@ public class MetricsManager {
     return METRIC_REGISTRY;
   }
 
+  /**
+   * Registry of the metrics collected during warm-up, excluded from the results.
+   */
+  public static MetricRegistry getWarmUpMetricRegistry() {
+    return WARM_UP_METRIC_REGISTRY;
+  }
+
   /**
    * Register a meter.
    */
   public static Meter meter(Metric metric) {
+    return meter(METRIC_REGISTRY, metric);
+  }
+
+  /**
+   * Register a meter in {@code registry}.
+   */
+  public static Meter meter(MetricRegistry registry, Metric metric) {
     Preconditions.checkArgument(metric.getType() == Meter.class);
-    return METRIC_REGISTRY.meter(metric.getName());
+    return registry.meter(metric.getName(), MetricsManager::stripedMeter);
   }
 
   /**
    * Register a timer.
    */
   public static Timer timer(Metric metric) {
+    return timer(METRIC_REGISTRY, metric);
+  }
+
+  /**
+   * Register a timer in {@code registry}.
+   */
+  public static Timer timer(MetricRegistry registry, Metric metric) {
     Preconditions.checkArgument(metric.getType() == Timer.class);
-    return METRIC_REGISTRY.timer(metric.getName(), 
-        () -> new Timer(new HdrHistogramReservoir()));
+    return registry.timer(metric.getName(), 
+        () -> new LoggedTimer(metric.getName()));
+  }
+
+  /**
+   * Register a timer that is not one of the {@link Metric}s, like the timers of the steps of
+   * an iteration.
+   */
+  public static Timer timer(String name) {
+    return METRIC_REGISTRY.timer(name, () -> new LoggedTimer(name));
+  }
+
+  /**
+   * Remove metrics so that they start from scratch when registered again.
+   */
+  public static void reset(Metric... metrics) {
+    for (Metric metric : metrics) {
+      METRIC_REGISTRY.remove(metric.getName());
+    }
   }
 
   /**
@@ -78,7 +140,15 @@ public class MetricsManager {
   public static Histogram histogram(Metric metric) {
     Preconditions.checkArgument(metric.getType() == Histogram.class);
     return METRIC_REGISTRY.histogram(metric.getName(), 
-        () -> new Histogram(new HdrHistogramReservoir()));
+        () -> new Histogram(new StripedReservoir()));
+  }
+
+  /**
+   * Register a gauge.
+   */
+  public static <T> Gauge<T> gauge(Metric metric, Gauge<T> gauge) {
+    Preconditions.checkArgument(metric.getType() == Gauge.class);
+    return METRIC_REGISTRY.gauge(metric.getName(), () -> gauge);
   }
 
   /**
@@ -110,6 +180,63 @@ public class MetricsManager {
     return reporter;
   }
 
+  /**
+   * Log the metrics collected during warm-up.
+   */
+  public static void reportWarmUp(MetricFilter filter) {
+    Slf4jReporter.forRegistry(WARM_UP_METRIC_REGISTRY)
+        .convertRatesTo(TimeUnit.SECONDS)
+        .convertDurationsTo(TimeUnit.MILLISECONDS)
+        .outputTo(logger)
+        .withLoggingLevel(LoggingLevel.INFO)
+        .prefixedWith("warm-up")
+        .filter(filter)
+        .build()
+        .report();
+  }
+
+  /**
+   * Start writing the interval histograms of the timers to the {@code --histogram-log} file.
+   */
+  public static Closeable startIntervalHistogramLog(Config config)
+      throws IOException {
+    Preconditions.checkState(intervalHistogramLog == null,
+        "interval histogram log already started");
+    final IntervalHistogramLog log = IntervalHistogramLog.start(config);
+    intervalHistogramLog = log;
+    return () -> {
+      intervalHistogramLog = null;
+      log.close();
+    };
+  }
+
+  /**
+   * Tag the intervals recorded from now on with {@code phase} in the interval histogram log
+   * and the metrics served to Prometheus.
+   */
+  public static void setPhase(String phase) {
+    MetricsManager.phase = phase;
+    final IntervalHistogramLog log = intervalHistogramLog;
+    if (log != null) {
+      log.setPhase(phase);
+    }
+  }
+
+  /**
+   * The current phase of the benchmark (warm-up, run, a stage of the load profile, ...).
+   */
+  public static String getPhase() {
+    return phase;
+  }
+
+  /**
+   * Start serving the metrics to Prometheus on {@code port}, rendered every {@code period}.
+   */
+  public static Closeable startPrometheusReporter(long period, TimeUnit unit,
+      MetricFilter filter, int port, Map<String, String> labels) throws IOException {
+    return PrometheusReporter.start(METRIC_REGISTRY, filter, port, labels, period, unit);
+  }
+
   /**
    * Start JMX reporter.
    */
@@ -118,4 +245,58 @@ public class MetricsManager {
     reporter.start();
     return reporter;
   }
+
+  private static StripedMeter stripedMeter() {
+    final StripedMeter meter = new StripedMeter();
+    STRIPED_METERS.add(meter);
+    return meter;
+  }
+
+  private static ScheduledExecutorService startMerger() {
+    final ScheduledExecutorService merger = Executors.newSingleThreadScheduledExecutor(
+        runnable -> {
+          Thread thread = new Thread(runnable, "benchmark-metrics-merger");
+          thread.setDaemon(true);
+          return thread;
+        });
+    merger.scheduleAtFixedRate(MetricsManager::mergeMeters,
+        MERGE_PERIOD_MILLIS, MERGE_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+    return merger;
+  }
+
+  private static void mergeMeters() {
+    final StripedMeter[] meters;
+    synchronized (STRIPED_METERS) {
+      meters = STRIPED_METERS.toArray(new StripedMeter[0]);
+    }
+    for (StripedMeter meter : meters) {
+      meter.merge();
+    }
+  }
+
+  /**
+   * Timer that also records in the interval histogram log when it is started.
+   */
+  private static class LoggedTimer extends Timer {
+    private final String name;
+
+    private LoggedTimer(String name) {
+      super(stripedMeter(), new Histogram(new StripedReservoir()), Clock.defaultClock());
+      this.name = name;
+    }
+
+    @Override
+    public void update(long duration, TimeUnit unit) {
+      super.update(duration, unit);
+      final IntervalHistogramLog log = intervalHistogramLog;
+      if (log != null) {
+        log.record(name, unit.toNanos(duration));
+      }
+    }
+
+    @Override
+    public void update(Duration duration) {
+      update(duration.toNanos(), TimeUnit.NANOSECONDS);
+    }
+  }
 }
@@ -0,0 +1,118 @@
+/*-
+ *  § 
+ * benchmark: command-line
+ *    
+ * Copyright (C) 2019 OnGres, Inc.
+ *    
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * § §
+ */
+
+package com.ongres.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * Collects iterations over consecutive windows of time. Only iterations intended to start
+ * after the current window began are accounted, so that a backlog left by a previous window
+ * does not count against the next one.
+ */
+public class MetricsWindow implements IterationListener {
+
+  private final StripedRecorder responseTime = new StripedRecorder(3);
+  private final LongAdder iterations = new LongAdder();
+  private final LongAdder retries = new LongAdder();
+  private final LongAdder completed = new LongAdder();
+  private volatile long startNanos = System.nanoTime();
+
+  @Override
+  public void onIteration(long intendedStartNanos, long startNanos, long endNanos) {
+    completed.increment();
+    if (intendedStartNanos - this.startNanos < 0) {
+      return;
+    }
+    responseTime.recordValue(endNanos - intendedStartNanos);
+    iterations.increment();
+  }
+
+  @Override
+  public void onRetry() {
+    retries.increment();
+  }
+
+  /**
+   * The number of iterations completed since creation, including those not accounted in any
+   * window.
+   */
+  public long getCompleted() {
+    return completed.sum();
+  }
+
+  /**
+   * Close the current window, returning its metrics, and start a new one.
+   */
+  public Snapshot next() {
+    final long endNanos = System.nanoTime();
+    final long windowStartNanos = startNanos;
+    startNanos = endNanos;
+    return new Snapshot(endNanos - windowStartNanos, iterations.sumThenReset(),
+        retries.sumThenReset(), responseTime.getIntervalHistogram());
+  }
+
+  /**
+   * Metrics of a closed window, response time is in nanoseconds.
+   */
+  public static class Snapshot {
+    private final long durationNanos;
+    private final long iterations;
+    private final long retries;
+    private final Histogram responseTime;
+
+    private Snapshot(long durationNanos, long iterations, long retries,
+        Histogram responseTime) {
+      this.durationNanos = durationNanos;
+      this.iterations = iterations;
+      this.retries = retries;
+      this.responseTime = responseTime;
+    }
+
+    public long getDurationNanos() {
+      return durationNanos;
+    }
+
+    public long getIterations() {
+      return iterations;
+    }
+
+    public long getRetries() {
+      return retries;
+    }
+
+    public Histogram getResponseTime() {
+      return responseTime;
+    }
+
+    /** Iterations per second. */
+    public double getThroughput() {
+      return iterations * (double) TimeUnit.SECONDS.toNanos(1) / durationNanos;
+    }
+
+    /** Retries per iteration. */
+    public double getRetryRatio() {
+      return iterations == 0 ? 0D : retries / (double) iterations;
+    }
+  }
+}
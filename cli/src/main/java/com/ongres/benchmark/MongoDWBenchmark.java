@@ -37,16 +37,12 @@ import com.mongodb.client.model.Indexes;
 import com.mongodb.client.model.Variable;
 import com.ongres.benchmark.config.model.Config;
 
-import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.stream.Collectors;
 
 import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVFormat.Builder;
-import org.apache.commons.csv.CSVParser;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.bson.Document;
@@ -55,6 +51,9 @@ import org.jooq.lambda.Unchecked;
 
 public class MongoDWBenchmark extends Benchmark {
 
+  private static final StepTimer SESSION_STEP = StepTimer.of("mDW", "session");
+  private static final StepTimer GROUP_STEP = StepTimer.of("mDW", "group");
+  private static final StepTimer COMMIT_STEP = StepTimer.of("mDW", "commit");
 
   private final Logger logger = LogManager.getLogger();
 
@@ -98,66 +97,64 @@ public class MongoDWBenchmark extends Benchmark {
     database.getCollection("product").drop();
     database.getCollection("customer").drop();
     database.getCollection("sales").drop();
-    Builder csvFormatBuilder = CSVFormat.DEFAULT.builder()
-    		.setDelimiter(",").setNullString("\\N")
-    		.setSkipHeaderRecord(true);
-    logger.info("Importing orders");
+    CSVFormat csvFormat = CSVFormat.DEFAULT.builder()
+        .setDelimiter(",").setNullString("\\N")
+        .build();
     database.createCollection("ord");
-    MongoCollection<Document> ord = database.getCollection("ord");
-    String numCol = "price,quantity,beta,vega,theta,vanna,gamma";
-    CSVParser.parse(
-        MongoDWBenchmark.class.getResourceAsStream("/ord.csv"), 
-        StandardCharsets.UTF_8, csvFormatBuilder
-        .setHeader("order_id", "date", "customer_id", "status_id", "total", "sales_id", "channel_id",
-        		"product_id", "price", "quantity", "beta", "vega", "theta", "vanna", "gamma").build())
-        .forEach(record -> {
-        	ord.insertOne(new Document(
-            record.toMap().entrySet().stream()
-            .filter(e -> e.getValue() != null)
-            .collect(Collectors.toMap(e -> e.getKey(), 
-            		e -> numCol.indexOf(e.getKey())>=0 ? Double.parseDouble(e.getValue()): e.getValue() ))));
-        });
-    ord.createIndex(Indexes.ascending("order_id"));
-    logger.info("Importing product");
     database.createCollection("product");
-    MongoCollection<Document> product = database.getCollection("product");
-    CSVParser.parse(
-        MongoDWBenchmark.class.getResourceAsStream("/product.csv"), 
-        StandardCharsets.UTF_8, csvFormatBuilder
-        .setHeader("product_id", "product_name", "product_category", "market_id", "min_price", "price", "product_status",
-        		"cpty_id", "date", "product_description").build())
-        .forEach(record -> product.insertOne(new Document(
-            record.toMap().entrySet().stream()
-            .filter(e -> e.getValue() != null)
-            .collect(Collectors.toMap(e -> e.getKey(), e -> e.getValue())))));
-    product.createIndex(Indexes.ascending("product_id"));
-    logger.info("Importing sales");
     database.createCollection("sales");
-    MongoCollection<Document> sales = database.getCollection("sales");
-    CSVParser.parse(
-        MongoDWBenchmark.class.getResourceAsStream("/sales.csv"), 
-        StandardCharsets.UTF_8, csvFormatBuilder
-        .setHeader("sales_id", "first_name", "last_name", "email", "phone", "hire_date", "job_id", "salary").build())
-        .forEach(record -> sales.insertOne(new Document(
-            record.toMap().entrySet().stream()
-            .filter(e -> e.getValue() != null)
-            .collect(Collectors.toMap(e -> e.getKey(), e -> e.getValue())))));
-    sales.createIndex(Indexes.ascending("sales_id"));
-    logger.info("Importing customer");
     database.createCollection("customer");
+    MongoCollection<Document> ord = database.getCollection("ord");
+    MongoCollection<Document> product = database.getCollection("product");
+    MongoCollection<Document> sales = database.getCollection("sales");
     MongoCollection<Document> customer = database.getCollection("customer");
-    CSVParser.parse(
-        MongoDWBenchmark.class.getResourceAsStream("/customer.csv"), 
-        StandardCharsets.UTF_8, csvFormatBuilder
-        .setHeader("customer_id", "first_name", "last_name", "postal_code", "city", "state", "country").build())
-        .forEach(record -> customer.insertOne(new Document(
-            record.toMap().entrySet().stream()
-            .filter(e -> e.getValue() != null)
-            .collect(Collectors.toMap(e -> e.getKey(), e -> e.getValue())))));
-    customer.createIndex(Indexes.ascending("customer_id"));    
+    try (MongoLoader loader = MongoLoader.create(config)) {
+      logger.info("Importing data with " + loader.getParallelism() + " writers");
+      MongoLoader.RecordMapper ordMapper = MongoLoader.RecordMapper.of(
+          "order_id", "date", "customer_id", "status_id", "total", "sales_id", "channel_id",
+          "product_id", "price", "quantity", "beta", "vega", "theta", "vanna", "gamma")
+          .convert(Double::parseDouble,
+              "price", "quantity", "beta", "vega", "theta", "vanna", "gamma");
+      MongoLoader.RecordMapper productMapper = MongoLoader.RecordMapper.of(
+          "product_id", "product_name", "product_category", "market_id", "min_price", "price",
+          "product_status", "cpty_id", "date", "product_description");
+      MongoLoader.RecordMapper salesMapper = MongoLoader.RecordMapper.of(
+          "sales_id", "first_name", "last_name", "email", "phone", "hire_date", "job_id",
+          "salary");
+      MongoLoader.RecordMapper customerMapper = MongoLoader.RecordMapper.of(
+          "customer_id", "first_name", "last_name", "postal_code", "city", "state", "country");
+      if (config.getScaleFactor() != null) {
+        DWDataGenerator generator = DWDataGenerator.create(config);
+        logger.info("Generating " + generator.getOrders() + " orders, "
+            + generator.getProducts() + " products, " + generator.getCustomers()
+            + " customers and " + generator.getSales() + " sales");
+        final int partitions = loader.getParallelism();
+        loader.load(ord, partitions, partition -> generator.orders(partition, partitions),
+            csvFormat, false, ordMapper::toDocument);
+        loader.load(product, generator.products(), csvFormat, false, productMapper::toDocument);
+        loader.load(sales, generator.sales(), csvFormat, false, salesMapper::toDocument);
+        loader.load(customer, generator.customers(), csvFormat, false,
+            customerMapper::toDocument);
+      } else {
+        loader.load(ord, PostgresDWBenchmark.resource("/ord.csv"),
+            csvFormat, true, ordMapper::toDocument);
+        loader.load(product, PostgresDWBenchmark.resource("/product.csv"),
+            csvFormat, true, productMapper::toDocument);
+        loader.load(sales, PostgresDWBenchmark.resource("/sales.csv"),
+            csvFormat, true, salesMapper::toDocument);
+        loader.load(customer, PostgresDWBenchmark.resource("/customer.csv"),
+            csvFormat, true, customerMapper::toDocument);
+      }
+    }
+    logger.info("Creating indexes");
+    ord.createIndex(Indexes.ascending("order_id"));
+    product.createIndex(Indexes.ascending("product_id"));
+    sales.createIndex(Indexes.ascending("sales_id"));
+    customer.createIndex(Indexes.ascending("customer_id"));
   }
 
   private void userOperation() throws Exception {
+    long stepNanos = System.nanoTime();
     try (ClientSession session = client.startSession(
         ClientSessionOptions.builder()
         .causallyConsistent(!config.isMongoNotCasuallyConsistent())
@@ -167,13 +164,16 @@ public class MongoDWBenchmark extends Benchmark {
           .readConcern(config.getMongoReadConcernAsReadConcern())
           .writeConcern(config.getMongoWriteConcernAsWriteConcern())
           .build());
+      stepNanos = SESSION_STEP.record(stepNanos);
       try {
         //getOrders(session);
         group(session);
+        stepNanos = GROUP_STEP.record(stepNanos);
     	rollup(session);
     	cube(session);
         //pivot(session);
         session.commitTransaction();
+        COMMIT_STEP.record(stepNanos);
       } catch (Exception ex) {
         try {
           session.abortTransaction();
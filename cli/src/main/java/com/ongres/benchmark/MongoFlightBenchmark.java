@@ -21,7 +21,6 @@
 package com.ongres.benchmark;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.ImmutableMap;
 import com.mongodb.ClientSessionOptions;
 import com.mongodb.MongoCommandException;
 import com.mongodb.MongoException;
@@ -34,27 +33,22 @@ import com.mongodb.client.MongoDatabase;
 import com.mongodb.client.model.Aggregates;
 import com.mongodb.client.model.Filters;
 import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Sorts;
 import com.mongodb.client.model.UpdateOptions;
 import com.ongres.benchmark.config.model.Config;
 
-import java.nio.charset.StandardCharsets;
 import java.sql.Date;
 import java.sql.Timestamp;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Optional;
-import java.util.Random;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVParser;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.bson.Document;
@@ -63,21 +57,41 @@ import org.jooq.lambda.Unchecked;
 
 public class MongoFlightBenchmark extends Benchmark {
 
-  private static final int MAX_SCHEDULE_ID = 14185;
+  private static final StepTimer SESSION_STEP = StepTimer.of("mongo", "session");
+  private static final StepTimer SCHEDULE_STEP = StepTimer.of("mongo", "schedule");
+  private static final StepTimer INSERT_SEAT_STEP = StepTimer.of("mongo", "insert-seat");
+  private static final StepTimer INSERT_PAYMENT_STEP = StepTimer.of("mongo", "insert-payment");
+  private static final StepTimer INSERT_AUDIT_STEP = StepTimer.of("mongo", "insert-audit");
+  private static final StepTimer COMMIT_STEP = StepTimer.of("mongo", "commit");
+  private static final StepTimer GROUP_COMMIT_STEP = StepTimer.of("mongo", "group-commit");
 
   private final Logger logger = LogManager.getLogger();
 
   private final AtomicLong idGenerator = new AtomicLong(0);
-  private final Random random = new Random();
   private final MongoClient client;
   private final MongoDatabase database;
   private final Config config;
+  private final int scheduleCount;
+  private final KeyGenerator scheduleGenerator;
+  private final KeyGenerator dayGenerator;
+  private final ThinkTime thinkTime;
+  private final ScheduleCache scheduleCache;
+  private final GroupSize groupSize;
+  private final GroupCommitter<Booking> groupCommitter;
 
   private MongoFlightBenchmark(MongoClient client, MongoDatabase database, Config config) {
     super();
     this.client = client;
     this.database = database;
     this.config = config;
+    this.scheduleCount = FlightDataGenerator.scheduleCount(config);
+    this.scheduleGenerator = KeyGenerator.schedules(config, scheduleCount);
+    this.dayGenerator = KeyGenerator.days(config);
+    this.thinkTime = ThinkTime.inside(config);
+    this.scheduleCache = ScheduleCache.create(config, scheduleCount);
+    this.groupSize = GroupSize.create(config);
+    this.groupCommitter = config.getGroupCommitCommitters() > 0
+        ? GroupCommitter.create(config, this::writeBookings) : null;
   }
 
   /**
@@ -98,23 +112,58 @@ public class MongoFlightBenchmark extends Benchmark {
     Unchecked.runnable(this::setupDatabase).run();
   }
 
+  @Override
+  public void prepare() {
+    final Document lastSchedule = database.getCollection("schedule").find()
+        .sort(Sorts.descending("schedule_id"))
+        .limit(1)
+        .first();
+    FlightDataGenerator.checkScheduleCount(config,
+        lastSchedule == null ? 0 : lastSchedule.getInteger("schedule_id") + 1);
+    if (scheduleCache.isPreload()) {
+      int schedules = 0;
+      for (Document schedule : database.getCollection("schedule")
+          .aggregate(scheduleAggregate(Filters.lt("schedule_id", scheduleCache.getSize())))
+          .batchSize(10000)) {
+        scheduleCache.put(schedule.getInteger("schedule_id"),
+            ScheduleCache.durationMinutes(schedule.getString("duration")), capacity(schedule));
+        schedules++;
+      }
+      logger.info("Preloaded " + schedules + " schedules in the schedule cache");
+    }
+  }
+
   @Override
   protected void iteration() {
-    if (config.isDisableTransaction()) {
+    if (groupCommitter != null) {
+      Unchecked.runnable(this::groupCommitOperation).run();
+    } else if (config.isDisableTransaction()) {
       Unchecked.runnable(this::userOperationWithoutTransaction).run();
     } else {
       Unchecked.runnable(this::userOperation).run();
     }
   }
 
-  private Object generateUserId() {
-    Object userId = idGenerator.getAndIncrement();
-    return userId;
+  /**
+   * Generate a user ID that is unique among the workers of a distributed benchmark.
+   */
+  private long generateUserId() {
+    return idGenerator.getAndIncrement() * config.getWorkerCount() + config.getWorkerIndex();
+  }
+
+  /**
+   * Generate the users of the seats of the next group.
+   */
+  private long[] generateUserIds() {
+    final long[] userIds = new long[groupSize.next()];
+    for (int seat = 0; seat < userIds.length; seat++) {
+      userIds[seat] = generateUserId();
+    }
+    return userIds;
   }
 
-  private synchronized Object randomScheduleId() {
-    Object scheduleId = random.nextInt(MAX_SCHEDULE_ID);
-    return scheduleId;
+  private int randomScheduleId() {
+    return scheduleGenerator.next();
   }
 
   private void setupDatabase() throws Exception {
@@ -126,41 +175,62 @@ public class MongoFlightBenchmark extends Benchmark {
     database.getCollection("audit").drop();
     CSVFormat csvFormat = CSVFormat.newFormat(';')
         .withNullString("\\N");
-    logger.info("Importing aircraft");
     database.createCollection("aircraft");
-    MongoCollection<Document> aircraft = database.getCollection("aircraft");
-    CSVParser.parse(
-        MongoFlightBenchmark.class.getResourceAsStream("/aircrafts.txt"), 
-        StandardCharsets.UTF_8, csvFormat
-        .withHeader("name", "icao", "iata", "capacity", "country"))
-        .forEach(record -> aircraft.insertOne(new Document(
-            record.toMap().entrySet().stream()
-            .filter(e -> e.getValue() != null)
-            .collect(Collectors.toMap(e -> e.getKey(), e -> e.getValue())))));
-    aircraft.createIndex(Indexes.ascending("iata"));
-    logger.info("Importing schedule");
     database.createCollection("schedule");
-    MongoCollection<Document> schedule = database.getCollection("schedule");
-    AtomicInteger scheduleId = new AtomicInteger(0);
-    CSVParser.parse(
-        MongoFlightBenchmark.class.getResourceAsStream("/schedule.txt"), 
-        StandardCharsets.UTF_8, csvFormat
-        .withHeader("from_airport", "to_airport", "valid_from", "valid_until", "days",
-            "departure", "arrival", "flight", "aircraft", "duration"))
-        .forEach(record -> schedule.insertOne(new Document(
-            Stream.concat(
-                ImmutableMap.of("schedule_id", scheduleId.getAndIncrement()).entrySet().stream(),
-                record.toMap().entrySet().stream())
-            .filter(e -> e.getValue() != null)
-            .collect(Collectors.toMap(e -> e.getKey(), e -> e.getValue())))));
-    schedule.createIndex(Indexes.ascending("schedule_id"));
-    logger.info("Creating seat, payment and audit");
     database.createCollection("seat");
     database.createCollection("payment");
     database.createCollection("audit");
+    MongoCollection<Document> aircraft = database.getCollection("aircraft");
+    MongoCollection<Document> schedule = database.getCollection("schedule");
+    try (MongoLoader loader = MongoLoader.create(config)) {
+      logger.info("Importing data with " + loader.getParallelism() + " writers");
+      MongoLoader.RecordMapper aircraftMapper = MongoLoader.RecordMapper.of(
+          "name", "icao", "iata", "capacity", "country");
+      MongoLoader.RecordMapper scheduleMapper = MongoLoader.RecordMapper.of(
+          "from_airport", "to_airport", "valid_from", "valid_until", "days",
+          "departure", "arrival", "flight", "aircraft", "duration", "schedule_id")
+          .convert(Integer::parseInt, "schedule_id");
+      if (config.getScaleFactor() == null) {
+        loader.load(aircraft, MongoFlightBenchmark.class.getResourceAsStream("/aircrafts.txt"),
+            csvFormat, false, aircraftMapper::toDocument);
+        AtomicInteger scheduleId = new AtomicInteger(0);
+        loader.load(schedule, MongoFlightBenchmark.class.getResourceAsStream("/schedule.txt"),
+            csvFormat, false, record -> scheduleMapper.toDocument(
+                new Document("schedule_id", scheduleId.getAndIncrement()), record));
+      } else {
+        final FlightDataGenerator generator = FlightDataGenerator.create(config);
+        logger.info("Generating " + generator.getAircraft() + " aircraft, "
+            + generator.getSchedules() + " schedules and " + generator.getBookings()
+            + " bookings");
+        loader.load(aircraft, generator.aircraft(), csvFormat, false,
+            aircraftMapper::toDocument);
+        loader.load(schedule, generator.schedules(), csvFormat, false,
+            scheduleMapper::toDocument);
+        if (generator.getBookings() > 0) {
+          MongoLoader.RecordMapper seatMapper = MongoLoader.RecordMapper.of(
+              "user_id", "schedule_id", null, "date")
+              .convert(Long::parseLong, "user_id")
+              .convert(Integer::parseInt, "schedule_id")
+              .convert(Timestamp::valueOf, "date");
+          loader.load(database.getCollection("seat"), generator.seats(), csvFormat, false,
+              seatMapper::toDocument);
+          MongoLoader.RecordMapper paymentMapper = MongoLoader.RecordMapper.of(
+              "user_id", "amount", "date")
+              .convert(Long::parseLong, "user_id")
+              .convert(Integer::parseInt, "amount")
+              .convert(Timestamp::valueOf, "date");
+          loader.load(database.getCollection("payment"), generator.payments(), csvFormat,
+              false, paymentMapper::toDocument);
+        }
+      }
+    }
+    logger.info("Creating indexes");
+    aircraft.createIndex(Indexes.ascending("iata"));
+    schedule.createIndex(Indexes.ascending("schedule_id"));
   }
 
   private void userOperation() throws Exception {
+    long stepNanos = System.nanoTime();
     try (ClientSession session = client.startSession(
         ClientSessionOptions.builder()
         .causallyConsistent(!config.isMongoNotCasuallyConsistent())
@@ -170,66 +240,171 @@ public class MongoFlightBenchmark extends Benchmark {
           .readConcern(config.getMongoReadConcernAsReadConcern())
           .writeConcern(config.getMongoWriteConcernAsWriteConcern())
           .build());
+      stepNanos = SESSION_STEP.record(stepNanos);
       try {
         final Document userSchedule = getUserSchedule(session);
-        final Object userId = generateUserId();
+        SCHEDULE_STEP.record(stepNanos);
+        final long[] userIds = generateUserIds();
         final Instant now = Instant.now();
         final Timestamp currentTimestamp = Timestamp.from(now);
         final Date day = Date.valueOf(LocalDate.now().plus(
-            now.toEpochMilli() % config.getDayRange(), ChronoUnit.DAYS));
-        TimeUnit.SECONDS.sleep(config.getBookingSleep());
-        insertSeat(session, userSchedule, userId, currentTimestamp);
-        insertPayment(session, userSchedule, userId, currentTimestamp);
-        insertAudit(session, userSchedule, day, currentTimestamp);
+            dayGenerator.next(), ChronoUnit.DAYS));
+        thinkTime.sleep();
+        stepNanos = System.nanoTime();
+        insertSeats(session, userSchedule, userIds, currentTimestamp);
+        stepNanos = INSERT_SEAT_STEP.record(stepNanos);
+        insertPayments(session, userSchedule, userIds, currentTimestamp);
+        stepNanos = INSERT_PAYMENT_STEP.record(stepNanos);
+        insertAudit(session, userSchedule, userIds.length, day, currentTimestamp);
+        stepNanos = INSERT_AUDIT_STEP.record(stepNanos);
         session.commitTransaction();
+        COMMIT_STEP.record(stepNanos);
+        markSeats(userIds.length);
       } catch (Exception ex) {
-        try {
-          session.abortTransaction();
-        } catch (Exception abortEx) {
-          logger.error(abortEx);
-        }
-        if (ex instanceof MongoCommandException
-            && (((MongoCommandException) ex).hasErrorLabel(
-                MongoException.TRANSIENT_TRANSACTION_ERROR_LABEL)
-                || ((MongoCommandException) ex).hasErrorLabel(
-                    MongoException.UNKNOWN_TRANSACTION_COMMIT_RESULT_LABEL))) {
-          throw new RetryUserOperationException(ex);
-        }
-        throw ex;
+        throw handleFailure(session, ex);
       }
     }
   }
 
+  /**
+   * Abort the transaction of {@code session} and return the exception to throw for
+   * {@code ex}, retrying transient transaction errors.
+   */
+  private Exception handleFailure(ClientSession session, Exception ex) {
+    try {
+      session.abortTransaction();
+    } catch (Exception abortEx) {
+      logger.error(abortEx);
+    }
+    if (ex instanceof MongoCommandException
+        && (((MongoCommandException) ex).hasErrorLabel(
+            MongoException.TRANSIENT_TRANSACTION_ERROR_LABEL)
+            || ((MongoCommandException) ex).hasErrorLabel(
+                MongoException.UNKNOWN_TRANSACTION_COMMIT_RESULT_LABEL))) {
+      return new RetryUserOperationException(ex);
+    }
+    return ex;
+  }
+
   private void userOperationWithoutTransaction() throws Exception {
+    long stepNanos = System.nanoTime();
+    final Document userSchedule = getUserSchedule();
+    SCHEDULE_STEP.record(stepNanos);
+    final long[] userIds = generateUserIds();
+    final Instant now = Instant.now();
+    final Timestamp currentTimestamp = Timestamp.from(now);
+    final Date day = Date.valueOf(LocalDate.now().plus(
+        dayGenerator.next(), ChronoUnit.DAYS));
+    thinkTime.sleep();
+    stepNanos = System.nanoTime();
+    insertSeats(userSchedule, userIds, currentTimestamp);
+    stepNanos = INSERT_SEAT_STEP.record(stepNanos);
+    insertPayments(userSchedule, userIds, currentTimestamp);
+    stepNanos = INSERT_PAYMENT_STEP.record(stepNanos);
+    insertAudit(userSchedule, userIds.length, day, currentTimestamp);
+    INSERT_AUDIT_STEP.record(stepNanos);
+    markSeats(userIds.length);
+  }
+
+  /**
+   * Read the schedule outside of a transaction and hand the booking to the group committer.
+   */
+  private void groupCommitOperation() throws Exception {
+    long stepNanos = System.nanoTime();
     final Document userSchedule = getUserSchedule();
-    final Object userId = generateUserId();
+    SCHEDULE_STEP.record(stepNanos);
+    final long[] userIds = generateUserIds();
     final Instant now = Instant.now();
     final Timestamp currentTimestamp = Timestamp.from(now);
     final Date day = Date.valueOf(LocalDate.now().plus(
-        now.toEpochMilli() % config.getDayRange(), ChronoUnit.DAYS));
-    TimeUnit.SECONDS.sleep(config.getBookingSleep());
-    insertSeat(userSchedule, userId, currentTimestamp);
-    insertPayment(userSchedule, userId, currentTimestamp);
-    insertAudit(userSchedule, day, currentTimestamp);
+        dayGenerator.next(), ChronoUnit.DAYS));
+    thinkTime.sleep();
+    stepNanos = System.nanoTime();
+    groupCommitter.submit(new Booking(userSchedule.getInteger("schedule_id"),
+        userSchedule.getInteger("duration_minutes"), userIds, day, currentTimestamp));
+    GROUP_COMMIT_STEP.record(stepNanos);
+    markSeats(userIds.length);
+  }
+
+  /**
+   * Write a batch of bookings with {@code insertMany} and a single transaction, unless
+   * transactions are disabled.
+   */
+  private void writeBookings(List<Booking> bookings) throws Exception {
+    final List<Document> seats = new ArrayList<>();
+    final List<Document> payments = new ArrayList<>();
+    for (Booking booking : bookings) {
+      for (long userId : booking.getUserIds()) {
+        seats.add(new Document()
+            .append("user_id", userId)
+            .append("schedule_id", booking.getScheduleId())
+            .append("date", booking.getTimestamp()));
+        payments.add(new Document()
+            .append("user_id", userId)
+            .append("amount", booking.getAmount())
+            .append("date", booking.getTimestamp()));
+      }
+    }
+    final List<Booking.Audit> audits = Booking.audits(bookings);
+    if (config.isDisableTransaction()) {
+      database.getCollection("seat").insertMany(seats);
+      database.getCollection("payment").insertMany(payments);
+      for (Booking.Audit audit : audits) {
+        database.getCollection("audit").updateOne(auditToUpdate(audit),
+            auditUpdate(audit.getSeats(), audit.getTimestamp()), auditUpdateOptions());
+      }
+      return;
+    }
+    try (ClientSession session = client.startSession(
+        ClientSessionOptions.builder()
+        .causallyConsistent(!config.isMongoNotCasuallyConsistent())
+        .build())) {
+      session.startTransaction(TransactionOptions.builder()
+          .readPreference(config.getMongoReadPreferenceAsReadPreference())
+          .readConcern(config.getMongoReadConcernAsReadConcern())
+          .writeConcern(config.getMongoWriteConcernAsWriteConcern())
+          .build());
+      try {
+        database.getCollection("seat").insertMany(session, seats);
+        database.getCollection("payment").insertMany(session, payments);
+        for (Booking.Audit audit : audits) {
+          database.getCollection("audit").updateOne(session, auditToUpdate(audit),
+              auditUpdate(audit.getSeats(), audit.getTimestamp()), auditUpdateOptions());
+        }
+        session.commitTransaction();
+      } catch (Exception ex) {
+        throw handleFailure(session, ex);
+      }
+    }
   }
 
   private Document getUserSchedule(ClientSession session) {
+    final int scheduleId = randomScheduleId();
+    final long entry = scheduleCache.get(scheduleId);
+    if (entry != ScheduleCache.MISSING) {
+      return cachedUserSchedule(scheduleId, entry);
+    }
     AggregateIterable<Document> schedules = database.getCollection("schedule")
         .aggregate(session,
-            getUserScheduleAggregate());
-    return schedules.first();
+            scheduleAggregate(Filters.eq("schedule_id", scheduleId)));
+    return fillUserSchedule(scheduleId, schedules.first());
   }
 
   private Document getUserSchedule() {
+    final int scheduleId = randomScheduleId();
+    final long entry = scheduleCache.get(scheduleId);
+    if (entry != ScheduleCache.MISSING) {
+      return cachedUserSchedule(scheduleId, entry);
+    }
     AggregateIterable<Document> schedules = database.getCollection("schedule")
         .aggregate(
-            getUserScheduleAggregate());
-    return schedules.first();
+            scheduleAggregate(Filters.eq("schedule_id", scheduleId)));
+    return fillUserSchedule(scheduleId, schedules.first());
   }
 
-  private List<Bson> getUserScheduleAggregate() {
+  private List<Bson> scheduleAggregate(Bson filter) {
     return Arrays.asList(
-        Aggregates.match(Filters.eq("schedule_id", randomScheduleId())),
+        Aggregates.match(filter),
         Aggregates.lookup("aircraft", "aircraft", "iata", "aircraft"),
         Aggregates.project(new Document()
             .append("schedule_id", 1)
@@ -237,60 +412,132 @@ public class MongoFlightBenchmark extends Benchmark {
             .append("capacity", "$aircraft.capacity")));
   }
 
-  private void insertSeat(ClientSession session, Document userSchedule,
-      Object userId, Timestamp currentTimestamp) {
-    database.getCollection("seat").insertOne(session, 
-        createSeat(userSchedule, userId, currentTimestamp));
+  private Document cachedUserSchedule(int scheduleId, long entry) {
+    return new Document()
+        .append("schedule_id", scheduleId)
+        .append("duration_minutes", ScheduleCache.durationMinutes(entry))
+        .append("capacity", ScheduleCache.capacity(entry));
+  }
+
+  private Document fillUserSchedule(int scheduleId, Document userSchedule) {
+    final int durationMinutes = ScheduleCache.durationMinutes(
+        userSchedule.getString("duration"));
+    scheduleCache.fill(scheduleId, durationMinutes, capacity(userSchedule));
+    return userSchedule.append("duration_minutes", durationMinutes);
+  }
+
+  /**
+   * The capacity of the aircraft looked up for a schedule, -1 if there is none.
+   */
+  private static int capacity(Document schedule) {
+    final Object capacities = schedule.get("capacity");
+    if (!(capacities instanceof List) || ((List<?>) capacities).isEmpty()
+        || ((List<?>) capacities).get(0) == null) {
+      return -1;
+    }
+    return Integer.parseInt(((List<?>) capacities).get(0).toString());
+  }
+
+  /**
+   * Insert a seat for each user, with a single {@code insertMany} for a group.
+   */
+  private void insertSeats(ClientSession session, Document userSchedule,
+      long[] userIds, Timestamp currentTimestamp) {
+    if (userIds.length == 1) {
+      database.getCollection("seat").insertOne(session,
+          createSeat(userSchedule, userIds[0], currentTimestamp));
+      return;
+    }
+    database.getCollection("seat").insertMany(session,
+        createSeats(userSchedule, userIds, currentTimestamp));
+  }
+
+  private void insertSeats(Document userSchedule,
+      long[] userIds, Timestamp currentTimestamp) {
+    if (userIds.length == 1) {
+      database.getCollection("seat").insertOne(
+          createSeat(userSchedule, userIds[0], currentTimestamp));
+      return;
+    }
+    database.getCollection("seat").insertMany(
+        createSeats(userSchedule, userIds, currentTimestamp));
   }
 
-  private void insertSeat(Document userSchedule,
-      Object userId, Timestamp currentTimestamp) {
-    database.getCollection("seat").insertOne(createSeat(userSchedule, userId, currentTimestamp));
+  private List<Document> createSeats(Document userSchedule, long[] userIds,
+      Timestamp currentTimestamp) {
+    final List<Document> seats = new ArrayList<>(userIds.length);
+    for (long userId : userIds) {
+      seats.add(createSeat(userSchedule, userId, currentTimestamp));
+    }
+    return seats;
   }
 
-  private Document createSeat(Document userSchedule, Object userId, Timestamp currentTimestamp) {
+  private Document createSeat(Document userSchedule, long userId, Timestamp currentTimestamp) {
     return new Document()
         .append("user_id", userId)
         .append("schedule_id", userSchedule.get("schedule_id"))
         .append("date", currentTimestamp);
   }
 
-  private void insertPayment(ClientSession session, Document userSchedule,
-      Object userId, Timestamp currentTimestamp) {
-    database.getCollection("payment").insertOne(session, 
-        createPayment(userSchedule, userId, currentTimestamp));
+  /**
+   * Insert a payment for each user, with a single {@code insertMany} for a group.
+   */
+  private void insertPayments(ClientSession session, Document userSchedule,
+      long[] userIds, Timestamp currentTimestamp) {
+    if (userIds.length == 1) {
+      database.getCollection("payment").insertOne(session,
+          createPayment(userSchedule, userIds[0], currentTimestamp));
+      return;
+    }
+    database.getCollection("payment").insertMany(session,
+        createPayments(userSchedule, userIds, currentTimestamp));
+  }
+
+  private void insertPayments(Document userSchedule,
+      long[] userIds, Timestamp currentTimestamp) {
+    if (userIds.length == 1) {
+      database.getCollection("payment").insertOne(
+          createPayment(userSchedule, userIds[0], currentTimestamp));
+      return;
+    }
+    database.getCollection("payment").insertMany(
+        createPayments(userSchedule, userIds, currentTimestamp));
   }
 
-  private void insertPayment(Document userSchedule,
-      Object userId, Timestamp currentTimestamp) {
-    database.getCollection("payment").insertOne(
-        createPayment(userSchedule, userId, currentTimestamp));
+  private List<Document> createPayments(Document userSchedule, long[] userIds,
+      Timestamp currentTimestamp) {
+    final List<Document> payments = new ArrayList<>(userIds.length);
+    for (long userId : userIds) {
+      payments.add(createPayment(userSchedule, userId, currentTimestamp));
+    }
+    return payments;
   }
 
-  private Document createPayment(Document userSchedule, Object userId, Timestamp currentTimestamp) {
+  private Document createPayment(Document userSchedule, long userId,
+      Timestamp currentTimestamp) {
     return new Document()
         .append("user_id", userId)
-        .append("amount", Optional.ofNullable(userSchedule.getString("duration"))
-            .map(d -> d.split(":"))
-            .map(s -> Integer.parseInt(s[0]) * 60 + Integer.parseInt(s[1]))
-            .map(d -> Math.max(42, d * 42))
-            .orElse(42))
+        .append("amount", amount(userSchedule.getInteger("duration_minutes")))
         .append("date", currentTimestamp);
   }
 
-  private void insertAudit(ClientSession session, Document userSchedule,
+  private static int amount(int durationMinutes) {
+    return durationMinutes < 0 ? 42 : Math.max(42, durationMinutes * 42);
+  }
+
+  private void insertAudit(ClientSession session, Document userSchedule, int seats,
       Date day, Timestamp currentTimestamp) {
     database.getCollection("audit").updateOne(session, 
         auditToUpdate(userSchedule, day), 
-        auditUpdate(currentTimestamp),
+        auditUpdate(seats, currentTimestamp),
         auditUpdateOptions());
   }
 
-  private void insertAudit(Document userSchedule,
+  private void insertAudit(Document userSchedule, int seats,
       Date day, Timestamp currentTimestamp) {
     database.getCollection("audit").updateOne(
         auditToUpdate(userSchedule, day), 
-        auditUpdate(currentTimestamp),
+        auditUpdate(seats, currentTimestamp),
         auditUpdateOptions());
   }
   
@@ -300,10 +547,16 @@ public class MongoFlightBenchmark extends Benchmark {
         .append("day", day);
   }
 
-  private Document auditUpdate(Timestamp currentTimestamp) {
+  private Document auditToUpdate(Booking.Audit audit) {
+    return new Document()
+        .append("schedule_id", audit.getScheduleId())
+        .append("day", audit.getDay());
+  }
+
+  private Document auditUpdate(int seats, Timestamp currentTimestamp) {
     return new Document()
     .append("$set", new Document().append("date", currentTimestamp))
-    .append("$inc", new Document().append("seats_occupied", 1));
+    .append("$inc", new Document().append("seats_occupied", seats));
   }
 
   private UpdateOptions auditUpdateOptions() {
@@ -312,6 +565,10 @@ public class MongoFlightBenchmark extends Benchmark {
 
   @Override
   protected void internalClose() throws Exception {
+    if (groupCommitter != null) {
+      groupCommitter.close();
+    }
+    scheduleCache.logStatistics();
     client.close();
   }
 }
@@ -0,0 +1,259 @@
+/*-
+ *  § 
+ * benchmark: command-line
+ *    
+ * Copyright (C) 2019 OnGres, Inc.
+ *    
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * § §
+ */
+
+package com.ongres.benchmark;
+
+import com.google.common.base.Preconditions;
+import com.google.common.io.CountingInputStream;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.InsertManyOptions;
+import com.ongres.benchmark.config.model.Config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.bson.Document;
+
+/**
+ * Loads CSV inputs into MongoDB collections. Records are streamed from the input, converted
+ * to documents by column index and inserted in unordered batches by several writer threads.
+ * The documents, input bytes and their rate per second are logged for each collection.
+ */
+public class MongoLoader implements AutoCloseable {
+
+  private static final Logger logger = LogManager.getLogger();
+
+  private static final int BATCH_SIZE = 1000;
+  private static final InsertManyOptions INSERT_OPTIONS = new InsertManyOptions().ordered(false);
+
+  private final int parallelism;
+  private final ExecutorService executor;
+  private final Semaphore pendingBatches;
+
+  private MongoLoader(int parallelism) {
+    this.parallelism = parallelism;
+    this.executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+      Thread thread = new Thread(runnable, "benchmark-loader");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.pendingBatches = new Semaphore(parallelism * 2);
+  }
+
+  /**
+   * Create an instance of {@class MongoLoader} that uses up to {@code --load-parallelism}
+   * writer threads (but not more than {@code --max-connections}).
+   */
+  public static MongoLoader create(Config config) {
+    Preconditions.checkArgument(config.getLoadParallelism() > 0,
+        "--load-parallelism must be positive");
+    return new MongoLoader(Math.min(config.getLoadParallelism(), config.getMaxConnections()));
+  }
+
+  /**
+   * Insert the records of {@code input} into {@code collection}, converted with
+   * {@code toDocument} and skipping the first one when {@code header} is true, and wait for
+   * the inserts to complete.
+   */
+  public void load(MongoCollection<Document> collection, InputStream input, CSVFormat format,
+      boolean header, Function<CSVRecord, Document> toDocument) throws Exception {
+    load(collection, 1, partition -> input, format, header, toDocument);
+  }
+
+  /**
+   * Insert the records of the {@code partitions} inputs returned by {@code partition} into
+   * {@code collection}, reading (or generating) them in parallel, and wait for the inserts to
+   * complete. Records are converted with {@code toDocument}, that must be thread safe, and
+   * the first one of each input is skipped when {@code header} is true.
+   */
+  public void load(MongoCollection<Document> collection, int partitions,
+      IntFunction<InputStream> partition, CSVFormat format, boolean header,
+      Function<CSVRecord, Document> toDocument) throws Exception {
+    final long startNanos = System.nanoTime();
+    final List<Future<?>> futures = Collections.synchronizedList(new ArrayList<>());
+    final LongAdder documents = new LongAdder();
+    final LongAdder bytes = new LongAdder();
+    final ExecutorService readers = Executors.newFixedThreadPool(partitions, runnable -> {
+      Thread thread = new Thread(runnable, "benchmark-loader-reader");
+      thread.setDaemon(true);
+      return thread;
+    });
+    try {
+      final List<Future<?>> readerFutures = new ArrayList<>();
+      for (int index = 0; index < partitions; index++) {
+        final InputStream input = partition.apply(index);
+        readerFutures.add(readers.submit((Callable<Void>) () -> {
+          read(collection, input, format, header, toDocument, futures, documents, bytes);
+          return null;
+        }));
+      }
+      waitFor(readerFutures);
+      waitFor(futures);
+    } finally {
+      readers.shutdownNow();
+    }
+    final double seconds = Math.max(1L, System.nanoTime() - startNanos) / 1e9;
+    final double megabytes = bytes.sum() / (1024D * 1024D);
+    logger.info(String.format(Locale.US, "Loaded %s: %d documents, %.1f MB in %.3f s"
+        + " (%.0f documents/s, %.1f MB/s)", collection.getNamespace().getCollectionName(),
+        documents.sum(), megabytes, seconds, documents.sum() / seconds, megabytes / seconds));
+  }
+
+  private void read(MongoCollection<Document> collection, InputStream input, CSVFormat format,
+      boolean header, Function<CSVRecord, Document> toDocument, List<Future<?>> futures,
+      LongAdder documents, LongAdder bytes) throws IOException, InterruptedException {
+    try (CountingInputStream in = new CountingInputStream(input);
+        CSVParser parser = CSVParser.parse(in, StandardCharsets.UTF_8, format)) {
+      List<Document> batch = new ArrayList<>(BATCH_SIZE);
+      for (CSVRecord record : parser) {
+        if (header && record.getRecordNumber() == 1) {
+          continue;
+        }
+        batch.add(toDocument.apply(record));
+        if (batch.size() == BATCH_SIZE) {
+          futures.add(submit(collection, batch));
+          documents.add(batch.size());
+          batch = new ArrayList<>(BATCH_SIZE);
+        }
+      }
+      if (!batch.isEmpty()) {
+        futures.add(submit(collection, batch));
+        documents.add(batch.size());
+      }
+      bytes.add(in.getCount());
+    }
+  }
+
+  private Future<?> submit(MongoCollection<Document> collection, List<Document> batch)
+      throws InterruptedException {
+    pendingBatches.acquire();
+    try {
+      return executor.submit(() -> {
+        try {
+          collection.insertMany(batch, INSERT_OPTIONS);
+        } finally {
+          pendingBatches.release();
+        }
+      });
+    } catch (RuntimeException ex) {
+      pendingBatches.release();
+      throw ex;
+    }
+  }
+
+  private void waitFor(List<Future<?>> futures) throws Exception {
+    try {
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } catch (ExecutionException ex) {
+      for (Future<?> future : futures) {
+        future.cancel(true);
+      }
+      if (ex.getCause() instanceof Exception) {
+        throw (Exception) ex.getCause();
+      }
+      throw ex;
+    }
+  }
+
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  @Override
+  public void close() throws InterruptedException {
+    executor.shutdownNow();
+    executor.awaitTermination(1, TimeUnit.MINUTES);
+  }
+
+  /**
+   * Converts CSV records to documents by column index, skipping null values and the columns
+   * with a null name.
+   */
+  public static class RecordMapper {
+    private final String[] columns;
+    private final List<Function<String, Object>> converters;
+
+    private RecordMapper(String[] columns) {
+      this.columns = columns;
+      this.converters = new ArrayList<>(
+          Collections.<Function<String, Object>>nCopies(columns.length, value -> value));
+    }
+
+    /**
+     * Create a mapper of records with {@code columns} in this order.
+     */
+    public static RecordMapper of(String... columns) {
+      return new RecordMapper(columns.clone());
+    }
+
+    /**
+     * Convert the values of {@code columns} with {@code converter}.
+     */
+    public RecordMapper convert(Function<String, Object> converter, String... columns) {
+      for (String column : columns) {
+        final int index = Arrays.asList(this.columns).indexOf(column);
+        Preconditions.checkArgument(index >= 0, "Unknown column " + column);
+        converters.set(index, converter);
+      }
+      return this;
+    }
+
+    /**
+     * Append the values of {@code record} to {@code document}.
+     */
+    public Document toDocument(Document document, CSVRecord record) {
+      final int size = Math.min(record.size(), columns.length);
+      for (int index = 0; index < size; index++) {
+        final String value = record.get(index);
+        if (value != null && columns[index] != null) {
+          document.append(columns[index], converters.get(index).apply(value));
+        }
+      }
+      return document;
+    }
+
+    public Document toDocument(CSVRecord record) {
+      return toDocument(new Document(), record);
+    }
+  }
+}
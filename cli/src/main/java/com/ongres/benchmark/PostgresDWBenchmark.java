@@ -24,6 +24,7 @@ import com.google.common.base.Preconditions;
 import com.ongres.benchmark.config.model.Config;
 import com.ongres.benchmark.jdbc.ConnectionSupplier;
 
+import java.io.InputStream;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -34,12 +35,18 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.bson.Document;
 import org.jooq.lambda.Unchecked;
-import org.postgresql.copy.CopyManager;
-import org.postgresql.jdbc.PgConnection;
 import org.postgresql.util.PSQLException;
 
 public class PostgresDWBenchmark extends Benchmark {
 
+	private static final StepTimer CONNECTION_STEP = StepTimer.of("pDW", "connection");
+	private static final StepTimer ORDERS_STEP = StepTimer.of("pDW", "orders");
+	private static final StepTimer GROUPSET_STEP = StepTimer.of("pDW", "groupset");
+	private static final StepTimer CUBE_STEP = StepTimer.of("pDW", "cube");
+	private static final StepTimer ROLLUP_STEP = StepTimer.of("pDW", "rollup");
+	private static final StepTimer PIVOT_STEP = StepTimer.of("pDW", "pivot");
+	private static final StepTimer COMMIT_STEP = StepTimer.of("pDW", "commit");
+
 	private final Logger logger = LogManager.getLogger();
 
 
@@ -81,57 +88,86 @@ public class PostgresDWBenchmark extends Benchmark {
 
 			logger.info("Creating schema");
 			statement.execute("CREATE EXTENSION IF NOT EXISTS tablefunc");
-			statement.execute("create table product (" + "product_id integer PRIMARY KEY, " + "product_name text, "
+			statement.execute("create table product (" + "product_id integer not null, " + "product_name text, "
 					+ "product_category varchar(3), " + "market_id text, " + "min_price integer, " + "price integer, "
 					+ "product_status text, " + "cpty_id integer, " + "date timestamp without time zone, "
 					+ "product_description text)");
 			statement.execute(
-					"create table ord (" + "order_id integer PRIMARY KEY, " + "date timestamp without time zone, "
+					"create table ord (" + "order_id integer not null, " + "date timestamp without time zone, "
 							+ "customer_id integer, " + "status_id integer, " + "total real, " + "sales_id integer, "
 							+ "channel_id varchar(6), " + "product_id integer, " + "price real, " + "quantity real, "
 							+ "beta real, " + "vega real, " + "theta real, " + "vanna real, " + "gamma real)");
-			statement.execute("create table sales (" + "sales_id integer PRIMARY KEY not null," + "first_name text,"
+			statement.execute("create table sales (" + "sales_id integer not null," + "first_name text,"
 					+ "last_name text," + "email text," + "phone text," + "hire_date timestamp without time zone,"
 					+ "job_id varchar(10)," + "salary integer)");
-			statement.execute("create table customer (" + "customer_id integer PRIMARY KEY," + "first_name text,"
+			statement.execute("create table customer (" + "customer_id integer not null," + "first_name text,"
 					+ "last_name text," + "postal_code varchar(10)," + "city text," + "state text," + "country text)");
 			if (!config.isDisableTransaction()) {
 				connection.commit();
 			}
-			logger.info("Importing data");
-			PgConnection pgConnection = connection.unwrap(PgConnection.class);
-			CopyManager copyManager = pgConnection.getCopyAPI();
-			copyManager.copyIn("copy product from stdin" + " with csv header delimiter ',' null '\\N'",
-					PostgresDWBenchmark.class.getResourceAsStream("/product.csv"));
-			copyManager.copyIn("copy ord from stdin" + " with csv header delimiter ',' null '\\N'",
-					PostgresDWBenchmark.class.getResourceAsStream("/ord.csv"));
-			copyManager.copyIn("copy sales from stdin" + " with csv header delimiter ',' null '\\N'",
-					PostgresDWBenchmark.class.getResourceAsStream("/sales.csv"));
-			copyManager.copyIn("copy customer from stdin" + " with csv header delimiter ',' null '\\N'",
-					PostgresDWBenchmark.class.getResourceAsStream("/customer.csv"));
-			if (!config.isDisableTransaction()) {
-				connection.commit();
-			}
-			statement.execute("alter table ord add" + " foreign key (sales_id) references sales(sales_id)");
-			statement.execute("alter table ord add" + " foreign key (customer_id) references customer(customer_id)");
-			statement.execute("alter table ord add" + " foreign key (product_id) references product(product_id)");
-			if (!config.isDisableTransaction()) {
-				connection.commit();
+		}
+		try (PostgresLoader loader = PostgresLoader.create(connectionSupplier, config)) {
+			logger.info("Importing data with " + loader.getParallelism() + " connections");
+			if (config.getScaleFactor() != null) {
+				DWDataGenerator generator = DWDataGenerator.create(config);
+				logger.info("Generating " + generator.getOrders() + " orders, " + generator.getProducts() + " products, "
+						+ generator.getCustomers() + " customers and " + generator.getSales() + " sales");
+				loader.copy("product", "copy product from stdin with csv delimiter ','", false, generator.products());
+				loader.copy("sales", "copy sales from stdin with csv delimiter ','", false, generator.sales());
+				loader.copy("customer", "copy customer from stdin with csv delimiter ','", false,
+						generator.customers());
+				final int partitions = loader.getParallelism();
+				loader.copyPartitions("ord", "copy ord from stdin with csv delimiter ','", partitions,
+						partition -> generator.orders(partition, partitions));
+			} else {
+				loader.copy("product", "copy product from stdin with csv delimiter ',' null '\\N'", true,
+						resource("/product.csv"));
+				loader.copy("ord", "copy ord from stdin with csv delimiter ',' null '\\N'", true,
+						resource("/ord.csv"));
+				loader.copy("sales", "copy sales from stdin with csv delimiter ',' null '\\N'", true,
+						resource("/sales.csv"));
+				loader.copy("customer", "copy customer from stdin with csv delimiter ',' null '\\N'", true,
+						resource("/customer.csv"));
 			}
+			loader.await();
+			logger.info("Creating indexes and constraints");
+			loader.executeConcurrently("alter table product add primary key (product_id)",
+					"alter table ord add primary key (order_id)", "alter table sales add primary key (sales_id)",
+					"alter table customer add primary key (customer_id)");
+			// All the foreign keys are on ord, so they are added in a single statement
+			loader.executeConcurrently("alter table ord"
+					+ " add foreign key (sales_id) references sales(sales_id),"
+					+ " add foreign key (customer_id) references customer(customer_id),"
+					+ " add foreign key (product_id) references product(product_id)");
 		}
 	}
 
+	static InputStream resource(String name) {
+		InputStream input = PostgresDWBenchmark.class.getResourceAsStream(name);
+		Preconditions.checkState(input != null,
+				"DW data set resource " + name + " not found, use --scale-factor to generate it");
+		return input;
+	}
+
 	private void userOperation() throws Exception {
+		long stepNanos = System.nanoTime();
 		try (Connection connection = connectionSupplier.get()) {
+			stepNanos = CONNECTION_STEP.record(stepNanos);
 			try {
 				getOrders(connection);
+				stepNanos = ORDERS_STEP.record(stepNanos);
 				groupset(connection);
+				stepNanos = GROUPSET_STEP.record(stepNanos);
 				cube(connection);
+				stepNanos = CUBE_STEP.record(stepNanos);
 				rollup(connection);
+				stepNanos = ROLLUP_STEP.record(stepNanos);
 				pivot(connection);
+				stepNanos = PIVOT_STEP.record(stepNanos);
 				
 				if (!config.isDisableTransaction()) {
 					connection.commit();
+					COMMIT_STEP.record(stepNanos);
 				}
 			} catch (Exception ex) {
 				if (!config.isDisableTransaction()) {
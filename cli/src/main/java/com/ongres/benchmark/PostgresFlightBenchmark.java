@@ -22,7 +22,10 @@ package com.ongres.benchmark;
 
 import com.google.common.base.Preconditions;
 import com.ongres.benchmark.config.model.Config;
+import com.ongres.benchmark.config.model.PostgresMode;
 import com.ongres.benchmark.jdbc.ConnectionSupplier;
+import com.ongres.benchmark.jdbc.StatementCache;
+import com.ongres.benchmark.jdbc.StatementCache.CachedStatement;
 
 import java.sql.Connection;
 import java.sql.Date;
@@ -34,34 +37,92 @@ import java.sql.Timestamp;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
-import java.util.Optional;
-import java.util.Random;
-import java.util.concurrent.TimeUnit;
+import java.util.List;
+import java.util.Locale;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.bson.Document;
 import org.jooq.lambda.Unchecked;
-import org.postgresql.copy.CopyManager;
-import org.postgresql.jdbc.PgConnection;
 import org.postgresql.util.PSQLException;
 
 public class PostgresFlightBenchmark extends Benchmark {
 
-  private static final int MAX_SCHEDULE_ID = 14185;
+  private static final String GET_USER_SCHEDULE = "select schedule_id, duration, capacity"
+      + " from schedule"
+      + " inner join aircraft on (schedule.aircraft = aircraft.iata)"
+      + " where schedule.schedule_id = ?"
+      + " limit 1";
+  private static final String INSERT_SEAT =
+      "insert into seat (user_id,schedule_id,day,date) values (?,?,?,?)";
+  private static final String INSERT_PAYMENT =
+      "insert into payment (user_id,amount,date) values (?,?,?)";
+  private static final String INSERT_AUDIT =
+      "insert into audit (schedule_id,day,seats_occupied,date) values (?,?,?,?)"
+      + " on conflict (schedule_id,day)"
+      + " do update set seats_occupied = audit.seats_occupied + excluded.seats_occupied,"
+      + " date = excluded.date";
+  private static final String BOOK_CTE = "with booked_schedule as ("
+      + "select schedule_id, duration, capacity"
+      + " from schedule"
+      + " inner join aircraft on (schedule.aircraft = aircraft.iata)"
+      + " where schedule.schedule_id = ?"
+      + " limit 1),"
+      + " seat_insert as (insert into seat (user_id,schedule_id,day,date)"
+      + " select ?, schedule_id, ?, ? from booked_schedule),"
+      + " payment_insert as (insert into payment (user_id,amount,date)"
+      + " select ?, " + amount("duration") + ", ? from booked_schedule),"
+      + " audit_upsert as (insert into audit (schedule_id,day,seats_occupied,date)"
+      + " select schedule_id, ?, 1, ? from booked_schedule"
+      + " on conflict (schedule_id,day)"
+      + " do update set seats_occupied = audit.seats_occupied + 1, date = excluded.date)"
+      + " select schedule_id from booked_schedule";
+  private static final String BOOK_PROCEDURE = "call book_seat(?,?,?,?)";
+  private static final String BOOK_PIPELINE = GET_USER_SCHEDULE + ";"
+      + INSERT_SEAT + ";"
+      + "insert into payment (user_id,amount,date)"
+      + " select ?, " + amount("duration") + ", ? from schedule where schedule_id = ?;"
+      + INSERT_AUDIT;
+
+  private static final StepTimer CONNECTION_STEP = StepTimer.of("postgres", "connection");
+  private static final StepTimer SCHEDULE_STEP = StepTimer.of("postgres", "schedule");
+  private static final StepTimer INSERT_SEAT_STEP = StepTimer.of("postgres", "insert-seat");
+  private static final StepTimer INSERT_PAYMENT_STEP =
+      StepTimer.of("postgres", "insert-payment");
+  private static final StepTimer INSERT_AUDIT_STEP = StepTimer.of("postgres", "insert-audit");
+  private static final StepTimer BOOK_STEP = StepTimer.of("postgres", "book");
+  private static final StepTimer COMMIT_STEP = StepTimer.of("postgres", "commit");
+  private static final StepTimer GROUP_COMMIT_STEP = StepTimer.of("postgres", "group-commit");
 
   private final Logger logger = LogManager.getLogger();
 
   private final AtomicLong idGenerator = new AtomicLong();
-  private final Random random = new Random();
   private final ConnectionSupplier connectionSupplier;
   private final Config config;
+  private final int scheduleCount;
+  private final KeyGenerator scheduleGenerator;
+  private final KeyGenerator dayGenerator;
+  private final ThinkTime thinkTime;
+  private final StatementCache statementCache;
+  private final PostgresMode mode;
+  private final ScheduleCache scheduleCache;
+  private final GroupSize groupSize;
+  private final GroupCommitter<Booking> groupCommitter;
 
   private PostgresFlightBenchmark(ConnectionSupplier connectionSupplier, Config config) {
     super();
     this.connectionSupplier = connectionSupplier;
     this.config = config;
+    this.scheduleCount = FlightDataGenerator.scheduleCount(config);
+    this.scheduleGenerator = KeyGenerator.schedules(config, scheduleCount);
+    this.dayGenerator = KeyGenerator.days(config);
+    this.thinkTime = ThinkTime.inside(config);
+    this.statementCache = StatementCache.create(!config.isDisableStatementCache());
+    this.mode = config.getPostgresModeAsEnum();
+    this.scheduleCache = ScheduleCache.create(config, scheduleCount);
+    this.groupSize = GroupSize.create(config);
+    this.groupCommitter = config.getGroupCommitCommitters() > 0
+        ? GroupCommitter.create(config, this::writeBookings) : null;
   }
 
   /**
@@ -71,7 +132,25 @@ public class PostgresFlightBenchmark extends Benchmark {
       Config config) {
     Preconditions.checkArgument(config.getBookingSleep() >= 0);
     Preconditions.checkArgument(config.getDayRange() > 0);
-    return new PostgresFlightBenchmark(connectionSupplier, config);
+    Preconditions.checkArgument(config.getGroupCommitCommitters() == 0
+        || config.getPostgresModeAsEnum() == PostgresMode.STATEMENTS,
+        "--group-commit-committers requires --postgres-mode statements");
+    PostgresFlightBenchmark benchmark = new PostgresFlightBenchmark(connectionSupplier, config);
+    Preconditions.checkArgument(!benchmark.scheduleCache.isEnabled()
+        || benchmark.mode == PostgresMode.STATEMENTS,
+        "--schedule-cache requires --postgres-mode statements");
+    Preconditions.checkArgument(benchmark.groupSize.isSingle()
+        || benchmark.mode == PostgresMode.STATEMENTS,
+        "--group-size requires --postgres-mode statements");
+    Preconditions.checkArgument(benchmark.thinkTime.isNone()
+        || benchmark.mode == PostgresMode.STATEMENTS,
+        "--think-time-placement inside requires --postgres-mode statements, the other modes"
+        + " send the whole transaction at once");
+    MetricsManager.gauge(Metric.STATEMENT_CACHE_HIT_RATIO,
+        benchmark.statementCache::getHitRatio);
+    MetricsManager.gauge(Metric.SERVER_PREPARED_RATIO,
+        benchmark.statementCache::getServerPreparedRatio);
+    return benchmark;
   }
 
   @Override
@@ -79,19 +158,52 @@ public class PostgresFlightBenchmark extends Benchmark {
     Unchecked.runnable(this::databaseSetup).run();
   }
 
+  @Override
+  public void prepare() {
+    Unchecked.runnable(this::checkScheduleCount).run();
+    if (scheduleCache.isPreload()) {
+      Unchecked.runnable(this::preloadScheduleCache).run();
+    }
+  }
+
   @Override
   protected void iteration() {
-    Unchecked.runnable(this::userOperation).run();
+    if (groupCommitter != null) {
+      Unchecked.runnable(this::groupCommitOperation).run();
+    } else {
+      Unchecked.runnable(this::userOperation).run();
+    }
+  }
+
+  /**
+   * Generate a user ID that is unique among the workers of a distributed benchmark.
+   */
+  private long generateUserId() {
+    return idGenerator.getAndIncrement() * config.getWorkerCount() + config.getWorkerIndex();
+  }
+
+  /**
+   * Generate the users of the seats of the next group.
+   */
+  private long[] generateUserIds() {
+    final long[] userIds = new long[groupSize.next()];
+    for (int seat = 0; seat < userIds.length; seat++) {
+      userIds[seat] = generateUserId();
+    }
+    return userIds;
   }
 
-  private Object generateUserId() {
-    Object userId = idGenerator.getAndIncrement();
-    return userId;
+  private int randomScheduleId() {
+    return scheduleGenerator.next();
   }
 
-  private synchronized Object randomScheduleId() {
-    Object scheduleId = random.nextInt(MAX_SCHEDULE_ID);
-    return scheduleId;
+  /**
+   * SQL expression of the payment amount for the schedule {@code duration}, the same that
+   * {@link #insertPayments} computes.
+   */
+  private static String amount(String duration) {
+    return "greatest(42, coalesce((split_part(" + duration + ", ':', 1)::int * 60"
+        + " + split_part(" + duration + ", ':', 2)::int) * 42, 42))";
   }
 
   private void databaseSetup() throws Exception {
@@ -106,6 +218,7 @@ public class PostgresFlightBenchmark extends Benchmark {
       statement.execute("drop table if exists aircraft");
       logger.info("Creating schema");
       statement.execute("create extension if not exists \"uuid-ossp\"");
+      statement.execute("create sequence schedule_id minvalue 0");
       statement.execute("create table aircraft ("
           + "name text, "
           + "icao text, "
@@ -122,13 +235,13 @@ public class PostgresFlightBenchmark extends Benchmark {
           + "arrival text, "
           + "flight text, "
           + "aircraft text, "
-          + "duration text)");
+          + "duration text, "
+          + "schedule_id int default nextval('schedule_id'))");
       statement.execute("create table seat ("
           + "user_id bigint not null,"
           + "schedule_id int not null,"
           + "day date not null,"
-          + "date timestamp without time zone,"
-          + "primary key (user_id,schedule_id,day))");
+          + "date timestamp without time zone)");
       statement.execute("create table payment ("
           + "user_id bigint,"
           + "amount money,"
@@ -139,129 +252,439 @@ public class PostgresFlightBenchmark extends Benchmark {
           + "date timestamp without time zone,"
           + "seats_occupied int,"
           + "primary key (schedule_id,day))");
+      statement.execute("create or replace procedure book_seat("
+          + "p_user_id bigint, p_schedule_id int, p_day date, p_date timestamp)"
+          + " language plpgsql as $$"
+          + " declare"
+          + "   v_duration text;"
+          + " begin"
+          + "   select duration into v_duration"
+          + "   from schedule"
+          + "   inner join aircraft on (schedule.aircraft = aircraft.iata)"
+          + "   where schedule.schedule_id = p_schedule_id"
+          + "   limit 1;"
+          + "   if not found then"
+          + "     raise exception 'schedule % not found', p_schedule_id;"
+          + "   end if;"
+          + "   insert into seat (user_id,schedule_id,day,date)"
+          + "   values (p_user_id, p_schedule_id, p_day, p_date);"
+          + "   insert into payment (user_id,amount,date)"
+          + "   values (p_user_id, " + amount("v_duration") + ", p_date);"
+          + "   insert into audit (schedule_id,day,seats_occupied,date)"
+          + "   values (p_schedule_id, p_day, 1, p_date)"
+          + "   on conflict (schedule_id,day)"
+          + "   do update set seats_occupied = audit.seats_occupied + 1, date = p_date;"
+          + " end $$");
       if (!config.isDisableTransaction()) {
         connection.commit();
       }
-      logger.info("Importing data");
-      PgConnection pgConnection = connection.unwrap(PgConnection.class);
-      CopyManager copyManager = pgConnection.getCopyAPI();
-      copyManager.copyIn("copy aircraft from stdin"
-          + " with csv header delimiter ';' null '\\N'", 
-          PostgresFlightBenchmark.class.getResourceAsStream("/aircrafts.txt"));
-      copyManager.copyIn("copy schedule from stdin"
-          + " with csv header delimiter ';' null '\\N'", 
-          PostgresFlightBenchmark.class.getResourceAsStream("/schedule.txt"));
+    }
+    try (PostgresLoader loader = PostgresLoader.create(connectionSupplier, config)) {
+      logger.info("Importing data with " + loader.getParallelism() + " connections");
+      final String scheduleColumns = "from_airport, to_airport, valid_from, valid_until,"
+          + " days, departure, arrival, flight, aircraft, duration";
+      if (config.getScaleFactor() == null) {
+        loader.copy("aircraft", "copy aircraft from stdin"
+            + " with csv delimiter ';' null '\\N'", true,
+            PostgresFlightBenchmark.class.getResourceAsStream("/aircrafts.txt"));
+        loader.copy("schedule", "copy schedule (" + scheduleColumns + ") from stdin"
+            + " with csv delimiter ';' null '\\N'", true,
+            PostgresFlightBenchmark.class.getResourceAsStream("/schedule.txt"));
+      } else {
+        final FlightDataGenerator generator = FlightDataGenerator.create(config);
+        logger.info("Generating " + generator.getAircraft() + " aircraft, "
+            + generator.getSchedules() + " schedules and " + generator.getBookings()
+            + " bookings");
+        loader.copy("aircraft", "copy aircraft from stdin"
+            + " with csv delimiter ';' null '\\N'", false, generator.aircraft());
+        loader.copy("schedule", "copy schedule (" + scheduleColumns + ", schedule_id)"
+            + " from stdin with csv delimiter ';' null '\\N'", false, generator.schedules());
+        if (generator.getBookings() > 0) {
+          loader.copy("seat", "copy seat from stdin with csv delimiter ';' null '\\N'", false,
+              generator.seats());
+          loader.copy("payment", "copy payment from stdin with csv delimiter ';' null '\\N'",
+              false, generator.payments());
+        }
+      }
+      loader.await();
+      logger.info("Creating constraints");
+      loader.executeConcurrently("alter table schedule add primary key (schedule_id)",
+          "alter table seat add primary key (user_id,schedule_id,day)");
+      // Adding a foreign key locks the referenced table too, so they are added not valid and
+      // only validated (which does not block the other tables) concurrently
+      loader.executeConcurrently("alter table seat add constraint seat_schedule_id_fkey"
+          + " foreign key (schedule_id) references schedule(schedule_id) not valid");
+      loader.executeConcurrently("alter table audit add constraint audit_schedule_id_fkey"
+          + " foreign key (schedule_id) references schedule(schedule_id) not valid");
+      loader.executeConcurrently(
+          "alter table seat validate constraint seat_schedule_id_fkey",
+          "alter table audit validate constraint audit_schedule_id_fkey");
+    }
+  }
+
+  private void checkScheduleCount() throws SQLException {
+    try (Connection connection = connectionSupplier.get();
+        Statement statement = connection.createStatement()) {
+      final int loadedSchedules;
+      try (ResultSet resultSet = statement.executeQuery(
+          "select coalesce(max(schedule_id) + 1, 0) from schedule")) {
+        resultSet.next();
+        loadedSchedules = resultSet.getInt(1);
+      }
       if (!config.isDisableTransaction()) {
         connection.commit();
       }
-      statement.execute("create sequence schedule_id minvalue 0");
-      statement.execute("alter table schedule add column schedule_id int"
-          + " primary key default nextval('schedule_id')");
-      statement.execute("alter table seat add"
-          + " foreign key (schedule_id) references schedule(schedule_id)");
-      statement.execute("alter table audit add"
-          + " foreign key (schedule_id) references schedule(schedule_id)");
+      FlightDataGenerator.checkScheduleCount(config, loadedSchedules);
+    }
+  }
+
+  private void preloadScheduleCache() throws SQLException {
+    try (Connection connection = connectionSupplier.get();
+        PreparedStatement statement = connection.prepareStatement(
+            "select schedule_id, duration, capacity"
+            + " from schedule"
+            + " inner join aircraft on (schedule.aircraft = aircraft.iata)"
+            + " where schedule.schedule_id < ?")) {
+      statement.setFetchSize(10000);
+      statement.setInt(1, scheduleCache.getSize());
+      int schedules = 0;
+      try (ResultSet resultSet = statement.executeQuery()) {
+        while (resultSet.next()) {
+          scheduleCache.put(resultSet.getInt("schedule_id"),
+              ScheduleCache.durationMinutes(resultSet.getString("duration")),
+              capacity(resultSet));
+          schedules++;
+        }
+      }
       if (!config.isDisableTransaction()) {
         connection.commit();
       }
+      logger.info("Preloaded " + schedules + " schedules in the schedule cache");
     }
   }
 
   private void userOperation() throws Exception {
+    long stepNanos = System.nanoTime();
     try (Connection connection = connectionSupplier.get()) {
+      stepNanos = CONNECTION_STEP.record(stepNanos);
       try {
-        final Document userSchedule = getUserSchedule(connection);
-        final Object userId = generateUserId();
         final Instant now = Instant.now();
         final Timestamp currentTimestamp = Timestamp.from(now);
         final Date day = Date.valueOf(LocalDate.now().plus(
-            now.toEpochMilli() % config.getDayRange(), ChronoUnit.DAYS));
-        TimeUnit.SECONDS.sleep(config.getBookingSleep());
-        insertSeat(connection, userSchedule, userId, day, currentTimestamp);
-        insertPayment(connection, userSchedule, userId, currentTimestamp);
-        insertAudit(connection, userSchedule, day, currentTimestamp);
+            dayGenerator.next(), ChronoUnit.DAYS));
+        int seats = 1;
+        switch (mode) {
+          case STATEMENTS:
+            final int scheduleId = randomScheduleId();
+            final long userSchedule = getUserSchedule(connection, scheduleId);
+            SCHEDULE_STEP.record(stepNanos);
+            final long[] userIds = generateUserIds();
+            thinkTime.sleep();
+            stepNanos = System.nanoTime();
+            insertSeats(connection, scheduleId, userIds, day, currentTimestamp);
+            stepNanos = INSERT_SEAT_STEP.record(stepNanos);
+            insertPayments(connection, ScheduleCache.durationMinutes(userSchedule), userIds,
+                currentTimestamp);
+            stepNanos = INSERT_PAYMENT_STEP.record(stepNanos);
+            insertAudit(connection, scheduleId, userIds.length, day, currentTimestamp);
+            stepNanos = INSERT_AUDIT_STEP.record(stepNanos);
+            seats = userIds.length;
+            break;
+          case CTE:
+            bookWithCte(connection, generateUserId(), day, currentTimestamp);
+            stepNanos = BOOK_STEP.record(stepNanos);
+            break;
+          case PROCEDURE:
+            bookWithProcedure(connection, generateUserId(), day, currentTimestamp);
+            stepNanos = BOOK_STEP.record(stepNanos);
+            break;
+          case PIPELINE:
+            bookWithPipeline(connection, generateUserId(), day, currentTimestamp);
+            stepNanos = BOOK_STEP.record(stepNanos);
+            break;
+          default:
+            throw new IllegalStateException("Unknown Postgres mode " + mode);
+        }
         if (!config.isDisableTransaction()) {
           connection.commit();
+          COMMIT_STEP.record(stepNanos);
         }
+        markSeats(seats);
       } catch (Exception ex) {
-        if (!config.isDisableTransaction()) {
-          try {
-            connection.rollback();
-          } catch (Exception abortEx) {
-            logger.error(abortEx);
+        throw handleFailure(connection, ex);
+      }
+    }
+  }
+
+  /**
+   * Read the schedule in its own transaction and hand the booking to the group committer.
+   * The connection is released before waiting for the batch so that committers can get one.
+   */
+  private void groupCommitOperation() throws Exception {
+    final int scheduleId = randomScheduleId();
+    long userSchedule = scheduleCache.get(scheduleId);
+    if (userSchedule == ScheduleCache.MISSING) {
+      final long stepNanos = System.nanoTime();
+      try (Connection connection = connectionSupplier.get()) {
+        try {
+          userSchedule = readUserSchedule(connection, scheduleId);
+          if (!config.isDisableTransaction()) {
+            connection.commit();
           }
+        } catch (Exception ex) {
+          throw handleFailure(connection, ex);
         }
-        if (ex instanceof PSQLException
-            && (((PSQLException) ex).getSQLState().equals("40001"))) {
-          throw new RetryUserOperationException(ex);
+      }
+      SCHEDULE_STEP.record(stepNanos);
+    }
+    final long[] userIds = generateUserIds();
+    final Instant now = Instant.now();
+    final Timestamp currentTimestamp = Timestamp.from(now);
+    final Date day = Date.valueOf(LocalDate.now().plus(
+        dayGenerator.next(), ChronoUnit.DAYS));
+    thinkTime.sleep();
+    final long stepNanos = System.nanoTime();
+    groupCommitter.submit(new Booking(scheduleId, ScheduleCache.durationMinutes(userSchedule),
+        userIds, day, currentTimestamp));
+    GROUP_COMMIT_STEP.record(stepNanos);
+    markSeats(userIds.length);
+  }
+
+  /**
+   * Write a batch of bookings with multi-row inserts and a single commit.
+   */
+  private void writeBookings(List<Booking> bookings) throws Exception {
+    try (Connection connection = connectionSupplier.get()) {
+      try {
+        try (CachedStatement statement = statementCache.prepare(connection, INSERT_SEAT)) {
+          for (Booking booking : bookings) {
+            for (long userId : booking.getUserIds()) {
+              statement.get().setLong(1, userId);
+              statement.get().setInt(2, booking.getScheduleId());
+              statement.get().setDate(3, booking.getDay());
+              statement.get().setTimestamp(4, booking.getTimestamp());
+              statement.get().addBatch();
+            }
+          }
+          statement.executeBatch();
         }
-        if (ex instanceof PSQLException) {
-          throw new RuntimeException("PSQLException: " 
-              + ex.getMessage() + " (" + ((PSQLException) ex).getSQLState() + ")", ex);
+        try (CachedStatement statement = statementCache.prepare(connection, INSERT_PAYMENT)) {
+          for (Booking booking : bookings) {
+            for (long userId : booking.getUserIds()) {
+              statement.get().setLong(1, userId);
+              statement.get().setInt(2, booking.getAmount());
+              statement.get().setTimestamp(3, booking.getTimestamp());
+              statement.get().addBatch();
+            }
+          }
+          statement.executeBatch();
         }
-        throw ex;
+        try (CachedStatement statement = statementCache.prepare(connection, INSERT_AUDIT)) {
+          for (Booking.Audit audit : Booking.audits(bookings)) {
+            statement.get().setInt(1, audit.getScheduleId());
+            statement.get().setDate(2, audit.getDay());
+            statement.get().setInt(3, audit.getSeats());
+            statement.get().setTimestamp(4, audit.getTimestamp());
+            statement.get().addBatch();
+          }
+          statement.executeBatch();
+        }
+        if (!config.isDisableTransaction()) {
+          connection.commit();
+        }
+      } catch (Exception ex) {
+        throw handleFailure(connection, ex);
       }
     }
   }
 
-  private Document getUserSchedule(Connection connection) throws SQLException {
-    try (Statement statement = connection.createStatement();
-        ResultSet resultSet = statement.executeQuery("select schedule_id, duration, capacity"
-            + " from schedule "
-            + " inner join aircraft on (schedule.aircraft = aircraft.iata)"
-            + " where schedule.schedule_id = " + randomScheduleId()
-            + " limit 1")) {
-      Preconditions.checkState(resultSet.next());
-      return new Document()
-                  .append("_id", resultSet.getString("schedule_id"))
-                  .append("duration", resultSet.getString("duration"))
-                  .append("capacity", resultSet.getString("capacity"));
+  /**
+   * Rollback the transaction of {@code connection} and return the exception to throw for
+   * {@code ex}, retrying serialization failures.
+   */
+  private Exception handleFailure(Connection connection, Exception ex) {
+    if (!config.isDisableTransaction()) {
+      try {
+        connection.rollback();
+      } catch (Exception abortEx) {
+        logger.error(abortEx);
+      }
+    }
+    if (ex instanceof PSQLException
+        && (((PSQLException) ex).getSQLState().equals("40001"))) {
+      return new RetryUserOperationException(ex);
     }
+    if (ex instanceof PSQLException) {
+      return new RuntimeException("PSQLException: " 
+          + ex.getMessage() + " (" + ((PSQLException) ex).getSQLState() + ")", ex);
+    }
+    return ex;
   }
 
-  private void insertSeat(Connection connection, Document userSchedule,
-      Object userId, Date day, Timestamp currentTimestamp) throws SQLException {
-    try (PreparedStatement statement = connection.prepareStatement(
-        "insert into seat (user_id,schedule_id,day,date) values (?,?,?,?)")) {
-      statement.setString(1, userId.toString());
-      statement.setString(2, userSchedule.getString("_id"));
-      statement.setDate(3, day);
-      statement.setTimestamp(4, currentTimestamp);
-      statement.executeUpdate();
+  /**
+   * The schedule cache entry of the schedule, read from the database if it is not cached.
+   */
+  private long getUserSchedule(Connection connection, int scheduleId) throws SQLException {
+    final long userSchedule = scheduleCache.get(scheduleId);
+    if (userSchedule != ScheduleCache.MISSING) {
+      return userSchedule;
     }
+    return readUserSchedule(connection, scheduleId);
   }
 
-  private void insertPayment(Connection connection, Document userSchedule,
-      Object userId, Timestamp currentTimestamp) throws SQLException {
-    try (PreparedStatement statement = connection.prepareStatement(
-        "insert into payment (user_id,amount,date) values (?,?,?)")) {
-      statement.setString(1, userId.toString());
-      statement.setInt(2, Optional.ofNullable(userSchedule.getString("duration"))
-          .map(d -> d.split(":"))
-          .map(s -> Integer.parseInt(s[0]) * 60 + Integer.parseInt(s[1]))
-          .map(d -> Math.max(42, d * 42))
-          .orElse(42));
-      statement.setTimestamp(3, currentTimestamp);
-      statement.executeUpdate();
+  private long readUserSchedule(Connection connection, int scheduleId)
+      throws SQLException {
+    try (CachedStatement statement = statementCache.prepare(connection, GET_USER_SCHEDULE)) {
+      statement.get().setInt(1, scheduleId);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        Preconditions.checkState(resultSet.next());
+        final int durationMinutes = ScheduleCache.durationMinutes(
+            resultSet.getString("duration"));
+        final int capacity = capacity(resultSet);
+        scheduleCache.fill(scheduleId, durationMinutes, capacity);
+        return ScheduleCache.entry(durationMinutes, capacity);
+      }
+    }
+  }
+
+  private static int capacity(ResultSet resultSet) throws SQLException {
+    final int capacity = resultSet.getInt("capacity");
+    return resultSet.wasNull() ? -1 : capacity;
+  }
+
+  /**
+   * Insert a seat for each user, in a single batch for a group.
+   */
+  private void insertSeats(Connection connection, int scheduleId,
+      long[] userIds, Date day, Timestamp currentTimestamp) throws SQLException {
+    try (CachedStatement statement = statementCache.prepare(connection, INSERT_SEAT)) {
+      for (long userId : userIds) {
+        statement.get().setLong(1, userId);
+        statement.get().setInt(2, scheduleId);
+        statement.get().setDate(3, day);
+        statement.get().setTimestamp(4, currentTimestamp);
+        if (userIds.length > 1) {
+          statement.get().addBatch();
+        }
+      }
+      if (userIds.length > 1) {
+        statement.executeBatch();
+      } else {
+        statement.executeUpdate();
+      }
     }
   }
 
-  private void insertAudit(Connection connection, Document userSchedule,
+  /**
+   * Insert a payment for each user, in a single batch for a group.
+   */
+  private void insertPayments(Connection connection, int durationMinutes,
+      long[] userIds, Timestamp currentTimestamp) throws SQLException {
+    final int amount = durationMinutes < 0 ? 42 : Math.max(42, durationMinutes * 42);
+    try (CachedStatement statement = statementCache.prepare(connection, INSERT_PAYMENT)) {
+      for (long userId : userIds) {
+        statement.get().setLong(1, userId);
+        statement.get().setInt(2, amount);
+        statement.get().setTimestamp(3, currentTimestamp);
+        if (userIds.length > 1) {
+          statement.get().addBatch();
+        }
+      }
+      if (userIds.length > 1) {
+        statement.executeBatch();
+      } else {
+        statement.executeUpdate();
+      }
+    }
+  }
+
+  private void insertAudit(Connection connection, int scheduleId, int seats,
       Date day, Timestamp currentTimestamp) throws SQLException {
-    try (PreparedStatement statement = connection.prepareStatement(
-        "insert into audit (schedule_id,day,seats_occupied,date) values (?,?,1,?)"
-        + " on conflict (schedule_id,day)"
-        + " do update set seats_occupied = audit.seats_occupied + 1, date = ?")) {
-      statement.setString(1, userSchedule.getString("_id"));
-      statement.setDate(2, day);
-      statement.setTimestamp(3, currentTimestamp);
-      statement.setTimestamp(4, currentTimestamp);
+    try (CachedStatement statement = statementCache.prepare(connection, INSERT_AUDIT)) {
+      statement.get().setInt(1, scheduleId);
+      statement.get().setDate(2, day);
+      statement.get().setInt(3, seats);
+      statement.get().setTimestamp(4, currentTimestamp);
       statement.executeUpdate();
     }
   }
 
+  /**
+   * Book in a single round trip with a data-modifying CTE.
+   */
+  private void bookWithCte(Connection connection, long userId, Date day,
+      Timestamp currentTimestamp) throws SQLException {
+    try (CachedStatement statement = statementCache.prepare(connection, BOOK_CTE)) {
+      statement.get().setInt(1, randomScheduleId());
+      statement.get().setLong(2, userId);
+      statement.get().setDate(3, day);
+      statement.get().setTimestamp(4, currentTimestamp);
+      statement.get().setLong(5, userId);
+      statement.get().setTimestamp(6, currentTimestamp);
+      statement.get().setDate(7, day);
+      statement.get().setTimestamp(8, currentTimestamp);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        Preconditions.checkState(resultSet.next());
+      }
+    }
+  }
+
+  /**
+   * Book in a single round trip calling the {@code book_seat} procedure.
+   */
+  private void bookWithProcedure(Connection connection, long userId, Date day,
+      Timestamp currentTimestamp) throws SQLException {
+    try (CachedStatement statement = statementCache.prepare(connection, BOOK_PROCEDURE)) {
+      statement.get().setLong(1, userId);
+      statement.get().setInt(2, randomScheduleId());
+      statement.get().setDate(3, day);
+      statement.get().setTimestamp(4, currentTimestamp);
+      statement.execute();
+    }
+  }
+
+  /**
+   * Book in a single round trip sending all the statements in a batch, the driver sends the
+   * statements of a multi-statement query without waiting for the result of each one.
+   */
+  private void bookWithPipeline(Connection connection, long userId, Date day,
+      Timestamp currentTimestamp) throws SQLException {
+    final int scheduleId = randomScheduleId();
+    try (CachedStatement statement = statementCache.prepare(connection, BOOK_PIPELINE)) {
+      statement.get().setInt(1, scheduleId);
+      statement.get().setLong(2, userId);
+      statement.get().setInt(3, scheduleId);
+      statement.get().setDate(4, day);
+      statement.get().setTimestamp(5, currentTimestamp);
+      statement.get().setLong(6, userId);
+      statement.get().setTimestamp(7, currentTimestamp);
+      statement.get().setInt(8, scheduleId);
+      statement.get().setInt(9, scheduleId);
+      statement.get().setDate(10, day);
+      statement.get().setInt(11, 1);
+      statement.get().setTimestamp(12, currentTimestamp);
+      Preconditions.checkState(statement.execute());
+      try (ResultSet resultSet = statement.get().getResultSet()) {
+        Preconditions.checkState(resultSet.next());
+      }
+      while (statement.get().getMoreResults() || statement.get().getUpdateCount() != -1) {
+        // Consume the results of the inserts
+      }
+    }
+  }
+
   @Override
   protected void internalClose() throws Exception {
+    if (statementCache.getHits() + statementCache.getMisses() > 0) {
+      logger.info(String.format(Locale.US, "Statement cache hit ratio %.4f (%d hits, %d misses),"
+          + " executions reusing a server-side prepared statement ratio %.4f",
+          statementCache.getHitRatio(), statementCache.getHits(), statementCache.getMisses(),
+          statementCache.getServerPreparedRatio()));
+    }
+    if (groupCommitter != null) {
+      groupCommitter.close();
+    }
+    scheduleCache.logStatistics();
     connectionSupplier.close();
   }
 }
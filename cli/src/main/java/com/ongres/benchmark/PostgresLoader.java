@@ -0,0 +1,308 @@
+/*-
+ *  § 
+ * benchmark: command-line
+ *    
+ * Copyright (C) 2019 OnGres, Inc.
+ *    
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * § §
+ */
+
+package com.ongres.benchmark;
+
+import com.google.common.base.Preconditions;
+import com.ongres.benchmark.config.model.Config;
+import com.ongres.benchmark.jdbc.ConnectionSupplier;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.jdbc.PgConnection;
+
+/**
+ * Loads CSV inputs into Postgres splitting them in chunks that are copied in parallel, each
+ * on its own connection, and executes the statements that build indexes and constraints
+ * concurrently. Chunks are split at line ends outside quoted values so that any CSV input can
+ * be loaded. The rows and bytes per second of each table are logged.
+ */
+public class PostgresLoader implements AutoCloseable {
+
+  private static final Logger logger = LogManager.getLogger();
+
+  private static final int CHUNK_SIZE = 4 * 1024 * 1024;
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final ConnectionSupplier connectionSupplier;
+  private final boolean transactional;
+  private final int parallelism;
+  private final ExecutorService executor;
+  private final Semaphore pendingChunks;
+  private final Map<String, TableLoad> tables = new LinkedHashMap<>();
+  private final List<Future<?>> futures = new ArrayList<>();
+  private final AtomicReference<Exception> failure = new AtomicReference<>();
+
+  private PostgresLoader(ConnectionSupplier connectionSupplier, boolean transactional,
+      int parallelism) {
+    this.connectionSupplier = connectionSupplier;
+    this.transactional = transactional;
+    this.parallelism = parallelism;
+    this.executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+      Thread thread = new Thread(runnable, "benchmark-loader");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.pendingChunks = new Semaphore(parallelism * 2);
+  }
+
+  /**
+   * Create an instance of {@class PostgresLoader} that uses up to {@code --load-parallelism}
+   * connections (but not more than {@code --max-connections}).
+   */
+  public static PostgresLoader create(ConnectionSupplier connectionSupplier, Config config) {
+    Preconditions.checkArgument(config.getLoadParallelism() > 0,
+        "--load-parallelism must be positive");
+    return new PostgresLoader(connectionSupplier, !config.isDisableTransaction(),
+        Math.min(config.getLoadParallelism(), config.getMaxConnections()));
+  }
+
+  /**
+   * Copy {@code input} into {@code table} with the {@code copy ... from stdin} statement
+   * {@code copyStatement}, skipping the first line when {@code header} is true. This method
+   * returns once the input has been read, use {@link #await()} to wait for the copy.
+   */
+  public void copy(String table, String copyStatement, boolean header, InputStream input)
+      throws IOException, InterruptedException {
+    final TableLoad tableLoad;
+    synchronized (this) {
+      tableLoad = tables.computeIfAbsent(table, name -> new TableLoad());
+    }
+    split(input, header, CHUNK_SIZE, chunk -> submit(tableLoad, copyStatement, chunk));
+  }
+
+  /**
+   * Split {@code input} in chunks that end at a line end outside quoted values, each of them
+   * at least {@code chunkSize} bytes but the last, skipping the first line when {@code header}
+   * is true, and close it.
+   */
+  static void split(InputStream input, boolean header, int chunkSize, ChunkConsumer consumer)
+      throws IOException, InterruptedException {
+    try (InputStream in = input) {
+      final ByteArrayOutputStream chunk = new ByteArrayOutputStream(chunkSize + BUFFER_SIZE);
+      final byte[] buffer = new byte[BUFFER_SIZE];
+      boolean quoted = false;
+      boolean skipping = header;
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        int from = 0;
+        for (int index = 0; index < read; index++) {
+          if (buffer[index] == '"') {
+            quoted = !quoted;
+          } else if (buffer[index] == '\n' && !quoted) {
+            if (skipping) {
+              skipping = false;
+              from = index + 1;
+            } else if (chunk.size() + index + 1 - from >= chunkSize) {
+              chunk.write(buffer, from, index + 1 - from);
+              from = index + 1;
+              consumer.accept(chunk.toByteArray());
+              chunk.reset();
+            }
+          }
+        }
+        if (!skipping) {
+          chunk.write(buffer, from, read - from);
+        }
+      }
+      if (chunk.size() > 0) {
+        consumer.accept(chunk.toByteArray());
+      }
+    }
+  }
+
+  /**
+   * Copy the {@code partitions} inputs returned by {@code partition} into {@code table} with
+   * the {@code copy ... from stdin} statement {@code copyStatement}, reading (or generating)
+   * them in parallel. This method returns once all the inputs have been read, use
+   * {@link #await()} to wait for the copy.
+   */
+  public void copyPartitions(String table, String copyStatement, int partitions,
+      IntFunction<InputStream> partition) throws Exception {
+    final ExecutorService readers = Executors.newFixedThreadPool(partitions, runnable -> {
+      Thread thread = new Thread(runnable, "benchmark-loader-reader");
+      thread.setDaemon(true);
+      return thread;
+    });
+    try {
+      final List<Future<?>> readerFutures = new ArrayList<>();
+      for (int index = 0; index < partitions; index++) {
+        final int partitionIndex = index;
+        readerFutures.add(readers.submit((Callable<Void>) () -> {
+          copy(table, copyStatement, false, partition.apply(partitionIndex));
+          return null;
+        }));
+      }
+      waitFor(readerFutures);
+    } finally {
+      readers.shutdownNow();
+    }
+  }
+
+  private void submit(TableLoad tableLoad, String copyStatement, byte[] chunk)
+      throws IOException, InterruptedException {
+    pendingChunks.acquire();
+    if (failure.get() != null) {
+      pendingChunks.release();
+      throw new IOException("Load failed", failure.get());
+    }
+    try {
+      final Future<?> future = executor.submit(() -> {
+        try {
+          copyChunk(tableLoad, copyStatement, chunk);
+        } catch (Exception ex) {
+          failure.compareAndSet(null, ex);
+          throw ex;
+        } finally {
+          pendingChunks.release();
+        }
+        return null;
+      });
+      synchronized (this) {
+        futures.add(future);
+      }
+    } catch (RuntimeException ex) {
+      pendingChunks.release();
+      throw ex;
+    }
+  }
+
+  private void copyChunk(TableLoad tableLoad, String copyStatement, byte[] chunk)
+      throws Exception {
+    try (Connection connection = connectionSupplier.get()) {
+      CopyManager copyManager = connection.unwrap(PgConnection.class).getCopyAPI();
+      final long rows = copyManager.copyIn(copyStatement, new ByteArrayInputStream(chunk));
+      if (transactional) {
+        connection.commit();
+      }
+      tableLoad.rows.add(rows);
+      tableLoad.bytes.add(chunk.length);
+      tableLoad.endNanos.accumulateAndGet(System.nanoTime(), Math::max);
+    }
+  }
+
+  /**
+   * Wait for all the copies to complete and log the load throughput of each table.
+   */
+  public void await() throws Exception {
+    waitFor(futures);
+    futures.clear();
+    for (Map.Entry<String, TableLoad> entry : tables.entrySet()) {
+      final TableLoad tableLoad = entry.getValue();
+      final double seconds = Math.max(1L,
+          tableLoad.endNanos.get() - tableLoad.startNanos) / 1e9;
+      final long rows = tableLoad.rows.sum();
+      final double megabytes = tableLoad.bytes.sum() / (1024D * 1024D);
+      logger.info(String.format(Locale.US, "Loaded %s: %d rows, %.1f MB in %.3f s"
+          + " (%.0f rows/s, %.1f MB/s)", entry.getKey(), rows, megabytes, seconds,
+          rows / seconds, megabytes / seconds));
+    }
+    tables.clear();
+  }
+
+  /**
+   * Execute {@code statements} concurrently, each on its own connection, and wait for them
+   * to complete.
+   */
+  public void executeConcurrently(String... statements) throws Exception {
+    final List<Future<?>> statementFutures = new ArrayList<>();
+    for (String sql : Arrays.asList(statements)) {
+      statementFutures.add(executor.submit((Callable<Void>) () -> {
+        final long startNanos = System.nanoTime();
+        try (Connection connection = connectionSupplier.get();
+            Statement statement = connection.createStatement()) {
+          statement.execute(sql);
+          if (transactional) {
+            connection.commit();
+          }
+        }
+        logger.info(String.format(Locale.US, "Executed %s in %.3f s", sql,
+            (System.nanoTime() - startNanos) / 1e9));
+        return null;
+      }));
+    }
+    waitFor(statementFutures);
+  }
+
+  private void waitFor(List<Future<?>> futures) throws Exception {
+    try {
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } catch (ExecutionException ex) {
+      for (Future<?> future : futures) {
+        future.cancel(true);
+      }
+      if (ex.getCause() instanceof Exception) {
+        throw (Exception) ex.getCause();
+      }
+      throw ex;
+    }
+  }
+
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  @Override
+  public void close() throws InterruptedException {
+    executor.shutdownNow();
+    executor.awaitTermination(1, TimeUnit.MINUTES);
+  }
+
+  /**
+   * Receives the chunks of {@link #split(InputStream, boolean, int, ChunkConsumer)}.
+   */
+  interface ChunkConsumer {
+    void accept(byte[] chunk) throws IOException, InterruptedException;
+  }
+
+  private static class TableLoad {
+    private final long startNanos = System.nanoTime();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final AtomicLong endNanos = new AtomicLong(startNanos);
+  }
+}
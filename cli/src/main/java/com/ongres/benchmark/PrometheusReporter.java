@@ -0,0 +1,258 @@
+/*-
+ *  § 
+ * benchmark: command-line
+ *    
+ * Copyright (C) 2019 OnGres, Inc.
+ *    
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * § §
+ */
+package com.ongres.benchmark;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.ScheduledReporter;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Expose the metrics of a registry in OpenMetrics text format on {@code /metrics} so that
+ * Prometheus can scrape a running benchmark.
+ *
+ * <p>The text is rendered from snapshots of the metrics every reporting period and scrapes
+ * only return the last rendered text, so they never wait on the metrics nor on the workers.
+ * Timers are exposed in seconds and, like histograms, with buckets computed from their
+ * HdrHistogram and a gauge of their percentiles. All the samples are labeled with the benchmark
+ * target, the workload and the current phase.
+ */
+public class PrometheusReporter extends ScheduledReporter {
+
+  private static final Logger logger = LogManager.getLogger();
+
+  private static final String PREFIX = "benchmark_";
+  private static final String PATH = "/metrics";
+  private static final String CONTENT_TYPE =
+      "application/openmetrics-text; version=1.0.0; charset=utf-8";
+  private static final double[] QUANTILES = new double[] { 0.5D, 0.9D, 0.99D, 0.999D, 0.9999D };
+  private static final List<BigDecimal> SECONDS_BUCKETS = buckets(-5, 2);
+  private static final List<BigDecimal> VALUE_BUCKETS = buckets(0, 6);
+
+  private final HttpServer server;
+  private final Map<String, String> labels;
+  private volatile byte[] text = "# EOF\n".getBytes(StandardCharsets.UTF_8);
+
+  private PrometheusReporter(MetricRegistry registry, MetricFilter filter, HttpServer server,
+      Map<String, String> labels) {
+    super(registry, "prometheus-reporter", filter, TimeUnit.SECONDS, TimeUnit.SECONDS);
+    this.server = server;
+    this.labels = labels;
+  }
+
+  /**
+   * Start serving the metrics of {@code registry} on {@code port} rendering them every
+   * {@code period}, with the constant {@code labels} and the current phase.
+   */
+  public static PrometheusReporter start(MetricRegistry registry, MetricFilter filter, int port,
+      Map<String, String> labels, long period, TimeUnit unit) throws IOException {
+    final HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+    server.setExecutor(Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "benchmark-prometheus");
+      thread.setDaemon(true);
+      return thread;
+    }));
+    final PrometheusReporter reporter = new PrometheusReporter(registry, filter, server, labels);
+    server.createContext(PATH, reporter::scrape);
+    server.start();
+    reporter.start(0, period, unit);
+    logger.info("Serving metrics on http://" + server.getAddress().getHostString() + ":"
+        + server.getAddress().getPort() + PATH);
+    return reporter;
+  }
+
+  private void scrape(HttpExchange exchange) throws IOException {
+    try {
+      final byte[] body = text;
+      exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+      if (exchange.getRequestMethod().equals("HEAD")) {
+        exchange.sendResponseHeaders(200, -1);
+        return;
+      }
+      exchange.sendResponseHeaders(200, body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    } finally {
+      exchange.close();
+    }
+  }
+
+  @Override
+  @SuppressWarnings("rawtypes")
+  public void report(SortedMap<String, Gauge> gauges, SortedMap<String, Counter> counters,
+      SortedMap<String, Histogram> histograms, SortedMap<String, Meter> meters,
+      SortedMap<String, Timer> timers) {
+    final String labels = labels(MetricsManager.getPhase());
+    final StringBuilder builder = new StringBuilder();
+    for (Map.Entry<String, Gauge> entry : gauges.entrySet()) {
+      final Object value = entry.getValue().getValue();
+      if (value instanceof Number || value instanceof Boolean) {
+        final String name = name(entry.getKey());
+        family(builder, name, "gauge", null);
+        sample(builder, name, labels, value instanceof Boolean
+            ? ((Boolean) value ? 1D : 0D) : ((Number) value).doubleValue());
+      }
+    }
+    for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+      counter(builder, name(entry.getKey()), labels, entry.getValue().getCount());
+    }
+    for (Map.Entry<String, Meter> entry : meters.entrySet()) {
+      counter(builder, name(entry.getKey()), labels, entry.getValue().getCount());
+    }
+    for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+      histogram(builder, name(entry.getKey()), null, labels,
+          entry.getValue().getSnapshot(), VALUE_BUCKETS);
+    }
+    for (Map.Entry<String, Timer> entry : timers.entrySet()) {
+      histogram(builder, name(entry.getKey()) + "_seconds", "seconds", labels,
+          entry.getValue().getSnapshot(), SECONDS_BUCKETS);
+    }
+    builder.append("# EOF\n");
+    text = builder.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static void counter(StringBuilder builder, String name, String labels, long count) {
+    family(builder, name, "counter", null);
+    sample(builder, name + "_total", labels, count);
+  }
+
+  /**
+   * Append a histogram family with the cumulative count of each bucket and a gauge family of
+   * the quantiles. Timers record nanoseconds, so their values are scaled to seconds.
+   */
+  private static void histogram(StringBuilder builder, String name, String unit, String labels,
+      Snapshot snapshot, List<BigDecimal> buckets) {
+    final double scale = unit == null ? 1D : 1e9D;
+    final String quantileName = unit == null ? name + "_quantile"
+        : name.substring(0, name.length() - unit.length() - 1) + "_quantile_" + unit;
+    family(builder, name, "histogram", unit);
+    final long count;
+    if (snapshot instanceof StripedReservoir.HistogramSnapshot) {
+      final org.HdrHistogram.Histogram histogram =
+          ((StripedReservoir.HistogramSnapshot) snapshot).getHistogram();
+      count = histogram.getTotalCount();
+      for (BigDecimal bucket : buckets) {
+        final long value = bucket.scaleByPowerOfTen(unit == null ? 0 : 9).longValue();
+        sample(builder, name + "_bucket",
+            labels + ",le=\"" + bucket.toPlainString() + "\"",
+            count == 0 ? 0L : histogram.getCountBetweenValues(0L, value));
+      }
+    } else {
+      count = snapshot.size();
+    }
+    sample(builder, name + "_bucket", labels + ",le=\"+Inf\"", count);
+    sample(builder, name + "_count", labels, count);
+    sample(builder, name + "_sum", labels, snapshot.getMean() * count / scale);
+    family(builder, quantileName, "gauge", unit);
+    for (double quantile : QUANTILES) {
+      sample(builder, quantileName, labels + ",quantile=\"" + quantile + "\"",
+          snapshot.getValue(quantile) / scale);
+    }
+    sample(builder, quantileName, labels + ",quantile=\"1.0\"", snapshot.getMax() / scale);
+  }
+
+  private static void family(StringBuilder builder, String name, String type, String unit) {
+    builder.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    if (unit != null) {
+      builder.append("# UNIT ").append(name).append(' ').append(unit).append('\n');
+    }
+  }
+
+  private static void sample(StringBuilder builder, String name, String labels, long value) {
+    builder.append(name).append('{').append(labels).append("} ").append(value).append('\n');
+  }
+
+  private static void sample(StringBuilder builder, String name, String labels, double value) {
+    builder.append(name).append('{').append(labels).append("} ");
+    if (Double.isNaN(value)) {
+      builder.append("NaN");
+    } else if (Double.isInfinite(value)) {
+      builder.append(value > 0 ? "+Inf" : "-Inf");
+    } else {
+      builder.append(value);
+    }
+    builder.append('\n');
+  }
+
+  private String labels(String phase) {
+    return labels.entrySet().stream()
+        .map(label -> label.getKey() + "=\"" + escape(label.getValue()) + "\"")
+        .collect(Collectors.joining(",", "", ",phase=\"" + escape(phase) + "\""));
+  }
+
+  private static String name(String name) {
+    return PREFIX + name.replaceAll("[^a-zA-Z0-9_]+", "_").toLowerCase(Locale.US);
+  }
+
+  private static String escape(String value) {
+    return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+  }
+
+  /**
+   * Buckets 1, 2 and 5 times each power of ten from 10^{@code fromExponent} to
+   * 10^{@code toExponent}.
+   */
+  private static List<BigDecimal> buckets(int fromExponent, int toExponent) {
+    final List<BigDecimal> buckets = new ArrayList<>();
+    for (int exponent = fromExponent; exponent <= toExponent; exponent++) {
+      for (int mantissa : new int[] { 1, 2, 5 }) {
+        buckets.add(BigDecimal.valueOf(mantissa).scaleByPowerOfTen(exponent));
+      }
+    }
+    return Collections.unmodifiableList(buckets);
+  }
+
+  @Override
+  public void stop() {
+    try {
+      super.stop();
+    } finally {
+      server.stop(0);
+      ((ExecutorService) server.getExecutor()).shutdown();
+    }
+  }
+}
@@ -0,0 +1,211 @@
+/*-
+ *  § 
+ * benchmark: command-line
+ *    
+ * Copyright (C) 2019 OnGres, Inc.
+ *    
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * § §
+ */
+
+package com.ongres.benchmark;
+
+import com.ongres.benchmark.config.model.Config;
+
+import java.util.function.Function;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.bson.Document;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.R2dbcException;
+import io.r2dbc.spi.Readable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Data warehouse benchmark on the R2DBC PostgreSQL driver. The schema and the queries are
+ * the same as in {@link PostgresDWBenchmark} but no thread is held while waiting for the
+ * server.
+ */
+public class R2dbcPostgresDWBenchmark extends ReactiveBenchmark {
+
+  private static final String AGGREGATE_SELECT = "select customer.first_name as customer,"
+      + " product.product_name as product, sales.first_name as sales, "
+      + " sum(ord.price) as px, sum(ord.quantity) as amount, sum(ord.beta) as beta, "
+      + " sum(ord.gamma) as gamma, sum(ord.theta) as theta, sum(ord.vega) as vega,"
+      + " sum(ord.vanna) as vanna"
+      + " from ord " + " inner join customer on (customer.customer_id = ord.customer_id)"
+      + " inner join sales on (sales.sales_id = ord.sales_id)"
+      + " inner join product on (product.product_id = ord.product_id)";
+
+  private static final StepTimer CONNECTION_STEP = StepTimer.of("pDW-r2dbc", "connection");
+  private static final StepTimer ORDERS_STEP = StepTimer.of("pDW-r2dbc", "orders");
+  private static final StepTimer GROUPSET_STEP = StepTimer.of("pDW-r2dbc", "groupset");
+  private static final StepTimer CUBE_STEP = StepTimer.of("pDW-r2dbc", "cube");
+  private static final StepTimer ROLLUP_STEP = StepTimer.of("pDW-r2dbc", "rollup");
+  private static final StepTimer PIVOT_STEP = StepTimer.of("pDW-r2dbc", "pivot");
+  private static final StepTimer COMMIT_STEP = StepTimer.of("pDW-r2dbc", "commit");
+
+  private final Logger logger = LogManager.getLogger();
+
+  private final ConnectionPool connectionPool;
+  private final Benchmark schemaBenchmark;
+  private final Config config;
+
+  private R2dbcPostgresDWBenchmark(ConnectionPool connectionPool,
+      Benchmark schemaBenchmark, Config config) {
+    super();
+    this.connectionPool = connectionPool;
+    this.schemaBenchmark = schemaBenchmark;
+    this.config = config;
+  }
+
+  /**
+   * Create an instance of {@class R2dbcPostgresDWBenchmark}. The database setup is
+   * delegated to {@code schemaBenchmark}.
+   */
+  public static R2dbcPostgresDWBenchmark create(ConnectionPool connectionPool,
+      PostgresDWBenchmark schemaBenchmark, Config config) {
+    return new R2dbcPostgresDWBenchmark(connectionPool, schemaBenchmark, config);
+  }
+
+  @Override
+  public void setup() {
+    schemaBenchmark.setup();
+  }
+
+  @Override
+  protected Mono<Void> reactiveIteration() {
+    return userOperation();
+  }
+
+  private Mono<Void> userOperation() {
+    return Mono.usingWhen(
+        CONNECTION_STEP.time(connectionPool.create()),
+        connection -> beginTransaction(connection)
+            .then(ORDERS_STEP.time(getOrders(connection)))
+            .then(GROUPSET_STEP.time(groupset(connection)))
+            .then(CUBE_STEP.time(cube(connection)))
+            .then(ROLLUP_STEP.time(rollup(connection)))
+            .then(PIVOT_STEP.time(pivot(connection)))
+            .then(commitTransaction(connection))
+            .onErrorResume(ex -> rollbackTransaction(connection)
+                .then(Mono.error(userOperationError(ex)))),
+        Connection::close);
+  }
+
+  private Mono<Void> beginTransaction(Connection connection) {
+    if (config.isDisableTransaction()) {
+      return Mono.empty();
+    }
+    return Mono.from(connection.beginTransaction(
+        config.getSqlIsolationLevelAsIsolationLevel()));
+  }
+
+  private Mono<Void> commitTransaction(Connection connection) {
+    if (config.isDisableTransaction()) {
+      return Mono.empty();
+    }
+    return COMMIT_STEP.time(Mono.from(connection.commitTransaction()));
+  }
+
+  private Mono<Void> rollbackTransaction(Connection connection) {
+    if (config.isDisableTransaction()) {
+      return Mono.empty();
+    }
+    return Mono.from(connection.rollbackTransaction())
+        .onErrorResume(abortEx -> {
+          logger.error(abortEx);
+          return Mono.empty();
+        });
+  }
+
+  private Throwable userOperationError(Throwable ex) {
+    if (ex instanceof R2dbcException
+        && "40001".equals(((R2dbcException) ex).getSqlState())) {
+      return new RetryUserOperationException(ex);
+    }
+    if (ex instanceof R2dbcException) {
+      return new RuntimeException("R2dbcException: " 
+          + ex.getMessage() + " (" + ((R2dbcException) ex).getSqlState() + ")", ex);
+    }
+    return ex;
+  }
+
+  private Mono<Document> getOrders(Connection connection) {
+    return first(connection, "select *" + " from ord "
+        + " inner join customer on (customer.customer_id = ord.customer_id)"
+        + " inner join sales on (sales.sales_id = ord.sales_id)"
+        + " inner join product on (product.product_id = ord.product_id)" + " limit 100",
+        row -> new Document().append("order_id", row.get("order_id"))
+            .append("customer_id", row.get("customer_id"))
+            .append("product_id", row.get("product_id"))
+            .append("sales_id", row.get("sales_id")));
+  }
+
+  private Mono<Document> groupset(Connection connection) {
+    return first(connection, AGGREGATE_SELECT
+        + " group by grouping sets (customer.first_name, product.product_name,"
+        + " sales.first_name)",
+        this::toAggregate);
+  }
+
+  private Mono<Document> cube(Connection connection) {
+    return first(connection, AGGREGATE_SELECT
+        + " group by cube (customer.first_name, product.product_name, sales.first_name)",
+        this::toAggregate);
+  }
+
+  private Mono<Document> rollup(Connection connection) {
+    return first(connection, AGGREGATE_SELECT
+        + " group by rollup (customer.first_name, product.product_name, sales.first_name)",
+        this::toAggregate);
+  }
+
+  // pivot to get products sold by each sales
+  private Mono<Document> pivot(Connection connection) {
+    return first(connection, " select * from crosstab('"
+        + "select product.product_name as product, sales.first_name as sales, "
+        + "ord.quantity as amount from ord inner join sales on (sales.sales_id = ord.sales_id) "
+        + "inner join product on (product.product_id = ord.product_id) order by 1, 2') as "
+        + "sales (product text, sales1 real, sales2 real, sales3 real)",
+        row -> new Document().append("product", row.get("product"))
+            .append("sales1", row.get("sales1"))
+            .append("sales2", row.get("sales2"))
+            .append("sales3", row.get("sales3")));
+  }
+
+  private Document toAggregate(Readable row) {
+    return new Document().append("customer", row.get("customer"))
+        .append("product", row.get("product"))
+        .append("sales", row.get("sales"))
+        .append("px", row.get("px"));
+  }
+
+  private Mono<Document> first(Connection connection, String query,
+      Function<Readable, Document> mapper) {
+    return Flux.from(connection.createStatement(query).execute())
+        .flatMap(result -> result.map(mapper))
+        .next()
+        .switchIfEmpty(Mono.error(() -> new IllegalStateException("No rows returned")));
+  }
+
+  @Override
+  protected void internalClose() throws Exception {
+    connectionPool.dispose();
+    schemaBenchmark.close();
+  }
+}
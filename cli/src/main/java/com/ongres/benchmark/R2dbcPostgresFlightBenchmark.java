@@ -0,0 +1,267 @@
+/*-
+ *  § 
+ * benchmark: command-line
+ *    
+ * Copyright (C) 2019 OnGres, Inc.
+ *    
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * § §
+ */
+
+package com.ongres.benchmark;
+
+import com.google.common.base.Preconditions;
+import com.ongres.benchmark.config.model.Config;
+import com.ongres.benchmark.config.model.ScheduleCacheMode;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.bson.Document;
+import org.reactivestreams.Publisher;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.R2dbcException;
+import io.r2dbc.spi.Readable;
+import io.r2dbc.spi.Result;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Flight booking benchmark on the R2DBC PostgreSQL driver. The schema and the transaction
+ * are the same as in {@link PostgresFlightBenchmark} but no thread is held while waiting for
+ * the server.
+ */
+public class R2dbcPostgresFlightBenchmark extends ReactiveBenchmark {
+
+  private static final StepTimer CONNECTION_STEP =
+      StepTimer.of("postgres-r2dbc", "connection");
+  private static final StepTimer SCHEDULE_STEP = StepTimer.of("postgres-r2dbc", "schedule");
+  private static final StepTimer INSERT_SEAT_STEP =
+      StepTimer.of("postgres-r2dbc", "insert-seat");
+  private static final StepTimer INSERT_PAYMENT_STEP =
+      StepTimer.of("postgres-r2dbc", "insert-payment");
+  private static final StepTimer INSERT_AUDIT_STEP =
+      StepTimer.of("postgres-r2dbc", "insert-audit");
+  private static final StepTimer COMMIT_STEP = StepTimer.of("postgres-r2dbc", "commit");
+
+  private final Logger logger = LogManager.getLogger();
+
+  private final AtomicLong idGenerator = new AtomicLong();
+  private final ConnectionPool connectionPool;
+  private final Benchmark schemaBenchmark;
+  private final Config config;
+  private final KeyGenerator scheduleGenerator;
+  private final KeyGenerator dayGenerator;
+  private final ThinkTime thinkTime;
+
+  private R2dbcPostgresFlightBenchmark(ConnectionPool connectionPool,
+      Benchmark schemaBenchmark, Config config) {
+    super();
+    this.connectionPool = connectionPool;
+    this.schemaBenchmark = schemaBenchmark;
+    this.config = config;
+    this.scheduleGenerator = KeyGenerator.schedules(config,
+        FlightDataGenerator.scheduleCount(config));
+    this.dayGenerator = KeyGenerator.days(config);
+    this.thinkTime = ThinkTime.inside(config);
+  }
+
+  /**
+   * Create an instance of {@class R2dbcPostgresFlightBenchmark}. The database setup and the
+   * check of the loaded data are delegated to {@code schemaBenchmark}.
+   */
+  public static R2dbcPostgresFlightBenchmark create(ConnectionPool connectionPool,
+      PostgresFlightBenchmark schemaBenchmark, Config config) {
+    Preconditions.checkArgument(config.getBookingSleep() >= 0);
+    Preconditions.checkArgument(config.getDayRange() > 0);
+    Preconditions.checkArgument(
+        config.getScheduleCacheAsEnum() == ScheduleCacheMode.NONE,
+        "--schedule-cache is not supported by the reactive benchmarks");
+    Preconditions.checkArgument(config.getGroupSize() == 1,
+        "--group-size is not supported by the reactive benchmarks");
+    Preconditions.checkArgument(config.getGroupCommitCommitters() == 0,
+        "--group-commit-committers is not supported by the reactive benchmarks");
+    return new R2dbcPostgresFlightBenchmark(connectionPool, schemaBenchmark, config);
+  }
+
+  @Override
+  public void setup() {
+    schemaBenchmark.setup();
+  }
+
+  @Override
+  public void prepare() {
+    schemaBenchmark.prepare();
+  }
+
+  @Override
+  protected Mono<Void> reactiveIteration() {
+    return userOperation();
+  }
+
+  /**
+   * Generate a user ID that is unique among the workers of a distributed benchmark.
+   */
+  private Object generateUserId() {
+    Object userId = idGenerator.getAndIncrement() * config.getWorkerCount()
+        + config.getWorkerIndex();
+    return userId;
+  }
+
+  private Integer randomScheduleId() {
+    Integer scheduleId = scheduleGenerator.next();
+    return scheduleId;
+  }
+
+  private Mono<Void> userOperation() {
+    return Mono.usingWhen(
+        CONNECTION_STEP.time(connectionPool.create()),
+        connection -> beginTransaction(connection)
+            .then(SCHEDULE_STEP.time(getUserSchedule(connection)))
+            .flatMap(userSchedule -> {
+              final Object userId = generateUserId();
+              final Instant now = Instant.now();
+              final LocalDateTime currentTimestamp = LocalDateTime.ofInstant(now, ZoneOffset.UTC);
+              final LocalDate day = LocalDate.now().plus(
+                  dayGenerator.next(), ChronoUnit.DAYS);
+              return thinkTime.delay()
+                  .then(INSERT_SEAT_STEP.time(
+                      insertSeat(connection, userSchedule, userId, day, currentTimestamp)))
+                  .then(INSERT_PAYMENT_STEP.time(
+                      insertPayment(connection, userSchedule, userId, currentTimestamp)))
+                  .then(INSERT_AUDIT_STEP.time(
+                      insertAudit(connection, userSchedule, day, currentTimestamp)));
+            })
+            .then(commitTransaction(connection))
+            .onErrorResume(ex -> rollbackTransaction(connection)
+                .then(Mono.error(userOperationError(ex)))),
+        Connection::close);
+  }
+
+  private Mono<Void> beginTransaction(Connection connection) {
+    if (config.isDisableTransaction()) {
+      return Mono.empty();
+    }
+    return Mono.from(connection.beginTransaction(
+        config.getSqlIsolationLevelAsIsolationLevel()));
+  }
+
+  private Mono<Void> commitTransaction(Connection connection) {
+    if (config.isDisableTransaction()) {
+      return Mono.empty();
+    }
+    return COMMIT_STEP.time(Mono.from(connection.commitTransaction()));
+  }
+
+  private Mono<Void> rollbackTransaction(Connection connection) {
+    if (config.isDisableTransaction()) {
+      return Mono.empty();
+    }
+    return Mono.from(connection.rollbackTransaction())
+        .onErrorResume(abortEx -> {
+          logger.error(abortEx);
+          return Mono.empty();
+        });
+  }
+
+  private Throwable userOperationError(Throwable ex) {
+    if (ex instanceof R2dbcException
+        && "40001".equals(((R2dbcException) ex).getSqlState())) {
+      return new RetryUserOperationException(ex);
+    }
+    if (ex instanceof R2dbcException) {
+      return new RuntimeException("R2dbcException: " 
+          + ex.getMessage() + " (" + ((R2dbcException) ex).getSqlState() + ")", ex);
+    }
+    return ex;
+  }
+
+  private Mono<Document> getUserSchedule(Connection connection) {
+    return Flux.from(connection.createStatement("select schedule_id, duration, capacity"
+            + " from schedule "
+            + " inner join aircraft on (schedule.aircraft = aircraft.iata)"
+            + " where schedule.schedule_id = $1"
+            + " limit 1")
+        .bind(0, randomScheduleId())
+        .execute())
+        .flatMap(result -> result.map(this::toUserSchedule))
+        .next()
+        .switchIfEmpty(Mono.error(() -> new IllegalStateException("Schedule not found")));
+  }
+
+  private Document toUserSchedule(Readable row) {
+    return new Document()
+        .append("_id", row.get("schedule_id", Integer.class))
+        .append("duration", row.get("duration", String.class))
+        .append("capacity", row.get("capacity", Integer.class));
+  }
+
+  private Mono<Void> insertSeat(Connection connection, Document userSchedule,
+      Object userId, LocalDate day, LocalDateTime currentTimestamp) {
+    return execute(connection.createStatement(
+        "insert into seat (user_id,schedule_id,day,date) values ($1,$2,$3,$4)")
+        .bind(0, userId)
+        .bind(1, userSchedule.getInteger("_id"))
+        .bind(2, day)
+        .bind(3, currentTimestamp)
+        .execute());
+  }
+
+  private Mono<Void> insertPayment(Connection connection, Document userSchedule,
+      Object userId, LocalDateTime currentTimestamp) {
+    return execute(connection.createStatement(
+        "insert into payment (user_id,amount,date) values ($1,$2,$3)")
+        .bind(0, userId)
+        .bind(1, Optional.ofNullable(userSchedule.getString("duration"))
+            .map(d -> d.split(":"))
+            .map(s -> Integer.parseInt(s[0]) * 60 + Integer.parseInt(s[1]))
+            .map(d -> Math.max(42, d * 42))
+            .orElse(42))
+        .bind(2, currentTimestamp)
+        .execute());
+  }
+
+  private Mono<Void> insertAudit(Connection connection, Document userSchedule,
+      LocalDate day, LocalDateTime currentTimestamp) {
+    return execute(connection.createStatement(
+        "insert into audit (schedule_id,day,seats_occupied,date) values ($1,$2,1,$3)"
+        + " on conflict (schedule_id,day)"
+        + " do update set seats_occupied = audit.seats_occupied + 1, date = $4")
+        .bind(0, userSchedule.getInteger("_id"))
+        .bind(1, day)
+        .bind(2, currentTimestamp)
+        .bind(3, currentTimestamp)
+        .execute());
+  }
+
+  private Mono<Void> execute(Publisher<? extends Result> results) {
+    return Flux.from(results)
+        .flatMap(Result::getRowsUpdated)
+        .then();
+  }
+
+  @Override
+  protected void internalClose() throws Exception {
+    connectionPool.dispose();
+    schemaBenchmark.close();
+  }
+}
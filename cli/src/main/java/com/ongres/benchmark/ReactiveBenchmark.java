@@ -0,0 +1,71 @@
+/*-
+ *  § 
+ * benchmark: command-line
+ *    
+ * Copyright (C) 2019 OnGres, Inc.
+ *    
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * § §
+ */
+
+package com.ongres.benchmark;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * A benchmark whose iterations can run without blocking the calling thread.
+ */
+public abstract class ReactiveBenchmark extends Benchmark {
+
+  /**
+   * Run a single client iteration without blocking. The iteration starts on subscription
+   * and completes empty if the benchmark is closed.
+   *
+   * <p>The iteration exits before its completion is signalled: once the benchmark is closed the
+   * next iterations complete synchronously, so a subscriber that requests the next iteration
+   * on completion would otherwise never return to run the exit of this one and close() would
+   * wait for it forever.
+   */
+  public Mono<Void> runReactive() {
+    return Mono.defer(() -> {
+      final int stripe = enter();
+      if (stripe < 0) {
+        return Mono.<Void>empty();
+      }
+      final AtomicBoolean exited = new AtomicBoolean(false);
+      final Runnable exit = () -> {
+        if (exited.compareAndSet(false, true)) {
+          exit(stripe);
+        }
+      };
+      return reactiveIteration()
+          .doOnTerminate(exit)
+          .doOnCancel(exit);
+    });
+  }
+
+  /**
+   * Run a single client iteration blocking until it completes.
+   */
+  @Override
+  protected void iteration() {
+    reactiveIteration().block();
+  }
+
+  /**
+   * Run a single client iteration without blocking.
+   */
+  protected abstract Mono<Void> reactiveIteration();
+}
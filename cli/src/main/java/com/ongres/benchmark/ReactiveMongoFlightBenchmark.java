@@ -0,0 +1,399 @@
+/*-
+ *  § 
+ * benchmark: command-line
+ *    
+ * Copyright (C) 2019 OnGres, Inc.
+ *    
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * § §
+ */
+
+package com.ongres.benchmark;
+
+import com.google.common.base.Preconditions;
+import com.mongodb.ClientSessionOptions;
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoException;
+import com.mongodb.TransactionOptions;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.reactivestreams.client.ClientSession;
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import com.mongodb.reactivestreams.client.MongoDatabase;
+import com.ongres.benchmark.config.model.Config;
+import com.ongres.benchmark.config.model.ScheduleCacheMode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.jooq.lambda.Unchecked;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Flight booking benchmark on the MongoDB Reactive Streams driver. The transaction is the
+ * same as in {@link MongoFlightBenchmark} but no thread is held while waiting for the server.
+ */
+public class ReactiveMongoFlightBenchmark extends ReactiveBenchmark {
+
+  private static final int SETUP_BATCH_SIZE = 1000;
+  private static final StepTimer SESSION_STEP = StepTimer.of("mongo-reactive", "session");
+  private static final StepTimer SCHEDULE_STEP = StepTimer.of("mongo-reactive", "schedule");
+  private static final StepTimer INSERT_SEAT_STEP =
+      StepTimer.of("mongo-reactive", "insert-seat");
+  private static final StepTimer INSERT_PAYMENT_STEP =
+      StepTimer.of("mongo-reactive", "insert-payment");
+  private static final StepTimer INSERT_AUDIT_STEP =
+      StepTimer.of("mongo-reactive", "insert-audit");
+  private static final StepTimer COMMIT_STEP = StepTimer.of("mongo-reactive", "commit");
+
+  private final Logger logger = LogManager.getLogger();
+
+  private final AtomicLong idGenerator = new AtomicLong(0);
+  private final MongoClient client;
+  private final MongoDatabase database;
+  private final Config config;
+  private final KeyGenerator scheduleGenerator;
+  private final KeyGenerator dayGenerator;
+  private final ThinkTime thinkTime;
+
+  private ReactiveMongoFlightBenchmark(MongoClient client, MongoDatabase database,
+      Config config) {
+    super();
+    this.client = client;
+    this.database = database;
+    this.config = config;
+    this.scheduleGenerator = KeyGenerator.schedules(config,
+        FlightDataGenerator.scheduleCount(config));
+    this.dayGenerator = KeyGenerator.days(config);
+    this.thinkTime = ThinkTime.inside(config);
+  }
+
+  /**
+   * Create an instance of {@class ReactiveMongoFlightBenchmark}.
+   */
+  public static ReactiveMongoFlightBenchmark create(MongoClient client,
+      Config config) {
+    Preconditions.checkArgument(config.getBookingSleep() >= 0);
+    Preconditions.checkArgument(config.getDayRange() > 0);
+    Preconditions.checkArgument(
+        config.getScheduleCacheAsEnum() == ScheduleCacheMode.NONE,
+        "--schedule-cache is not supported by the reactive benchmarks");
+    Preconditions.checkArgument(config.getGroupSize() == 1,
+        "--group-size is not supported by the reactive benchmarks");
+    Preconditions.checkArgument(config.getGroupCommitCommitters() == 0,
+        "--group-commit-committers is not supported by the reactive benchmarks");
+    MongoDatabase database = client.getDatabase(config.getTarget().getDatabase().getName());
+    return new ReactiveMongoFlightBenchmark(client,
+        database,
+        config);
+  }
+
+  @Override
+  public void setup() {
+    Unchecked.runnable(this::setupDatabase).run();
+  }
+
+  @Override
+  public void prepare() {
+    final Document lastSchedule = Mono.from(database.getCollection("schedule").find()
+        .sort(Sorts.descending("schedule_id"))
+        .limit(1)
+        .first())
+        .block();
+    FlightDataGenerator.checkScheduleCount(config,
+        lastSchedule == null ? 0 : lastSchedule.getInteger("schedule_id") + 1);
+  }
+
+  @Override
+  protected Mono<Void> reactiveIteration() {
+    if (config.isDisableTransaction()) {
+      return userOperationWithoutTransaction();
+    }
+    return userOperation();
+  }
+
+  /**
+   * Generate a user ID that is unique among the workers of a distributed benchmark.
+   */
+  private Object generateUserId() {
+    Object userId = idGenerator.getAndIncrement() * config.getWorkerCount()
+        + config.getWorkerIndex();
+    return userId;
+  }
+
+  private Object randomScheduleId() {
+    Object scheduleId = scheduleGenerator.next();
+    return scheduleId;
+  }
+
+  private void setupDatabase() throws Exception {
+    logger.info("Cleanup");
+    Flux.just("aircraft", "schedule", "seat", "payment", "audit")
+        .concatMap(collection -> database.getCollection(collection).drop())
+        .blockLast();
+    Flux.just("aircraft", "schedule", "seat", "payment", "audit")
+        .concatMap(collection -> database.createCollection(collection))
+        .blockLast();
+    CSVFormat csvFormat = CSVFormat.newFormat(';')
+        .withNullString("\\N");
+    MongoCollection<Document> aircraft = database.getCollection("aircraft");
+    MongoCollection<Document> schedule = database.getCollection("schedule");
+    MongoLoader.RecordMapper aircraftMapper = MongoLoader.RecordMapper.of(
+        "name", "icao", "iata", "capacity", "country");
+    MongoLoader.RecordMapper scheduleMapper = MongoLoader.RecordMapper.of(
+        "from_airport", "to_airport", "valid_from", "valid_until", "days",
+        "departure", "arrival", "flight", "aircraft", "duration", "schedule_id")
+        .convert(Integer::parseInt, "schedule_id");
+    if (config.getScaleFactor() == null) {
+      logger.info("Importing aircraft");
+      insertRecords(aircraft, ReactiveMongoFlightBenchmark.class
+          .getResourceAsStream("/aircrafts.txt"), csvFormat, aircraftMapper::toDocument);
+      logger.info("Importing schedule");
+      AtomicInteger scheduleId = new AtomicInteger(0);
+      insertRecords(schedule, ReactiveMongoFlightBenchmark.class
+          .getResourceAsStream("/schedule.txt"), csvFormat,
+          record -> scheduleMapper.toDocument(
+              new Document("schedule_id", scheduleId.getAndIncrement()), record));
+    } else {
+      final FlightDataGenerator generator = FlightDataGenerator.create(config);
+      logger.info("Generating " + generator.getAircraft() + " aircraft, "
+          + generator.getSchedules() + " schedules and " + generator.getBookings()
+          + " bookings");
+      insertRecords(aircraft, generator.aircraft(), csvFormat, aircraftMapper::toDocument);
+      insertRecords(schedule, generator.schedules(), csvFormat, scheduleMapper::toDocument);
+      if (generator.getBookings() > 0) {
+        MongoLoader.RecordMapper seatMapper = MongoLoader.RecordMapper.of(
+            "user_id", "schedule_id", null, "date")
+            .convert(Long::parseLong, "user_id")
+            .convert(Integer::parseInt, "schedule_id")
+            .convert(Timestamp::valueOf, "date");
+        insertRecords(database.getCollection("seat"), generator.seats(), csvFormat,
+            seatMapper::toDocument);
+        MongoLoader.RecordMapper paymentMapper = MongoLoader.RecordMapper.of(
+            "user_id", "amount", "date")
+            .convert(Long::parseLong, "user_id")
+            .convert(Integer::parseInt, "amount")
+            .convert(Timestamp::valueOf, "date");
+        insertRecords(database.getCollection("payment"), generator.payments(), csvFormat,
+            paymentMapper::toDocument);
+      }
+    }
+    logger.info("Creating indexes");
+    Mono.from(aircraft.createIndex(Indexes.ascending("iata"))).block();
+    Mono.from(schedule.createIndex(Indexes.ascending("schedule_id"))).block();
+  }
+
+  private void insertRecords(MongoCollection<Document> collection, InputStream input,
+      CSVFormat csvFormat, Function<CSVRecord, Document> toDocument) throws IOException {
+    try (CSVParser parser = CSVParser.parse(input, StandardCharsets.UTF_8, csvFormat)) {
+      Flux.fromIterable(parser)
+          .map(toDocument)
+          .buffer(SETUP_BATCH_SIZE)
+          .concatMap(collection::insertMany)
+          .blockLast();
+    }
+  }
+
+  private Mono<Void> userOperation() {
+    return Mono.usingWhen(
+        SESSION_STEP.time(Mono.from(client.startSession(ClientSessionOptions.builder()
+            .causallyConsistent(!config.isMongoNotCasuallyConsistent())
+            .build()))),
+        session -> {
+          session.startTransaction(TransactionOptions.builder()
+              .readPreference(config.getMongoReadPreferenceAsReadPreference())
+              .readConcern(config.getMongoReadConcernAsReadConcern())
+              .writeConcern(config.getMongoWriteConcernAsWriteConcern())
+              .build());
+          return SCHEDULE_STEP.time(getUserSchedule(session))
+              .flatMap(userSchedule -> {
+                final Object userId = generateUserId();
+                final Instant now = Instant.now();
+                final Timestamp currentTimestamp = Timestamp.from(now);
+                final Date day = Date.valueOf(LocalDate.now().plus(
+                    dayGenerator.next(), ChronoUnit.DAYS));
+                return thinkTime.delay()
+                    .then(INSERT_SEAT_STEP.time(
+                        insertSeat(session, userSchedule, userId, currentTimestamp)))
+                    .then(INSERT_PAYMENT_STEP.time(
+                        insertPayment(session, userSchedule, userId, currentTimestamp)))
+                    .then(INSERT_AUDIT_STEP.time(
+                        insertAudit(session, userSchedule, day, currentTimestamp)));
+              })
+              .then(COMMIT_STEP.time(
+                  Mono.defer(() -> Mono.from(session.commitTransaction()))))
+              .onErrorResume(ex -> Mono.defer(() -> Mono.from(session.abortTransaction()))
+                  .onErrorResume(abortEx -> {
+                    logger.error(abortEx);
+                    return Mono.empty();
+                  })
+                  .then(Mono.error(userOperationError(ex))));
+        },
+        session -> Mono.fromRunnable(session::close));
+  }
+
+  private Throwable userOperationError(Throwable ex) {
+    if (ex instanceof MongoCommandException
+        && (((MongoCommandException) ex).hasErrorLabel(
+            MongoException.TRANSIENT_TRANSACTION_ERROR_LABEL)
+            || ((MongoCommandException) ex).hasErrorLabel(
+                MongoException.UNKNOWN_TRANSACTION_COMMIT_RESULT_LABEL))) {
+      return new RetryUserOperationException(ex);
+    }
+    return ex;
+  }
+
+  private Mono<Void> userOperationWithoutTransaction() {
+    return SCHEDULE_STEP.time(getUserSchedule())
+        .flatMap(userSchedule -> {
+          final Object userId = generateUserId();
+          final Instant now = Instant.now();
+          final Timestamp currentTimestamp = Timestamp.from(now);
+          final Date day = Date.valueOf(LocalDate.now().plus(
+              dayGenerator.next(), ChronoUnit.DAYS));
+          return thinkTime.delay()
+              .then(INSERT_SEAT_STEP.time(insertSeat(userSchedule, userId, currentTimestamp)))
+              .then(INSERT_PAYMENT_STEP.time(
+                  insertPayment(userSchedule, userId, currentTimestamp)))
+              .then(INSERT_AUDIT_STEP.time(insertAudit(userSchedule, day, currentTimestamp)));
+        });
+  }
+
+  private Mono<Document> getUserSchedule(ClientSession session) {
+    return Mono.from(database.getCollection("schedule")
+        .aggregate(session,
+            getUserScheduleAggregate())
+        .first());
+  }
+
+  private Mono<Document> getUserSchedule() {
+    return Mono.from(database.getCollection("schedule")
+        .aggregate(
+            getUserScheduleAggregate())
+        .first());
+  }
+
+  private List<Bson> getUserScheduleAggregate() {
+    return Arrays.asList(
+        Aggregates.match(Filters.eq("schedule_id", randomScheduleId())),
+        Aggregates.lookup("aircraft", "aircraft", "iata", "aircraft"),
+        Aggregates.project(new Document()
+            .append("schedule_id", 1)
+            .append("duration", 1)
+            .append("capacity", "$aircraft.capacity")));
+  }
+
+  private Mono<Void> insertSeat(ClientSession session, Document userSchedule,
+      Object userId, Timestamp currentTimestamp) {
+    return Mono.from(database.getCollection("seat").insertOne(session, 
+        createSeat(userSchedule, userId, currentTimestamp))).then();
+  }
+
+  private Mono<Void> insertSeat(Document userSchedule,
+      Object userId, Timestamp currentTimestamp) {
+    return Mono.from(database.getCollection("seat").insertOne(
+        createSeat(userSchedule, userId, currentTimestamp))).then();
+  }
+
+  private Document createSeat(Document userSchedule, Object userId, Timestamp currentTimestamp) {
+    return new Document()
+        .append("user_id", userId)
+        .append("schedule_id", userSchedule.get("schedule_id"))
+        .append("date", currentTimestamp);
+  }
+
+  private Mono<Void> insertPayment(ClientSession session, Document userSchedule,
+      Object userId, Timestamp currentTimestamp) {
+    return Mono.from(database.getCollection("payment").insertOne(session, 
+        createPayment(userSchedule, userId, currentTimestamp))).then();
+  }
+
+  private Mono<Void> insertPayment(Document userSchedule,
+      Object userId, Timestamp currentTimestamp) {
+    return Mono.from(database.getCollection("payment").insertOne(
+        createPayment(userSchedule, userId, currentTimestamp))).then();
+  }
+
+  private Document createPayment(Document userSchedule, Object userId, Timestamp currentTimestamp) {
+    return new Document()
+        .append("user_id", userId)
+        .append("amount", Optional.ofNullable(userSchedule.getString("duration"))
+            .map(d -> d.split(":"))
+            .map(s -> Integer.parseInt(s[0]) * 60 + Integer.parseInt(s[1]))
+            .map(d -> Math.max(42, d * 42))
+            .orElse(42))
+        .append("date", currentTimestamp);
+  }
+
+  private Mono<Void> insertAudit(ClientSession session, Document userSchedule,
+      Date day, Timestamp currentTimestamp) {
+    return Mono.from(database.getCollection("audit").updateOne(session, 
+        auditToUpdate(userSchedule, day), 
+        auditUpdate(currentTimestamp),
+        auditUpdateOptions())).then();
+  }
+
+  private Mono<Void> insertAudit(Document userSchedule,
+      Date day, Timestamp currentTimestamp) {
+    return Mono.from(database.getCollection("audit").updateOne(
+        auditToUpdate(userSchedule, day), 
+        auditUpdate(currentTimestamp),
+        auditUpdateOptions())).then();
+  }
+
+  private Document auditToUpdate(Document userSchedule, Date day) {
+    return new Document()
+        .append("schedule_id", userSchedule.get("schedule_id"))
+        .append("day", day);
+  }
+
+  private Document auditUpdate(Timestamp currentTimestamp) {
+    return new Document()
+    .append("$set", new Document().append("date", currentTimestamp))
+    .append("$inc", new Document().append("seats_occupied", 1));
+  }
+
+  private UpdateOptions auditUpdateOptions() {
+    return new UpdateOptions().upsert(true);
+  }
+
+  @Override
+  protected void internalClose() throws Exception {
+    client.close();
+  }
+}
@@ -0,0 +1,155 @@
+/*-
+ *  § 
+ * benchmark: command-line
+ *    
+ * Copyright (C) 2019 OnGres, Inc.
+ *    
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * § §
+ */
+package com.ongres.benchmark;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+import com.google.common.base.Preconditions;
+import com.ongres.benchmark.config.picocli.DurationConverter;
+
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.mpierce.metrics.reservoir.hdrhistogram.HdrHistogramReservoir;
+
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+/**
+ * Measure the cost of recording an iteration (a timer update and a meter mark) with the shared
+ * timers and meters against the striped ones used by the benchmark, run as
+ * {@code benchmark recording-cost [options]}.
+ *
+ * <p>For each # of threads, all the threads record as fast as they can for {@code --duration}
+ * and the time per recording of each thread and the total recordings per second are printed.
+ */
+@Command(name = RecordingCostCommand.NAME,
+    description = "Measure the cost of recording latencies with shared and striped metrics",
+    showDefaultValues = true)
+public class RecordingCostCommand implements Callable<Void> {
+
+  public static final String NAME = "recording-cost";
+
+  @Option(names = {"--threads"}, split = ",",
+      description = "Comma separated list of # of threads recording concurrently")
+  private List<Integer> threads = new ArrayList<>(
+      Arrays.asList(1, 2, 4, 8, 16, 32, 64, 128, 256));
+
+  @Option(names = {"--duration"},
+      description = "Length of each measurement",
+      converter = DurationConverter.class)
+  private String duration = "PT1S";
+
+  @Option(names = {"-h", "--help"}, usageHelp = true,
+      description = "Displays this help message and quits.")
+  private boolean helpRequested = false;
+
+  private final PrintStream out = System.out;
+
+  /**
+   * Parse {@code args} and run the command.
+   */
+  public static void run(String... args) throws Exception {
+    CommandLine commandLine = new CommandLine(new RecordingCostCommand());
+    commandLine.parseArgs(args);
+    commandLine.<RecordingCostCommand>getCommand().call();
+  }
+
+  @Override
+  public Void call() throws Exception {
+    if (helpRequested) {
+      new CommandLine(this).usage(out);
+      return null;
+    }
+    Preconditions.checkArgument(threads.stream().allMatch(count -> count > 0),
+        "--threads must be positive");
+    final long durationNanos = Duration.parse(duration).toNanos();
+    Preconditions.checkArgument(durationNanos > 0, "--duration must be positive");
+    out.println(String.format(Locale.US, "%8s %8s %16s %16s",
+        "threads", "metrics", "ns/op", "ops/s"));
+    for (int count : threads) {
+      measure("shared", count, durationNanos,
+          new Timer(new HdrHistogramReservoir()), new Meter());
+      measure("striped", count, durationNanos,
+          new Timer(new StripedMeter(), new Histogram(new StripedReservoir()),
+              Clock.defaultClock()),
+          new StripedMeter());
+    }
+    return null;
+  }
+
+  private void measure(String name, int count, long durationNanos, Timer timer, Meter meter)
+      throws InterruptedException {
+    final CountDownLatch start = new CountDownLatch(1);
+    final LongAdder operations = new LongAdder();
+    final LongAdder elapsedNanos = new LongAdder();
+    final List<Thread> recorders = new ArrayList<>(count);
+    for (int index = 0; index < count; index++) {
+      final long seed = index;
+      Thread recorder = new Thread(() -> {
+        try {
+          start.await();
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+        long value = seed;
+        long recorded = 0;
+        final long startNanos = System.nanoTime();
+        long nowNanos = startNanos;
+        while (nowNanos - startNanos < durationNanos) {
+          for (int batch = 0; batch < 1024; batch++) {
+            value = value * 6364136223846793005L + 1442695040888963407L;
+            timer.update((value >>> 44) + 1000L, TimeUnit.NANOSECONDS);
+            meter.mark();
+          }
+          recorded += 1024;
+          nowNanos = System.nanoTime();
+        }
+        operations.add(recorded);
+        elapsedNanos.add(nowNanos - startNanos);
+      }, "recording-cost-" + index);
+      recorder.start();
+      recorders.add(recorder);
+    }
+    final long startNanos = System.nanoTime();
+    start.countDown();
+    for (Thread recorder : recorders) {
+      recorder.join();
+    }
+    final long wallNanos = System.nanoTime() - startNanos;
+    Preconditions.checkState(timer.getCount() == operations.sum()
+        && meter.getCount() == operations.sum(), "recordings were lost");
+    out.println(String.format(Locale.US, "%8d %8s %16.1f %16.0f",
+        count, name, elapsedNanos.sum() / (double) operations.sum(),
+        operations.sum() * 1e9D / wallNanos));
+  }
+}
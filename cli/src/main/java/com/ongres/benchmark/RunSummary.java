@@ -0,0 +1,282 @@
+/*-
+ *  § 
+ * benchmark: command-line
+ *    
+ * Copyright (C) 2019 OnGres, Inc.
+ *    
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * § §
+ */
+package com.ongres.benchmark;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.mongodb.client.MongoClient;
+import com.ongres.benchmark.config.ConfigUtils;
+import com.ongres.benchmark.config.Version;
+import com.ongres.benchmark.config.model.Config;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+
+import org.postgresql.util.DriverInfo;
+
+import io.r2dbc.postgresql.PostgresqlConnectionFactory;
+
+/**
+ * Machine readable summary of a run: configuration, versions, throughput, latency percentiles
+ * of each timer, retries and errors, of a run or of the merged workers of a distributed run.
+ * It is written to the {@code --summary} file when the run ends and appended as a line to the
+ * run registry, that the {@code runs} command lists.
+ */
+public class RunSummary {
+
+  private static final DateTimeFormatter ID_FORMAT =
+      DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss", Locale.US).withZone(ZoneOffset.UTC);
+  private static final double[] PERCENTILES = new double[] { 50D, 90D, 99D, 99.9D, 99.99D };
+
+  private final Config config;
+  private final Instant startedAt = Instant.now();
+  private long setupNanos;
+
+  private RunSummary(Config config) {
+    this.config = config;
+  }
+
+  /**
+   * Start the summary of a run configured by {@code config}.
+   */
+  public static RunSummary create(Config config) {
+    return new RunSummary(config);
+  }
+
+  /**
+   * The run registry of {@code --run-registry} or the default one in the user home.
+   */
+  public static Path registry(String runRegistry) {
+    return runRegistry != null ? Paths.get(runRegistry)
+        : Paths.get(System.getProperty("user.home"), ".benchmark", "runs.jsonl");
+  }
+
+  public void setSetupNanos(long setupNanos) {
+    this.setupNanos = setupNanos;
+  }
+
+  /**
+   * Write the summary of the metrics of {@code registry} and {@code benchmark} to the
+   * {@code --summary} file and append it to the run registry. {@code failure} is the exception
+   * that ended the run, if any.
+   */
+  public void write(MetricRegistry registry, BenchmarkRunner benchmark, Throwable failure)
+      throws IOException {
+    final ObjectMapper mapper = new ObjectMapper();
+    write(mapper, toJson(mapper, registry, benchmark, failure));
+  }
+
+  /**
+   * Write the summary of the metrics merged by the coordinator of a distributed run to the
+   * {@code --summary} file and append it to the run registry.
+   */
+  public void write(Coordinator.Result result) throws IOException {
+    final ObjectMapper mapper = new ObjectMapper();
+    write(mapper, toJson(mapper, result));
+  }
+
+  private void write(ObjectMapper mapper, ObjectNode summary) throws IOException {
+    Files.write(Paths.get(config.getSummary()), mapper
+        .enable(SerializationFeature.INDENT_OUTPUT).writeValueAsBytes(summary));
+    if (!config.isSkipRunRegistry()) {
+      final Path runRegistry = registry(config.getRunRegistry());
+      if (runRegistry.toAbsolutePath().getParent() != null) {
+        Files.createDirectories(runRegistry.toAbsolutePath().getParent());
+      }
+      Files.write(runRegistry,
+          (new ObjectMapper().writeValueAsString(summary) + "\n")
+            .getBytes(StandardCharsets.UTF_8),
+          StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+  }
+
+  @SuppressWarnings("rawtypes")
+  private ObjectNode toJson(ObjectMapper mapper, MetricRegistry registry,
+      BenchmarkRunner benchmark, Throwable failure) throws IOException {
+    final double durationSeconds = benchmark.getMeasuredNanos() / 1e9D;
+    final Throwable cause = failure instanceof ExecutionException
+        && failure.getCause() != null ? failure.getCause() : failure;
+    final ObjectNode summary = header(mapper, durationSeconds,
+        cause == null ? null : cause.getClass().getName(),
+        cause == null ? null : cause.getMessage());
+
+    final long iterations = registry.meter(Metric.ITERATIONS.getName()).getCount();
+    final ObjectNode throughput = summary.putObject("throughput");
+    throughput.put("iterations", iterations);
+    throughput.put("iterationsPerSecond", durationSeconds > 0 ? iterations / durationSeconds : 0D);
+    final long seats = registry.meter(Metric.SEATS.getName()).getCount();
+    if (seats > 0) {
+      throughput.put("seats", seats);
+      throughput.put("seatsPerSecond", durationSeconds > 0 ? seats / durationSeconds : 0D);
+    }
+
+    final ObjectNode latency = summary.putObject("latency");
+    for (Map.Entry<String, Timer> timer : registry.getTimers().entrySet()) {
+      snapshot(latency.putObject(timer.getKey()), timer.getValue().getSnapshot(), 1e6D);
+    }
+    final ObjectNode histograms = summary.putObject("histograms");
+    for (Map.Entry<String, Histogram> histogram : registry.getHistograms().entrySet()) {
+      snapshot(histograms.putObject(histogram.getKey()), histogram.getValue().getSnapshot(), 1D);
+    }
+    final ObjectNode meters = summary.putObject("meters");
+    for (Map.Entry<String, Meter> meter : registry.getMeters().entrySet()) {
+      meters.put(meter.getKey(), meter.getValue().getCount());
+    }
+    final ObjectNode gauges = summary.putObject("gauges");
+    for (Map.Entry<String, Gauge> gauge : registry.getGauges().entrySet()) {
+      final Object value = gauge.getValue().getValue();
+      if (value instanceof Number) {
+        gauges.put(gauge.getKey(), ((Number) value).doubleValue());
+      }
+    }
+
+    final Map<String, Long> retriesByCause = benchmark.getRetriesByCause();
+    final ObjectNode retries = summary.putObject("retries");
+    retries.put("total", retriesByCause.values().stream().mapToLong(Long::longValue).sum());
+    retriesByCause.forEach(retries.putObject("byCause")::put);
+    final Map<String, Long> errorsByClass = benchmark.getErrorsByClass();
+    final ObjectNode errors = summary.putObject("errors");
+    errors.put("total", errorsByClass.values().stream().mapToLong(Long::longValue).sum());
+    errorsByClass.forEach(errors.putObject("byClass")::put);
+
+    summary.set("config", ConfigUtils.toJson(config));
+    return summary;
+  }
+
+  /**
+   * Summary of a distributed run. The workers only report their response and service time
+   * histograms and retries, so there are no step timers nor retries and errors by class.
+   */
+  private ObjectNode toJson(ObjectMapper mapper, Coordinator.Result result)
+      throws IOException {
+    final double durationSeconds = result.getDurationNanos() / 1e9D;
+    final ObjectNode summary = header(mapper, durationSeconds,
+        result.getFailures().isEmpty() ? null : IllegalStateException.class.getName(),
+        result.getFailures().isEmpty() ? null
+            : "Some workers failed, " + String.join(", ", result.getFailures()));
+    summary.put("workers", result.getWorkers());
+
+    final ObjectNode throughput = summary.putObject("throughput");
+    throughput.put("iterations", result.getIterations());
+    throughput.put("iterationsPerSecond",
+        durationSeconds > 0 ? result.getIterations() / durationSeconds : 0D);
+
+    final ObjectNode latency = summary.putObject("latency");
+    histogram(latency.putObject(Metric.RESPONSE_TIME.getName()), result.getResponseTime(), 1e6D);
+    histogram(latency.putObject(Metric.SERVICE_TIME.getName()), result.getServiceTime(), 1e6D);
+
+    summary.putObject("retries").put("total", result.getRetries());
+    summary.putObject("errors").put("total", result.getFailures().size());
+
+    summary.set("config", ConfigUtils.toJson(config));
+    return summary;
+  }
+
+  /**
+   * The fields common to all the summaries: id, name, times, target, status, failure, versions
+   * and durations.
+   */
+  private ObjectNode header(ObjectMapper mapper, double durationSeconds, String failureClass,
+      String failureMessage) throws IOException {
+    final Instant endedAt = Instant.now();
+    final ObjectNode summary = mapper.createObjectNode();
+    summary.put("id", ID_FORMAT.format(startedAt) + "-"
+        + UUID.randomUUID().toString().substring(0, 8));
+    if (config.getRunName() != null) {
+      summary.put("name", config.getRunName());
+    }
+    summary.put("startedAt", startedAt.toString());
+    summary.put("endedAt", endedAt.toString());
+    summary.put("target", config.getTargetType());
+    summary.put("status", failureClass == null ? "completed" : "failed");
+    if (failureClass != null) {
+      summary.putObject("failure")
+          .put("class", failureClass)
+          .put("message", failureMessage);
+    }
+    final ObjectNode versions = summary.putObject("versions");
+    versions.put("benchmark", Version.getVersion());
+    versions.put("java", System.getProperty("java.version"));
+    versions.put("postgresql", DriverInfo.DRIVER_VERSION);
+    versions.put("r2dbc-postgresql",
+        PostgresqlConnectionFactory.class.getPackage().getImplementationVersion());
+    versions.put("mongodb", Optional.ofNullable(
+        MongoClient.class.getPackage().getImplementationVersion())
+        .orElseGet(Version::getMongodbVersion));
+    summary.put("setupSeconds", setupNanos / 1e9D);
+    summary.put("durationSeconds", durationSeconds);
+    return summary;
+  }
+
+  /**
+   * Put the count, mean, percentiles and max of {@code snapshot} in {@code node}, dividing the
+   * values by {@code scale} (timers record nanoseconds and are summarized in milliseconds).
+   */
+  private static void snapshot(ObjectNode node, Snapshot snapshot, double scale) {
+    node.put("count", snapshot.size());
+    node.put("mean", snapshot.getMean() / scale);
+    for (double percentile : PERCENTILES) {
+      node.put("p" + percentileName(percentile), snapshot.getValue(percentile / 100D) / scale);
+    }
+    node.put("max", snapshot.getMax() / scale);
+  }
+
+  /**
+   * Put the count, mean, percentiles and max of {@code histogram} in {@code node}, dividing the
+   * values by {@code scale}.
+   */
+  private static void histogram(ObjectNode node, org.HdrHistogram.Histogram histogram,
+      double scale) {
+    final boolean empty = histogram.getTotalCount() == 0;
+    node.put("count", histogram.getTotalCount());
+    node.put("mean", empty ? 0D : histogram.getMean() / scale);
+    for (double percentile : PERCENTILES) {
+      node.put("p" + percentileName(percentile),
+          histogram.getValueAtPercentile(percentile) / scale);
+    }
+    node.put("max", empty ? 0D : histogram.getMaxValue() / scale);
+  }
+
+  /**
+   * Name of a percentile for a JSON field, like 50, 99 or 999 for 99.9.
+   */
+  static String percentileName(double percentile) {
+    return String.valueOf(percentile).replace(".0", "").replace(".", "");
+  }
+}
@@ -0,0 +1,263 @@
+/*-
+ *  § 
+ * benchmark: command-line
+ *    
+ * Copyright (C) 2019 OnGres, Inc.
+ *    
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * § §
+ */
+package com.ongres.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.google.common.base.Preconditions;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.regex.Pattern;
+
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+/**
+ * List and filter the runs of the run registry written at the end of each run, run as
+ * {@code benchmark runs [options]}.
+ *
+ * <p>Runs are selected by target, name, status, start time and the value of any field of their
+ * summary (for example {@code --where config.parallelism=16}) and printed as a table of their
+ * throughput and response time percentiles, as JSON lines with {@code --json} or in full with
+ * {@code --show}.
+ */
+@Command(name = RunsCommand.NAME,
+    description = "List and filter the runs of the run registry",
+    showDefaultValues = true)
+public class RunsCommand implements Callable<Void> {
+
+  public static final String NAME = "runs";
+
+  @Option(names = {"--registry"},
+      description = "Read the specified run registry file (defaults to .benchmark/runs.jsonl in"
+          + " the user home)")
+  private File registry;
+
+  @Option(names = {"--target"},
+      description = "Only list the runs of the specified benchmark target")
+  private String target;
+
+  @Option(names = {"--name"},
+      description = "Only list the runs whose name matches the specified regular expression")
+  private String name;
+
+  @Option(names = {"--status"},
+      description = "Only list the runs with the specified status: completed or failed")
+  private String status;
+
+  @Option(names = {"--since"},
+      description = "Only list the runs started after the specified date (2019-01-31), instant"
+          + " (2019-01-31T10:00:00Z) or period before now (P7D, PT12H)")
+  private String since;
+
+  @Option(names = {"--where"},
+      description = "Only list the runs where the field of the summary at the specified dotted"
+          + " path has the specified value (for example config.parallelism=16), may be repeated")
+  private List<String> where = new ArrayList<>();
+
+  @Option(names = {"--limit"},
+      description = "Only list the specified # of most recent runs")
+  private Integer limit;
+
+  @Option(names = {"--json"},
+      description = "Print the summaries of the runs as JSON lines")
+  private boolean json = false;
+
+  @Option(names = {"--show"},
+      description = "Print the summary of the run with the specified id (or id prefix)")
+  private String show;
+
+  @Option(names = {"-h", "--help"}, usageHelp = true,
+      description = "Displays this help message and quits.")
+  private boolean helpRequested = false;
+
+  private final PrintStream out = System.out;
+  private final ObjectMapper mapper = new ObjectMapper();
+
+  /**
+   * Parse {@code args} and run the command.
+   */
+  public static void run(String... args) throws Exception {
+    CommandLine commandLine = new CommandLine(new RunsCommand());
+    commandLine.parseArgs(args);
+    commandLine.<RunsCommand>getCommand().call();
+  }
+
+  @Override
+  public Void call() throws Exception {
+    if (helpRequested) {
+      new CommandLine(this).usage(out);
+      return null;
+    }
+    Preconditions.checkArgument(limit == null || limit > 0, "--limit must be positive");
+    final Path path = registry != null ? registry.toPath() : RunSummary.registry(null);
+    if (!Files.exists(path)) {
+      out.println("No runs found in " + path);
+      return null;
+    }
+    final List<JsonNode> runs = read(path);
+    if (show != null) {
+      final List<JsonNode> shown = new ArrayList<>();
+      for (JsonNode run : runs) {
+        if (run.path("id").asText().startsWith(show)) {
+          shown.add(run);
+        }
+      }
+      Preconditions.checkArgument(shown.size() <= 1, "--show id " + show + " is ambiguous");
+      if (shown.isEmpty()) {
+        out.println("No run found with id " + show);
+        return null;
+      }
+      out.println(mapper.enable(SerializationFeature.INDENT_OUTPUT)
+          .writeValueAsString(shown.get(0)));
+      return null;
+    }
+    final List<JsonNode> selected = select(runs);
+    if (json) {
+      for (JsonNode run : selected) {
+        out.println(mapper.writeValueAsString(run));
+      }
+      return null;
+    }
+    if (selected.isEmpty()) {
+      out.println("No runs found");
+      return null;
+    }
+    out.println(String.format(Locale.US, "%-24s %-16s %-14s %-9s %10s %12s %10s %10s %10s"
+        + " %10s %8s",
+        "id", "name", "target", "status", "duration", "throughput", "p50 (ms)", "p99 (ms)",
+        "p99.9 (ms)", "retries", "errors"));
+    for (JsonNode run : selected) {
+      final JsonNode responseTime = run.path("latency").path(Metric.RESPONSE_TIME.getName());
+      out.println(String.format(Locale.US, "%-24s %-16s %-14s %-9s %10s %12.1f %10.3f %10.3f"
+          + " %10.3f %10d %8d",
+          run.path("id").asText(), run.path("name").asText("-"), run.path("target").asText(),
+          run.path("status").asText(),
+          Duration.ofMillis((long) (run.path("durationSeconds").asDouble() * 1000D))
+            .withNanos(0),
+          run.path("throughput").path("iterationsPerSecond").asDouble(),
+          responseTime.path("p50").asDouble(), responseTime.path("p99").asDouble(),
+          responseTime.path("p999").asDouble(), run.path("retries").path("total").asLong(),
+          run.path("errors").path("total").asLong()));
+    }
+    return null;
+  }
+
+  private List<JsonNode> read(Path path) throws IOException {
+    final List<JsonNode> runs = new ArrayList<>();
+    int lineNumber = 0;
+    for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+      lineNumber++;
+      if (line.trim().isEmpty()) {
+        continue;
+      }
+      try {
+        runs.add(mapper.readTree(line));
+      } catch (JsonProcessingException ex) {
+        System.err.println("Skipping malformed line " + lineNumber + " of " + path + ": "
+            + ex.getOriginalMessage());
+      }
+    }
+    return runs;
+  }
+
+  private List<JsonNode> select(List<JsonNode> runs) {
+    final Pattern namePattern = name == null ? null : Pattern.compile(name);
+    final Instant sinceInstant = since == null ? null : parseSince(since);
+    final List<String[]> conditions = new ArrayList<>();
+    for (String condition : where) {
+      final int separator = condition.indexOf('=');
+      Preconditions.checkArgument(separator > 0, "--where must be PATH=VALUE");
+      conditions.add(new String[] {
+          condition.substring(0, separator), condition.substring(separator + 1) });
+    }
+    final List<JsonNode> selected = new ArrayList<>();
+    for (JsonNode run : runs) {
+      if (target != null && !target.equals(run.path("target").asText())) {
+        continue;
+      }
+      if (namePattern != null && !namePattern.matcher(run.path("name").asText()).matches()) {
+        continue;
+      }
+      if (status != null && !status.equalsIgnoreCase(run.path("status").asText())) {
+        continue;
+      }
+      if (sinceInstant != null && (!run.path("startedAt").isTextual()
+          || Instant.parse(run.path("startedAt").asText()).isBefore(sinceInstant))) {
+        continue;
+      }
+      if (conditions.stream().allMatch(condition -> matches(run, condition[0], condition[1]))) {
+        selected.add(run);
+      }
+    }
+    if (limit != null && selected.size() > limit) {
+      return selected.subList(selected.size() - limit, selected.size());
+    }
+    return selected;
+  }
+
+  /**
+   * True if the field of {@code run} at the dotted {@code path} has {@code value}, numbers are
+   * compared by value so that 16 matches 16.0.
+   */
+  private static boolean matches(JsonNode run, String path, String value) {
+    JsonNode node = run;
+    for (String field : path.split("\\.")) {
+      node = node.path(field);
+    }
+    if (node.isMissingNode() || node.isNull()) {
+      return false;
+    }
+    if (node.isNumber()) {
+      try {
+        return node.asDouble() == Double.parseDouble(value);
+      } catch (NumberFormatException ex) {
+        return false;
+      }
+    }
+    return node.isValueNode() ? node.asText().equals(value) : node.toString().equals(value);
+  }
+
+  private static Instant parseSince(String since) {
+    if (since.startsWith("P")) {
+      return Instant.now().minus(Duration.parse(since));
+    }
+    if (since.contains("T")) {
+      return Instant.parse(since);
+    }
+    return LocalDate.parse(since).atStartOfDay(ZoneOffset.UTC).toInstant();
+  }
+}
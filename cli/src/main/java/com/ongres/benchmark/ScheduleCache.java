@@ -0,0 +1,325 @@
+/*-
+ *  § 
+ * benchmark: command-line
+ *    
+ * Copyright (C) 2019 OnGres, Inc.
+ *    
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * § §
+ */
+
+package com.ongres.benchmark;
+
+import com.google.common.base.Preconditions;
+import com.ongres.benchmark.config.model.CacheEviction;
+import com.ongres.benchmark.config.model.Config;
+import com.ongres.benchmark.config.model.ScheduleCacheMode;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * In-process cache of the immutable reference data that a booking reads: the duration (in
+ * minutes) and the aircraft capacity of a schedule. Each schedule is stored as a single
+ * {@code long} packing both values, in arrays indexed by schedule ID when all the schedules
+ * fit (lock free) or in slots evicted by LRU, FIFO or random replacement otherwise.
+ *
+ * <p>With {@code preload} the benchmark loads up to {@code --schedule-cache-size} schedules
+ * before the iterations start and misses are not cached, with {@code on-demand} the
+ * schedules are cached when they are first read.
+ */
+public class ScheduleCache {
+
+  private static final Logger logger = LogManager.getLogger();
+
+  /**
+   * The entry returned by {@link #get(int)} for a schedule that is not cached.
+   */
+  public static final long MISSING = Long.MIN_VALUE;
+
+  private final ScheduleCacheMode mode;
+  private final int size;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final AtomicLongArray entries;
+  private final Slots slots;
+
+  private ScheduleCache(ScheduleCacheMode mode, int scheduleCount, int size,
+      CacheEviction eviction) {
+    this.mode = mode;
+    this.size = size;
+    if (mode == ScheduleCacheMode.NONE) {
+      this.entries = null;
+      this.slots = null;
+    } else if (size >= scheduleCount) {
+      this.entries = new AtomicLongArray(scheduleCount);
+      for (int scheduleId = 0; scheduleId < scheduleCount; scheduleId++) {
+        entries.set(scheduleId, MISSING);
+      }
+      this.slots = null;
+    } else {
+      this.entries = null;
+      this.slots = new Slots(scheduleCount, size, eviction);
+    }
+  }
+
+  /**
+   * Create the {@code ScheduleCache} configured by {@code --schedule-cache} for
+   * {@code scheduleCount} schedules.
+   */
+  public static ScheduleCache create(Config config, int scheduleCount) {
+    final ScheduleCacheMode mode = config.getScheduleCacheAsEnum();
+    final int size = Optional.ofNullable(config.getScheduleCacheSize()).orElse(scheduleCount);
+    Preconditions.checkArgument(size > 0, "--schedule-cache-size must be positive");
+    ScheduleCache cache = new ScheduleCache(mode, scheduleCount, Math.min(size, scheduleCount),
+        config.getScheduleCacheEvictionAsEnum());
+    if (cache.isEnabled()) {
+      MetricsManager.gauge(Metric.SCHEDULE_CACHE_HIT_RATIO, cache::getHitRatio);
+    }
+    return cache;
+  }
+
+  public boolean isEnabled() {
+    return mode != ScheduleCacheMode.NONE;
+  }
+
+  /**
+   * True if the schedules must be loaded before the iterations start.
+   */
+  public boolean isPreload() {
+    return mode == ScheduleCacheMode.PRELOAD;
+  }
+
+  /**
+   * The maximum number of schedules cached.
+   */
+  public int getSize() {
+    return size;
+  }
+
+  /**
+   * Return the entry of the schedule or {@link #MISSING} if it is not cached.
+   */
+  public long get(int scheduleId) {
+    if (!isEnabled()) {
+      return MISSING;
+    }
+    final long entry = slots == null ? entries.get(scheduleId) : slots.get(scheduleId);
+    if (entry == MISSING) {
+      misses.increment();
+    } else {
+      hits.increment();
+    }
+    return entry;
+  }
+
+  /**
+   * Cache a schedule read from the database after a miss, unless the cache is preloaded.
+   */
+  public void fill(int scheduleId, int durationMinutes, int capacity) {
+    if (mode == ScheduleCacheMode.ON_DEMAND) {
+      put(scheduleId, durationMinutes, capacity);
+    }
+  }
+
+  /**
+   * Cache a schedule, a negative duration or capacity means unknown.
+   */
+  public void put(int scheduleId, int durationMinutes, int capacity) {
+    if (!isEnabled()) {
+      return;
+    }
+    final long entry = entry(durationMinutes, capacity);
+    if (slots == null) {
+      entries.set(scheduleId, entry);
+    } else {
+      slots.put(scheduleId, entry);
+    }
+  }
+
+  /**
+   * The entry of a schedule, as returned by {@link #get(int)}, a negative duration or capacity
+   * means unknown.
+   */
+  public static long entry(int durationMinutes, int capacity) {
+    return ((long) Math.max(-1, durationMinutes) << 32) | (Math.max(-1, capacity) & 0xFFFFFFFFL);
+  }
+
+  /**
+   * The duration in minutes of a cached entry, negative if unknown.
+   */
+  public static int durationMinutes(long entry) {
+    return (int) (entry >> 32);
+  }
+
+  /**
+   * The aircraft capacity of a cached entry, negative if unknown.
+   */
+  public static int capacity(long entry) {
+    return (int) entry;
+  }
+
+  /**
+   * Parse a schedule duration with format {@code HH:MM} into minutes, -1 if it is null.
+   */
+  public static int durationMinutes(String duration) {
+    if (duration == null) {
+      return -1;
+    }
+    final String[] parts = duration.split(":");
+    return Integer.parseInt(parts[0]) * 60 + Integer.parseInt(parts[1]);
+  }
+
+  public long getHits() {
+    return hits.sum();
+  }
+
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  /**
+   * Ratio of lookups found in the cache.
+   */
+  public double getHitRatio() {
+    final long hits = getHits();
+    final long lookups = hits + getMisses();
+    return lookups == 0 ? 0D : hits / (double) lookups;
+  }
+
+  /**
+   * Log the hit ratio of the cache.
+   */
+  public void logStatistics() {
+    if (isEnabled()) {
+      logger.info(String.format(Locale.US, "Schedule cache hit ratio %.4f (%d hits, %d misses)",
+          getHitRatio(), getHits(), getMisses()));
+    }
+  }
+
+  /**
+   * Slots of a cache smaller than the schedules, a slot is found from the schedule ID through
+   * an index and the eviction order of LRU is kept in a list linked through arrays.
+   */
+  private static final class Slots {
+
+    private final CacheEviction eviction;
+    private final int[] index;
+    private final int[] keys;
+    private final long[] values;
+    private final int[] previous;
+    private final int[] next;
+    private final SplittableRandom random = new SplittableRandom();
+    private int used = 0;
+    private int head = -1;
+    private int tail = -1;
+    private int nextVictim = 0;
+
+    private Slots(int scheduleCount, int size, CacheEviction eviction) {
+      this.eviction = eviction;
+      this.index = new int[scheduleCount];
+      this.keys = new int[size];
+      this.values = new long[size];
+      if (eviction == CacheEviction.LRU) {
+        this.previous = new int[size];
+        this.next = new int[size];
+      } else {
+        this.previous = null;
+        this.next = null;
+      }
+      Arrays.fill(index, -1);
+    }
+
+    private synchronized long get(int scheduleId) {
+      final int slot = index[scheduleId];
+      if (slot < 0) {
+        return MISSING;
+      }
+      if (eviction == CacheEviction.LRU && slot != head) {
+        unlink(slot);
+        linkFirst(slot);
+      }
+      return values[slot];
+    }
+
+    private synchronized void put(int scheduleId, long value) {
+      int slot = index[scheduleId];
+      if (slot >= 0) {
+        values[slot] = value;
+        return;
+      }
+      if (used < keys.length) {
+        slot = used++;
+      } else {
+        slot = victim();
+        index[keys[slot]] = -1;
+        if (eviction == CacheEviction.LRU) {
+          unlink(slot);
+        }
+      }
+      keys[slot] = scheduleId;
+      values[slot] = value;
+      index[scheduleId] = slot;
+      if (eviction == CacheEviction.LRU) {
+        linkFirst(slot);
+      }
+    }
+
+    private int victim() {
+      switch (eviction) {
+        case LRU:
+          return tail;
+        case FIFO:
+          final int slot = nextVictim;
+          nextVictim = (nextVictim + 1) % keys.length;
+          return slot;
+        case RANDOM:
+          return random.nextInt(keys.length);
+        default:
+          throw new IllegalStateException("Unknown eviction " + eviction);
+      }
+    }
+
+    private void unlink(int slot) {
+      if (previous[slot] >= 0) {
+        next[previous[slot]] = next[slot];
+      } else {
+        head = next[slot];
+      }
+      if (next[slot] >= 0) {
+        previous[next[slot]] = previous[slot];
+      } else {
+        tail = previous[slot];
+      }
+    }
+
+    private void linkFirst(int slot) {
+      previous[slot] = -1;
+      next[slot] = head;
+      if (head >= 0) {
+        previous[head] = slot;
+      }
+      head = slot;
+      if (tail < 0) {
+        tail = slot;
+      }
+    }
+  }
+}
@@ -0,0 +1,84 @@
+/*-
+ *  § 
+ * benchmark: command-line
+ *    
+ * Copyright (C) 2019 OnGres, Inc.
+ *    
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * § §
+ */
+package com.ongres.benchmark;
+
+import com.codahale.metrics.MetricFilter;
+
+import java.util.concurrent.TimeUnit;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Timer of a step of an iteration (a query, an insert, the commit, the connection checkout),
+ * named {@code step.<target>.<step>} so that a slow iteration can be attributed to one of its
+ * steps. Steps are chained by passing the end of a step as the start of the next one, so that
+ * timing a step costs a single {@link System#nanoTime()} call.
+ *
+ * <p>The timer is looked up on each record so that it starts from scratch when the metrics
+ * are reset at the end of the warm-up.
+ */
+public class StepTimer {
+
+  private static final String PREFIX = "step.";
+
+  private final String name;
+
+  private StepTimer(String name) {
+    this.name = name;
+  }
+
+  /**
+   * Create the timer of {@code step} of the {@code target} benchmark.
+   */
+  public static StepTimer of(String target, String step) {
+    return new StepTimer(PREFIX + target + "." + step);
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Record the step started at {@code startNanos} ({@link System#nanoTime()} units) and return
+   * its end, the start of the next step.
+   */
+  public long record(long startNanos) {
+    final long endNanos = System.nanoTime();
+    MetricsManager.timer(name).update(endNanos - startNanos, TimeUnit.NANOSECONDS);
+    return endNanos;
+  }
+
+  /**
+   * Time the successful completion of {@code step}, from subscription.
+   */
+  public <T> Mono<T> time(Mono<T> step) {
+    return Mono.defer(() -> {
+      final long startNanos = System.nanoTime();
+      return step.doOnSuccess(result -> record(startNanos));
+    });
+  }
+
+  /**
+   * Remove the step timers so that they start from scratch when recorded again.
+   */
+  public static void resetAll() {
+    MetricsManager.getMetricRegistry().removeMatching(MetricFilter.startsWith(PREFIX));
+  }
+}
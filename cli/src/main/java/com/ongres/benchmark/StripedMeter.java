@@ -0,0 +1,84 @@
+/*-
+ *  § 
+ * benchmark: command-line
+ *    
+ * Copyright (C) 2019 OnGres, Inc.
+ *    
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * § §
+ */
+package com.ongres.benchmark;
+
+import com.codahale.metrics.Meter;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Meter whose marks only add to a {@link LongAdder}. The pending count is merged into the
+ * moving averages when the meter is read and every second by the metrics merger of
+ * {@link MetricsManager}, so that marking does not read the clock nor update the averages.
+ */
+public class StripedMeter extends Meter {
+
+  private final LongAdder pending = new LongAdder();
+
+  @Override
+  public void mark() {
+    pending.increment();
+  }
+
+  @Override
+  public void mark(long count) {
+    pending.add(count);
+  }
+
+  /**
+   * Merge the pending count into the meter.
+   */
+  public void merge() {
+    final long count = pending.sumThenReset();
+    if (count != 0) {
+      super.mark(count);
+    }
+  }
+
+  @Override
+  public long getCount() {
+    merge();
+    return super.getCount();
+  }
+
+  @Override
+  public double getFifteenMinuteRate() {
+    merge();
+    return super.getFifteenMinuteRate();
+  }
+
+  @Override
+  public double getFiveMinuteRate() {
+    merge();
+    return super.getFiveMinuteRate();
+  }
+
+  @Override
+  public double getMeanRate() {
+    merge();
+    return super.getMeanRate();
+  }
+
+  @Override
+  public double getOneMinuteRate() {
+    merge();
+    return super.getOneMinuteRate();
+  }
+}
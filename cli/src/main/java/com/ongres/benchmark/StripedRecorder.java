@@ -0,0 +1,96 @@
+/*-
+ *  § 
+ * benchmark: command-line
+ *    
+ * Copyright (C) 2019 OnGres, Inc.
+ *    
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * § §
+ */
+package com.ongres.benchmark;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * HdrHistogram recorder split in stripes so that concurrent threads do not contend on the
+ * same counts and phaser. Each thread is assigned a stripe round-robin the first time it
+ * records, so that the platform threads of the benchmark (up to the # of stripes) get one
+ * each. Virtual threads share the stripes, which bounds the memory whatever their number.
+ *
+ * <p>Like a {@link Recorder}, recording is wait-free and {@link #getIntervalHistogram()}
+ * returns the values recorded since the previous call, merging all the stripes.
+ */
+public class StripedRecorder {
+
+  /**
+   * # of stripes, the power of two equal or greater than the # of processors (at most 64).
+   */
+  public static final int STRIPES = Math.min(64,
+      Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() - 1)) << 1);
+
+  private static final AtomicInteger NEXT_STRIPE = new AtomicInteger(0);
+  private static final ThreadLocal<Integer> STRIPE = ThreadLocal.withInitial(
+      () -> NEXT_STRIPE.getAndIncrement() & (STRIPES - 1));
+
+  private final int significantDigits;
+  private final Recorder[] stripes = new Recorder[STRIPES];
+  private final Histogram[] intervals = new Histogram[STRIPES];
+  private long intervalStartMillis = System.currentTimeMillis();
+
+  public StripedRecorder(int significantDigits) {
+    this.significantDigits = significantDigits;
+    for (int stripe = 0; stripe < STRIPES; stripe++) {
+      stripes[stripe] = new Recorder(significantDigits);
+    }
+  }
+
+  /**
+   * Record {@code value} in the stripe of the calling thread.
+   */
+  public void recordValue(long value) {
+    stripes[STRIPE.get()].recordValue(value);
+  }
+
+  /**
+   * The values recorded since the previous interval in a new histogram.
+   */
+  public Histogram getIntervalHistogram() {
+    return getIntervalHistogram(null);
+  }
+
+  /**
+   * The values recorded since the previous interval, reusing {@code histogramToRecycle} if not
+   * null.
+   */
+  public synchronized Histogram getIntervalHistogram(Histogram histogramToRecycle) {
+    final Histogram interval;
+    if (histogramToRecycle == null) {
+      interval = new Histogram(significantDigits);
+    } else {
+      interval = histogramToRecycle;
+      interval.reset();
+    }
+    for (int stripe = 0; stripe < STRIPES; stripe++) {
+      intervals[stripe] = stripes[stripe].getIntervalHistogram(intervals[stripe]);
+      interval.add(intervals[stripe]);
+    }
+    final long intervalEndMillis = System.currentTimeMillis();
+    interval.setStartTimeStamp(intervalStartMillis);
+    interval.setEndTimeStamp(intervalEndMillis);
+    intervalStartMillis = intervalEndMillis;
+    return interval;
+  }
+}
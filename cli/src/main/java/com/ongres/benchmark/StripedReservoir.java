@@ -0,0 +1,136 @@
+/*-
+ *  § 
+ * benchmark: command-line
+ *    
+ * Copyright (C) 2019 OnGres, Inc.
+ *    
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * § §
+ */
+package com.ongres.benchmark;
+
+import com.codahale.metrics.Reservoir;
+import com.codahale.metrics.Snapshot;
+
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramIterationValue;
+
+/**
+ * Reservoir of all the values recorded in a {@link StripedRecorder}, so that the
+ * {@code MetricRegistry} reporters keep working on top of it. Intervals are merged into the
+ * running totals when a reporter takes a snapshot.
+ */
+public class StripedReservoir implements Reservoir {
+
+  private static final int SIGNIFICANT_DIGITS = 3;
+
+  private final StripedRecorder recorder = new StripedRecorder(SIGNIFICANT_DIGITS);
+  private final Histogram runningTotals = new Histogram(SIGNIFICANT_DIGITS);
+  private Histogram interval;
+
+  @Override
+  public int size() {
+    return getSnapshot().size();
+  }
+
+  @Override
+  public void update(long value) {
+    recorder.recordValue(value);
+  }
+
+  @Override
+  public Snapshot getSnapshot() {
+    return new HistogramSnapshot(merge());
+  }
+
+  private synchronized Histogram merge() {
+    interval = recorder.getIntervalHistogram(interval);
+    runningTotals.add(interval);
+    return runningTotals.copy();
+  }
+
+  /**
+   * Snapshot of the values recorded so far that gives access to the HdrHistogram, so that
+   * reporters can compute other statistics than the percentiles of {@link Snapshot}.
+   */
+  static final class HistogramSnapshot extends Snapshot {
+    private final Histogram histogram;
+
+    private HistogramSnapshot(Histogram histogram) {
+      this.histogram = histogram;
+    }
+
+    Histogram getHistogram() {
+      return histogram;
+    }
+
+    @Override
+    public double getValue(double quantile) {
+      return histogram.getValueAtPercentile(quantile * 100D);
+    }
+
+    @Override
+    public long[] getValues() {
+      final long[] values = new long[size()];
+      int index = 0;
+      for (HistogramIterationValue value : histogram.recordedValues()) {
+        for (long count = 0; count < value.getCountAtValueIteratedTo(); count++) {
+          values[index++] = value.getValueIteratedTo();
+        }
+      }
+      return values;
+    }
+
+    @Override
+    public int size() {
+      return (int) Math.min(Integer.MAX_VALUE, histogram.getTotalCount());
+    }
+
+    @Override
+    public long getMax() {
+      return histogram.getTotalCount() == 0 ? 0L : histogram.getMaxValue();
+    }
+
+    @Override
+    public double getMean() {
+      return histogram.getTotalCount() == 0 ? 0D : histogram.getMean();
+    }
+
+    @Override
+    public long getMin() {
+      return histogram.getTotalCount() == 0 ? 0L : histogram.getMinValue();
+    }
+
+    @Override
+    public double getStdDev() {
+      return histogram.getTotalCount() == 0 ? 0D : histogram.getStdDeviation();
+    }
+
+    @Override
+    public void dump(OutputStream output) {
+      try (PrintWriter writer = new PrintWriter(
+          new OutputStreamWriter(output, StandardCharsets.UTF_8))) {
+        for (HistogramIterationValue value : histogram.recordedValues()) {
+          for (long count = 0; count < value.getCountAtValueIteratedTo(); count++) {
+            writer.println(value.getValueIteratedTo());
+          }
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,140 @@
+/*-
+ *  § 
+ * benchmark: command-line
+ *    
+ * Copyright (C) 2019 OnGres, Inc.
+ *    
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * § §
+ */
+
+package com.ongres.benchmark;
+
+import com.google.common.base.Preconditions;
+import com.ongres.benchmark.config.model.Config;
+import com.ongres.benchmark.config.model.ThinkTimeDistribution;
+import com.ongres.benchmark.config.model.ThinkTimePlacement;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Time a simulated user waits, drawn from a distribution with the configured mean.
+ */
+public class ThinkTime {
+
+  private static final ThinkTime NONE = new ThinkTime(ThinkTimeDistribution.FIXED, 0L, 0D);
+
+  private final ThinkTimeDistribution distribution;
+  private final long meanNanos;
+  private final double sigma;
+
+  private ThinkTime(ThinkTimeDistribution distribution, long meanNanos, double sigma) {
+    this.distribution = distribution;
+    this.meanNanos = meanNanos;
+    this.sigma = sigma;
+  }
+
+  /**
+   * Create a {@code ThinkTime} with mean {@code mean}. {@code sigma} is the shape of the
+   * log-normal distribution (the standard deviation of its logarithm).
+   */
+  public static ThinkTime create(ThinkTimeDistribution distribution, Duration mean,
+      double sigma) {
+    Preconditions.checkArgument(!mean.isNegative(), "think time must not be negative");
+    Preconditions.checkArgument(sigma >= 0, "think time sigma must not be negative");
+    if (mean.isZero()) {
+      return NONE;
+    }
+    return new ThinkTime(distribution, mean.toNanos(), sigma);
+  }
+
+  /**
+   * No think time.
+   */
+  public static ThinkTime none() {
+    return NONE;
+  }
+
+  /**
+   * The think time {@code config} places inside the transaction, if any.
+   */
+  public static ThinkTime inside(Config config) {
+    return create(config, ThinkTimePlacement.INSIDE);
+  }
+
+  /**
+   * The think time {@code config} places between iterations, outside the transaction.
+   */
+  public static ThinkTime outside(Config config) {
+    return create(config, ThinkTimePlacement.OUTSIDE);
+  }
+
+  private static ThinkTime create(Config config, ThinkTimePlacement placement) {
+    if (config.getThinkTimePlacementAsEnum() != placement) {
+      return NONE;
+    }
+    return create(config.getThinkTimeDistributionAsEnum(), config.getThinkTimeAsDuration(),
+        config.getThinkTimeSigma());
+  }
+
+  public boolean isNone() {
+    return meanNanos == 0L;
+  }
+
+  /**
+   * Draw the next think time in nanoseconds.
+   */
+  public long nextNanos() {
+    if (meanNanos == 0L) {
+      return 0L;
+    }
+    final ThreadLocalRandom random = ThreadLocalRandom.current();
+    switch (distribution) {
+      case FIXED:
+        return meanNanos;
+      case UNIFORM:
+        return random.nextLong(2 * meanNanos + 1);
+      case EXPONENTIAL:
+        return Math.round(-Math.log(1D - random.nextDouble()) * meanNanos);
+      case LOG_NORMAL:
+        final double mu = Math.log(meanNanos) - sigma * sigma / 2;
+        return Math.round(Math.exp(mu + sigma * random.nextGaussian()));
+      default:
+        throw new IllegalArgumentException("Unknown think time distribution " + distribution);
+    }
+  }
+
+  /**
+   * Block the current thread for the next think time.
+   */
+  public void sleep() throws InterruptedException {
+    final long nanos = nextNanos();
+    if (nanos > 0) {
+      TimeUnit.NANOSECONDS.sleep(nanos);
+    }
+  }
+
+  /**
+   * Wait for the next think time, drawn on subscription, without holding a thread.
+   */
+  public Mono<Void> delay() {
+    if (meanNanos == 0L) {
+      return Mono.empty();
+    }
+    return Mono.defer(() -> Mono.delay(Duration.ofNanos(nextNanos())).then());
+  }
+}
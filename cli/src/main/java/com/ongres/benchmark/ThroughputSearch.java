@@ -0,0 +1,283 @@
+/*-
+ *  § 
+ * benchmark: command-line
+ *    
+ * Copyright (C) 2019 OnGres, Inc.
+ *    
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * § §
+ */
+
+package com.ongres.benchmark;
+
+import com.google.common.base.Preconditions;
+import com.ongres.benchmark.config.model.Config;
+import com.ongres.benchmark.config.model.SearchDimension;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Search the max offered load (arrival rate or concurrency) a running benchmark sustains
+ * while meeting a latency SLO and a retry ratio threshold.
+ *
+ * <p>The load is doubled on each step until a step fails (or the max load is reached) and
+ * then bisected between the max passing and the min failing load. The benchmark is not
+ * restarted between steps, though arrivals are paused before each rate step until the
+ * iterations in flight complete. A rate step also fails when the throughput falls behind
+ * the offered rate.
+ */
+public class ThroughputSearch {
+
+  private static final Logger logger = LogManager.getLogger();
+
+  private static final int MAX_STEPS = 32;
+  private static final double DEFAULT_START_RATE = 100D;
+  private static final double MIN_THROUGHPUT_RATIO = 0.9D;
+
+  private final SearchDimension dimension;
+  private final MetricsWindow window;
+  private final Duration stepDuration;
+  private final long latencySloNanos;
+  private final double latencyPercentile;
+  private final double maxRetryRatio;
+  private final double precision;
+  private final double start;
+  private final double max;
+
+  private ThroughputSearch(SearchDimension dimension, MetricsWindow window, Config config) {
+    this.dimension = dimension;
+    this.window = window;
+    this.stepDuration = config.getSearchStepDurationAsDuration();
+    this.latencySloNanos = config.getSearchLatencySloAsDuration().toNanos();
+    this.latencyPercentile = config.getSearchLatencyPercentile();
+    this.maxRetryRatio = config.getSearchMaxRetryRatio();
+    this.precision = config.getSearchPrecision();
+    if (dimension == SearchDimension.RATE) {
+      this.start = Optional.ofNullable(config.getSearchStart())
+          .orElse(Optional.ofNullable(config.getRate()).orElse(DEFAULT_START_RATE));
+      this.max = Optional.ofNullable(config.getSearchMax()).orElse(Double.MAX_VALUE);
+    } else {
+      this.start = Math.floor(Optional.ofNullable(config.getSearchStart()).orElse(1D));
+      this.max = Math.floor(Optional.ofNullable(config.getSearchMax())
+          .orElse((double) config.getParallelism()));
+    }
+    Preconditions.checkArgument(start > 0, "search start must be greater than 0");
+    Preconditions.checkArgument(start <= max, "search start must be less or equals to " + max);
+    Preconditions.checkArgument(dimension != SearchDimension.CONCURRENCY
+        || max <= config.getParallelism(),
+        "search max must be less or equals to parallelism for concurrency search");
+    Preconditions.checkArgument(!stepDuration.isZero() && !stepDuration.isNegative(),
+        "search step duration must be greater than 0");
+    Preconditions.checkArgument(latencyPercentile > 0 && latencyPercentile <= 100,
+        "search latency percentile must be between 0 and 100");
+    Preconditions.checkArgument(precision > 0, "search precision must be greater than 0");
+  }
+
+  /**
+   * Create a search configured by {@code config} for the benchmark {@code benchmark}.
+   */
+  public static ThroughputSearch create(BenchmarkRunner benchmark, Config config) {
+    MetricsWindow window = new MetricsWindow();
+    benchmark.addListener(window);
+    return new ThroughputSearch(config.getSearchAsEnum().get(), window, config);
+  }
+
+  public SearchDimension getDimension() {
+    return dimension;
+  }
+
+  /**
+   * The offered load of the first step.
+   */
+  public double getStart() {
+    return start;
+  }
+
+  /**
+   * Run the search steps while {@code execution} is running, changing the offered load
+   * through {@code loadControl}, and return the step with the max load that met the
+   * thresholds, if any.
+   */
+  public Optional<Step> run(Execution execution, LoadControl loadControl)
+      throws InterruptedException, ExecutionException {
+    Preconditions.checkArgument(dimension != SearchDimension.RATE || loadControl.isOpenLoop(),
+        "rate search requires an open-loop load");
+    Preconditions.checkArgument(dimension != SearchDimension.CONCURRENCY
+        || loadControl.isLimited(), "concurrency search requires a limited closed-loop load");
+    logger.info(String.format(Locale.US, "Searching max %s for p%s <= %.3f ms and retry ratio"
+        + " <= %.4f with steps of %s", name(), format(latencyPercentile),
+        latencySloNanos / 1e6, maxRetryRatio, stepDuration));
+    logger.info(String.format(Locale.US, "%4s %12s %12s %12s %12s %12s %12s %6s",
+        "step", name(), "throughput", "p50 (ms)", "p" + format(latencyPercentile) + " (ms)",
+        "max (ms)", "retry ratio", "result"));
+    Step best = null;
+    Double minFailing = null;
+    double load = start;
+    for (int stepNumber = 1; stepNumber <= MAX_STEPS; stepNumber++) {
+      MetricsManager.setPhase("step-" + stepNumber);
+      Optional<Step> step = runStep(execution, loadControl, load);
+      if (!step.isPresent()) {
+        logger.info("Benchmark ended before the search completed");
+        break;
+      }
+      logger.info(String.format(Locale.US, "%4d %s", stepNumber, step.get()));
+      if (step.get().isPassed()) {
+        best = best == null || best.getLoad() < load ? step.get() : best;
+      } else {
+        minFailing = minFailing == null ? load : Math.min(minFailing, load);
+      }
+      Optional<Double> nextLoad = nextLoad(best, minFailing);
+      if (!nextLoad.isPresent()) {
+        break;
+      }
+      load = nextLoad.get();
+    }
+    if (best == null) {
+      logger.info("No " + name() + " met the SLO");
+    } else {
+      logger.info(String.format(Locale.US, "Max sustainable %s: %s (throughput %.1f/s,"
+          + " p%s %.3f ms)", name(), format(best.getLoad()), best.getThroughput(),
+          format(latencyPercentile), best.getLatencyNanos() / 1e6));
+    }
+    return Optional.ofNullable(best);
+  }
+
+  private Optional<Double> nextLoad(Step best, Double minFailing) {
+    if (minFailing == null) {
+      return best.getLoad() >= max ? Optional.empty()
+          : Optional.of(round(Math.min(best.getLoad() * 2, max)));
+    }
+    if (best == null) {
+      final double nextLoad = round(minFailing / 2);
+      return nextLoad <= 0 || nextLoad == minFailing ? Optional.empty()
+          : Optional.of(nextLoad);
+    }
+    if (minFailing - best.getLoad() <= best.getLoad() * precision) {
+      return Optional.empty();
+    }
+    final double nextLoad = round((best.getLoad() + minFailing) / 2);
+    return nextLoad <= best.getLoad() || nextLoad >= minFailing ? Optional.empty()
+        : Optional.of(nextLoad);
+  }
+
+  private Optional<Step> runStep(Execution execution, LoadControl loadControl, double load)
+      throws InterruptedException, ExecutionException {
+    if (dimension == SearchDimension.RATE) {
+      if (!drain(execution, loadControl)) {
+        return Optional.empty();
+      }
+      loadControl.setRate(load);
+      loadControl.resume();
+    } else {
+      loadControl.setConcurrency((int) load);
+    }
+    window.next();
+    if (execution.awaitCompletion(stepDuration.toNanos(), TimeUnit.NANOSECONDS)) {
+      return Optional.empty();
+    }
+    MetricsWindow.Snapshot snapshot = window.next();
+    final long latencyNanos = snapshot.getResponseTime()
+        .getValueAtPercentile(latencyPercentile);
+    final boolean passed = snapshot.getIterations() > 0
+        && latencyNanos <= latencySloNanos
+        && snapshot.getRetryRatio() <= maxRetryRatio
+        && (dimension != SearchDimension.RATE
+            || snapshot.getThroughput() >= load * MIN_THROUGHPUT_RATIO);
+    return Optional.of(new Step(load, snapshot, latencyNanos, passed));
+  }
+
+  /**
+   * Pause arrivals and wait for the iterations in flight to complete so that the backlog of
+   * an overloaded step does not affect the next one. Return false if the benchmark ended.
+   */
+  private boolean drain(Execution execution, LoadControl loadControl)
+      throws InterruptedException, ExecutionException {
+    loadControl.pause();
+    final long drainNanos = stepDuration.toNanos();
+    final long startNanos = System.nanoTime();
+    while (window.getCompleted() < loadControl.getArrivals()) {
+      if (System.nanoTime() - startNanos > drainNanos) {
+        logger.warn("Iterations of the previous step still in flight after " + stepDuration);
+        break;
+      }
+      if (execution.awaitCompletion(10, TimeUnit.MILLISECONDS)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private double round(double load) {
+    return dimension == SearchDimension.CONCURRENCY ? Math.floor(load) : load;
+  }
+
+  private String name() {
+    return dimension.name().toLowerCase(Locale.US);
+  }
+
+  private static String format(double value) {
+    return value == Math.rint(value) ? String.valueOf((long) value)
+        : String.format(Locale.US, "%.2f", value);
+  }
+
+  /**
+   * The outcome of a search step.
+   */
+  public static class Step {
+    private final double load;
+    private final MetricsWindow.Snapshot snapshot;
+    private final long latencyNanos;
+    private final boolean passed;
+
+    private Step(double load, MetricsWindow.Snapshot snapshot, long latencyNanos,
+        boolean passed) {
+      this.load = load;
+      this.snapshot = snapshot;
+      this.latencyNanos = latencyNanos;
+      this.passed = passed;
+    }
+
+    public double getLoad() {
+      return load;
+    }
+
+    public double getThroughput() {
+      return snapshot.getThroughput();
+    }
+
+    /** Response time at the searched percentile in nanoseconds. */
+    public long getLatencyNanos() {
+      return latencyNanos;
+    }
+
+    public boolean isPassed() {
+      return passed;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(Locale.US, "%12s %12.1f %12.3f %12.3f %12.3f %12.4f %6s",
+          format(load), snapshot.getThroughput(),
+          snapshot.getResponseTime().getValueAtPercentile(50) / 1e6,
+          latencyNanos / 1e6, snapshot.getResponseTime().getMaxValue() / 1e6,
+          snapshot.getRetryRatio(), passed ? "pass" : "fail");
+    }
+  }
+}
@@ -0,0 +1,188 @@
+/*-
+ *  § 
+ * benchmark: command-line
+ *    
+ * Copyright (C) 2019 OnGres, Inc.
+ *    
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * § §
+ */
+
+package com.ongres.benchmark;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jooq.lambda.Unchecked;
+
+/**
+ * Execution that runs each simulated client (or each arrival in open-loop mode) on its own
+ * virtual thread, so blocking driver calls do not hold a platform thread.
+ */
+public class VirtualThreadExecution implements Execution {
+
+  private static final Logger logger = LogManager.getLogger();
+
+  private final CompletableFuture<Void> future = new CompletableFuture<Void>();
+  private final CompletableFuture<Void> termination = new CompletableFuture<Void>();
+  private final ThreadFactory threadFactory = VirtualThreads.newThreadFactory("benchmark-client-");
+  private final AtomicInteger active = new AtomicInteger(1);
+  private final AtomicLong remaining;
+  private final BenchmarkRunner benchmark;
+  private final LoadControl loadControl;
+  private final ThinkTime thinkTime;
+  private volatile boolean cancelled = false;
+
+  private VirtualThreadExecution(BenchmarkRunner benchmark, LoadControl loadControl,
+      ThinkTime thinkTime, long iterations) {
+    this.benchmark = benchmark;
+    this.loadControl = loadControl;
+    this.thinkTime = thinkTime;
+    this.remaining = new AtomicLong(iterations);
+    MetricsManager.gauge(Metric.CLIENTS, () -> active.get() - 1);
+  }
+
+  /**
+   * Start {@code clients} simulated clients each running iterations one after the other,
+   * waiting {@code thinkTime} before each one, within the concurrency allowed by
+   * {@code loadControl}.
+   */
+  public static VirtualThreadExecution startClosedLoop(BenchmarkRunner benchmark,
+      LoadControl loadControl, ThinkTime thinkTime, int clients, long iterations) {
+    VirtualThreadExecution execution = new VirtualThreadExecution(benchmark, loadControl,
+        thinkTime, iterations);
+    execution.logEngine();
+    for (int client = 0; client < clients; client++) {
+      execution.startThread(execution::runClient);
+    }
+    execution.release();
+    return execution;
+  }
+
+  /**
+   * Start a pacer that runs each iteration on a new virtual thread at the time scheduled by
+   * the open-loop {@code loadControl}.
+   */
+  public static VirtualThreadExecution startOpenLoop(BenchmarkRunner benchmark,
+      LoadControl loadControl, long iterations) {
+    VirtualThreadExecution execution = new VirtualThreadExecution(benchmark, loadControl,
+        ThinkTime.none(), iterations);
+    execution.logEngine();
+    Thread pacer = new Thread(execution::runPacer, "benchmark-pacer");
+    pacer.setDaemon(true);
+    pacer.start();
+    return execution;
+  }
+
+  private void logEngine() {
+    if (!VirtualThreads.isSupported()) {
+      logger.warn("Virtual threads are not supported by this Java version,"
+          + " a platform thread will be used for each client");
+    }
+  }
+
+  private void runClient() {
+    while (!cancelled && remaining.getAndDecrement() > 0) {
+      Unchecked.runnable(thinkTime::sleep).run();
+      if (cancelled) {
+        break;
+      }
+      loadControl.run(benchmark);
+    }
+  }
+
+  private void runPacer() {
+    try {
+      while (!cancelled && remaining.getAndDecrement() > 0) {
+        final long intendedStartNanos = loadControl.nextArrival();
+        if (cancelled) {
+          break;
+        }
+        startThread(() -> benchmark.run(intendedStartNanos));
+      }
+    } catch (Throwable ex) {
+      fail(ex);
+    } finally {
+      release();
+    }
+  }
+
+  private void startThread(Runnable runnable) {
+    active.incrementAndGet();
+    threadFactory.newThread(() -> {
+      try {
+        runnable.run();
+      } catch (Throwable ex) {
+        fail(ex);
+      } finally {
+        release();
+      }
+    }).start();
+  }
+
+  private void fail(Throwable ex) {
+    cancelled = true;
+    future.completeExceptionally(ex);
+  }
+
+  private void release() {
+    if (active.decrementAndGet() == 0) {
+      future.complete(null);
+      termination.complete(null);
+    }
+  }
+
+  @Override
+  public void cancel() {
+    cancelled = true;
+    future.cancel(false);
+  }
+
+  @Override
+  public void awaitTermination() throws InterruptedException, ExecutionException {
+    termination.get();
+  }
+
+  @Override
+  public boolean cancel(boolean mayInterruptIfRunning) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public boolean isCancelled() {
+    return future.isCancelled();
+  }
+
+  @Override
+  public boolean isDone() {
+    return future.isDone();
+  }
+
+  @Override
+  public Void get() throws InterruptedException, ExecutionException {
+    return future.get();
+  }
+
+  @Override
+  public Void get(long timeout, TimeUnit unit)
+      throws InterruptedException, ExecutionException, TimeoutException {
+    return future.get(timeout, unit);
+  }
+}
@@ -0,0 +1,69 @@
+/*-
+ *  § 
+ * benchmark: command-line
+ *    
+ * Copyright (C) 2019 OnGres, Inc.
+ *    
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * § §
+ */
+
+package com.ongres.benchmark;
+
+import com.codahale.metrics.Meter;
+
+import java.io.Closeable;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Virtual threads support. This is the fallback used on Java versions before 21 where
+ * platform threads are created instead, a Java 21 version of this class is provided in the
+ * multi-release JAR.
+ */
+final class VirtualThreads {
+
+  private VirtualThreads() {
+  }
+
+  static boolean isSupported() {
+    return false;
+  }
+
+  /**
+   * Create a thread factory for simulated clients.
+   */
+  static ThreadFactory newThreadFactory(String prefix) {
+    final AtomicInteger index = new AtomicInteger(0);
+    return runnable -> {
+      Thread thread = new Thread(runnable, prefix + index.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  /**
+   * Sample the fraction of the carrier threads CPU time used, there are no carrier threads.
+   */
+  static Closeable monitorCarrierUtilization(Consumer<Double> utilization) {
+    return () -> { };
+  }
+
+  /**
+   * Mark {@code pinned} each time a virtual thread blocks while pinned to its carrier.
+   */
+  static Closeable monitorPinning(Meter pinned) {
+    return () -> { };
+  }
+}
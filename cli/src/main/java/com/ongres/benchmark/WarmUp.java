@@ -0,0 +1,150 @@
+/*-
+ *  § 
+ * benchmark: command-line
+ *    
+ * Copyright (C) 2019 OnGres, Inc.
+ *    
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * § §
+ */
+
+package com.ongres.benchmark;
+
+import com.codahale.metrics.MetricFilter;
+import com.google.common.base.Preconditions;
+import com.ongres.benchmark.config.model.Config;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Warm-up phase whose iterations are recorded in the warm-up registry and excluded from the
+ * results. It lasts a fixed duration or, when detection is enabled, until throughput and p50
+ * response time stay within a tolerance over consecutive windows.
+ */
+public class WarmUp {
+
+  private static final Logger logger = LogManager.getLogger();
+
+  private final BenchmarkRunner benchmark;
+  private final Duration duration;
+  private final boolean detect;
+  private final Duration window;
+  private final int windows;
+  private final double tolerance;
+  private final MetricFilter filter;
+
+  private WarmUp(BenchmarkRunner benchmark, Config config) {
+    this.benchmark = benchmark;
+    this.duration = config.getWarmUpAsDuration().get();
+    this.detect = config.isWarmUpDetect();
+    this.window = config.getWarmUpWindowAsDuration();
+    this.windows = config.getWarmUpWindows();
+    this.tolerance = config.getWarmUpTolerance();
+    this.filter = config.getMetricsFilterAsImmutableList().isEmpty()
+        ? MetricFilter.ALL
+        : (name, metric) -> config.getMetricsFilterAsImmutableList().contains(name);
+    Preconditions.checkArgument(!duration.isNegative(), "warm-up must not be negative");
+    Preconditions.checkArgument(!window.isZero() && !window.isNegative(),
+        "warm-up window must be greater than 0");
+    Preconditions.checkArgument(windows > 1, "warm-up windows must be greater than 1");
+    Preconditions.checkArgument(tolerance > 0, "warm-up tolerance must be greater than 0");
+  }
+
+  /**
+   * Create a warm-up configured by {@code config}. Iterations of {@code benchmark} are
+   * recorded in the warm-up registry from now on.
+   */
+  public static WarmUp create(BenchmarkRunner benchmark, Config config) {
+    WarmUp warmUp = new WarmUp(benchmark, config);
+    benchmark.startWarmUp();
+    return warmUp;
+  }
+
+  /**
+   * Wait for the warm-up to end and start measuring. Return false if {@code execution}
+   * completed during the warm-up.
+   */
+  public boolean run(Execution execution) throws InterruptedException, ExecutionException {
+    final long startNanos = System.nanoTime();
+    final boolean completed;
+    boolean steady = false;
+    if (!detect) {
+      completed = execution.awaitCompletion(duration.toNanos(), TimeUnit.NANOSECONDS);
+    } else {
+      MetricsWindow metricsWindow = new MetricsWindow();
+      benchmark.addListener(metricsWindow);
+      try {
+        Deque<MetricsWindow.Snapshot> snapshots = new ArrayDeque<>(windows + 1);
+        while (true) {
+          final long remainingNanos = duration.toNanos() - (System.nanoTime() - startNanos);
+          if (remainingNanos <= 0) {
+            completed = false;
+            break;
+          }
+          if (execution.awaitCompletion(Math.min(window.toNanos(), remainingNanos),
+              TimeUnit.NANOSECONDS)) {
+            completed = true;
+            break;
+          }
+          snapshots.addLast(metricsWindow.next());
+          if (snapshots.size() > windows) {
+            snapshots.removeFirst();
+          }
+          if (snapshots.size() == windows
+              && isSteady(snapshots, MetricsWindow.Snapshot::getThroughput)
+              && isSteady(snapshots, s -> s.getResponseTime().getValueAtPercentile(50))) {
+            steady = true;
+            completed = false;
+            break;
+          }
+        }
+      } finally {
+        benchmark.removeListener(metricsWindow);
+      }
+    }
+    benchmark.startMeasuring();
+    final Duration elapsed = Duration.ofNanos(System.nanoTime() - startNanos);
+    final long iterations = MetricsManager.meter(MetricsManager.getWarmUpMetricRegistry(),
+        Metric.ITERATIONS).getCount();
+    if (detect && !steady && !completed) {
+      logger.warn("Steady state not detected within " + duration);
+    }
+    logger.info("Warm-up completed in " + elapsed + " after " + iterations + " iterations"
+        + (steady ? " (steady state detected)" : ""));
+    MetricsManager.reportWarmUp(filter);
+    return !completed;
+  }
+
+  private boolean isSteady(Deque<MetricsWindow.Snapshot> snapshots,
+      ToDoubleFunction<MetricsWindow.Snapshot> value) {
+    double min = Double.MAX_VALUE;
+    double max = 0D;
+    double sum = 0D;
+    for (MetricsWindow.Snapshot snapshot : snapshots) {
+      final double current = value.applyAsDouble(snapshot);
+      min = Math.min(min, current);
+      max = Math.max(max, current);
+      sum += current;
+    }
+    final double mean = sum / snapshots.size();
+    return mean > 0 && max - min <= mean * tolerance;
+  }
+}
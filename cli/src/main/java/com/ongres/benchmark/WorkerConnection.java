@@ -0,0 +1,185 @@
+/*-
+ *  § 
+ * benchmark: command-line
+ *    
+ * Copyright (C) 2019 OnGres, Inc.
+ *    
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * § §
+ */
+
+package com.ongres.benchmark;
+
+import com.google.common.base.Preconditions;
+import com.google.common.net.HostAndPort;
+import com.ongres.benchmark.config.ConfigUtils;
+import com.ongres.benchmark.config.model.Config;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Connection of a worker to its {@link Coordinator}. The worker receives its configuration,
+ * waits for the coordinator to start all the workers at once and then reports the response
+ * time, service time and retries of every iteration at fixed intervals.
+ */
+public class WorkerConnection implements IterationListener, AutoCloseable {
+
+  private static final Logger logger = LogManager.getLogger();
+
+  private final Socket socket;
+  private final DataInputStream in;
+  private final DataOutputStream out;
+  private final StripedRecorder responseTime = new StripedRecorder(3);
+  private final StripedRecorder serviceTime = new StripedRecorder(3);
+  private final LongAdder retries = new LongAdder();
+  private ScheduledExecutorService reporter;
+  private int interval = 0;
+  private long intervalStartNanos;
+
+  private WorkerConnection(Socket socket) throws IOException {
+    this.socket = socket;
+    this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+    this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+  }
+
+  /**
+   * Connect to the coordinator listening on {@code hostAndPort} and send it {@code token}.
+   */
+  public static WorkerConnection connect(String hostAndPort, String token) throws IOException {
+    HostAndPort address = HostAndPort.fromString(hostAndPort);
+    Preconditions.checkArgument(address.hasPort(), "--worker-connect must be host:port");
+    Preconditions.checkArgument(token != null, "--coordinator-token or the "
+        + DistributedProtocol.TOKEN_ENVIRONMENT_VARIABLE + " environment variable must be set");
+    Socket socket = new Socket(address.getHost(), address.getPort());
+    socket.setTcpNoDelay(true);
+    logger.info("Connected to coordinator " + address);
+    final WorkerConnection connection = new WorkerConnection(socket);
+    connection.out.writeByte(DistributedProtocol.HELLO);
+    DistributedProtocol.writeString(connection.out, token);
+    connection.out.flush();
+    return connection;
+  }
+
+  /**
+   * Wait for the configuration of this worker.
+   */
+  public Config receiveConfig() throws IOException {
+    DistributedProtocol.expect(in, DistributedProtocol.CONFIG);
+    String config = DistributedProtocol.readString(in);
+    return ConfigUtils.parseConfig(new ByteArrayInputStream(
+        config.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  /**
+   * Notify the coordinator that the benchmark is ready and wait until all the workers are.
+   */
+  public void awaitStart() throws IOException {
+    synchronized (this) {
+      out.writeByte(DistributedProtocol.READY);
+      out.flush();
+    }
+    DistributedProtocol.expect(in, DistributedProtocol.START);
+  }
+
+  /**
+   * Record the iterations of {@code benchmark} and report them every {@code interval}.
+   */
+  public synchronized void startReporting(BenchmarkRunner benchmark, Duration interval) {
+    Preconditions.checkState(reporter == null, "Already reporting");
+    intervalStartNanos = System.nanoTime();
+    benchmark.addListener(this);
+    reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "benchmark-worker-reporter");
+      thread.setDaemon(true);
+      return thread;
+    });
+    reporter.scheduleAtFixedRate(this::reportInterval,
+        interval.toNanos(), interval.toNanos(), TimeUnit.NANOSECONDS);
+  }
+
+  @Override
+  public void onIteration(long intendedStartNanos, long startNanos, long endNanos) {
+    responseTime.recordValue(endNanos - intendedStartNanos);
+    serviceTime.recordValue(endNanos - startNanos);
+  }
+
+  @Override
+  public void onRetry() {
+    retries.increment();
+  }
+
+  private void reportInterval() {
+    try {
+      report();
+    } catch (IOException ex) {
+      logger.error("Could not report to coordinator", ex);
+    }
+  }
+
+  private synchronized void report() throws IOException {
+    final long endNanos = System.nanoTime();
+    out.writeByte(DistributedProtocol.INTERVAL);
+    out.writeInt(interval++);
+    out.writeLong(endNanos - intervalStartNanos);
+    out.writeLong(retries.sumThenReset());
+    DistributedProtocol.writeHistogram(out, responseTime.getIntervalHistogram());
+    DistributedProtocol.writeHistogram(out, serviceTime.getIntervalHistogram());
+    out.flush();
+    intervalStartNanos = endNanos;
+  }
+
+  /**
+   * Report the last interval and notify the coordinator that the benchmark completed,
+   * with {@code error} if it failed.
+   */
+  public void done(Throwable error) throws IOException {
+    final ScheduledExecutorService reporter;
+    synchronized (this) {
+      reporter = this.reporter;
+    }
+    if (reporter != null) {
+      reporter.shutdown();
+      try {
+        reporter.awaitTermination(1, TimeUnit.MINUTES);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+      report();
+    }
+    synchronized (this) {
+      out.writeByte(DistributedProtocol.DONE);
+      DistributedProtocol.writeString(out, error == null ? "" : String.valueOf(error));
+      out.flush();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    socket.close();
+  }
+}
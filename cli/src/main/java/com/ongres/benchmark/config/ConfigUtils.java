@@ -23,8 +23,10 @@ package com.ongres.benchmark.config;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.core.JsonParser.Feature;
 import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import com.ongres.benchmark.config.model.Config;
 
@@ -72,6 +74,22 @@ public class ConfigUtils {
     mapper.writeValue(outputStream, config);
   }
 
+  /**
+   * Convert the configuration to JSON without the password of the target database and the
+   * coordinator token.
+   */
+  public static ObjectNode toJson(Config config) {
+    ObjectMapper mapper = new ObjectMapper();
+    configMapper(mapper);
+    ObjectNode json = mapper.valueToTree(config);
+    JsonNode database = json.path("target").path("database");
+    if (database.isObject()) {
+      ((ObjectNode) database).remove("password");
+    }
+    json.remove("coordinatorToken");
+    return json;
+  }
+
   /**
    * Check the Permissions of the Configuration File.
    */
@@ -48,4 +48,12 @@ public class Version {
     return SINGLETON.properties.getProperty("version");
   }
 
+  /**
+   * Version of the MongoDB driver the benchmark was built with, the driver jars do not have an
+   * implementation version in their manifest.
+   */
+  public static String getMongodbVersion() {
+    return SINGLETON.properties.getProperty("mongodb.version");
+  }
+
 }
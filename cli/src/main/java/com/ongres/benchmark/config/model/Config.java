@@ -26,6 +26,7 @@ import com.mongodb.ReadConcern;
 import com.mongodb.ReadPreference;
 import com.mongodb.WriteConcern;
 import com.ongres.benchmark.Metric;
+import com.ongres.benchmark.config.model.profile.LoadProfile;
 import com.ongres.benchmark.config.model.target.Target;
 import com.ongres.benchmark.config.picocli.DurationConverter;
 import com.ongres.benchmark.config.picocli.LogLevelConverter;
@@ -38,12 +39,15 @@ import java.util.Locale;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
+import io.r2dbc.spi.IsolationLevel;
 import picocli.CommandLine.Option;
 
 public class Config {
 
   private Target target = new Target();
 
+  private LoadProfile profile;
+
   @Option(names = {"--log-level"},
       description = "Set logging level (all, debug, error, fatal, info, off, trace, warn)",
       required = false, 
@@ -54,8 +58,22 @@ public class Config {
       description = "Specify the parallelism that will be used to write to target")
   private int parallelism = Runtime.getRuntime().availableProcessors();
   
+  @Option(names = {"--execution-engine"}, 
+      description = "Specify the execution engine: reactor (a platform thread for each unit of"
+          + " parallelism) or virtual-threads (a virtual thread for each simulated client,"
+          + " requires Java 21)")
+  private String executionEngine = ExecutionEngine.REACTOR.name();
+
+  @Option(names = {"--max-in-flight"}, 
+      description = "Set the max # of in-flight iterations for non-blocking benchmark targets"
+          + " or of clients when think time is outside the transaction (defaults to"
+          + " parallelism)",
+      required = false)
+  private Integer maxInFlight;
+
   @Option(names = {"--benchmark-target"}, 
-      description = "Specify the benchmark target: postgres or mongo")
+      description = "Specify the benchmark target: postgres, postgres-r2dbc, mongo,"
+          + " mongo-reactive, pDW, pDW-r2dbc, mDW or noop (measures the harness overhead)")
   private String targetType = "postgres";
 
   @Option(names = {"--duration"}, 
@@ -64,16 +82,128 @@ public class Config {
       converter = DurationConverter.class)
   private String duration;
 
+  @Option(names = {"--warm-up"}, 
+      description = "Set warm-up duration, iterations during warm-up are excluded from the"
+          + " results (the max warm-up duration with --warm-up-detect)", 
+      required = false,
+      converter = DurationConverter.class)
+  private String warmUp;
+
+  @Option(names = {"--warm-up-detect"}, 
+      description = "End warm-up when throughput and p50 response time are steady", 
+      required = true)
+  private boolean warmUpDetect = false;
+
+  @Option(names = {"--warm-up-window"}, 
+      description = "Set the window over which throughput and p50 response time are measured"
+          + " to detect the steady state", 
+      required = true,
+      converter = DurationConverter.class)
+  private String warmUpWindow = "PT5S";
+
+  @Option(names = {"--warm-up-windows"}, 
+      description = "Set the # of consecutive windows that must be within the tolerance to"
+          + " detect the steady state", 
+      required = true)
+  private int warmUpWindows = 3;
+
+  @Option(names = {"--warm-up-tolerance"}, 
+      description = "Set the max difference between windows, as a fraction of their mean, to"
+          + " detect the steady state", 
+      required = true)
+  private double warmUpTolerance = 0.1D;
+
   @Option(names = {"--iterations"}, 
       description = "Set benchmark iterations that will be executed", 
       required = false)
   private Integer iterations;
 
+  @Option(names = {"--rate"}, 
+      description = "Set target arrival rate (iterations per second) to run an open-loop"
+          + " benchmark, latency is measured from the intended start time", 
+      required = false)
+  private Double rate;
+
+  @Option(names = {"--rate-distribution"}, 
+      description = "Set inter-arrival time distribution when --rate is set: constant or poisson", 
+      required = true)
+  private String rateDistribution = ArrivalDistribution.CONSTANT.name();
+
+  @Option(names = {"--search"}, 
+      description = "Search the max sustainable throughput under the latency SLO by stepping"
+          + " the offered load: rate (open-loop) or concurrency (closed-loop)", 
+      required = false)
+  private String search;
+
+  @Option(names = {"--search-start"}, 
+      description = "Set the offered load of the first search step (defaults to --rate, 100"
+          + " iterations per second or 1 client)", 
+      required = false)
+  private Double searchStart;
+
+  @Option(names = {"--search-max"}, 
+      description = "Set the max offered load of the search (defaults to parallelism for"
+          + " concurrency, unbounded for rate)", 
+      required = false)
+  private Double searchMax;
+
+  @Option(names = {"--search-step-duration"}, 
+      description = "Set the duration of each search step", 
+      required = true,
+      converter = DurationConverter.class)
+  private String searchStepDuration = "PT30S";
+
+  @Option(names = {"--search-latency-slo"}, 
+      description = "Set the max response time percentile a search step may reach", 
+      required = true,
+      converter = DurationConverter.class)
+  private String searchLatencySlo = "PT0.1S";
+
+  @Option(names = {"--search-latency-percentile"}, 
+      description = "Set the response time percentile checked against the latency SLO", 
+      required = true)
+  private double searchLatencyPercentile = 99D;
+
+  @Option(names = {"--search-max-retry-ratio"}, 
+      description = "Set the max retries per iteration a search step may reach", 
+      required = true)
+  private double searchMaxRetryRatio = 0.01D;
+
+  @Option(names = {"--search-precision"}, 
+      description = "Stop the search when the distance between the max passing load and the"
+          + " min failing load is less than this fraction of the former", 
+      required = true)
+  private double searchPrecision = 0.05D;
+
   @Option(names = {"--booking-sleep"}, 
-      description = "Set booking sleep before inserting seat table", 
+      description = "Set booking sleep seconds before inserting seat table (a fixed"
+          + " --think-time inside the transaction)", 
       required = true)
   private int bookingSleep = 0;
 
+  @Option(names = {"--think-time"}, 
+      description = "Set the mean think time (defaults to --booking-sleep)", 
+      required = false,
+      converter = DurationConverter.class)
+  private String thinkTime;
+
+  @Option(names = {"--think-time-distribution"}, 
+      description = "Set think time distribution: fixed, uniform, exponential or log-normal", 
+      required = true)
+  private String thinkTimeDistribution = ThinkTimeDistribution.FIXED.name();
+
+  @Option(names = {"--think-time-sigma"}, 
+      description = "Set the standard deviation of the logarithm of the log-normal think time", 
+      required = true)
+  private double thinkTimeSigma = 1D;
+
+  @Option(names = {"--think-time-placement"}, 
+      description = "Set where the think time happens: inside (the transaction, before"
+          + " inserting seat table) or outside (between iterations of each client, without"
+          + " holding a thread or a connection)", 
+      required = true)
+  private String thinkTimePlacement = ThinkTimePlacement.INSIDE.name();
+
   @Option(names = {"--day-range"}, 
       description = "Set day range when inserting / updating audit table", 
       required = true)
@@ -86,10 +216,55 @@ public class Config {
   private String metrics;
 
   @Option(names = {"--metrics-reporter"}, 
-      description = "Set metrics reporter", 
+      description = "Set metrics reporter: jxm, csv, log or prometheus", 
       required = true)
   private String metricsReporter = MetricReporterType.JXM.name();
 
+  @Option(names = {"--histogram-log"}, 
+      description = "Write the interval histograms of the timers to the specified HdrHistogram"
+          + " log file (workers of a distributed benchmark add their index to the name)", 
+      required = false)
+  private String histogramLog;
+
+  @Option(names = {"--histogram-log-interval"}, 
+      description = "Set the interval of the histograms written to the histogram log", 
+      required = true,
+      converter = DurationConverter.class)
+  private String histogramLogInterval = "PT1S";
+
+  @Option(names = {"--prometheus-port"}, 
+      description = "Set the port on which the prometheus metrics reporter serves the metrics", 
+      required = true)
+  private int prometheusPort = 9404;
+
+  @Option(names = {"--prometheus-workload"}, 
+      description = "Set the workload label of the metrics served to prometheus (defaults to"
+          + " dw for the data warehouse targets, noop for noop and flight otherwise)", 
+      required = false)
+  private String prometheusWorkload;
+
+  @Option(names = {"--summary"}, 
+      description = "Write the summary of the run (configuration, throughput, latency"
+          + " percentiles, retries and errors) to the specified JSON file", 
+      required = true)
+  private String summary = "summary.json";
+
+  @Option(names = {"--run-registry"}, 
+      description = "Append the summary of the run to the specified run registry file"
+          + " (defaults to .benchmark/runs.jsonl in the user home)", 
+      required = false)
+  private String runRegistry;
+
+  @Option(names = {"--skip-run-registry"}, 
+      description = "Do not append the summary of the run to the run registry", 
+      required = true)
+  private boolean skipRunRegistry = false;
+
+  @Option(names = {"--run-name"}, 
+      description = "Set a name for the run to find it in the run registry", 
+      required = false)
+  private String runName;
+
   @Option(names = {"--metrics-filter"}, 
       description = "Set metrics filter for log and csv",
       required = false, split = ",")
@@ -152,11 +327,201 @@ public class Config {
       required = true)
   private boolean onlySetup = false;
 
+  @Option(names = {"--load-parallelism"}, 
+      description = "Set the # of connections used to load data and build indexes and"
+          + " constraints during setup (up to --max-connections)")
+  private int loadParallelism = Runtime.getRuntime().availableProcessors();
+
+  @Option(names = {"--scale-factor"}, 
+      description = "Generate the data set at the specified scale instead of loading the"
+          + " bundled one (1 is about the size of the bundled flight data set and 1M orders"
+          + " for the DW data set)", 
+      required = false)
+  private Double scaleFactor;
+
+  @Option(names = {"--seed"}, 
+      description = "Set the seed of the generated data set", 
+      required = true)
+  private long seed = 0L;
+
+  @Option(names = {"--booking-history"}, 
+      description = "Set the # of bookings per schedule generated before the benchmark with"
+          + " --scale-factor", 
+      required = true)
+  private int bookingHistory = 0;
+
+  @Option(names = {"--dw-products"}, 
+      description = "Set the # of products of the DW data set generated with --scale-factor"
+          + " (1 per 1000 orders by default)", 
+      required = false)
+  private Integer dwProducts;
+
+  @Option(names = {"--dw-customers"}, 
+      description = "Set the # of customers of the DW data set generated with --scale-factor"
+          + " (1 per 100 orders by default)", 
+      required = false)
+  private Integer dwCustomers;
+
+  @Option(names = {"--dw-sales"}, 
+      description = "Set the # of sales people of the DW data set generated with"
+          + " --scale-factor (1 per 10000 orders by default)", 
+      required = false)
+  private Integer dwSales;
+
+  @Option(names = {"--dw-skew"}, 
+      description = "Set the skew of the keys of the orders of the DW data set generated with"
+          + " --scale-factor (0 is uniform, 1 is about Zipf)", 
+      required = true)
+  private double dwSkew = 0D;
+
   @Option(names = {"--disable-transaction"}, 
       description = "Disable transaction", 
       required = true)
   private boolean disableTransaction = false;
 
+  @Option(names = {"--disable-statement-cache"}, 
+      description = "Disable the cache of server-side prepared statements of each connection"
+          + " (statements are prepared and closed on each use)", 
+      required = true)
+  private boolean disableStatementCache = false;
+
+  @Option(names = {"--postgres-mode"}, 
+      description = "Set how the Postgres flight benchmark sends a booking: statements (a"
+          + " statement for each step), cte (a single data-modifying CTE), procedure (a call to"
+          + " a PL/pgSQL procedure) or pipeline (all the statements sent in a single batch)", 
+      required = true)
+  private String postgresMode = PostgresMode.STATEMENTS.name();
+
+  @Option(names = {"--schedule-cache"}, 
+      description = "Set the cache of the schedule and aircraft reference data of the flight"
+          + " benchmarks: none, preload (loaded before the benchmark starts) or on-demand"
+          + " (filled on the first read of each schedule)", 
+      required = true)
+  private String scheduleCache = ScheduleCacheMode.NONE.name();
+
+  @Option(names = {"--schedule-cache-size"}, 
+      description = "Set the maximum # of schedules cached (all of them by default)", 
+      required = false)
+  private Integer scheduleCacheSize;
+
+  @Option(names = {"--schedule-cache-eviction"}, 
+      description = "Set the eviction of the schedule cache when it is smaller than the"
+          + " schedules: lru, fifo or random", 
+      required = true)
+  private String scheduleCacheEviction = CacheEviction.LRU.name();
+
+  @Option(names = {"--group-size"}, 
+      description = "Set the mean # of seats booked in each transaction of the flight"
+          + " benchmarks", 
+      required = true)
+  private int groupSize = 1;
+
+  @Option(names = {"--group-size-distribution"}, 
+      description = "Set the distribution of the # of seats booked in each transaction:"
+          + " fixed, uniform (between 1 and twice the mean minus 1) or geometric", 
+      required = true)
+  private String groupSizeDistribution = GroupSizeDistribution.FIXED.name();
+
+  @Option(names = {"--group-commit-committers"}, 
+      description = "Enable group commit in the flight benchmarks with the specified # of"
+          + " committer threads that write the queued bookings in batches (0 disables it)", 
+      required = true)
+  private int groupCommitCommitters = 0;
+
+  @Option(names = {"--group-commit-max-batch"}, 
+      description = "Set the maximum # of bookings written in a group commit batch", 
+      required = true)
+  private int groupCommitMaxBatch = 100;
+
+  @Option(names = {"--group-commit-linger"}, 
+      description = "Set the maximum time a committer waits for more bookings to fill a"
+          + " batch", 
+      required = true,
+      converter = DurationConverter.class)
+  private String groupCommitLinger = "PT0.001S";
+
+  @Option(names = {"--group-commit-queue-size"}, 
+      description = "Set the maximum # of bookings queued for group commit", 
+      required = true)
+  private int groupCommitQueueSize = 10000;
+
+  @Option(names = {"--schedule-distribution"}, 
+      description = "Set the distribution of the schedules booked by the flight benchmarks:"
+          + " uniform, zipfian (lower IDs are hotter), hotspot or latest (higher IDs are"
+          + " hotter)", 
+      required = true)
+  private String scheduleDistribution = KeyDistribution.UNIFORM.name();
+
+  @Option(names = {"--day-distribution"}, 
+      description = "Set the distribution of the days booked by the flight benchmarks:"
+          + " uniform, zipfian (nearer days are hotter), hotspot or latest (further days are"
+          + " hotter)", 
+      required = true)
+  private String dayDistribution = KeyDistribution.UNIFORM.name();
+
+  @Option(names = {"--zipfian-theta"}, 
+      description = "Set the exponent of the zipfian and latest distributions", 
+      required = true)
+  private double zipfianTheta = 0.99D;
+
+  @Option(names = {"--hotspot-fraction"}, 
+      description = "Set the fraction of the keys that are hot in the hotspot distribution", 
+      required = true)
+  private double hotspotFraction = 0.2D;
+
+  @Option(names = {"--hotspot-access-fraction"}, 
+      description = "Set the fraction of the accesses that go to the hot keys in the hotspot"
+          + " distribution", 
+      required = true)
+  private double hotspotAccessFraction = 0.8D;
+
+  @Option(names = {"--access-seed"}, 
+      description = "Set the seed of the schedules and days booked, so that each worker"
+          + " thread repeats its sequence (defaults to a random seed)", 
+      required = false)
+  private Long accessSeed;
+
+  @Option(names = {"--workers"}, 
+      description = "Run as coordinator of the specified # of worker processes that share the"
+          + " load and report their metrics to be merged", 
+      required = true)
+  private int workers = 0;
+
+  @Option(names = {"--local-workers"}, 
+      description = "Set the # of workers the coordinator forks on this host, the rest must"
+          + " be started with --worker-connect (defaults to workers)", 
+      required = false)
+  private Integer localWorkers;
+
+  @Option(names = {"--coordinator-port"}, 
+      description = "Set the port the coordinator listens on for workers (defaults to a random"
+          + " port, only valid when all workers are local)", 
+      required = true)
+  private int coordinatorPort = 0;
+
+  @Option(names = {"--coordinator-token"}, 
+      description = "Set the token that workers must send to the coordinator before receiving"
+          + " the configuration (defaults to the BENCHMARK_COORDINATOR_TOKEN environment"
+          + " variable, required when not all the workers are local)", 
+      required = false)
+  private String coordinatorToken;
+
+  @Option(names = {"--worker-connect"}, 
+      description = "Run as a worker of the coordinator listening on the specified host:port,"
+          + " the configuration is received from the coordinator", 
+      required = false)
+  private String workerConnect;
+
+  @Option(names = {"--worker-report-interval"}, 
+      description = "Set the interval at which workers report their metrics to the coordinator", 
+      required = true,
+      converter = DurationConverter.class)
+  private String workerReportInterval = "PT1S";
+
+  private int workerIndex = 0;
+
+  private int workerCount = 1;
+
   public Target getTarget() {
     return target;
   }
@@ -165,6 +530,14 @@ public class Config {
     this.target = target;
   }
 
+  public LoadProfile getProfile() {
+    return profile;
+  }
+
+  public void setProfile(LoadProfile profile) {
+    this.profile = profile;
+  }
+
   public String getLogLevel() {
     return logLevel;
   }
@@ -186,6 +559,27 @@ public class Config {
     this.parallelism = parallelism;
   }
 
+  public String getExecutionEngine() {
+    return executionEngine;
+  }
+
+  @JsonIgnore
+  public ExecutionEngine getExecutionEngineAsEnum() {
+    return ExecutionEngine.valueOf(executionEngine.replaceAll("[ -]", "_").toUpperCase(Locale.US));
+  }
+
+  public void setExecutionEngine(String executionEngine) {
+    this.executionEngine = executionEngine;
+  }
+
+  public Integer getMaxInFlight() {
+    return maxInFlight;
+  }
+
+  public void setMaxInFlight(Integer maxInFlight) {
+    this.maxInFlight = maxInFlight;
+  }
+
   public String getTargetType() {
     return targetType;
   }
@@ -208,6 +602,57 @@ public class Config {
     this.duration = duration;
   }
 
+  public String getWarmUp() {
+    return warmUp;
+  }
+
+  @JsonIgnore
+  public Optional<Duration> getWarmUpAsDuration() {
+    return Optional.ofNullable(warmUp)
+        .map(w -> Duration.parse(w));
+  }
+
+  public void setWarmUp(String warmUp) {
+    this.warmUp = warmUp;
+  }
+
+  public boolean isWarmUpDetect() {
+    return warmUpDetect;
+  }
+
+  public void setWarmUpDetect(boolean warmUpDetect) {
+    this.warmUpDetect = warmUpDetect;
+  }
+
+  public String getWarmUpWindow() {
+    return warmUpWindow;
+  }
+
+  @JsonIgnore
+  public Duration getWarmUpWindowAsDuration() {
+    return Duration.parse(warmUpWindow);
+  }
+
+  public void setWarmUpWindow(String warmUpWindow) {
+    this.warmUpWindow = warmUpWindow;
+  }
+
+  public int getWarmUpWindows() {
+    return warmUpWindows;
+  }
+
+  public void setWarmUpWindows(int warmUpWindows) {
+    this.warmUpWindows = warmUpWindows;
+  }
+
+  public double getWarmUpTolerance() {
+    return warmUpTolerance;
+  }
+
+  public void setWarmUpTolerance(double warmUpTolerance) {
+    this.warmUpTolerance = warmUpTolerance;
+  }
+
   public Integer getIterations() {
     return iterations;
   }
@@ -216,6 +661,107 @@ public class Config {
     this.iterations = iterations;
   }
 
+  public Double getRate() {
+    return rate;
+  }
+
+  public void setRate(Double rate) {
+    this.rate = rate;
+  }
+
+  public String getRateDistribution() {
+    return rateDistribution;
+  }
+
+  @JsonIgnore
+  public ArrivalDistribution getRateDistributionAsEnum() {
+    return ArrivalDistribution.valueOf(rateDistribution.toUpperCase(Locale.US));
+  }
+
+  public void setRateDistribution(String rateDistribution) {
+    this.rateDistribution = rateDistribution;
+  }
+
+  public String getSearch() {
+    return search;
+  }
+
+  @JsonIgnore
+  public Optional<SearchDimension> getSearchAsEnum() {
+    return Optional.ofNullable(search)
+        .map(s -> SearchDimension.valueOf(s.toUpperCase(Locale.US)));
+  }
+
+  public void setSearch(String search) {
+    this.search = search;
+  }
+
+  public Double getSearchStart() {
+    return searchStart;
+  }
+
+  public void setSearchStart(Double searchStart) {
+    this.searchStart = searchStart;
+  }
+
+  public Double getSearchMax() {
+    return searchMax;
+  }
+
+  public void setSearchMax(Double searchMax) {
+    this.searchMax = searchMax;
+  }
+
+  public String getSearchStepDuration() {
+    return searchStepDuration;
+  }
+
+  @JsonIgnore
+  public Duration getSearchStepDurationAsDuration() {
+    return Duration.parse(searchStepDuration);
+  }
+
+  public void setSearchStepDuration(String searchStepDuration) {
+    this.searchStepDuration = searchStepDuration;
+  }
+
+  public String getSearchLatencySlo() {
+    return searchLatencySlo;
+  }
+
+  @JsonIgnore
+  public Duration getSearchLatencySloAsDuration() {
+    return Duration.parse(searchLatencySlo);
+  }
+
+  public void setSearchLatencySlo(String searchLatencySlo) {
+    this.searchLatencySlo = searchLatencySlo;
+  }
+
+  public double getSearchLatencyPercentile() {
+    return searchLatencyPercentile;
+  }
+
+  public void setSearchLatencyPercentile(double searchLatencyPercentile) {
+    this.searchLatencyPercentile = searchLatencyPercentile;
+  }
+
+  public double getSearchMaxRetryRatio() {
+    return searchMaxRetryRatio;
+  }
+
+  public void setSearchMaxRetryRatio(double searchMaxRetryRatio) {
+    this.searchMaxRetryRatio = searchMaxRetryRatio;
+  }
+
+  public double getSearchPrecision() {
+    return searchPrecision;
+  }
+
+  public void setSearchPrecision(double searchPrecision) {
+    this.searchPrecision = searchPrecision;
+  }
+
   public String getMetrics() {
     return metrics;
   }
@@ -239,6 +785,75 @@ public class Config {
     return MetricReporterType.valueOf(metricsReporter.toUpperCase(Locale.US));
   }
 
+  public String getHistogramLog() {
+    return histogramLog;
+  }
+
+  public void setHistogramLog(String histogramLog) {
+    this.histogramLog = histogramLog;
+  }
+
+  public String getHistogramLogInterval() {
+    return histogramLogInterval;
+  }
+
+  @JsonIgnore
+  public Duration getHistogramLogIntervalAsDuration() {
+    return Duration.parse(histogramLogInterval);
+  }
+
+  public void setHistogramLogInterval(String histogramLogInterval) {
+    this.histogramLogInterval = histogramLogInterval;
+  }
+
+  public int getPrometheusPort() {
+    return prometheusPort;
+  }
+
+  public void setPrometheusPort(int prometheusPort) {
+    this.prometheusPort = prometheusPort;
+  }
+
+  public String getPrometheusWorkload() {
+    return prometheusWorkload;
+  }
+
+  public void setPrometheusWorkload(String prometheusWorkload) {
+    this.prometheusWorkload = prometheusWorkload;
+  }
+
+  public String getSummary() {
+    return summary;
+  }
+
+  public void setSummary(String summary) {
+    this.summary = summary;
+  }
+
+  public String getRunRegistry() {
+    return runRegistry;
+  }
+
+  public void setRunRegistry(String runRegistry) {
+    this.runRegistry = runRegistry;
+  }
+
+  public boolean isSkipRunRegistry() {
+    return skipRunRegistry;
+  }
+
+  public void setSkipRunRegistry(boolean skipRunRegistry) {
+    this.skipRunRegistry = skipRunRegistry;
+  }
+
+  public String getRunName() {
+    return runName;
+  }
+
+  public void setRunName(String runName) {
+    this.runName = runName;
+  }
+
   public void setMetricsReporter(String metricsReporter) {
     this.metricsReporter = metricsReporter;
   }
@@ -293,6 +908,56 @@ public class Config {
     this.bookingSleep = bookingSleep;
   }
 
+  public String getThinkTime() {
+    return thinkTime;
+  }
+
+  @JsonIgnore
+  public Duration getThinkTimeAsDuration() {
+    return Optional.ofNullable(thinkTime)
+        .map(t -> Duration.parse(t))
+        .orElse(Duration.ofSeconds(bookingSleep));
+  }
+
+  public void setThinkTime(String thinkTime) {
+    this.thinkTime = thinkTime;
+  }
+
+  public String getThinkTimeDistribution() {
+    return thinkTimeDistribution;
+  }
+
+  @JsonIgnore
+  public ThinkTimeDistribution getThinkTimeDistributionAsEnum() {
+    return ThinkTimeDistribution.valueOf(
+        thinkTimeDistribution.replaceAll("[ -]", "_").toUpperCase(Locale.US));
+  }
+
+  public void setThinkTimeDistribution(String thinkTimeDistribution) {
+    this.thinkTimeDistribution = thinkTimeDistribution;
+  }
+
+  public double getThinkTimeSigma() {
+    return thinkTimeSigma;
+  }
+
+  public void setThinkTimeSigma(double thinkTimeSigma) {
+    this.thinkTimeSigma = thinkTimeSigma;
+  }
+
+  public String getThinkTimePlacement() {
+    return thinkTimePlacement;
+  }
+
+  @JsonIgnore
+  public ThinkTimePlacement getThinkTimePlacementAsEnum() {
+    return ThinkTimePlacement.valueOf(thinkTimePlacement.toUpperCase(Locale.US));
+  }
+
+  public void setThinkTimePlacement(String thinkTimePlacement) {
+    this.thinkTimePlacement = thinkTimePlacement;
+  }
+
   public int getDayRange() {
     return dayRange;
   }
@@ -479,6 +1144,25 @@ public class Config {
     throw new IllegalArgumentException(this.sqlIsolationLevel);
   }
 
+  /**
+   * Return SQL isolation level as R2DBC {@code IsolationLevel}.
+   */
+  @JsonIgnore
+  public IsolationLevel getSqlIsolationLevelAsIsolationLevel() {
+    switch (getSqlIsolationLevelAsInt()) {
+      case Connection.TRANSACTION_READ_UNCOMMITTED:
+        return IsolationLevel.READ_UNCOMMITTED;
+      case Connection.TRANSACTION_READ_COMMITTED:
+        return IsolationLevel.READ_COMMITTED;
+      case Connection.TRANSACTION_REPEATABLE_READ:
+        return IsolationLevel.REPEATABLE_READ;
+      case Connection.TRANSACTION_SERIALIZABLE:
+        return IsolationLevel.SERIALIZABLE;
+      default:
+        throw new IllegalArgumentException(this.sqlIsolationLevel);
+    }
+  }
+
   public void setSqlIsolationLevel(String sqlIsolationLevel) {
     this.sqlIsolationLevel = sqlIsolationLevel;
   }
@@ -499,6 +1183,70 @@ public class Config {
     this.onlySetup = onlySetup;
   }
 
+  public int getLoadParallelism() {
+    return loadParallelism;
+  }
+
+  public void setLoadParallelism(int loadParallelism) {
+    this.loadParallelism = loadParallelism;
+  }
+
+  public Double getScaleFactor() {
+    return scaleFactor;
+  }
+
+  public void setScaleFactor(Double scaleFactor) {
+    this.scaleFactor = scaleFactor;
+  }
+
+  public long getSeed() {
+    return seed;
+  }
+
+  public void setSeed(long seed) {
+    this.seed = seed;
+  }
+
+  public int getBookingHistory() {
+    return bookingHistory;
+  }
+
+  public void setBookingHistory(int bookingHistory) {
+    this.bookingHistory = bookingHistory;
+  }
+
+  public Integer getDwProducts() {
+    return dwProducts;
+  }
+
+  public void setDwProducts(Integer dwProducts) {
+    this.dwProducts = dwProducts;
+  }
+
+  public Integer getDwCustomers() {
+    return dwCustomers;
+  }
+
+  public void setDwCustomers(Integer dwCustomers) {
+    this.dwCustomers = dwCustomers;
+  }
+
+  public Integer getDwSales() {
+    return dwSales;
+  }
+
+  public void setDwSales(Integer dwSales) {
+    this.dwSales = dwSales;
+  }
+
+  public double getDwSkew() {
+    return dwSkew;
+  }
+
+  public void setDwSkew(double dwSkew) {
+    this.dwSkew = dwSkew;
+  }
+
   public boolean isDisableTransaction() {
     return disableTransaction;
   }
@@ -506,4 +1254,245 @@ public class Config {
   public void setDisableTransaction(boolean disableTransaction) {
     this.disableTransaction = disableTransaction;
   }
+
+  public boolean isDisableStatementCache() {
+    return disableStatementCache;
+  }
+
+  public void setDisableStatementCache(boolean disableStatementCache) {
+    this.disableStatementCache = disableStatementCache;
+  }
+
+  public String getPostgresMode() {
+    return postgresMode;
+  }
+
+  @JsonIgnore
+  public PostgresMode getPostgresModeAsEnum() {
+    return PostgresMode.valueOf(postgresMode.toUpperCase(Locale.US));
+  }
+
+  public void setPostgresMode(String postgresMode) {
+    this.postgresMode = postgresMode;
+  }
+
+  public String getScheduleCache() {
+    return scheduleCache;
+  }
+
+  @JsonIgnore
+  public ScheduleCacheMode getScheduleCacheAsEnum() {
+    return ScheduleCacheMode.valueOf(scheduleCache.replaceAll("[ -]", "_")
+        .toUpperCase(Locale.US));
+  }
+
+  public void setScheduleCache(String scheduleCache) {
+    this.scheduleCache = scheduleCache;
+  }
+
+  public Integer getScheduleCacheSize() {
+    return scheduleCacheSize;
+  }
+
+  public void setScheduleCacheSize(Integer scheduleCacheSize) {
+    this.scheduleCacheSize = scheduleCacheSize;
+  }
+
+  public String getScheduleCacheEviction() {
+    return scheduleCacheEviction;
+  }
+
+  @JsonIgnore
+  public CacheEviction getScheduleCacheEvictionAsEnum() {
+    return CacheEviction.valueOf(scheduleCacheEviction.toUpperCase(Locale.US));
+  }
+
+  public void setScheduleCacheEviction(String scheduleCacheEviction) {
+    this.scheduleCacheEviction = scheduleCacheEviction;
+  }
+
+  public int getGroupSize() {
+    return groupSize;
+  }
+
+  public void setGroupSize(int groupSize) {
+    this.groupSize = groupSize;
+  }
+
+  public String getGroupSizeDistribution() {
+    return groupSizeDistribution;
+  }
+
+  @JsonIgnore
+  public GroupSizeDistribution getGroupSizeDistributionAsEnum() {
+    return GroupSizeDistribution.valueOf(groupSizeDistribution.toUpperCase(Locale.US));
+  }
+
+  public void setGroupSizeDistribution(String groupSizeDistribution) {
+    this.groupSizeDistribution = groupSizeDistribution;
+  }
+
+  public int getGroupCommitCommitters() {
+    return groupCommitCommitters;
+  }
+
+  public void setGroupCommitCommitters(int groupCommitCommitters) {
+    this.groupCommitCommitters = groupCommitCommitters;
+  }
+
+  public int getGroupCommitMaxBatch() {
+    return groupCommitMaxBatch;
+  }
+
+  public void setGroupCommitMaxBatch(int groupCommitMaxBatch) {
+    this.groupCommitMaxBatch = groupCommitMaxBatch;
+  }
+
+  public String getGroupCommitLinger() {
+    return groupCommitLinger;
+  }
+
+  @JsonIgnore
+  public Duration getGroupCommitLingerAsDuration() {
+    return Duration.parse(groupCommitLinger);
+  }
+
+  public void setGroupCommitLinger(String groupCommitLinger) {
+    this.groupCommitLinger = groupCommitLinger;
+  }
+
+  public int getGroupCommitQueueSize() {
+    return groupCommitQueueSize;
+  }
+
+  public void setGroupCommitQueueSize(int groupCommitQueueSize) {
+    this.groupCommitQueueSize = groupCommitQueueSize;
+  }
+
+  public String getScheduleDistribution() {
+    return scheduleDistribution;
+  }
+
+  @JsonIgnore
+  public KeyDistribution getScheduleDistributionAsEnum() {
+    return KeyDistribution.valueOf(scheduleDistribution.toUpperCase(Locale.US));
+  }
+
+  public void setScheduleDistribution(String scheduleDistribution) {
+    this.scheduleDistribution = scheduleDistribution;
+  }
+
+  public String getDayDistribution() {
+    return dayDistribution;
+  }
+
+  @JsonIgnore
+  public KeyDistribution getDayDistributionAsEnum() {
+    return KeyDistribution.valueOf(dayDistribution.toUpperCase(Locale.US));
+  }
+
+  public void setDayDistribution(String dayDistribution) {
+    this.dayDistribution = dayDistribution;
+  }
+
+  public double getZipfianTheta() {
+    return zipfianTheta;
+  }
+
+  public void setZipfianTheta(double zipfianTheta) {
+    this.zipfianTheta = zipfianTheta;
+  }
+
+  public double getHotspotFraction() {
+    return hotspotFraction;
+  }
+
+  public void setHotspotFraction(double hotspotFraction) {
+    this.hotspotFraction = hotspotFraction;
+  }
+
+  public double getHotspotAccessFraction() {
+    return hotspotAccessFraction;
+  }
+
+  public void setHotspotAccessFraction(double hotspotAccessFraction) {
+    this.hotspotAccessFraction = hotspotAccessFraction;
+  }
+
+  public Long getAccessSeed() {
+    return accessSeed;
+  }
+
+  public void setAccessSeed(Long accessSeed) {
+    this.accessSeed = accessSeed;
+  }
+
+  public int getWorkers() {
+    return workers;
+  }
+
+  public void setWorkers(int workers) {
+    this.workers = workers;
+  }
+
+  public Integer getLocalWorkers() {
+    return localWorkers;
+  }
+
+  public void setLocalWorkers(Integer localWorkers) {
+    this.localWorkers = localWorkers;
+  }
+
+  public int getCoordinatorPort() {
+    return coordinatorPort;
+  }
+
+  public void setCoordinatorPort(int coordinatorPort) {
+    this.coordinatorPort = coordinatorPort;
+  }
+
+  public String getCoordinatorToken() {
+    return coordinatorToken;
+  }
+
+  public void setCoordinatorToken(String coordinatorToken) {
+    this.coordinatorToken = coordinatorToken;
+  }
+
+  public String getWorkerConnect() {
+    return workerConnect;
+  }
+
+  public void setWorkerConnect(String workerConnect) {
+    this.workerConnect = workerConnect;
+  }
+
+  public String getWorkerReportInterval() {
+    return workerReportInterval;
+  }
+
+  @JsonIgnore
+  public Duration getWorkerReportIntervalAsDuration() {
+    return Duration.parse(workerReportInterval);
+  }
+
+  public void setWorkerReportInterval(String workerReportInterval) {
+    this.workerReportInterval = workerReportInterval;
+  }
+
+  public int getWorkerIndex() {
+    return workerIndex;
+  }
+
+  public void setWorkerIndex(int workerIndex) {
+    this.workerIndex = workerIndex;
+  }
+
+  public int getWorkerCount() {
+    return workerCount;
+  }
+
+  public void setWorkerCount(int workerCount) {
+    this.workerCount = workerCount;
+  }
 }
@@ -24,6 +24,7 @@ public enum MetricReporterType {
 
   JXM,
   CSV,
-  LOG;
+  LOG,
+  PROMETHEUS;
 
 }
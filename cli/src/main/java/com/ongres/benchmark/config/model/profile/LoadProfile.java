@@ -0,0 +1,38 @@
+/*-
+ *  § 
+ * benchmark: command-line
+ *    
+ * Copyright (C) 2019 OnGres, Inc.
+ *    
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * § §
+ */
+
+package com.ongres.benchmark.config.model.profile;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class LoadProfile {
+
+  private List<LoadStage> stages = new ArrayList<>();
+
+  public List<LoadStage> getStages() {
+    return stages;
+  }
+
+  public void setStages(List<LoadStage> stages) {
+    this.stages = stages;
+  }
+
+}
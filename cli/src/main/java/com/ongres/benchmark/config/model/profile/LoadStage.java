@@ -0,0 +1,148 @@
+/*-
+ *  § 
+ * benchmark: command-line
+ *    
+ * Copyright (C) 2019 OnGres, Inc.
+ *    
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * § §
+ */
+
+package com.ongres.benchmark.config.model.profile;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * A stage of a load profile. The offered load is either a {@code rate} (iterations per
+ * second, open-loop) or a {@code concurrency} (clients, closed-loop). Stages that change the
+ * load start from {@code from}, or from the load at the end of the previous stage.
+ */
+public class LoadStage {
+
+  private String name;
+  private String type = LoadStageType.STEP.name();
+  private String duration;
+  private Double rate;
+  private Integer concurrency;
+  private Double from;
+  private String peakDuration;
+  private String period;
+
+  public String getName() {
+    return name;
+  }
+
+  public void setName(String name) {
+    this.name = name;
+  }
+
+  public String getType() {
+    return type;
+  }
+
+  @JsonIgnore
+  public LoadStageType getTypeAsEnum() {
+    return LoadStageType.valueOf(type.toUpperCase(Locale.US));
+  }
+
+  public void setType(String type) {
+    this.type = type;
+  }
+
+  public String getDuration() {
+    return duration;
+  }
+
+  @JsonIgnore
+  public Duration getDurationAsDuration() {
+    return Duration.parse(duration);
+  }
+
+  public void setDuration(String duration) {
+    this.duration = duration;
+  }
+
+  public Double getRate() {
+    return rate;
+  }
+
+  public void setRate(Double rate) {
+    this.rate = rate;
+  }
+
+  public Integer getConcurrency() {
+    return concurrency;
+  }
+
+  public void setConcurrency(Integer concurrency) {
+    this.concurrency = concurrency;
+  }
+
+  /**
+   * The target load of the stage: the level of a step, the end of a ramp, the peak of a
+   * spike or the crest of a sinusoid.
+   */
+  @JsonIgnore
+  public double getLoad() {
+    return rate != null ? rate : concurrency;
+  }
+
+  public Double getFrom() {
+    return from;
+  }
+
+  public void setFrom(Double from) {
+    this.from = from;
+  }
+
+  public String getPeakDuration() {
+    return peakDuration;
+  }
+
+  /**
+   * How long the load stays at the peak of a spike, defaults to a tenth of the stage.
+   */
+  @JsonIgnore
+  public Duration getPeakDurationAsDuration() {
+    return Optional.ofNullable(peakDuration)
+        .map(d -> Duration.parse(d))
+        .orElse(getDurationAsDuration().dividedBy(10));
+  }
+
+  public void setPeakDuration(String peakDuration) {
+    this.peakDuration = peakDuration;
+  }
+
+  public String getPeriod() {
+    return period;
+  }
+
+  /**
+   * The period of a sinusoid, defaults to the stage duration.
+   */
+  @JsonIgnore
+  public Duration getPeriodAsDuration() {
+    return Optional.ofNullable(period)
+        .map(p -> Duration.parse(p))
+        .orElse(getDurationAsDuration());
+  }
+
+  public void setPeriod(String period) {
+    this.period = period;
+  }
+
+}
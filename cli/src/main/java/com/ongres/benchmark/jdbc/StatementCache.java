@@ -0,0 +1,197 @@
+/*-
+ *  § 
+ * benchmark: command-line
+ *    
+ * Copyright (C) 2019 OnGres, Inc.
+ *    
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * § §
+ */
+
+package com.ongres.benchmark.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.postgresql.PGStatement;
+import org.postgresql.core.BaseConnection;
+
+/**
+ * Cache of prepared statements of each physical connection, so that statements survive the
+ * connection being returned to and borrowed again from the pool. Cached statements are
+ * prepared server-side on their first execution, so that the server parses them once per
+ * connection.
+ *
+ * <p>A physical connection is used by a single thread at a time, so statements of the same
+ * connection are never used concurrently. Entries of closed connections are removed when a new
+ * connection is cached.
+ */
+public class StatementCache {
+
+  private final boolean enabled;
+  private final Map<Connection, Map<String, CachedStatement>> statements =
+      new ConcurrentHashMap<>();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder executions = new LongAdder();
+  private final LongAdder reusedExecutions = new LongAdder();
+
+  private StatementCache(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  /**
+   * Create a {@code StatementCache}, if not {@code enabled} statements are prepared and closed
+   * on each use and never prepared server-side.
+   */
+  public static StatementCache create(boolean enabled) {
+    return new StatementCache(enabled);
+  }
+
+  /**
+   * Return the statement of {@code connection} for {@code sql}, preparing it if it is not
+   * cached.
+   */
+  public CachedStatement prepare(Connection connection, String sql) throws SQLException {
+    if (!enabled) {
+      misses.increment();
+      final PreparedStatement statement = connection.prepareStatement(sql);
+      setPrepareThreshold(statement, 0);
+      return new CachedStatement(statement, false);
+    }
+    final Connection physicalConnection = connection.isWrapperFor(BaseConnection.class)
+        ? connection.unwrap(BaseConnection.class) : connection;
+    Map<String, CachedStatement> connectionStatements = statements.get(physicalConnection);
+    if (connectionStatements == null) {
+      removeClosedConnections();
+      connectionStatements = new HashMap<>();
+      statements.put(physicalConnection, connectionStatements);
+    }
+    CachedStatement cachedStatement = connectionStatements.get(sql);
+    if (cachedStatement != null && !cachedStatement.statement.isClosed()) {
+      hits.increment();
+      return cachedStatement;
+    }
+    misses.increment();
+    final PreparedStatement statement = physicalConnection.prepareStatement(sql);
+    setPrepareThreshold(statement, 1);
+    cachedStatement = new CachedStatement(statement, true);
+    connectionStatements.put(sql, cachedStatement);
+    return cachedStatement;
+  }
+
+  private static void setPrepareThreshold(PreparedStatement statement, int threshold)
+      throws SQLException {
+    if (statement.isWrapperFor(PGStatement.class)) {
+      statement.unwrap(PGStatement.class).setPrepareThreshold(threshold);
+    }
+  }
+
+  private void removeClosedConnections() throws SQLException {
+    for (Iterator<Connection> iterator = statements.keySet().iterator(); iterator.hasNext(); ) {
+      if (iterator.next().isClosed()) {
+        iterator.remove();
+      }
+    }
+  }
+
+  public long getHits() {
+    return hits.sum();
+  }
+
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  /**
+   * Ratio of statements found in the cache.
+   */
+  public double getHitRatio() {
+    final long hits = getHits();
+    final long lookups = hits + getMisses();
+    return lookups == 0 ? 0D : hits / (double) lookups;
+  }
+
+  /**
+   * Ratio of executions that reused a cached statement already prepared server-side by a
+   * previous execution, instead of sending the query to be parsed again.
+   */
+  public double getServerPreparedRatio() {
+    final long executions = this.executions.sum();
+    return executions == 0 ? 0D : reusedExecutions.sum() / (double) executions;
+  }
+
+  /**
+   * A statement returned by the cache, closing it only closes it if it is not cached.
+   */
+  public final class CachedStatement implements AutoCloseable {
+
+    private final PreparedStatement statement;
+    private final boolean cached;
+    private boolean executed;
+
+    private CachedStatement(PreparedStatement statement, boolean cached) {
+      this.statement = statement;
+      this.cached = cached;
+    }
+
+    /**
+     * The statement to bind the parameters to.
+     */
+    public PreparedStatement get() {
+      return statement;
+    }
+
+    public ResultSet executeQuery() throws SQLException {
+      countExecution();
+      return statement.executeQuery();
+    }
+
+    public int executeUpdate() throws SQLException {
+      countExecution();
+      return statement.executeUpdate();
+    }
+
+    public int[] executeBatch() throws SQLException {
+      countExecution();
+      return statement.executeBatch();
+    }
+
+    public boolean execute() throws SQLException {
+      countExecution();
+      return statement.execute();
+    }
+
+    private void countExecution() {
+      executions.increment();
+      if (executed) {
+        reusedExecutions.increment();
+      }
+      executed = true;
+    }
+
+    @Override
+    public void close() throws SQLException {
+      if (!cached) {
+        statement.close();
+      }
+    }
+  }
+}
@@ -0,0 +1,170 @@
+/*-
+ *  § 
+ * benchmark: command-line
+ *    
+ * Copyright (C) 2019 OnGres, Inc.
+ *    
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * § §
+ */
+
+package com.ongres.benchmark;
+
+import com.codahale.metrics.Meter;
+
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import jdk.jfr.consumer.RecordingStream;
+
+/**
+ * Virtual threads support for Java 21 and later.
+ */
+final class VirtualThreads {
+
+  private static final String CARRIER_THREAD_CLASS = "jdk.internal.misc.CarrierThread";
+  private static final Duration CARRIER_SAMPLE_PERIOD = Duration.ofSeconds(1);
+
+  private VirtualThreads() {
+  }
+
+  static boolean isSupported() {
+    return true;
+  }
+
+  /**
+   * Create a thread factory for simulated clients.
+   */
+  static ThreadFactory newThreadFactory(String prefix) {
+    return Thread.ofVirtual().name(prefix, 0).factory();
+  }
+
+  /**
+   * Sample each second, in a single thread, the fraction of the carrier threads CPU time used
+   * since the previous sample and pass it to {@code utilization}.
+   */
+  static Closeable monitorCarrierUtilization(Consumer<Double> utilization) {
+    final ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(
+        runnable -> {
+          Thread thread = new Thread(runnable, "benchmark-carrier-utilization");
+          thread.setDaemon(true);
+          return thread;
+        });
+    sampler.scheduleAtFixedRate(new CarrierUtilizationSampler(utilization),
+        CARRIER_SAMPLE_PERIOD.toNanos(), CARRIER_SAMPLE_PERIOD.toNanos(), TimeUnit.NANOSECONDS);
+    return sampler::shutdownNow;
+  }
+
+  /**
+   * Mark {@code pinned} each time a virtual thread blocks while pinned to its carrier for
+   * longer than the JFR {@code jdk.VirtualThreadPinned} event threshold.
+   */
+  static Closeable monitorPinning(Meter pinned) {
+    RecordingStream recordingStream = new RecordingStream();
+    recordingStream.enable("jdk.VirtualThreadPinned");
+    recordingStream.onEvent("jdk.VirtualThreadPinned", event -> pinned.mark());
+    recordingStream.startAsync();
+    return recordingStream::close;
+  }
+
+  /**
+   * Computes the carrier threads utilization from their accumulated CPU time, that includes the
+   * CPU time of the carriers that already terminated. The IDs of the carriers are cached, the
+   * live threads are only enumerated when {@link ThreadMXBean#getAllThreadIds()} returns IDs
+   * that were not seen yet.
+   */
+  private static final class CarrierUtilizationSampler implements Runnable {
+    private final ThreadMXBean threadMxBean = ManagementFactory.getThreadMXBean();
+    private final int parallelism = Integer.getInteger("jdk.virtualThreadScheduler.parallelism",
+        Runtime.getRuntime().availableProcessors());
+    private final Consumer<Double> utilization;
+    private final Set<Long> seenThreadIds = new HashSet<>();
+    private final Map<Long, Long> carrierCpuNanos = new HashMap<>();
+    private long retiredCpuNanos = 0;
+    private long lastCpuNanos;
+    private long lastWallNanos;
+
+    private CarrierUtilizationSampler(Consumer<Double> utilization) {
+      this.utilization = utilization;
+      this.lastCpuNanos = cpuNanos();
+      this.lastWallNanos = System.nanoTime();
+    }
+
+    @Override
+    public void run() {
+      final long cpuNanos = cpuNanos();
+      final long wallNanos = System.nanoTime();
+      utilization.accept((cpuNanos - lastCpuNanos)
+          / (double) Math.max(1L, (wallNanos - lastWallNanos) * parallelism));
+      lastCpuNanos = cpuNanos;
+      lastWallNanos = wallNanos;
+    }
+
+    private long cpuNanos() {
+      final Set<Long> liveThreadIds = new HashSet<>();
+      for (long threadId : threadMxBean.getAllThreadIds()) {
+        liveThreadIds.add(threadId);
+      }
+      if (!seenThreadIds.containsAll(liveThreadIds)) {
+        findCarriers(liveThreadIds);
+      }
+      seenThreadIds.retainAll(liveThreadIds);
+      final Iterator<Map.Entry<Long, Long>> carriers = carrierCpuNanos.entrySet().iterator();
+      while (carriers.hasNext()) {
+        final Map.Entry<Long, Long> carrier = carriers.next();
+        if (!liveThreadIds.contains(carrier.getKey())) {
+          retiredCpuNanos += carrier.getValue();
+          carriers.remove();
+        }
+      }
+      long cpuNanos = retiredCpuNanos;
+      for (Map.Entry<Long, Long> carrier : carrierCpuNanos.entrySet()) {
+        final long threadCpuNanos = threadMxBean.getThreadCpuTime(carrier.getKey());
+        if (threadCpuNanos > carrier.getValue()) {
+          carrier.setValue(threadCpuNanos);
+        }
+        cpuNanos += carrier.getValue();
+      }
+      return cpuNanos;
+    }
+
+    private void findCarriers(Set<Long> liveThreadIds) {
+      ThreadGroup root = Thread.currentThread().getThreadGroup();
+      while (root.getParent() != null) {
+        root = root.getParent();
+      }
+      final Thread[] threads = new Thread[liveThreadIds.size() * 2 + 16];
+      final int count = root.enumerate(threads, true);
+      for (int index = 0; index < count; index++) {
+        final long threadId = threads[index].threadId();
+        if (liveThreadIds.contains(threadId) && !seenThreadIds.contains(threadId)
+            && threads[index].getClass().getName().equals(CARRIER_THREAD_CLASS)) {
+          carrierCpuNanos.put(threadId, 0L);
+        }
+      }
+      seenThreadIds.addAll(liveThreadIds);
+    }
+  }
+}
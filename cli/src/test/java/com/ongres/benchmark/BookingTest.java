@@ -0,0 +1,83 @@
+/*-
+ *  § 
+ * benchmark: command-line
+ *    
+ * Copyright (C) 2019 OnGres, Inc.
+ *    
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * § §
+ */
+
+package com.ongres.benchmark;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class BookingTest {
+
+  private static final Date DAY = Date.valueOf("2023-07-01");
+  private static final Date NEXT_DAY = Date.valueOf("2023-07-02");
+  private static final Timestamp EARLY = Timestamp.valueOf("2023-06-01 10:00:00");
+  private static final Timestamp LATE = Timestamp.valueOf("2023-06-01 10:00:01");
+
+  @Test
+  public void auditsMergeScheduleAndDay() {
+    final List<Booking.Audit> audits = Booking.audits(List.of(
+        booking(2, DAY, LATE, 1L),
+        booking(1, NEXT_DAY, EARLY, 2L, 3L),
+        booking(1, DAY, EARLY, 4L),
+        booking(2, DAY, EARLY, 5L, 6L, 7L),
+        booking(1, DAY, LATE, 8L, 9L)));
+    assertEquals(3, audits.size());
+    assertAudit(audits.get(0), 1, DAY, 3, LATE);
+    assertAudit(audits.get(1), 1, NEXT_DAY, 2, EARLY);
+    assertAudit(audits.get(2), 2, DAY, 4, LATE);
+  }
+
+  @Test
+  public void auditsOfSingleBooking() {
+    final List<Booking.Audit> audits = Booking.audits(List.of(booking(7, DAY, EARLY, 1L, 2L)));
+    assertEquals(1, audits.size());
+    assertAudit(audits.get(0), 7, DAY, 2, EARLY);
+  }
+
+  @Test
+  public void auditsOfNoBookings() {
+    assertEquals(List.of(), Booking.audits(List.of()));
+  }
+
+  @Test
+  public void amount() {
+    assertEquals(42, new Booking(1, -1, new long[] { 1L }, DAY, EARLY).getAmount());
+    assertEquals(42, new Booking(1, 0, new long[] { 1L }, DAY, EARLY).getAmount());
+    assertEquals(90 * 42, new Booking(1, 90, new long[] { 1L }, DAY, EARLY).getAmount());
+  }
+
+  private static Booking booking(int scheduleId, Date day, Timestamp timestamp,
+      long... userIds) {
+    return new Booking(scheduleId, 60, userIds, day, timestamp);
+  }
+
+  private static void assertAudit(Booking.Audit audit, int scheduleId, Date day, int seats,
+      Timestamp timestamp) {
+    assertEquals(scheduleId, audit.getScheduleId());
+    assertEquals(day, audit.getDay());
+    assertEquals(seats, audit.getSeats());
+    assertEquals(timestamp, audit.getTimestamp());
+  }
+}
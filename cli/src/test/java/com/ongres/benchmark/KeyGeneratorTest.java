@@ -0,0 +1,164 @@
+/*-
+ *  § 
+ * benchmark: command-line
+ *    
+ * Copyright (C) 2019 OnGres, Inc.
+ *    
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * § §
+ */
+
+package com.ongres.benchmark;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.ongres.benchmark.config.model.Config;
+import com.ongres.benchmark.config.model.KeyDistribution;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+public class KeyGeneratorTest {
+
+  private static final int KEYS = 50;
+  private static final int DRAWS = 100_000;
+
+  @ParameterizedTest
+  @EnumSource(KeyDistribution.class)
+  public void nextInRange(KeyDistribution distribution) {
+    final int[] counts = counts(distribution, KEYS);
+    assertEquals(KEYS, counts.length);
+    assertEquals(DRAWS, Arrays.stream(counts).sum());
+  }
+
+  @ParameterizedTest
+  @EnumSource(KeyDistribution.class)
+  public void nextWithSingleKey(KeyDistribution distribution) {
+    assertArrayEquals(new int[] { DRAWS }, counts(distribution, 1));
+  }
+
+  @Test
+  public void uniform() {
+    for (int count : counts(KeyDistribution.UNIFORM, KEYS)) {
+      assertEquals(DRAWS / KEYS, count, DRAWS / KEYS * 0.2);
+    }
+  }
+
+  @Test
+  public void zipfianLowerKeysAreHotter() {
+    final int[] counts = counts(KeyDistribution.ZIPFIAN, KEYS);
+    assertTrue(counts[0] > counts[1], Arrays.toString(counts));
+    assertTrue(counts[1] > counts[KEYS / 2], Arrays.toString(counts));
+    assertTrue(counts[KEYS / 2] > 0, Arrays.toString(counts));
+  }
+
+  @Test
+  public void latestHigherKeysAreHotter() {
+    final int[] counts = counts(KeyDistribution.LATEST, KEYS);
+    assertTrue(counts[KEYS - 1] > counts[KEYS - 2], Arrays.toString(counts));
+    assertTrue(counts[KEYS - 2] > counts[KEYS / 2], Arrays.toString(counts));
+    assertTrue(counts[KEYS / 2] > 0, Arrays.toString(counts));
+  }
+
+  @Test
+  public void hotspot() {
+    final int[] counts = counts(KeyDistribution.HOTSPOT, KEYS);
+    final int hotKeys = (int) Math.round(KEYS * 0.2D);
+    final int hotDraws = Arrays.stream(counts, 0, hotKeys).sum();
+    assertEquals(0.8D, hotDraws / (double) DRAWS, 0.01D);
+    assertTrue(Arrays.stream(counts, hotKeys, KEYS).allMatch(count -> count > 0));
+  }
+
+  @Test
+  public void sameSeedRepeatsSequence() {
+    final Config config = config(KeyDistribution.ZIPFIAN);
+    final KeyGenerator generator = KeyGenerator.schedules(config, KEYS);
+    final KeyGenerator repeated = KeyGenerator.schedules(config, KEYS);
+    final KeyGenerator days = KeyGenerator.days(config);
+    boolean sameDays = true;
+    for (int draw = 0; draw < 1000; draw++) {
+      final int key = generator.next();
+      assertEquals(key, repeated.next());
+      sameDays &= key == days.next();
+    }
+    assertFalse(sameDays);
+  }
+
+  @Test
+  public void invalidParameters() {
+    final Config config = config(KeyDistribution.ZIPFIAN);
+    config.setZipfianTheta(0D);
+    assertThrows(IllegalArgumentException.class, () -> KeyGenerator.schedules(config, KEYS));
+    config.setZipfianTheta(0.99D);
+    config.setHotspotFraction(0D);
+    assertThrows(IllegalArgumentException.class, () -> KeyGenerator.schedules(config, KEYS));
+    config.setHotspotFraction(0.2D);
+    config.setHotspotAccessFraction(1.5D);
+    assertThrows(IllegalArgumentException.class, () -> KeyGenerator.schedules(config, KEYS));
+  }
+
+  @Test
+  public void powerLawBounds() {
+    for (double exponent : new double[] { 0.5D, 0.99D, 1D, 1.5D }) {
+      assertEquals(1L, KeyGenerator.powerLaw(0D, 1000L, exponent));
+      assertEquals(1000L, KeyGenerator.powerLaw(1D, 1000L, exponent));
+      assertEquals(1L, KeyGenerator.powerLaw(0.5D, 1L, exponent));
+      long previous = 1L;
+      for (double uniform = 0D; uniform < 1D; uniform += 0.001D) {
+        final long key = KeyGenerator.powerLaw(uniform, 1000L, exponent);
+        assertTrue(key >= previous && key <= 1000L, exponent + " " + uniform + " " + key);
+        previous = key;
+      }
+    }
+  }
+
+  @Test
+  public void powerLawFrequencies() {
+    final long cardinality = 1000L;
+    final long[] counts = new long[(int) cardinality + 1];
+    for (int draw = 0; draw < DRAWS; draw++) {
+      counts[(int) KeyGenerator.powerLaw((draw + 0.5D) / DRAWS, cardinality, 1D)]++;
+    }
+    assertTrue(counts[1] > counts[2] && counts[2] > counts[10] && counts[10] > counts[100],
+        Arrays.toString(Arrays.copyOf(counts, 11)));
+    // With an exponent of 1 the probability of a key is about proportional to 1 / key
+    assertEquals(10D, counts[10] / (double) counts[100], 3D);
+  }
+
+  private static int[] counts(KeyDistribution distribution, int keys) {
+    final KeyGenerator generator = KeyGenerator.schedules(config(distribution), keys);
+    final int[] counts = new int[keys];
+    for (int draw = 0; draw < DRAWS; draw++) {
+      final int key = generator.next();
+      assertTrue(key >= 0 && key < keys, distribution + " drew " + key);
+      counts[key]++;
+    }
+    return counts;
+  }
+
+  private static Config config(KeyDistribution distribution) {
+    final Config config = new Config();
+    config.setScheduleDistribution(distribution.name());
+    config.setDayDistribution(distribution.name());
+    config.setDayRange(KEYS);
+    config.setAccessSeed(42L);
+    return config;
+  }
+}
@@ -0,0 +1,158 @@
+/*-
+ *  § 
+ * benchmark: command-line
+ *    
+ * Copyright (C) 2019 OnGres, Inc.
+ *    
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * § §
+ */
+
+package com.ongres.benchmark;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.ongres.benchmark.config.model.profile.LoadStage;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+public class LoadProfileRunnerTest {
+
+  private static final double DELTA = 1e-9;
+
+  @Test
+  public void step() {
+    final LoadProfileRunner runner = runner(stage("step", "PT10S", 100D, null));
+    assertTrue(runner.isRate());
+    assertEquals(100D, runner.getInitialLoad(), DELTA);
+    assertEquals(100D, runner.load(0, seconds(5)), DELTA);
+  }
+
+  @Test
+  public void rampFromPreviousStage() {
+    final LoadProfileRunner runner = runner(stage("step", "PT10S", 100D, null),
+        stage("ramp", "PT10S", 200D, null));
+    assertEquals(100D, runner.load(1, 0L), DELTA);
+    assertEquals(150D, runner.load(1, seconds(5)), DELTA);
+    assertEquals(200D, runner.load(1, seconds(10)), DELTA);
+    assertEquals(200D, runner.load(1, seconds(20)), DELTA);
+  }
+
+  @Test
+  public void rampFrom() {
+    final LoadProfileRunner runner = runner(stage("ramp", "PT10S", 0D, 50D));
+    assertEquals(50D, runner.getInitialLoad(), DELTA);
+    assertEquals(25D, runner.load(0, seconds(5)), DELTA);
+    assertEquals(0D, runner.load(0, seconds(10)), DELTA);
+  }
+
+  @Test
+  public void firstRampStartsFromZero() {
+    final LoadProfileRunner runner = runner(stage("ramp", "PT10S", 100D, null));
+    assertEquals(0D, runner.getInitialLoad(), DELTA);
+    assertEquals(10D, runner.load(0, seconds(1)), DELTA);
+  }
+
+  @Test
+  public void spike() {
+    final LoadStage spike = stage("spike", "PT10S", 400D, null);
+    final LoadProfileRunner runner = runner(stage("step", "PT10S", 200D, null), spike);
+    assertEquals(400D, runner.load(1, 0L), DELTA);
+    assertEquals(400D, runner.load(1, seconds(1) - 1), DELTA);
+    assertEquals(200D, runner.load(1, seconds(1)), DELTA);
+    spike.setPeakDuration("PT3S");
+    assertEquals(400D, runner.load(1, seconds(2)), DELTA);
+    assertEquals(200D, runner.load(1, seconds(3)), DELTA);
+  }
+
+  @Test
+  public void sinusoid() {
+    final LoadStage sinusoid = stage("sinusoid", "PT10S", 100D, 20D);
+    sinusoid.setPeriod("PT4S");
+    final LoadProfileRunner runner = runner(sinusoid);
+    assertEquals(20D, runner.load(0, 0L), DELTA);
+    assertEquals(60D, runner.load(0, seconds(1)), DELTA);
+    assertEquals(100D, runner.load(0, seconds(2)), DELTA);
+    assertEquals(60D, runner.load(0, seconds(3)), DELTA);
+    assertEquals(20D, runner.load(0, seconds(4)), DELTA);
+  }
+
+  @Test
+  public void stageStartsFromEndOfPreviousStage() {
+    final LoadStage sinusoid = stage("sinusoid", "PT3S", 100D, 0D);
+    sinusoid.setPeriod("PT4S");
+    final LoadProfileRunner runner = runner(sinusoid, stage("ramp", "PT10S", 0D, null));
+    assertEquals(50D, runner.load(1, 0L), DELTA);
+    assertEquals(25D, runner.load(1, seconds(5)), DELTA);
+  }
+
+  @Test
+  public void concurrency() {
+    final LoadProfileRunner runner = runner(concurrencyStage("ramp", 8, 2D),
+        concurrencyStage("step", 4, null));
+    assertFalse(runner.isRate());
+    assertEquals(2D, runner.getInitialLoad(), DELTA);
+    assertEquals(5D, runner.load(0, seconds(5)), DELTA);
+    assertEquals(4D, runner.load(1, 0L), DELTA);
+  }
+
+  @Test
+  public void invalidStages() {
+    assertThrows(IllegalArgumentException.class, () -> runner());
+    assertThrows(IllegalArgumentException.class, () -> runner(
+        stage("step", "PT10S", 100D, null), concurrencyStage("step", 4, null)));
+    final LoadStage both = stage("step", "PT10S", 100D, null);
+    both.setConcurrency(4);
+    assertThrows(IllegalArgumentException.class, () -> runner(both));
+    assertThrows(IllegalArgumentException.class, () -> runner(stage("step", "PT0S", 100D,
+        null)));
+    assertThrows(IllegalArgumentException.class, () -> runner(stage("step", "PT10S", -1D,
+        null)));
+    assertThrows(IllegalArgumentException.class, () -> runner(
+        concurrencyStage("step", 11, null)));
+    assertThrows(IllegalArgumentException.class, () -> runner(
+        concurrencyStage("ramp", 4, 11D)));
+  }
+
+  private static LoadProfileRunner runner(LoadStage... stages) {
+    return new LoadProfileRunner(List.of(stages), new MetricsWindow(), 10);
+  }
+
+  private static LoadStage stage(String type, String duration, Double rate, Double from) {
+    final LoadStage stage = new LoadStage();
+    stage.setType(type);
+    stage.setDuration(duration);
+    stage.setRate(rate);
+    stage.setFrom(from);
+    return stage;
+  }
+
+  private static LoadStage concurrencyStage(String type, int concurrency, Double from) {
+    final LoadStage stage = new LoadStage();
+    stage.setType(type);
+    stage.setDuration("PT10S");
+    stage.setConcurrency(concurrency);
+    stage.setFrom(from);
+    return stage;
+  }
+
+  private static long seconds(long seconds) {
+    return TimeUnit.SECONDS.toNanos(seconds);
+  }
+}
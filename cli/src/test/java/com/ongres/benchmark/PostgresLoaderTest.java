@@ -0,0 +1,120 @@
+/*-
+ *  § 
+ * benchmark: command-line
+ *    
+ * Copyright (C) 2019 OnGres, Inc.
+ *    
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * § §
+ */
+
+package com.ongres.benchmark;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class PostgresLoaderTest {
+
+  @Test
+  public void splitAtLineEnds() throws Exception {
+    assertEquals(List.of("a,1\n", "b,2\n", "c,3\n"), split("a,1\nb,2\nc,3\n", false, 1));
+  }
+
+  @Test
+  public void splitChunksOfAtLeastChunkSize() throws Exception {
+    assertEquals(List.of("a,1\nb,2\n", "c,3\nd,4\n", "e,5\n"),
+        split("a,1\nb,2\nc,3\nd,4\ne,5\n", false, 5));
+  }
+
+  @Test
+  public void splitKeepsQuotedLineEnds() throws Exception {
+    assertEquals(List.of("1,\"x\ny\"\n", "2,\"\"\"z\n\"\"\"\n", "3,w\n"),
+        split("1,\"x\ny\"\n2,\"\"\"z\n\"\"\"\n3,w\n", false, 1));
+  }
+
+  @Test
+  public void splitSkipsHeader() throws Exception {
+    assertEquals(List.of("1,2\n", "3,4\n"), split("a,b\n1,2\n3,4\n", true, 1));
+  }
+
+  @Test
+  public void splitSkipsQuotedHeader() throws Exception {
+    assertEquals(List.of("1,2\n"), split("\"a\nb\",c\n1,2\n", true, 1));
+  }
+
+  @Test
+  public void splitKeepsLastLineWithoutLineEnd() throws Exception {
+    assertEquals(List.of("a\nb"), split("a\nb", false, 100));
+    assertEquals(List.of("a\n", "b"), split("a\nb", false, 1));
+  }
+
+  @Test
+  public void splitEmptyInput() throws Exception {
+    assertEquals(List.of(), split("", false, 1));
+    assertEquals(List.of(), split("a,b\n", true, 1));
+  }
+
+  @Test
+  public void splitAcrossReads() throws Exception {
+    final StringBuilder input = new StringBuilder("id,name\n");
+    for (int row = 0; row < 1000; row++) {
+      input.append(row).append(",\"name\n").append(row).append("\"\n");
+    }
+    final List<String> chunks = new ArrayList<>();
+    PostgresLoader.split(new TrickleInputStream(input.toString(), 7), true, 100,
+        chunk -> chunks.add(new String(chunk, StandardCharsets.UTF_8)));
+    assertEquals(input.substring("id,name\n".length()), String.join("", chunks));
+    for (int index = 0; index < chunks.size(); index++) {
+      final String chunk = chunks.get(index);
+      assertTrue(Character.isDigit(chunk.charAt(0)), chunk);
+      assertTrue(chunk.endsWith("\"\n"), chunk);
+      assertTrue(index == chunks.size() - 1 || chunk.length() >= 100, chunk);
+      assertTrue(chunk.length() < 100 + 20, chunk);
+    }
+  }
+
+  private static List<String> split(String input, boolean header, int chunkSize)
+      throws Exception {
+    final List<String> chunks = new ArrayList<>();
+    PostgresLoader.split(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)),
+        header, chunkSize, chunk -> chunks.add(new String(chunk, StandardCharsets.UTF_8)));
+    return chunks;
+  }
+
+  /**
+   * Return at most {@code maxRead} bytes on each read.
+   */
+  private static class TrickleInputStream extends FilterInputStream {
+
+    private final int maxRead;
+
+    private TrickleInputStream(String input, int maxRead) {
+      super(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)));
+      this.maxRead = maxRead;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      return super.read(buffer, offset, Math.min(length, maxRead));
+    }
+  }
+}
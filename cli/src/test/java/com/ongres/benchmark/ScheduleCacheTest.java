@@ -0,0 +1,175 @@
+/*-
+ *  § 
+ * benchmark: command-line
+ *    
+ * Copyright (C) 2019 OnGres, Inc.
+ *    
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * § §
+ */
+
+package com.ongres.benchmark;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import com.ongres.benchmark.config.model.Config;
+
+import org.junit.jupiter.api.Test;
+
+public class ScheduleCacheTest {
+
+  @Test
+  public void entry() {
+    final long entry = ScheduleCache.entry(95, 180);
+    assertEquals(95, ScheduleCache.durationMinutes(entry));
+    assertEquals(180, ScheduleCache.capacity(entry));
+    final long unknown = ScheduleCache.entry(-1, -5);
+    assertEquals(-1, ScheduleCache.durationMinutes(unknown));
+    assertEquals(-1, ScheduleCache.capacity(unknown));
+    assertNotEquals(ScheduleCache.MISSING, unknown);
+  }
+
+  @Test
+  public void allSchedules() {
+    final ScheduleCache cache = create("on-demand", 4, null, "lru");
+    for (int scheduleId = 0; scheduleId < 4; scheduleId++) {
+      assertEquals(ScheduleCache.MISSING, cache.get(scheduleId));
+      cache.fill(scheduleId, scheduleId, scheduleId);
+    }
+    for (int scheduleId = 0; scheduleId < 4; scheduleId++) {
+      assertEquals(ScheduleCache.entry(scheduleId, scheduleId), cache.get(scheduleId));
+    }
+    assertEquals(4, cache.getHits());
+    assertEquals(4, cache.getMisses());
+  }
+
+  @Test
+  public void lruEvictsLeastRecentlyUsed() {
+    final ScheduleCache cache = create("on-demand", 10, 3, "lru");
+    cache.put(0, 0, 0);
+    cache.put(1, 1, 1);
+    cache.put(2, 2, 2);
+    assertEquals(ScheduleCache.entry(0, 0), cache.get(0));
+    cache.put(3, 3, 3);
+    assertEquals(ScheduleCache.MISSING, cache.get(1));
+    assertEquals(ScheduleCache.entry(2, 2), cache.get(2));
+    assertEquals(ScheduleCache.entry(0, 0), cache.get(0));
+    cache.put(4, 4, 4);
+    assertEquals(ScheduleCache.MISSING, cache.get(3));
+    assertEquals(ScheduleCache.entry(2, 2), cache.get(2));
+    assertEquals(ScheduleCache.entry(0, 0), cache.get(0));
+    assertEquals(ScheduleCache.entry(4, 4), cache.get(4));
+  }
+
+  @Test
+  public void lruEvictsHeadAndTail() {
+    final ScheduleCache cache = create("on-demand", 10, 2, "lru");
+    cache.put(0, 0, 0);
+    cache.put(1, 1, 1);
+    cache.put(2, 2, 2);
+    assertEquals(ScheduleCache.MISSING, cache.get(0));
+    assertEquals(ScheduleCache.entry(1, 1), cache.get(1));
+    cache.put(3, 3, 3);
+    assertEquals(ScheduleCache.MISSING, cache.get(2));
+    assertEquals(ScheduleCache.entry(3, 3), cache.get(3));
+    assertEquals(ScheduleCache.entry(1, 1), cache.get(1));
+    cache.put(4, 4, 4);
+    assertEquals(ScheduleCache.MISSING, cache.get(3));
+    assertEquals(ScheduleCache.entry(1, 1), cache.get(1));
+    assertEquals(ScheduleCache.entry(4, 4), cache.get(4));
+  }
+
+  @Test
+  public void singleSlotLru() {
+    final ScheduleCache cache = create("on-demand", 10, 1, "lru");
+    for (int scheduleId = 0; scheduleId < 10; scheduleId++) {
+      cache.put(scheduleId, scheduleId, scheduleId);
+      assertEquals(ScheduleCache.entry(scheduleId, scheduleId), cache.get(scheduleId));
+      if (scheduleId > 0) {
+        assertEquals(ScheduleCache.MISSING, cache.get(scheduleId - 1));
+      }
+    }
+  }
+
+  @Test
+  public void putUpdatesWithoutEvicting() {
+    final ScheduleCache cache = create("on-demand", 10, 2, "lru");
+    cache.put(0, 0, 0);
+    cache.put(1, 1, 1);
+    cache.put(0, 10, 10);
+    cache.put(1, 11, 11);
+    assertEquals(ScheduleCache.entry(10, 10), cache.get(0));
+    assertEquals(ScheduleCache.entry(11, 11), cache.get(1));
+  }
+
+  @Test
+  public void fifoEvictsInInsertionOrder() {
+    final ScheduleCache cache = create("on-demand", 10, 2, "fifo");
+    cache.put(0, 0, 0);
+    cache.put(1, 1, 1);
+    assertEquals(ScheduleCache.entry(0, 0), cache.get(0));
+    cache.put(2, 2, 2);
+    assertEquals(ScheduleCache.MISSING, cache.get(0));
+    assertEquals(ScheduleCache.entry(1, 1), cache.get(1));
+    cache.put(3, 3, 3);
+    assertEquals(ScheduleCache.MISSING, cache.get(1));
+    assertEquals(ScheduleCache.entry(2, 2), cache.get(2));
+    assertEquals(ScheduleCache.entry(3, 3), cache.get(3));
+  }
+
+  @Test
+  public void randomKeepsSize() {
+    final ScheduleCache cache = create("on-demand", 100, 10, "random");
+    for (int scheduleId = 0; scheduleId < 100; scheduleId++) {
+      cache.put(scheduleId, scheduleId, scheduleId);
+    }
+    int cached = 0;
+    for (int scheduleId = 0; scheduleId < 100; scheduleId++) {
+      final long entry = cache.get(scheduleId);
+      if (entry != ScheduleCache.MISSING) {
+        assertEquals(ScheduleCache.entry(scheduleId, scheduleId), entry);
+        cached++;
+      }
+    }
+    assertEquals(10, cached);
+  }
+
+  @Test
+  public void preloadIsNotFilled() {
+    final ScheduleCache cache = create("preload", 10, null, "lru");
+    cache.fill(0, 0, 0);
+    assertEquals(ScheduleCache.MISSING, cache.get(0));
+    cache.put(0, 0, 0);
+    assertEquals(ScheduleCache.entry(0, 0), cache.get(0));
+  }
+
+  @Test
+  public void disabled() {
+    final ScheduleCache cache = create("none", 10, null, "lru");
+    assertFalse(cache.isEnabled());
+    cache.put(0, 0, 0);
+    assertEquals(ScheduleCache.MISSING, cache.get(0));
+    assertEquals(0, cache.getMisses());
+  }
+
+  private static ScheduleCache create(String mode, int scheduleCount, Integer size,
+      String eviction) {
+    final Config config = new Config();
+    config.setScheduleCache(mode);
+    config.setScheduleCacheSize(size);
+    config.setScheduleCacheEviction(eviction);
+    return ScheduleCache.create(config, scheduleCount);
+  }
+}